@@ -28,6 +28,7 @@ import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.text.TextUtils;
 
+import com.android.inputmethod.keyboard.internal.CompiledKeyboardLayout;
 import com.android.inputmethod.keyboard.internal.KeyDrawParams;
 import com.android.inputmethod.keyboard.internal.KeySpecParser;
 import com.android.inputmethod.keyboard.internal.KeyStyle;
@@ -441,6 +442,106 @@ public class Key implements Comparable<Key> {
         mEnabled = key.mEnabled;
     }
 
+    /**
+     * Constructor for a key of a compiled keyboard layout.
+     *
+     * @param reader the reader of the layout, positioned on a key written by {@link #writeTo}.
+     */
+    public Key(@Nonnull final CompiledKeyboardLayout.Reader reader) {
+        mCode = reader.readInt();
+        mLabel = reader.readString();
+        mHintLabel = reader.readString();
+        mLabelFlags = reader.readInt();
+        mIconId = reader.readInt();
+        mWidth = reader.readInt();
+        mHeight = reader.readInt();
+        mHorizontalGap = reader.readInt();
+        mVerticalGap = reader.readInt();
+        mX = reader.readInt();
+        mY = reader.readInt();
+        final int hitBoxLeft = reader.readInt();
+        final int hitBoxTop = reader.readInt();
+        final int hitBoxRight = reader.readInt();
+        final int hitBoxBottom = reader.readInt();
+        mHitBox.set(hitBoxLeft, hitBoxTop, hitBoxRight, hitBoxBottom);
+        final int moreKeysCount = reader.readInt();
+        if (moreKeysCount < 0) {
+            mMoreKeys = null;
+        } else {
+            mMoreKeys = new MoreKeySpec[moreKeysCount];
+            for (int i = 0; i < moreKeysCount; i++) {
+                final int code = reader.readInt();
+                final String label = reader.readString();
+                final String outputText = reader.readString();
+                final int iconId = reader.readInt();
+                mMoreKeys[i] = new MoreKeySpec(code, label, outputText, iconId);
+            }
+        }
+        mMoreKeysColumnAndFlags = reader.readInt();
+        mBackgroundType = reader.readInt();
+        mActionFlags = reader.readInt();
+        mKeyVisualAttributes = reader.readVisualAttributes();
+        if (reader.readBoolean()) {
+            final String outputText = reader.readString();
+            final int altCode = reader.readInt();
+            final int disabledIconId = reader.readInt();
+            final int visualInsetsLeft = reader.readInt();
+            final int visualInsetsRight = reader.readInt();
+            mOptionalAttributes = OptionalAttributes.newInstance(outputText, altCode,
+                    disabledIconId, visualInsetsLeft, visualInsetsRight);
+        } else {
+            mOptionalAttributes = null;
+        }
+        mEnabled = reader.readBoolean();
+        mHashCode = computeHashCode(this);
+    }
+
+    /**
+     * Writes the attributes of this key into a compiled keyboard layout.
+     */
+    public void writeTo(@Nonnull final CompiledKeyboardLayout.Writer writer) {
+        writer.writeInt(mCode);
+        writer.writeString(mLabel);
+        writer.writeString(mHintLabel);
+        writer.writeInt(mLabelFlags);
+        writer.writeInt(mIconId);
+        writer.writeInt(mWidth);
+        writer.writeInt(mHeight);
+        writer.writeInt(mHorizontalGap);
+        writer.writeInt(mVerticalGap);
+        writer.writeInt(mX);
+        writer.writeInt(mY);
+        writer.writeInt(mHitBox.left);
+        writer.writeInt(mHitBox.top);
+        writer.writeInt(mHitBox.right);
+        writer.writeInt(mHitBox.bottom);
+        if (mMoreKeys == null) {
+            writer.writeInt(-1);
+        } else {
+            writer.writeInt(mMoreKeys.length);
+            for (final MoreKeySpec moreKey : mMoreKeys) {
+                writer.writeInt(moreKey.mCode);
+                writer.writeString(moreKey.mLabel);
+                writer.writeString(moreKey.mOutputText);
+                writer.writeInt(moreKey.mIconId);
+            }
+        }
+        writer.writeInt(mMoreKeysColumnAndFlags);
+        writer.writeInt(mBackgroundType);
+        writer.writeInt(mActionFlags);
+        writer.writeVisualAttributes(mKeyVisualAttributes);
+        final OptionalAttributes attrs = mOptionalAttributes;
+        writer.writeBoolean(attrs != null);
+        if (attrs != null) {
+            writer.writeString(attrs.mOutputText);
+            writer.writeInt(attrs.mAltCode);
+            writer.writeInt(attrs.mDisabledIconId);
+            writer.writeInt(attrs.mVisualInsetsLeft);
+            writer.writeInt(attrs.mVisualInsetsRight);
+        }
+        writer.writeBoolean(mEnabled);
+    }
+
     @Nonnull
     public static Key removeRedundantMoreKeys(@Nonnull final Key key,
             @Nonnull final MoreKeySpec.LettersOnBaseLayout lettersOnBaseLayout) {
@@ -1009,6 +1110,10 @@ public class Key implements Comparable<Key> {
             super(null /* keySpec */, keyAttr, keyStyle, params, row);
         }
 
+        public Spacer(@Nonnull final CompiledKeyboardLayout.Reader reader) {
+            super(reader);
+        }
+
         /**
          * This constructor is being used only for divider in more keys keyboard.
          */
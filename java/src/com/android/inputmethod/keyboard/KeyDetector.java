@@ -91,6 +91,11 @@ public class KeyDetector {
         }
         final int touchX = getTouchX(x);
         final int touchY = getTouchY(y);
+        final KeyHitTable keyHitTable = mKeyboard.getKeyHitTable();
+        if (keyHitTable != null) {
+            // Move events are frequent, so avoid reading every nearest key object.
+            return keyHitTable.detectHitKey(touchX, touchY);
+        }
 
         int minDistance = Integer.MAX_VALUE;
         Key primaryKey = null;
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import android.graphics.Rect;
+
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The geometry of the keys of a keyboard in primitive arrays indexed by key, with the nearest keys
+ * of each cell of its {@link ProximityGrid}, to detect the key hit by a touch point without
+ * reading any {@link Key} object. It gives the same results as testing the nearest keys of the
+ * keyboard with {@link Key#isOnKey(int, int)} and {@link Key#squaredDistanceToEdge(int, int)}.
+ */
+public final class KeyHitTable {
+    public static final int NOT_A_KEY_INDEX = -1;
+
+    @Nonnull
+    private final List<Key> mSortedKeys;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mGridWidth;
+    private final int mGridSize;
+    private final int mCellWidth;
+    private final int mCellHeight;
+    // The neighbor lists of the grid, shared with the grid.
+    @Nonnull
+    private final int[] mCellListIndices;
+    @Nonnull
+    private final int[] mListStarts;
+    @Nonnull
+    private final int[] mKeyIndices;
+    // The hit box of each key, including the area up to the keyboard edges for the edge keys.
+    @Nonnull
+    private final int[] mHitBoxLefts;
+    @Nonnull
+    private final int[] mHitBoxTops;
+    @Nonnull
+    private final int[] mHitBoxRights;
+    @Nonnull
+    private final int[] mHitBoxBottoms;
+    // The edges of each key, to compute the distance of a point to them.
+    @Nonnull
+    private final int[] mLefts;
+    @Nonnull
+    private final int[] mTops;
+    @Nonnull
+    private final int[] mRights;
+    @Nonnull
+    private final int[] mBottoms;
+    @Nonnull
+    private final int[] mCodes;
+
+    /**
+     * @param width the width of the keyboard, to bring the points outside of it to its edges.
+     * @param height the height of the keyboard.
+     */
+    KeyHitTable(@Nonnull final ProximityGrid grid, @Nonnull final List<Key> sortedKeys,
+            final int width, final int height) {
+        mSortedKeys = sortedKeys;
+        mWidth = width;
+        mHeight = height;
+        mGridWidth = grid.getGridWidth();
+        mCellWidth = grid.getCellWidth();
+        mCellHeight = grid.getCellHeight();
+        mCellListIndices = grid.getCellListIndices();
+        mGridSize = mCellListIndices.length;
+        mListStarts = grid.getListStarts();
+        mKeyIndices = grid.getKeyIndices();
+        final int keyCount = sortedKeys.size();
+        mHitBoxLefts = new int[keyCount];
+        mHitBoxTops = new int[keyCount];
+        mHitBoxRights = new int[keyCount];
+        mHitBoxBottoms = new int[keyCount];
+        mLefts = new int[keyCount];
+        mTops = new int[keyCount];
+        mRights = new int[keyCount];
+        mBottoms = new int[keyCount];
+        mCodes = new int[keyCount];
+        for (int i = 0; i < keyCount; ++i) {
+            final Key key = sortedKeys.get(i);
+            final Rect hitBox = key.getHitBox();
+            mHitBoxLefts[i] = hitBox.left;
+            mHitBoxTops[i] = hitBox.top;
+            mHitBoxRights[i] = hitBox.right;
+            mHitBoxBottoms[i] = hitBox.bottom;
+            mLefts[i] = key.getX();
+            mTops[i] = key.getY();
+            mRights[i] = key.getX() + key.getWidth();
+            mBottoms[i] = key.getY() + key.getHeight();
+            mCodes[i] = key.getCode();
+        }
+    }
+
+    /**
+     * Detects the index of the key whose hit box a touch point is in, among the sorted keys.
+     *
+     * @param x the x-coordinate of the touch point, already corrected.
+     * @param y the y-coordinate of the touch point, already corrected.
+     * @return the index of the key hit, or {@link #NOT_A_KEY_INDEX}.
+     */
+    public int detectHitKeyIndex(final int x, final int y) {
+        // Avoid dead pixels at edges of the keyboard, as Keyboard#getNearestKeys does.
+        final int adjustedX = Math.max(0, Math.min(x, mWidth - 1));
+        final int adjustedY = Math.max(0, Math.min(y, mHeight - 1));
+        final int cellIndex = (adjustedY / mCellHeight) * mGridWidth + (adjustedX / mCellWidth);
+        if (cellIndex >= mGridSize) {
+            return NOT_A_KEY_INDEX;
+        }
+        final int listIndex = mCellListIndices[cellIndex];
+        final int end = mListStarts[listIndex + 1];
+        int minDistance = Integer.MAX_VALUE;
+        int primaryKeyIndex = NOT_A_KEY_INDEX;
+        for (int i = mListStarts[listIndex]; i < end; ++i) {
+            final int keyIndex = mKeyIndices[i];
+            // An edge key always has its enlarged hitbox to respond to an event that occurred in
+            // the empty area around the key. (@see Key#markAsLeftEdge(KeyboardParams)} etc.)
+            if (x < mHitBoxLefts[keyIndex] || x >= mHitBoxRights[keyIndex]
+                    || y < mHitBoxTops[keyIndex] || y >= mHitBoxBottoms[keyIndex]) {
+                continue;
+            }
+            final int left = mLefts[keyIndex];
+            final int right = mRights[keyIndex];
+            final int top = mTops[keyIndex];
+            final int bottom = mBottoms[keyIndex];
+            final int dx = x - (x < left ? left : (x > right ? right : x));
+            final int dy = y - (y < top ? top : (y > bottom ? bottom : y));
+            final int distance = dx * dx + dy * dy;
+            if (distance > minDistance) {
+                continue;
+            }
+            // To take care of hitbox overlaps, we compare key's code here too.
+            if (primaryKeyIndex == NOT_A_KEY_INDEX || distance < minDistance
+                    || mCodes[keyIndex] > mCodes[primaryKeyIndex]) {
+                minDistance = distance;
+                primaryKeyIndex = keyIndex;
+            }
+        }
+        return primaryKeyIndex;
+    }
+
+    public int getByteSize() {
+        // The arrays of the grid are counted by the grid.
+        return mCodes.length * 9 * 4;
+    }
+
+    /**
+     * Detects the key whose hit box a touch point is in.
+     *
+     * @return the key hit, or null.
+     */
+    @Nullable
+    public Key detectHitKey(final int x, final int y) {
+        final int keyIndex = detectHitKeyIndex(x, y);
+        return keyIndex == NOT_A_KEY_INDEX ? null : mSortedKeys.get(keyIndex);
+    }
+}
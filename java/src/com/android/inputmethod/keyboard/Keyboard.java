@@ -175,6 +175,16 @@ public class Keyboard {
         return mKeyboardLayout;
     }
 
+    // Rough size of a key with its labels, hit box and more keys.
+    private static final int BYTES_PER_KEY = 256;
+
+    /**
+     * Returns an estimate of the memory used by this keyboard, to budget the keyboards cache.
+     */
+    public int getEstimatedByteSize() {
+        return mSortedKeys.size() * BYTES_PER_KEY + mProximityInfo.getEstimatedByteSize();
+    }
+
     /**
      * Return the sorted list of keys of this keyboard.
      * The keys are sorted from top-left to bottom-right order.
@@ -242,6 +252,15 @@ public class Keyboard {
         return mProximityInfo.getNearestKeys(adjustedX, adjustedY);
     }
 
+    /**
+     * Returns the table to detect the key hit by a point without reading the keys, or null if
+     * the hit key has to be detected among {@link #getNearestKeys(int, int)}.
+     */
+    @Nullable
+    public KeyHitTable getKeyHitTable() {
+        return mProximityInfo.getKeyHitTable();
+    }
+
     @Nonnull
     public int[] getCoordinates(@Nonnull final int[] codePoints) {
         final int length = codePoints.length;
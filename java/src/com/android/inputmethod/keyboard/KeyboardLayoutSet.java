@@ -19,6 +19,7 @@ package com.android.inputmethod.keyboard;
 import static com.android.inputmethod.latin.common.Constants.ImeOption.FORCE_ASCII;
 import static com.android.inputmethod.latin.common.Constants.ImeOption.NO_SETTINGS_KEY;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
@@ -30,27 +31,34 @@ import android.util.Xml;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodSubtype;
 
+import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.compat.EditorInfoCompatUtils;
 import com.android.inputmethod.compat.InputMethodSubtypeCompatUtils;
 import com.android.inputmethod.compat.UserManagerCompatUtils;
+import com.android.inputmethod.keyboard.internal.CompiledKeyboardLayout;
 import com.android.inputmethod.keyboard.internal.KeyboardBuilder;
+import com.android.inputmethod.keyboard.internal.KeyboardCache;
 import com.android.inputmethod.keyboard.internal.KeyboardParams;
 import com.android.inputmethod.keyboard.internal.UniqueKeysCache;
 import com.android.inputmethod.latin.InputAttributes;
 import com.android.inputmethod.latin.R;
 import com.android.inputmethod.latin.RichInputMethodSubtype;
 import com.android.inputmethod.latin.define.DebugFlags;
+import com.android.inputmethod.latin.define.ProductionFlags;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
 import com.android.inputmethod.latin.utils.InputTypeUtils;
 import com.android.inputmethod.latin.utils.ScriptUtils;
 import com.android.inputmethod.latin.utils.SubtypeLocaleUtils;
+import com.android.inputmethod.latin.utils.TaskLane;
 import com.android.inputmethod.latin.utils.XmlParseUtils;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.IOException;
-import java.lang.ref.SoftReference;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -75,21 +83,50 @@ public final class KeyboardLayoutSet {
     private final Context mContext;
     @Nonnull
     private final Params mParams;
+    private volatile boolean mIsPrebuildingCancelled;
 
-    // How many layouts we forcibly keep in cache. This only includes ALPHABET (default) and
-    // ALPHABET_AUTOMATIC_SHIFTED layouts - other layouts may stay in memory in the map of
-    // soft-references, but we forcibly cache this many alphabetic/auto-shifted layouts.
-    private static final int FORCIBLE_CACHE_SIZE = 4;
-    // By construction of soft references, anything that is also referenced somewhere else
-    // will stay in the cache. So we forcibly keep some references in an array to prevent
-    // them from disappearing from sKeyboardCache.
-    private static final Keyboard[] sForcibleKeyboardCache = new Keyboard[FORCIBLE_CACHE_SIZE];
-    private static final HashMap<KeyboardId, SoftReference<Keyboard>> sKeyboardCache =
-            new HashMap<>();
+    // The keyboards built so far. The most frequently used ones, typically the alphabet and symbols
+    // keyboards of the current subtype, are kept when the cache exceeds its memory budget.
+    @Nonnull
+    private static final KeyboardCache<KeyboardId, Keyboard> sKeyboardCache =
+            new KeyboardCache<>();
+    // The layouts of the keyboards loaded so far, to load them again without parsing their XML
+    // when their soft reference has been cleared or after a subtype switch. Guarded by itself.
+    private static final int MAX_COMPILED_LAYOUT_COUNT = 32;
+    private static final LinkedHashMap<KeyboardId, CompiledKeyboardLayout> sCompiledLayouts =
+            new LinkedHashMap<KeyboardId, CompiledKeyboardLayout>(
+                    MAX_COMPILED_LAYOUT_COUNT, 0.75f, true /* accessOrder */) {
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<KeyboardId, CompiledKeyboardLayout> eldest) {
+                    return size() > MAX_COMPILED_LAYOUT_COUNT;
+                }
+            };
+    // The keys shared by the alphabet keyboards. Only used to build alphabet keyboards.
     @Nonnull
     private static final UniqueKeysCache sUniqueKeysCache = UniqueKeysCache.newInstance();
+    static {
+        sUniqueKeysCache.setEnabled(true);
+    }
+    // Guards the lookups and insertions of the keyboard cache, but not the building of the
+    // keyboards, so that the UI thread doesn't wait for a keyboard being prebuilt.
+    private static final Object sBuildLock = new Object();
+    // Incremented when the caches are cleared, so that the keyboards being prebuilt for a former
+    // theme or locale are not cached. Guarded by sBuildLock.
+    private static int sCacheGeneration = 0;
+    // The keyboards that are likely to be shown after the alphabet keyboard, most likely first.
+    // In the phone and number modes, these are the phone and number keyboards.
+    private static final int[] PREBUILT_ELEMENT_IDS = {
+            KeyboardId.ELEMENT_ALPHABET,
+            KeyboardId.ELEMENT_ALPHABET_AUTOMATIC_SHIFTED,
+            KeyboardId.ELEMENT_SYMBOLS,
+            KeyboardId.ELEMENT_ALPHABET_MANUAL_SHIFTED,
+            KeyboardId.ELEMENT_SYMBOLS_SHIFTED,
+    };
     private final static HashMap<InputMethodSubtype, Integer> sScriptIdsForSubtypes =
             new HashMap<>();
+    @Nullable
+    private static volatile Runnable sPrebuildStartedListenerForTesting;
 
     @SuppressWarnings("serial")
     public static final class KeyboardLayoutSetException extends RuntimeException {
@@ -133,6 +170,38 @@ public final class KeyboardLayoutSet {
         // Sparse array of KeyboardLayoutSet element parameters indexed by element's id.
         final SparseArray<ElementParams> mKeyboardLayoutSetElementIdToParamsMap =
                 new SparseArray<>();
+
+        /**
+         * Returns a copy of these parameters, to build a keyboard on another thread while these
+         * ones are used on the UI thread.
+         */
+        @Nonnull
+        Params copy() {
+            final Params params = new Params();
+            params.mKeyboardLayoutSetName = mKeyboardLayoutSetName;
+            params.mMode = mMode;
+            params.mDisableTouchPositionCorrectionDataForTest =
+                    mDisableTouchPositionCorrectionDataForTest;
+            params.mEditorInfo = mEditorInfo;
+            params.mIsPasswordField = mIsPasswordField;
+            params.mVoiceInputKeyEnabled = mVoiceInputKeyEnabled;
+            params.mNoSettingsKey = mNoSettingsKey;
+            params.mLanguageSwitchKeyEnabled = mLanguageSwitchKeyEnabled;
+            params.mSubtype = mSubtype;
+            params.mIsSpellChecker = mIsSpellChecker;
+            params.mKeyboardWidth = mKeyboardWidth;
+            params.mKeyboardHeight = mKeyboardHeight;
+            params.mScriptId = mScriptId;
+            params.mIsSplitLayoutEnabledByUser = mIsSplitLayoutEnabledByUser;
+            params.mIsSplitLayoutEnabled = mIsSplitLayoutEnabled;
+            // The element parameters are not modified once the layout set has been built.
+            for (int i = 0; i < mKeyboardLayoutSetElementIdToParamsMap.size(); i++) {
+                params.mKeyboardLayoutSetElementIdToParamsMap.put(
+                        mKeyboardLayoutSetElementIdToParamsMap.keyAt(i),
+                        mKeyboardLayoutSetElementIdToParamsMap.valueAt(i));
+            }
+            return params;
+        }
     }
 
     public static void onSystemLocaleChanged() {
@@ -143,11 +212,50 @@ public final class KeyboardLayoutSet {
         clearKeyboardCache();
     }
 
+    /**
+     * Releases the cached keyboards when the system runs low on memory. They are built again from
+     * their compiled layouts when they are needed.
+     *
+     * @param level the level passed to {@link ComponentCallbacks2#onTrimMemory}.
+     */
+    public static void onTrimMemory(final int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return;
+        }
+        synchronized (sBuildLock) {
+            sKeyboardCache.clear();
+        }
+    }
+
+    /**
+     * Returns the cache of the keyboards built so far, to query its statistics.
+     */
+    @Nonnull
+    public static KeyboardCache<KeyboardId, Keyboard> getKeyboardCache() {
+        return sKeyboardCache;
+    }
+
     private static void clearKeyboardCache() {
-        sKeyboardCache.clear();
+        synchronized (sBuildLock) {
+            ++sCacheGeneration;
+            sKeyboardCache.clear();
+        }
+        synchronized (sCompiledLayouts) {
+            sCompiledLayouts.clear();
+        }
         sUniqueKeysCache.clear();
     }
 
+    /**
+     * Sets a listener that is called on the prebuilding thread when a keyboard that isn't cached
+     * yet starts being prebuilt.
+     */
+    @UsedForTesting
+    static void setPrebuildStartedListenerForTesting(@Nullable final Runnable listener) {
+        sPrebuildStartedListenerForTesting = listener;
+    }
+
     public static int getScriptId(final Resources resources,
             @Nonnull final InputMethodSubtype subtype) {
         final Integer value = sScriptIdsForSubtypes.get(subtype);
@@ -166,88 +274,200 @@ public final class KeyboardLayoutSet {
 
     @Nonnull
     public Keyboard getKeyboard(final int baseKeyboardLayoutSetElementId) {
-        final int keyboardLayoutSetElementId;
-        switch (mParams.mMode) {
+        final KeyboardId id = newKeyboardId(mParams, baseKeyboardLayoutSetElementId);
+        final int cacheGeneration;
+        synchronized (sBuildLock) {
+            final Keyboard cachedKeyboard = sKeyboardCache.get(id);
+            if (cachedKeyboard != null) {
+                if (DEBUG_CACHE) {
+                    Log.d(TAG, sKeyboardCache.dump() + ": HIT  id=" + id);
+                }
+                return cachedKeyboard;
+            }
+            cacheGeneration = sCacheGeneration;
+        }
+        return buildAndCacheKeyboard(mParams, id, cacheGeneration);
+    }
+
+    /**
+     * Builds on a background thread the keyboards that are likely to be shown after the one that
+     * has just been shown, so that the first shift or symbols toggle doesn't have to build them.
+     * Prebuilding stops when it is cancelled, when the keyboard caches are cleared, and when
+     * another keyboard wouldn't fit in the budget of the keyboard cache.
+     *
+     * @param shownKeyboard the keyboard that has just been shown, to estimate the size of the
+     * keyboards to build.
+     */
+    public void prebuildKeyboards(@Nonnull final Keyboard shownKeyboard) {
+        if (!ProductionFlags.ENABLE_KEYBOARD_PREBUILDING) {
+            return;
+        }
+        final int byteSize = shownKeyboard.getEstimatedByteSize();
+        final int cacheGeneration;
+        synchronized (sBuildLock) {
+            cacheGeneration = sCacheGeneration;
+        }
+        final TaskLane taskLane = ExecutorUtils.getTaskLane(ExecutorUtils.BULK);
+        // One task per keyboard, so that more urgent tasks of the lane can run in between.
+        for (final int elementId : PREBUILT_ELEMENT_IDS) {
+            // Each task has its own copy of the parameters, which the UI thread keeps using.
+            final Params params = mParams.copy();
+            taskLane.execute(this, TaskLane.PRIORITY_LOW, new Runnable() {
+                @Override
+                public void run() {
+                    prebuildKeyboard(params, elementId, cacheGeneration, byteSize);
+                }
+            });
+        }
+    }
+
+    /**
+     * Cancels prebuilding the keyboards of this set, for example because the subtype changed.
+     * A keyboard being prebuilt is still cached.
+     */
+    public void cancelPrebuildingKeyboards() {
+        mIsPrebuildingCancelled = true;
+        ExecutorUtils.getTaskLane(ExecutorUtils.BULK).cancelTasks(this);
+    }
+
+    private void prebuildKeyboard(@Nonnull final Params params,
+            final int baseKeyboardLayoutSetElementId, final int cacheGeneration,
+            final int byteSize) {
+        final KeyboardId id = newKeyboardId(params, baseKeyboardLayoutSetElementId);
+        synchronized (sBuildLock) {
+            if (mIsPrebuildingCancelled || cacheGeneration != sCacheGeneration
+                    || !sKeyboardCache.hasRoomFor(byteSize) || sKeyboardCache.contains(id)) {
+                return;
+            }
+        }
+        final Runnable listener = sPrebuildStartedListenerForTesting;
+        if (listener != null) {
+            listener.run();
+        }
+        try {
+            buildAndCacheKeyboard(params, id, cacheGeneration);
+        } catch (final KeyboardLayoutSetException e) {
+            Log.w(TAG, "Can't prebuild keyboard: " + e.mKeyboardId, e.getCause());
+        }
+    }
+
+    private static int getKeyboardLayoutSetElementId(@Nonnull final Params params,
+            final int baseKeyboardLayoutSetElementId) {
+        switch (params.mMode) {
         case KeyboardId.MODE_PHONE:
             if (baseKeyboardLayoutSetElementId == KeyboardId.ELEMENT_SYMBOLS) {
-                keyboardLayoutSetElementId = KeyboardId.ELEMENT_PHONE_SYMBOLS;
-            } else {
-                keyboardLayoutSetElementId = KeyboardId.ELEMENT_PHONE;
+                return KeyboardId.ELEMENT_PHONE_SYMBOLS;
             }
-            break;
+            return KeyboardId.ELEMENT_PHONE;
         case KeyboardId.MODE_NUMBER:
         case KeyboardId.MODE_DATE:
         case KeyboardId.MODE_TIME:
         case KeyboardId.MODE_DATETIME:
-            keyboardLayoutSetElementId = KeyboardId.ELEMENT_NUMBER;
-            break;
+            return KeyboardId.ELEMENT_NUMBER;
         default:
-            keyboardLayoutSetElementId = baseKeyboardLayoutSetElementId;
-            break;
+            return baseKeyboardLayoutSetElementId;
         }
+    }
 
-        ElementParams elementParams = mParams.mKeyboardLayoutSetElementIdToParamsMap.get(
+    @Nonnull
+    private static ElementParams getElementParams(@Nonnull final Params params,
+            final int keyboardLayoutSetElementId) {
+        final ElementParams elementParams = params.mKeyboardLayoutSetElementIdToParamsMap.get(
                 keyboardLayoutSetElementId);
         if (elementParams == null) {
-            elementParams = mParams.mKeyboardLayoutSetElementIdToParamsMap.get(
-                    KeyboardId.ELEMENT_ALPHABET);
+            return params.mKeyboardLayoutSetElementIdToParamsMap.get(KeyboardId.ELEMENT_ALPHABET);
         }
+        return elementParams;
+    }
+
+    /**
+     * Note: this sets whether the split layout is enabled in the given parameters, so they must
+     * not be shared with another thread.
+     */
+    @Nonnull
+    private static KeyboardId newKeyboardId(@Nonnull final Params params,
+            final int baseKeyboardLayoutSetElementId) {
+        final int keyboardLayoutSetElementId =
+                getKeyboardLayoutSetElementId(params, baseKeyboardLayoutSetElementId);
+        final ElementParams elementParams = getElementParams(params, keyboardLayoutSetElementId);
         // Note: The keyboard for each shift state, and mode are represented as an elementName
         // attribute in a keyboard_layout_set XML file.  Also each keyboard layout XML resource is
         // specified as an elementKeyboard attribute in the file.
         // The KeyboardId is an internal key for a Keyboard object.
 
-        mParams.mIsSplitLayoutEnabled = mParams.mIsSplitLayoutEnabledByUser
+        params.mIsSplitLayoutEnabled = params.mIsSplitLayoutEnabledByUser
                 && elementParams.mSupportsSplitLayout;
-        final KeyboardId id = new KeyboardId(keyboardLayoutSetElementId, mParams);
+        return new KeyboardId(keyboardLayoutSetElementId, params);
+    }
+
+    /**
+     * Builds a keyboard without holding {@link #sBuildLock}, and then caches it unless the caches
+     * have been cleared in the meantime.
+     */
+    @Nonnull
+    private Keyboard buildAndCacheKeyboard(@Nonnull final Params params,
+            @Nonnull final KeyboardId id, final int cacheGeneration) {
+        final ElementParams elementParams = getElementParams(params, id.mElementId);
+        final Keyboard keyboard;
         try {
-            return getKeyboard(elementParams, id);
+            keyboard = buildKeyboard(params, elementParams, id);
         } catch (final RuntimeException e) {
             Log.e(TAG, "Can't create keyboard: " + id, e);
             throw new KeyboardLayoutSetException(e, id);
         }
-    }
-
-    @Nonnull
-    private Keyboard getKeyboard(final ElementParams elementParams, final KeyboardId id) {
-        final SoftReference<Keyboard> ref = sKeyboardCache.get(id);
-        final Keyboard cachedKeyboard = (ref == null) ? null : ref.get();
-        if (cachedKeyboard != null) {
+        synchronized (sBuildLock) {
+            if (cacheGeneration != sCacheGeneration) {
+                // The keyboard may have been built for a former theme or locale.
+                return keyboard;
+            }
+            // The keyboards of the spell checker are only used for their proximity info, so they
+            // are not pinned at the expense of the keyboards of the IME.
+            sKeyboardCache.put(id, keyboard, keyboard.getEstimatedByteSize(),
+                    !params.mIsSpellChecker /* isPinnable */);
             if (DEBUG_CACHE) {
-                Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": HIT  id=" + id);
+                Log.d(TAG, sKeyboardCache.dump() + ": PUT  id=" + id);
             }
-            return cachedKeyboard;
         }
+        return keyboard;
+    }
 
+    @Nonnull
+    private Keyboard buildKeyboard(@Nonnull final Params params,
+            @Nonnull final ElementParams elementParams, @Nonnull final KeyboardId id) {
+        // The unique keys are only shared by alphabet keyboards.
+        final UniqueKeysCache uniqueKeysCache =
+                id.isAlphabetKeyboard() ? sUniqueKeysCache : UniqueKeysCache.NO_CACHE;
         final KeyboardBuilder<KeyboardParams> builder =
-                new KeyboardBuilder<>(mContext, new KeyboardParams(sUniqueKeysCache));
-        sUniqueKeysCache.setEnabled(id.isAlphabetKeyboard());
+                new KeyboardBuilder<>(mContext, new KeyboardParams(uniqueKeysCache));
         builder.setAllowRedundantMoreKes(elementParams.mAllowRedundantMoreKeys);
-        final int keyboardXmlId = elementParams.mKeyboardXmlId;
-        builder.load(keyboardXmlId, id);
-        if (mParams.mDisableTouchPositionCorrectionDataForTest) {
-            builder.disableTouchPositionCorrectionDataForTest();
-        }
-        builder.setProximityCharsCorrectionEnabled(elementParams.mProximityCharsCorrectionEnabled);
-        final Keyboard keyboard = builder.build();
-        sKeyboardCache.put(id, new SoftReference<>(keyboard));
-        if ((id.mElementId == KeyboardId.ELEMENT_ALPHABET
-                || id.mElementId == KeyboardId.ELEMENT_ALPHABET_AUTOMATIC_SHIFTED)
-                && !mParams.mIsSpellChecker) {
-            // We only forcibly cache the primary, "ALPHABET", layouts.
-            for (int i = sForcibleKeyboardCache.length - 1; i >= 1; --i) {
-                sForcibleKeyboardCache[i] = sForcibleKeyboardCache[i - 1];
-            }
-            sForcibleKeyboardCache[0] = keyboard;
-            if (DEBUG_CACHE) {
-                Log.d(TAG, "forcing caching of keyboard with id=" + id);
+        final CompiledKeyboardLayout compiledLayout;
+        if (ProductionFlags.ENABLE_COMPILED_KEYBOARD_LAYOUTS) {
+            synchronized (sCompiledLayouts) {
+                compiledLayout = sCompiledLayouts.get(id);
             }
+        } else {
+            compiledLayout = null;
         }
         if (DEBUG_CACHE) {
-            Log.d(TAG, "keyboard cache size=" + sKeyboardCache.size() + ": "
-                    + ((ref == null) ? "LOAD" : "GCed") + " id=" + id);
+            Log.d(TAG, (compiledLayout == null ? "LOAD" : "COMPILED") + " id=" + id);
         }
-        return keyboard;
+        if (compiledLayout != null) {
+            builder.load(compiledLayout, id);
+        } else {
+            final int keyboardXmlId = elementParams.mKeyboardXmlId;
+            builder.load(keyboardXmlId, id);
+            if (ProductionFlags.ENABLE_COMPILED_KEYBOARD_LAYOUTS) {
+                final CompiledKeyboardLayout newCompiledLayout = builder.compile();
+                synchronized (sCompiledLayouts) {
+                    sCompiledLayouts.put(id, newCompiledLayout);
+                }
+            }
+        }
+        if (params.mDisableTouchPositionCorrectionDataForTest) {
+            builder.disableTouchPositionCorrectionDataForTest();
+        }
+        builder.setProximityCharsCorrectionEnabled(elementParams.mProximityCharsCorrectionEnabled);
+        return builder.build();
     }
 
     public int getScriptId() {
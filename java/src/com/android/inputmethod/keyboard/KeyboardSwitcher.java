@@ -124,12 +124,20 @@ public final class KeyboardSwitcher implements KeyboardState.SwitchActions {
         builder.setLanguageSwitchKeyEnabled(mLatinIME.shouldShowLanguageSwitchKey());
         builder.setSplitLayoutEnabledByUser(ProductionFlags.IS_SPLIT_KEYBOARD_SUPPORTED
                 && settingsValues.mIsSplitKeyboardEnabled);
+        if (mKeyboardLayoutSet != null) {
+            mKeyboardLayoutSet.cancelPrebuildingKeyboards();
+        }
         mKeyboardLayoutSet = builder.build();
         try {
             mState.onLoadKeyboard(currentAutoCapsState, currentRecapitalizeState);
             mKeyboardTextsSet.setLocale(mRichImm.getCurrentSubtypeLocale(), mThemeContext);
         } catch (KeyboardLayoutSetException e) {
             Log.w(TAG, "loading keyboard failed: " + e.mKeyboardId, e.getCause());
+            return;
+        }
+        final Keyboard keyboard = getKeyboard();
+        if (keyboard != null) {
+            mKeyboardLayoutSet.prebuildKeyboards(keyboard);
         }
     }
 
@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.annotation.Nonnull;
+
+/**
+ * The nearest keys of each cell of the proximity grid of a keyboard, as indices into its sorted
+ * keys.
+ *
+ * The neighbor lists are stored in compressed sparse row form: the key indices of all the lists in
+ * one array, and where each list starts in another one. Most cells have the same neighbors as an
+ * adjacent cell, so the cells with identical neighbors share a list.
+ *
+ * A grid only depends on the geometry of the keys, so the keyboards whose keys are at the same
+ * places, such as the shifted and unshifted alphabet keyboards, share the same grid.
+ */
+final class ProximityGrid {
+    /** Number of key widths from current touch point to search for nearest keys. */
+    private static final float SEARCH_DISTANCE = 1.2f;
+    // Number of ints per key in a geometry, and before the keys.
+    private static final int GEOMETRY_INTS_PER_KEY = 5;
+    private static final int GEOMETRY_HEADER_SIZE = 5;
+
+    // The grids of the keyboards alive, by geometry. Guarded by itself.
+    private static final HashMap<Geometry, WeakReference<ProximityGrid>> sGrids = new HashMap<>();
+
+    private final int mGridWidth;
+    private final int mGridSize;
+    private final int mCellWidth;
+    private final int mCellHeight;
+    // The index of the neighbor list of each cell.
+    @Nonnull
+    private final int[] mCellListIndices;
+    // Where each neighbor list starts in mKeyIndices, followed by the end of the last list.
+    @Nonnull
+    private final int[] mListStarts;
+    @Nonnull
+    private final int[] mKeyIndices;
+
+    /**
+     * The positions of the keys and of the grid that a grid is computed from.
+     */
+    private static final class Geometry {
+        @Nonnull
+        private final int[] mValues;
+        private final int mHashCode;
+
+        public Geometry(@Nonnull final int[] values) {
+            mValues = values;
+            mHashCode = Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return o instanceof Geometry && Arrays.equals(mValues, ((Geometry) o).mValues);
+        }
+    }
+
+    /**
+     * A slice of an int array, to find the cells with identical neighbors.
+     */
+    private static final class Slice {
+        @Nonnull
+        private final int[] mArray;
+        private final int mStart;
+        private final int mEnd;
+
+        public Slice(@Nonnull final int[] array, final int start, final int end) {
+            mArray = array;
+            mStart = start;
+            mEnd = end;
+        }
+
+        @Override
+        public int hashCode() {
+            int hashCode = 1;
+            for (int i = mStart; i < mEnd; ++i) {
+                hashCode = hashCode * 31 + mArray[i];
+            }
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof Slice)) return false;
+            final Slice slice = (Slice) o;
+            if (mEnd - mStart != slice.mEnd - slice.mStart) return false;
+            for (int i = mStart, j = slice.mStart; i < mEnd; ++i, ++j) {
+                if (mArray[i] != slice.mArray[j]) return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The nearest keys of cells as a list of the keys of a keyboard, without copying them.
+     */
+    private final class NeighborList extends AbstractList<Key> implements RandomAccess {
+        @Nonnull
+        private final List<Key> mSortedKeys;
+        private final int mStart;
+        private final int mSize;
+
+        public NeighborList(@Nonnull final List<Key> sortedKeys, final int listIndex) {
+            mSortedKeys = sortedKeys;
+            mStart = mListStarts[listIndex];
+            mSize = mListStarts[listIndex + 1] - mStart;
+        }
+
+        @Override
+        public Key get(final int index) {
+            if (index < 0 || index >= mSize) {
+                throw new IndexOutOfBoundsException("index=" + index + " size=" + mSize);
+            }
+            return mSortedKeys.get(mKeyIndices[mStart + index]);
+        }
+
+        @Override
+        public int size() {
+            return mSize;
+        }
+    }
+
+    private ProximityGrid(final int gridWidth, final int gridSize, final int cellWidth,
+            final int cellHeight, @Nonnull final int[] cellListIndices,
+            @Nonnull final int[] listStarts, @Nonnull final int[] keyIndices) {
+        mGridWidth = gridWidth;
+        mGridSize = gridSize;
+        mCellWidth = cellWidth;
+        mCellHeight = cellHeight;
+        mCellListIndices = cellListIndices;
+        mListStarts = listStarts;
+        mKeyIndices = keyIndices;
+    }
+
+    /**
+     * Returns the grid of nearest keys for the given keys and grid, reusing the grid of another
+     * keyboard with the same geometry if there is one.
+     */
+    @Nonnull
+    public static ProximityGrid getGrid(final int gridWidth, final int gridHeight,
+            final int cellWidth, final int cellHeight, final int mostCommonKeyWidth,
+            @Nonnull final List<Key> sortedKeys) {
+        final int keyCount = sortedKeys.size();
+        final int[] values = new int[GEOMETRY_HEADER_SIZE + keyCount * GEOMETRY_INTS_PER_KEY];
+        values[0] = gridWidth;
+        values[1] = gridHeight;
+        values[2] = cellWidth;
+        values[3] = cellHeight;
+        values[4] = mostCommonKeyWidth;
+        int index = GEOMETRY_HEADER_SIZE;
+        for (final Key key : sortedKeys) {
+            values[index++] = key.isSpacer() ? 1 : 0;
+            values[index++] = key.getX();
+            values[index++] = key.getY();
+            values[index++] = key.getWidth();
+            values[index++] = key.getHeight();
+        }
+        final Geometry geometry = new Geometry(values);
+        synchronized (sGrids) {
+            final WeakReference<ProximityGrid> ref = sGrids.get(geometry);
+            final ProximityGrid cachedGrid = (ref == null) ? null : ref.get();
+            if (cachedGrid != null) {
+                return cachedGrid;
+            }
+            final ProximityGrid grid = computeGrid(gridWidth, gridHeight, cellWidth, cellHeight,
+                    mostCommonKeyWidth, sortedKeys);
+            final Iterator<WeakReference<ProximityGrid>> iterator = sGrids.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().get() == null) {
+                    iterator.remove();
+                }
+            }
+            sGrids.put(geometry, new WeakReference<>(grid));
+            return grid;
+        }
+    }
+
+    @Nonnull
+    private static ProximityGrid computeGrid(final int gridWidth, final int gridHeight,
+            final int cellWidth, final int cellHeight, final int mostCommonKeyWidth,
+            @Nonnull final List<Key> sortedKeys) {
+        final int gridSize = gridWidth * gridHeight;
+        final int keyCount = sortedKeys.size();
+        final int threshold = (int) (mostCommonKeyWidth * SEARCH_DISTANCE);
+        final int thresholdSquared = threshold * threshold;
+        // Round-up so we don't have any pixels outside the grid
+        final int lastPixelXCoordinate = gridWidth * cellWidth - 1;
+        final int lastPixelYCoordinate = gridHeight * cellHeight - 1;
+
+        // The cell index and the key index of each key near a cell, in the order of the keys.
+        // In the practice each cell only has a few neighbors, so this is much smaller than
+        // reserving room for all the keys in every cell.
+        int[] cellsAndKeys = new int[keyCount * 32];
+        int pairCount = 0;
+        final int halfCellWidth = cellWidth / 2;
+        final int halfCellHeight = cellHeight / 2;
+        for (int keyIndex = 0; keyIndex < keyCount; ++keyIndex) {
+            final Key key = sortedKeys.get(keyIndex);
+            if (key.isSpacer()) continue;
+
+/* HOW WE PRE-SELECT THE CELLS (iterate over only the relevant cells, instead of all of them)
+
+  We want to compute the distance for keys that are in the cells that are close enough to the
+  key border, as this method is performance-critical. These keys are represented with 'star'
+  background on the diagram below. Let's consider the Y case first.
+
+  We want to select the cells which center falls between the top of the key minus the threshold,
+  and the bottom of the key plus the threshold.
+  topPixelWithinThreshold is key.mY - threshold, and bottomPixelWithinThreshold is
+  key.mY + key.mHeight + threshold.
+
+  Then we need to compute the center of the top row that we need to evaluate, as we'll iterate
+  from there.
+
+(0,0)----> x
+| .-------------------------------------------.
+| |   |   |   |   |   |   |   |   |   |   |   |
+| |---+---+---+---+---+---+---+---+---+---+---|   .- top of top cell (aligned on the grid)
+| |   |   |   |   |   |   |   |   |   |   |   |   |
+| |-----------+---+---+---+---+---+---+---+---|---'                          v
+| |   |   |   |***|***|*_________________________ topPixelWithinThreshold    | yDeltaToGrid
+| |---+---+---+-----^-+-|-+---+---+---+---+---|                              ^
+| |   |   |   |***|*|*|*|*|***|***|   |   |   |           ______________________________________
+v |---+---+--threshold--|-+---+---+---+---+---|          |
+  |   |   |   |***|*|*|*|*|***|***|   |   |   |          | Starting from key.mY, we substract
+y |---+---+---+---+-v-+-|-+---+---+---+---+---|          | thresholdBase and get the top pixel
+  |   |   |   |***|**########------------------- key.mY  | within the threshold. We align that on
+  |---+---+---+---+--#+---+-#-+---+---+---+---|          | the grid by computing the delta to the
+  |   |   |   |***|**#|***|*#*|***|   |   |   |          | grid, and get the top of the top cell.
+  |---+---+---+---+--#+---+-#-+---+---+---+---|          |
+  |   |   |   |***|**########*|***|   |   |   |          | Adding half the cell height to the top
+  |---+---+---+---+---+-|-+---+---+---+---+---|          | of the top cell, we get the middle of
+  |   |   |   |***|***|*|*|***|***|   |   |   |          | the top cell (yMiddleOfTopCell).
+  |---+---+---+---+---+-|-+---+---+---+---+---|          |
+  |   |   |   |***|***|*|*|***|***|   |   |   |          |
+  |---+---+---+---+---+-|________________________ yEnd   | Since we only want to add the key to
+  |   |   |   |   |   |   | (bottomPixelWithinThreshold) | the proximity if it's close enough to
+  |---+---+---+---+---+---+---+---+---+---+---|          | the center of the cell, we only need
+  |   |   |   |   |   |   |   |   |   |   |   |          | to compute for these cells where
+  '---'---'---'---'---'---'---'---'---'---'---'          | topPixelWithinThreshold is above the
+                                        (positive x,y)   | center of the cell. This is the case
+                                                         | when yDeltaToGrid is less than half
+  [Zoomed in diagram]                                    | the height of the cell.
+  +-------+-------+-------+-------+-------+              |
+  |       |       |       |       |       |              | On the zoomed in diagram, on the right
+  |       |       |       |       |       |              | the topPixelWithinThreshold (represented
+  |       |       |       |       |       |      top of  | with an = sign) is below and we can skip
+  +-------+-------+-------+--v----+-------+ .. top cell  | this cell, while on the left it's above
+  |       | = topPixelWT  |  |  yDeltaToGrid             | and we need to compute for this cell.
+  |..yStart.|.....|.......|..|....|.......|... y middle  | Thus, if yDeltaToGrid is more than half
+  |   (left)|     |       |  ^ =  |       | of top cell  | the height of the cell, we start the
+  +-------+-|-----+-------+----|--+-------+              | iteration one cell below the top cell,
+  |       | |     |       |    |  |       |              | else we start it on the top cell. This
+  |.......|.|.....|.......|....|..|.....yStart (right)   | is stored in yStart.
+
+  Since we only want to go up to bottomPixelWithinThreshold, and we only iterate on the center
+  of the keys, we can stop as soon as the y value exceeds bottomPixelThreshold, so we don't
+  have to align this on the center of the key. Hence, we don't need a separate value for
+  bottomPixelWithinThreshold and call this yEnd right away.
+*/
+            final int keyX = key.getX();
+            final int keyY = key.getY();
+            final int topPixelWithinThreshold = keyY - threshold;
+            final int yDeltaToGrid = topPixelWithinThreshold % cellHeight;
+            final int yMiddleOfTopCell = topPixelWithinThreshold - yDeltaToGrid + halfCellHeight;
+            final int yStart = Math.max(halfCellHeight,
+                    yMiddleOfTopCell + (yDeltaToGrid <= halfCellHeight ? 0 : cellHeight));
+            final int yEnd = Math.min(lastPixelYCoordinate, keyY + key.getHeight() + threshold);
+
+            final int leftPixelWithinThreshold = keyX - threshold;
+            final int xDeltaToGrid = leftPixelWithinThreshold % cellWidth;
+            final int xMiddleOfLeftCell = leftPixelWithinThreshold - xDeltaToGrid + halfCellWidth;
+            final int xStart = Math.max(halfCellWidth,
+                    xMiddleOfLeftCell + (xDeltaToGrid <= halfCellWidth ? 0 : cellWidth));
+            final int xEnd = Math.min(lastPixelXCoordinate, keyX + key.getWidth() + threshold);
+
+            int baseIndexOfCurrentRow = (yStart / cellHeight) * gridWidth + (xStart / cellWidth);
+            for (int centerY = yStart; centerY <= yEnd; centerY += cellHeight) {
+                int index = baseIndexOfCurrentRow;
+                for (int centerX = xStart; centerX <= xEnd; centerX += cellWidth) {
+                    if (key.squaredDistanceToEdge(centerX, centerY) < thresholdSquared) {
+                        if (pairCount * 2 == cellsAndKeys.length) {
+                            cellsAndKeys = Arrays.copyOf(cellsAndKeys, cellsAndKeys.length * 2);
+                        }
+                        cellsAndKeys[pairCount * 2] = index;
+                        cellsAndKeys[pairCount * 2 + 1] = keyIndex;
+                        ++pairCount;
+                    }
+                    ++index;
+                }
+                baseIndexOfCurrentRow += gridWidth;
+            }
+        }
+
+        // Group the keys by cell, keeping them in the order of the keys.
+        final int[] cellStarts = new int[gridSize + 1];
+        for (int i = 0; i < pairCount; ++i) {
+            ++cellStarts[cellsAndKeys[i * 2] + 1];
+        }
+        for (int i = 0; i < gridSize; ++i) {
+            cellStarts[i + 1] += cellStarts[i];
+        }
+        final int[] cellKeyIndices = new int[pairCount];
+        final int[] cellEnds = Arrays.copyOf(cellStarts, gridSize);
+        for (int i = 0; i < pairCount; ++i) {
+            cellKeyIndices[cellEnds[cellsAndKeys[i * 2]]++] = cellsAndKeys[i * 2 + 1];
+        }
+
+        // Keep one list for the cells with identical neighbors.
+        final HashMap<Slice, Integer> listIndices = new HashMap<>();
+        final int[] cellListIndices = new int[gridSize];
+        final int[] listStarts = new int[gridSize + 1];
+        final int[] keyIndices = new int[pairCount];
+        int listCount = 0;
+        int keyIndexCount = 0;
+        for (int i = 0; i < gridSize; ++i) {
+            final Slice neighbors = new Slice(cellKeyIndices, cellStarts[i], cellStarts[i + 1]);
+            Integer listIndex = listIndices.get(neighbors);
+            if (listIndex == null) {
+                listIndex = listCount++;
+                listIndices.put(neighbors, listIndex);
+                System.arraycopy(cellKeyIndices, cellStarts[i], keyIndices, keyIndexCount,
+                        cellStarts[i + 1] - cellStarts[i]);
+                keyIndexCount += cellStarts[i + 1] - cellStarts[i];
+                listStarts[listCount] = keyIndexCount;
+            }
+            cellListIndices[i] = listIndex;
+        }
+        return new ProximityGrid(gridWidth, gridSize, cellWidth, cellHeight, cellListIndices,
+                Arrays.copyOf(listStarts, listCount + 1), Arrays.copyOf(keyIndices, keyIndexCount));
+    }
+
+    int getGridWidth() {
+        return mGridWidth;
+    }
+
+    int getCellWidth() {
+        return mCellWidth;
+    }
+
+    int getCellHeight() {
+        return mCellHeight;
+    }
+
+    // The arrays of the grid, for {@link KeyHitTable} to read them directly. Not to be modified.
+    @Nonnull
+    int[] getCellListIndices() {
+        return mCellListIndices;
+    }
+
+    @Nonnull
+    int[] getListStarts() {
+        return mListStarts;
+    }
+
+    @Nonnull
+    int[] getKeyIndices() {
+        return mKeyIndices;
+    }
+
+    /**
+     * Returns the index of the neighbor list of the cell that contains a point.
+     */
+    public int getListIndex(final int x, final int y) {
+        final int cellIndex = (y / mCellHeight) * mGridWidth + (x / mCellWidth);
+        return cellIndex < mGridSize ? mCellListIndices[cellIndex] : -1;
+    }
+
+    public int getListIndexOfCell(final int cellIndex) {
+        return mCellListIndices[cellIndex];
+    }
+
+    public int getListCount() {
+        return mListStarts.length - 1;
+    }
+
+    /**
+     * Returns the neighbor lists of this grid as lists of the given keys, which must have the
+     * geometry of the grid.
+     */
+    @Nonnull
+    public List<Key>[] newNeighborLists(@Nonnull final List<Key> sortedKeys) {
+        @SuppressWarnings("unchecked")
+        final List<Key>[] neighborLists = new List[getListCount()];
+        for (int i = 0; i < neighborLists.length; ++i) {
+            neighborLists[i] = new NeighborList(sortedKeys, i);
+        }
+        return neighborLists;
+    }
+
+    /**
+     * Returns the size of the arrays of this grid, which may be shared by several keyboards.
+     */
+    public int getByteSize() {
+        return (mCellListIndices.length + mListStarts.length + mKeyIndices.length) * 4;
+    }
+}
@@ -21,6 +21,7 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import com.android.inputmethod.keyboard.Key;
+import com.android.inputmethod.keyboard.KeyHitTable;
 import com.android.inputmethod.keyboard.Keyboard;
 import com.android.inputmethod.latin.settings.Settings;
 import com.android.inputmethod.latin.utils.JsonUtils;
@@ -223,6 +224,12 @@ final class DynamicGridKeyboard extends Keyboard {
         return getSortedKeys();
     }
 
+    @Override
+    public KeyHitTable getKeyHitTable() {
+        // The keys are added dynamically, so the hit key is detected among the nearest keys.
+        return null;
+    }
+
     static final class GridKey extends Key {
         private int mCurrentX;
         private int mCurrentY;
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import android.content.Context;
+
+import com.android.inputmethod.keyboard.Key;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A keyboard layout compiled from the {@link KeyboardParams} of a loaded keyboard XML, to load the
+ * same keyboard again without parsing the XML, resolving the key styles and the text references.
+ *
+ * The numbers are encoded as variable-length integers in a byte array, and the strings are stored
+ * once in a pool. The key visual attributes are resolved from the theme and immutable, so they are
+ * kept by reference. The icons are stored as resource ids and loaded again with the context.
+ */
+public final class CompiledKeyboardLayout {
+    private static final int NULL_INDEX = 0;
+
+    @Nonnull
+    private final byte[] mData;
+    @Nonnull
+    private final String[] mStrings;
+    @Nonnull
+    private final KeyVisualAttributes[] mVisualAttributes;
+
+    private CompiledKeyboardLayout(@Nonnull final byte[] data, @Nonnull final String[] strings,
+            @Nonnull final KeyVisualAttributes[] visualAttributes) {
+        mData = data;
+        mStrings = strings;
+        mVisualAttributes = visualAttributes;
+    }
+
+    /**
+     * Writes the values of a compiled layout.
+     */
+    public static final class Writer {
+        private byte[] mData = new byte[1024];
+        private int mSize;
+        private final HashMap<String, Integer> mStringIndices = new HashMap<>();
+        private final ArrayList<String> mStrings = new ArrayList<>();
+        private final IdentityHashMap<KeyVisualAttributes, Integer> mVisualAttributesIndices =
+                new IdentityHashMap<>();
+        private final ArrayList<KeyVisualAttributes> mVisualAttributes = new ArrayList<>();
+
+        Writer() {
+        }
+
+        public void writeInt(final int value) {
+            // Zigzag encoding, so that small negative values are short too.
+            int encoded = (value << 1) ^ (value >> 31);
+            while ((encoded & ~0x7F) != 0) {
+                writeByte((encoded & 0x7F) | 0x80);
+                encoded >>>= 7;
+            }
+            writeByte(encoded);
+        }
+
+        public void writeBoolean(final boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        public void writeFloat(final float value) {
+            writeInt(Float.floatToIntBits(value));
+        }
+
+        public void writeString(@Nullable final String value) {
+            if (value == null) {
+                writeInt(NULL_INDEX);
+                return;
+            }
+            Integer index = mStringIndices.get(value);
+            if (index == null) {
+                mStrings.add(value);
+                index = mStrings.size();
+                mStringIndices.put(value, index);
+            }
+            writeInt(index);
+        }
+
+        public void writeVisualAttributes(@Nullable final KeyVisualAttributes value) {
+            if (value == null) {
+                writeInt(NULL_INDEX);
+                return;
+            }
+            Integer index = mVisualAttributesIndices.get(value);
+            if (index == null) {
+                mVisualAttributes.add(value);
+                index = mVisualAttributes.size();
+                mVisualAttributesIndices.put(value, index);
+            }
+            writeInt(index);
+        }
+
+        private void writeByte(final int value) {
+            if (mSize == mData.length) {
+                mData = Arrays.copyOf(mData, mSize * 2);
+            }
+            mData[mSize++] = (byte)value;
+        }
+
+        CompiledKeyboardLayout toLayout() {
+            return new CompiledKeyboardLayout(Arrays.copyOf(mData, mSize),
+                    mStrings.toArray(new String[mStrings.size()]),
+                    mVisualAttributes.toArray(new KeyVisualAttributes[mVisualAttributes.size()]));
+        }
+    }
+
+    /**
+     * Reads the values of a compiled layout, in the order they were written.
+     */
+    public static final class Reader {
+        private final CompiledKeyboardLayout mLayout;
+        private int mPosition;
+
+        Reader(@Nonnull final CompiledKeyboardLayout layout) {
+            mLayout = layout;
+        }
+
+        public int readInt() {
+            int encoded = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = mLayout.mData[mPosition++];
+                encoded |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return (encoded >>> 1) ^ -(encoded & 1);
+        }
+
+        public boolean readBoolean() {
+            return mLayout.mData[mPosition++] != 0;
+        }
+
+        public float readFloat() {
+            return Float.intBitsToFloat(readInt());
+        }
+
+        @Nullable
+        public String readString() {
+            final int index = readInt();
+            return index == NULL_INDEX ? null : mLayout.mStrings[index - 1];
+        }
+
+        @Nullable
+        public KeyVisualAttributes readVisualAttributes() {
+            final int index = readInt();
+            return index == NULL_INDEX ? null : mLayout.mVisualAttributes[index - 1];
+        }
+    }
+
+    /**
+     * Compiles the layout of a keyboard that has been loaded from its XML.
+     */
+    @Nonnull
+    public static CompiledKeyboardLayout compile(@Nonnull final KeyboardParams params) {
+        final Writer writer = new Writer();
+        writer.writeInt(params.mThemeId);
+        writer.writeInt(params.mOccupiedHeight);
+        writer.writeInt(params.mOccupiedWidth);
+        writer.writeInt(params.mBaseHeight);
+        writer.writeInt(params.mBaseWidth);
+        writer.writeInt(params.mTopPadding);
+        writer.writeInt(params.mBottomPadding);
+        writer.writeInt(params.mLeftPadding);
+        writer.writeInt(params.mRightPadding);
+        writer.writeVisualAttributes(params.mKeyVisualAttributes);
+        writer.writeInt(params.mDefaultRowHeight);
+        writer.writeInt(params.mDefaultKeyWidth);
+        writer.writeInt(params.mHorizontalGap);
+        writer.writeInt(params.mVerticalGap);
+        writer.writeInt(params.mMoreKeysTemplate);
+        writer.writeInt(params.mMaxMoreKeysKeyboardColumn);
+        writer.writeInt(params.GRID_WIDTH);
+        writer.writeInt(params.GRID_HEIGHT);
+        params.mIconsSet.writeTo(writer);
+        params.mTouchPositionCorrection.writeTo(writer);
+        writer.writeInt(params.mSortedKeys.size());
+        for (final Key key : params.mSortedKeys) {
+            writer.writeBoolean(key.isSpacer());
+            key.writeTo(writer);
+        }
+        return writer.toLayout();
+    }
+
+    /**
+     * Loads the compiled layout into the parameters of a keyboard, as loading its XML would.
+     */
+    public void load(@Nonnull final Context context, @Nonnull final KeyboardParams params) {
+        final Reader reader = new Reader(this);
+        params.mThemeId = reader.readInt();
+        params.mOccupiedHeight = reader.readInt();
+        params.mOccupiedWidth = reader.readInt();
+        params.mBaseHeight = reader.readInt();
+        params.mBaseWidth = reader.readInt();
+        params.mTopPadding = reader.readInt();
+        params.mBottomPadding = reader.readInt();
+        params.mLeftPadding = reader.readInt();
+        params.mRightPadding = reader.readInt();
+        params.mKeyVisualAttributes = reader.readVisualAttributes();
+        params.mDefaultRowHeight = reader.readInt();
+        params.mDefaultKeyWidth = reader.readInt();
+        params.mHorizontalGap = reader.readInt();
+        params.mVerticalGap = reader.readInt();
+        params.mMoreKeysTemplate = reader.readInt();
+        params.mMaxMoreKeysKeyboardColumn = reader.readInt();
+        params.GRID_WIDTH = reader.readInt();
+        params.GRID_HEIGHT = reader.readInt();
+        params.mIconsSet.loadIcons(context, reader);
+        params.mTouchPositionCorrection.readFrom(reader);
+        final int keyCount = reader.readInt();
+        for (int i = 0; i < keyCount; ++i) {
+            final boolean isSpacer = reader.readBoolean();
+            params.onAddKey(isSpacer ? new Key.Spacer(reader) : new Key(reader));
+        }
+    }
+
+    /**
+     * Returns the size of the encoded data, not counting the pooled strings and visual
+     * attributes.
+     */
+    public int getByteSize() {
+        return mData.length;
+    }
+}
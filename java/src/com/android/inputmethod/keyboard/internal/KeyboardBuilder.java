@@ -182,6 +182,24 @@ public class KeyboardBuilder<KP extends KeyboardParams> {
         return this;
     }
 
+    /**
+     * Loads a keyboard from a layout compiled by {@link #compile()}, instead of its XML.
+     */
+    public KeyboardBuilder<KP> load(@Nonnull final CompiledKeyboardLayout layout,
+            final KeyboardId id) {
+        mParams.mId = id;
+        layout.load(mContext, mParams);
+        return this;
+    }
+
+    /**
+     * Compiles the layout of the keyboard loaded from its XML.
+     */
+    @Nonnull
+    public CompiledKeyboardLayout compile() {
+        return CompiledKeyboardLayout.compile(mParams);
+    }
+
     @UsedForTesting
     public void disableTouchPositionCorrectionDataForTest() {
         mParams.mTouchPositionCorrection.setEnabled(false);
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Cache for the keyboards built so far, keyed by their id.
+ *
+ * The least recently used keyboards are released when the estimated size of the cached keyboards
+ * exceeds a memory budget. The most frequently used keyboards, typically the alphabet and symbols
+ * keyboards of the current subtype, are pinned: they are only released when releasing the others
+ * is not enough. The use counts are halved periodically, so that the keyboards of a subtype that
+ * is no longer used stop being pinned. Keyboards can be cached without ever being pinned, for
+ * example those of the spell checker, which only needs them for their proximity info.
+ *
+ * The keyboard that has just been added is never released, even if it alone exceeds the budget.
+ */
+public final class KeyboardCache<K, V> {
+    // An alphabet keyboard and its proximity info take about 60KB, so this holds the keyboards
+    // prebuilt for the current subtype along with those of a couple of recently used subtypes.
+    public static final int DEFAULT_BYTE_BUDGET = 1024 * 1024;
+    public static final int DEFAULT_PINNED_COUNT = 4;
+    // The use counts are halved every this many lookups.
+    private static final int USE_COUNT_HALF_LIFE = 64;
+
+    private static final class CacheEntry<V> {
+        public final V mValue;
+        public final int mByteSize;
+        public final boolean mIsPinnable;
+        public int mUseCount;
+
+        public CacheEntry(final V value, final int byteSize, final boolean isPinnable) {
+            mValue = value;
+            mByteSize = byteSize;
+            mIsPinnable = isPinnable;
+        }
+    }
+
+    private final int mByteBudget;
+    private final int mPinnedCount;
+    // Guarded by this, as are all the fields below.
+    private final LinkedHashMap<K, CacheEntry<V>> mCache =
+            new LinkedHashMap<>(16 /* initialCapacity */, 0.75f /* loadFactor */,
+                    true /* accessOrder */);
+    private int mByteSize;
+    private int mLookupCountSinceAging;
+
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    public KeyboardCache() {
+        this(DEFAULT_BYTE_BUDGET, DEFAULT_PINNED_COUNT);
+    }
+
+    public KeyboardCache(final int byteBudget, final int pinnedCount) {
+        mByteBudget = byteBudget;
+        mPinnedCount = pinnedCount;
+    }
+
+    /**
+     * Returns the cached keyboard for an id, or null if it's not cached.
+     */
+    @Nullable
+    public synchronized V get(@Nonnull final K key) {
+        if (++mLookupCountSinceAging >= USE_COUNT_HALF_LIFE) {
+            mLookupCountSinceAging = 0;
+            for (final CacheEntry<V> entry : mCache.values()) {
+                entry.mUseCount /= 2;
+            }
+        }
+        final CacheEntry<V> entry = mCache.get(key);
+        if (entry == null) {
+            ++mMissCount;
+            return null;
+        }
+        ++mHitCount;
+        ++entry.mUseCount;
+        return entry.mValue;
+    }
+
+    /**
+     * Returns whether a keyboard is cached, without counting it as a hit or as a use, for example
+     * to check whether a keyboard needs to be prebuilt.
+     */
+    public synchronized boolean contains(@Nonnull final K key) {
+        return mCache.containsKey(key);
+    }
+
+    /**
+     * Returns whether a keyboard of the given size can be cached without releasing another one.
+     */
+    public synchronized boolean hasRoomFor(final int byteSize) {
+        return mByteSize + byteSize <= mByteBudget;
+    }
+
+    /**
+     * Caches a keyboard, releasing the least recently used ones if the budget is exceeded.
+     *
+     * @param byteSize the estimated size of the keyboard.
+     */
+    public void put(@Nonnull final K key, @Nonnull final V value, final int byteSize) {
+        put(key, value, byteSize, true /* isPinnable */);
+    }
+
+    /**
+     * Same as {@link #put(Object, Object, int)}, but the keyboard is never pinned unless
+     * isPinnable is true.
+     */
+    public synchronized void put(@Nonnull final K key, @Nonnull final V value,
+            final int byteSize, final boolean isPinnable) {
+        final CacheEntry<V> entry = new CacheEntry<>(value, byteSize, isPinnable);
+        entry.mUseCount = 1;
+        final CacheEntry<V> previousEntry = mCache.put(key, entry);
+        if (previousEntry != null) {
+            mByteSize -= previousEntry.mByteSize;
+            entry.mUseCount += previousEntry.mUseCount;
+        }
+        mByteSize += byteSize;
+        trimToBudgetLocked(entry);
+    }
+
+    /**
+     * Releases the least recently used unpinned entries until the cache fits the budget, and then
+     * the pinned ones if needed.
+     * @param entryToKeep the entry that has just been added, which is never evicted.
+     */
+    private void trimToBudgetLocked(@Nonnull final CacheEntry<V> entryToKeep) {
+        if (mByteSize <= mByteBudget) {
+            return;
+        }
+        final int minPinnedUseCount = getMinPinnedUseCountLocked();
+        // Iteration goes from the least recently used entry to the most recently used one.
+        final Iterator<CacheEntry<V>> iterator = mCache.values().iterator();
+        while (mByteSize > mByteBudget && iterator.hasNext()) {
+            final CacheEntry<V> entry = iterator.next();
+            if (entry == entryToKeep
+                    || (entry.mIsPinnable && entry.mUseCount >= minPinnedUseCount)) {
+                continue;
+            }
+            evictLocked(iterator, entry);
+        }
+        final Iterator<CacheEntry<V>> pinnedIterator = mCache.values().iterator();
+        while (mByteSize > mByteBudget && pinnedIterator.hasNext()) {
+            final CacheEntry<V> entry = pinnedIterator.next();
+            if (entry == entryToKeep) {
+                continue;
+            }
+            evictLocked(pinnedIterator, entry);
+        }
+    }
+
+    private void evictLocked(@Nonnull final Iterator<CacheEntry<V>> iterator,
+            @Nonnull final CacheEntry<V> entry) {
+        iterator.remove();
+        mByteSize -= entry.mByteSize;
+        ++mEvictionCount;
+    }
+
+    /**
+     * Returns the use count from which a pinnable entry is pinned, that is the use count of the
+     * least used of the most used pinnable entries. Entries used only once are never pinned.
+     */
+    private int getMinPinnedUseCountLocked() {
+        if (mPinnedCount <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        final ArrayList<Integer> useCounts = new ArrayList<>(mCache.size());
+        for (final CacheEntry<V> entry : mCache.values()) {
+            if (entry.mIsPinnable) {
+                useCounts.add(entry.mUseCount);
+            }
+        }
+        if (useCounts.isEmpty()) {
+            return Integer.MAX_VALUE;
+        }
+        if (useCounts.size() <= mPinnedCount) {
+            return Math.max(2, minOf(useCounts));
+        }
+        // Partial selection of the mPinnedCount largest use counts; there are only a few entries.
+        int minPinnedUseCount = Integer.MAX_VALUE;
+        for (int i = 0; i < mPinnedCount; ++i) {
+            int maxIndex = 0;
+            for (int j = 1; j < useCounts.size(); ++j) {
+                if (useCounts.get(j) > useCounts.get(maxIndex)) {
+                    maxIndex = j;
+                }
+            }
+            minPinnedUseCount = useCounts.remove(maxIndex);
+        }
+        // Ties with the least used pinned entry are not pinned, to not exceed the pinned count.
+        return Math.max(2, useCounts.contains(minPinnedUseCount)
+                ? minPinnedUseCount + 1 : minPinnedUseCount);
+    }
+
+    private static int minOf(@Nonnull final ArrayList<Integer> values) {
+        int min = Integer.MAX_VALUE;
+        for (final int value : values) {
+            min = Math.min(min, value);
+        }
+        return min;
+    }
+
+    public synchronized void clear() {
+        mCache.clear();
+        mByteSize = 0;
+        mLookupCountSinceAging = 0;
+    }
+
+    public synchronized int size() {
+        return mCache.size();
+    }
+
+    public synchronized int getByteSize() {
+        return mByteSize;
+    }
+
+    public int getByteBudget() {
+        return mByteBudget;
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized String dump() {
+        return "KeyboardCache: size=" + mCache.size() + " bytes=" + mByteSize + "/" + mByteBudget
+                + " hits=" + mHitCount + " misses=" + mMissCount
+                + " evictions=" + mEvictionCount;
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.android.inputmethod.keyboard.internal;
 
+import android.content.Context;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.drawable.Drawable;
@@ -126,6 +127,34 @@ public final class KeyboardIconsSet {
         }
     }
 
+    void writeTo(@Nonnull final CompiledKeyboardLayout.Writer writer) {
+        for (int iconId = 0; iconId < NUM_ICONS; iconId++) {
+            writer.writeInt(mIconResourceIds[iconId]);
+        }
+    }
+
+    /**
+     * Loads the icons of a compiled keyboard layout, which are stored as resource ids.
+     */
+    void loadIcons(@Nonnull final Context context,
+            @Nonnull final CompiledKeyboardLayout.Reader reader) {
+        for (int iconId = 0; iconId < NUM_ICONS; iconId++) {
+            final int resourceId = reader.readInt();
+            mIconResourceIds[iconId] = resourceId;
+            if (resourceId == 0) {
+                mIcons[iconId] = null;
+                continue;
+            }
+            try {
+                final Drawable icon = context.getDrawable(resourceId);
+                setDefaultBounds(icon);
+                mIcons[iconId] = icon;
+            } catch (Resources.NotFoundException e) {
+                Log.w(TAG, "Drawable resource for icon #" + getIconName(iconId) + " not found");
+            }
+        }
+    }
+
     private static boolean isValidIconId(final int iconId) {
         return iconId >= 0 && iconId < ICON_NAMES.length;
     }
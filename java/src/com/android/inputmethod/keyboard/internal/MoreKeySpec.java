@@ -76,6 +76,17 @@ public final class MoreKeySpec {
         mIconId = KeySpecParser.getIconId(moreKeySpec);
     }
 
+    /**
+     * Constructor for a more key of a compiled keyboard layout.
+     */
+    public MoreKeySpec(final int code, @Nullable final String label,
+            @Nullable final String outputText, final int iconId) {
+        mCode = code;
+        mLabel = label;
+        mOutputText = outputText;
+        mIconId = iconId;
+    }
+
     @Nonnull
     public Key buildKey(final int x, final int y, final int labelFlags,
             @Nonnull final KeyboardParams params) {
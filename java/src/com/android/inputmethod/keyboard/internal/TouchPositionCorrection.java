@@ -19,6 +19,8 @@ package com.android.inputmethod.keyboard.internal;
 import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.latin.define.DebugFlags;
 
+import javax.annotation.Nonnull;
+
 public final class TouchPositionCorrection {
     private static final int TOUCH_POSITION_CORRECTION_RECORD_SIZE = 3;
 
@@ -67,6 +69,36 @@ public final class TouchPositionCorrection {
         }
     }
 
+    void writeTo(@Nonnull final CompiledKeyboardLayout.Writer writer) {
+        writer.writeBoolean(mEnabled);
+        final int length = (mRadii == null) ? 0 : mRadii.length;
+        writer.writeInt(length);
+        for (int i = 0; i < length; ++i) {
+            writer.writeFloat(mXs[i]);
+            writer.writeFloat(mYs[i]);
+            writer.writeFloat(mRadii[i]);
+        }
+    }
+
+    void readFrom(@Nonnull final CompiledKeyboardLayout.Reader reader) {
+        mEnabled = reader.readBoolean();
+        final int length = reader.readInt();
+        if (length == 0) {
+            mXs = null;
+            mYs = null;
+            mRadii = null;
+            return;
+        }
+        mXs = new float[length];
+        mYs = new float[length];
+        mRadii = new float[length];
+        for (int i = 0; i < length; ++i) {
+            mXs[i] = reader.readFloat();
+            mYs[i] = reader.readFloat();
+            mRadii[i] = reader.readFloat();
+        }
+    }
+
     @UsedForTesting
     public void setEnabled(final boolean enabled) {
         mEnabled = enabled;
@@ -44,6 +44,7 @@ public abstract class UniqueKeysCache {
         return new UniqueKeysCacheImpl();
     }
 
+    // Keyboards may be built on several threads at once, for example when they are prebuilt.
     private static final class UniqueKeysCacheImpl extends UniqueKeysCache {
         private final HashMap<Key, Key> mCache;
 
@@ -54,17 +55,17 @@ public abstract class UniqueKeysCache {
         }
 
         @Override
-        public void setEnabled(final boolean enabled) {
+        public synchronized void setEnabled(final boolean enabled) {
             mEnabled = enabled;
         }
 
         @Override
-        public void clear() {
+        public synchronized void clear() {
             mCache.clear();
         }
 
         @Override
-        public Key getUniqueKey(final Key key) {
+        public synchronized Key getUniqueKey(final Key key) {
             if (!mEnabled) {
                 return key;
             }
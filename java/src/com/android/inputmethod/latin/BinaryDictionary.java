@@ -18,7 +18,6 @@ package com.android.inputmethod.latin;
 
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.SparseArray;
 
 import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
@@ -35,7 +34,9 @@ import com.android.inputmethod.latin.makedict.WordProperty;
 import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
 import com.android.inputmethod.latin.utils.BinaryDictionaryUtils;
 import com.android.inputmethod.latin.utils.JniUtils;
+import com.android.inputmethod.latin.utils.SuggestionCandidates;
 import com.android.inputmethod.latin.utils.WordInputEventForPersonalization;
+import com.android.inputmethod.latin.utils.WordMembershipFilter;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -45,6 +46,7 @@ import java.util.Locale;
 import java.util.Map;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 
 /**
  * Implements a static, compacted, binary dictionary of standard words.
@@ -60,6 +62,9 @@ public final class BinaryDictionary extends Dictionary {
     public static final int DICTIONARY_MAX_WORD_LENGTH = 48;
     public static final int MAX_PREV_WORD_COUNT_FOR_N_GRAM = 3;
 
+    // The number of words the word filter of a small or empty updatable dictionary is sized for.
+    private static final int INITIAL_WORD_FILTER_CAPACITY = 1024;
+
     @UsedForTesting
     public static final String UNIGRAM_COUNT_QUERY = "UNIGRAM_COUNT";
     @UsedForTesting
@@ -95,21 +100,15 @@ public final class BinaryDictionary extends Dictionary {
     private final boolean mUseFullEditDistance;
     private final boolean mIsUpdatable;
     private boolean mHasUpdated;
+    // The words that may be in the dictionary, so that most lookups of other words don't go to
+    // native code. Null if it has not been built.
+    @Nullable
+    private volatile WordMembershipFilter mWordFilter;
+    // Whether the word filter has been dropped because it outgrew its capacity, and has to be
+    // built again.
+    private volatile boolean mNeedsToRebuildWordFilter;
 
-    private final SparseArray<DicTraverseSession> mDicTraverseSessions = new SparseArray<>();
-
-    // TODO: There should be a way to remove used DicTraverseSession objects from
-    // {@code mDicTraverseSessions}.
-    private DicTraverseSession getTraverseSession(final int traverseSessionId) {
-        synchronized(mDicTraverseSessions) {
-            DicTraverseSession traverseSession = mDicTraverseSessions.get(traverseSessionId);
-            if (traverseSession == null) {
-                traverseSession = new DicTraverseSession(mLocale, mNativeDict, mDictSize);
-                mDicTraverseSessions.put(traverseSessionId, traverseSession);
-            }
-            return traverseSession;
-        }
-    }
+    private final DicTraverseSessionPool mDicTraverseSessionPool;
 
     /**
      * Constructs binary dictionary using existing dictionary file.
@@ -125,6 +124,7 @@ public final class BinaryDictionary extends Dictionary {
             final boolean isUpdatable) {
         super(dictType, locale);
         mDictSize = length;
+        mDicTraverseSessionPool = new DicTraverseSessionPool(locale, length);
         mDictFilePath = filename;
         mIsUpdatable = isUpdatable;
         mHasUpdated = false;
@@ -145,6 +145,7 @@ public final class BinaryDictionary extends Dictionary {
             final Map<String, String> attributeMap) {
         super(dictType, locale);
         mDictSize = 0;
+        mDicTraverseSessionPool = new DicTraverseSessionPool(locale, 0 /* dictSize */);
         mDictFilePath = filename;
         // On memory dictionary is always updatable.
         mIsUpdatable = true;
@@ -273,7 +274,137 @@ public final class BinaryDictionary extends Dictionary {
         if (!isValidDictionary()) {
             return null;
         }
-        final DicTraverseSession session = getTraverseSession(sessionId);
+        final DicTraverseSessionPool.PooledSession pooledSession =
+                mDicTraverseSessionPool.borrowSession(sessionId, mNativeDict);
+        try {
+            return getSuggestionsWithSession(pooledSession.mSession, composedData,
+                    ngramContext, proximityInfoHandle, settingsValuesForSuggestion,
+                    weightForLocale, inOutWeightOfLangModelVsSpatialModel, 0 /* weightIndex */);
+        } finally {
+            mDicTraverseSessionPool.returnSession(sessionId, pooledSession);
+        }
+    }
+
+    /**
+     * Searches for suggestions for each word of a batch with a single traverse session, which is
+     * looked up once for the whole batch.
+     */
+    @Override
+    public ArrayList<ArrayList<SuggestedWordInfo>> getSuggestionsForWords(
+            final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+            final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int sessionId, final float weightForLocale,
+            final float[] inOutWeightsOfLangModelVsSpatialModel) {
+        final ArrayList<ArrayList<SuggestedWordInfo>> suggestionsForWords =
+                new ArrayList<>(composedDataArray.length);
+        if (!isValidDictionary()) {
+            for (int i = 0; i < composedDataArray.length; ++i) {
+                suggestionsForWords.add(null);
+            }
+            return suggestionsForWords;
+        }
+        final DicTraverseSessionPool.PooledSession pooledSession =
+                mDicTraverseSessionPool.borrowSession(sessionId, mNativeDict);
+        try {
+            for (int i = 0; i < composedDataArray.length; ++i) {
+                suggestionsForWords.add(getSuggestionsWithSession(pooledSession.mSession,
+                        composedDataArray[i], ngramContexts[i], proximityInfoHandle,
+                        settingsValuesForSuggestion, weightForLocale,
+                        inOutWeightsOfLangModelVsSpatialModel, i /* weightIndex */));
+            }
+        } finally {
+            mDicTraverseSessionPool.returnSession(sessionId, pooledSession);
+        }
+        return suggestionsForWords;
+    }
+
+    /**
+     * Searches for suggestions and adds them to the candidates straight from the output arrays of
+     * the traverse session, without creating a String or a SuggestedWordInfo for each of them.
+     */
+    @Override
+    public void addSuggestionCandidates(final ComposedData composedData,
+            final NgramContext ngramContext, final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int sessionId, final float weightForLocale,
+            final float[] inOutWeightOfLangModelVsSpatialModel,
+            final SuggestionCandidates outCandidates) {
+        if (!isValidDictionary()) {
+            return;
+        }
+        final DicTraverseSessionPool.PooledSession pooledSession =
+                mDicTraverseSessionPool.borrowSession(sessionId, mNativeDict);
+        try {
+            final DicTraverseSession session = pooledSession.mSession;
+            final int count = searchWithSession(session, composedData, ngramContext,
+                    proximityInfoHandle, settingsValuesForSuggestion, weightForLocale,
+                    inOutWeightOfLangModelVsSpatialModel, 0 /* weightIndex */);
+            for (int j = 0; j < count; ++j) {
+                final int start = j * DICTIONARY_MAX_WORD_LENGTH;
+                outCandidates.add(session.mOutputCodePoints, start,
+                        getOutputCodePointCount(session, start),
+                        (int)(session.mOutputScores[j] * weightForLocale),
+                        session.mOutputTypes[j],
+                        this /* sourceDict */,
+                        session.mSpaceIndices[j] /* indexOfTouchPointOfSecondWord */,
+                        session.mOutputAutoCommitFirstWordConfidence[0]);
+            }
+        } finally {
+            mDicTraverseSessionPool.returnSession(sessionId, pooledSession);
+        }
+    }
+
+    private ArrayList<SuggestedWordInfo> getSuggestionsWithSession(
+            final DicTraverseSession session, final ComposedData composedData,
+            final NgramContext ngramContext, final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final float weightForLocale, final float[] inOutWeightOfLangModelVsSpatialModel,
+            final int weightIndex) {
+        final int count = searchWithSession(session, composedData, ngramContext,
+                proximityInfoHandle, settingsValuesForSuggestion, weightForLocale,
+                inOutWeightOfLangModelVsSpatialModel, weightIndex);
+        if (count < 0) {
+            return null;
+        }
+        final ArrayList<SuggestedWordInfo> suggestions = new ArrayList<>();
+        for (int j = 0; j < count; ++j) {
+            final int start = j * DICTIONARY_MAX_WORD_LENGTH;
+            final int len = getOutputCodePointCount(session, start);
+            if (len > 0) {
+                suggestions.add(new SuggestedWordInfo(
+                        new String(session.mOutputCodePoints, start, len),
+                        "" /* prevWordsContext */,
+                        (int)(session.mOutputScores[j] * weightForLocale),
+                        session.mOutputTypes[j],
+                        this /* sourceDict */,
+                        session.mSpaceIndices[j] /* indexOfTouchPointOfSecondWord */,
+                        session.mOutputAutoCommitFirstWordConfidence[0]));
+            }
+        }
+        return suggestions;
+    }
+
+    private static int getOutputCodePointCount(final DicTraverseSession session,
+            final int start) {
+        int len = 0;
+        while (len < DICTIONARY_MAX_WORD_LENGTH
+                && session.mOutputCodePoints[start + len] != 0) {
+            ++len;
+        }
+        return len;
+    }
+
+    /**
+     * Runs the native search, leaving the results in the output arrays of the session.
+     * @return the number of results, or -1 if the input can't be searched.
+     */
+    private int searchWithSession(final DicTraverseSession session,
+            final ComposedData composedData, final NgramContext ngramContext,
+            final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final float weightForLocale, final float[] inOutWeightOfLangModelVsSpatialModel,
+            final int weightIndex) {
         Arrays.fill(session.mInputCodePoints, Constants.NOT_A_CODE);
         ngramContext.outputToArray(session.mPrevWordCodePointArrays,
                 session.mIsBeginningOfSentenceArray);
@@ -285,7 +416,7 @@ public final class BinaryDictionary extends Dictionary {
                     composedData.copyCodePointsExceptTrailingSingleQuotesAndReturnCodePointCount(
                         session.mInputCodePoints);
             if (inputSize < 0) {
-                return null;
+                return -1;
             }
         } else {
             inputSize = inputPointers.getPointerSize();
@@ -297,14 +428,14 @@ public final class BinaryDictionary extends Dictionary {
         session.mNativeSuggestOptions.setWeightForLocale(weightForLocale);
         if (inOutWeightOfLangModelVsSpatialModel != null) {
             session.mInputOutputWeightOfLangModelVsSpatialModel[0] =
-                    inOutWeightOfLangModelVsSpatialModel[0];
+                    inOutWeightOfLangModelVsSpatialModel[weightIndex];
         } else {
             session.mInputOutputWeightOfLangModelVsSpatialModel[0] =
                     Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL;
         }
         // TOOD: Pass multiple previous words information for n-gram.
         getSuggestionsNative(mNativeDict, proximityInfoHandle,
-                getTraverseSession(sessionId).getSession(), inputPointers.getXCoordinates(),
+                session.getSession(), inputPointers.getXCoordinates(),
                 inputPointers.getYCoordinates(), inputPointers.getTimes(),
                 inputPointers.getPointerIds(), session.mInputCodePoints, inputSize,
                 session.mNativeSuggestOptions.getOptions(), session.mPrevWordCodePointArrays,
@@ -314,30 +445,10 @@ public final class BinaryDictionary extends Dictionary {
                 session.mOutputAutoCommitFirstWordConfidence,
                 session.mInputOutputWeightOfLangModelVsSpatialModel);
         if (inOutWeightOfLangModelVsSpatialModel != null) {
-            inOutWeightOfLangModelVsSpatialModel[0] =
+            inOutWeightOfLangModelVsSpatialModel[weightIndex] =
                     session.mInputOutputWeightOfLangModelVsSpatialModel[0];
         }
-        final int count = session.mOutputSuggestionCount[0];
-        final ArrayList<SuggestedWordInfo> suggestions = new ArrayList<>();
-        for (int j = 0; j < count; ++j) {
-            final int start = j * DICTIONARY_MAX_WORD_LENGTH;
-            int len = 0;
-            while (len < DICTIONARY_MAX_WORD_LENGTH
-                    && session.mOutputCodePoints[start + len] != 0) {
-                ++len;
-            }
-            if (len > 0) {
-                suggestions.add(new SuggestedWordInfo(
-                        new String(session.mOutputCodePoints, start, len),
-                        "" /* prevWordsContext */,
-                        (int)(session.mOutputScores[j] * weightForLocale),
-                        session.mOutputTypes[j],
-                        this /* sourceDict */,
-                        session.mSpaceIndices[j] /* indexOfTouchPointOfSecondWord */,
-                        session.mOutputAutoCommitFirstWordConfidence[0]));
-            }
-        }
-        return suggestions;
+        return session.mOutputSuggestionCount[0];
     }
 
     public boolean isValidDictionary() {
@@ -355,7 +466,7 @@ public final class BinaryDictionary extends Dictionary {
 
     @Override
     public int getFrequency(final String word) {
-        if (TextUtils.isEmpty(word)) {
+        if (TextUtils.isEmpty(word) || !mightContainWord(word)) {
             return NOT_A_PROBABILITY;
         }
         final int[] codePoints = StringUtils.toCodePointArray(word);
@@ -443,6 +554,90 @@ public final class BinaryDictionary extends Dictionary {
                 getWordProperty(word, isBeginningOfSentence[0]), nextToken);
     }
 
+    /**
+     * Builds the filter of the words of the dictionary, which answers most lookups of the words
+     * that are not in the dictionary without searching it. The filter of an updatable dictionary
+     * is kept up to date with the words that are added, until it outgrows its capacity and has to
+     * be built again; see {@link #needsToRebuildWordFilter()}.
+     *
+     * This iterates over all the words of the dictionary.
+     */
+    public void buildWordFilter() {
+        if (!isValidDictionary()) {
+            return;
+        }
+        int[] hashCodes = new int[INITIAL_WORD_FILTER_CAPACITY];
+        int wordCount = 0;
+        final int[] codePoints = new int[DICTIONARY_MAX_WORD_LENGTH];
+        final boolean[] isBeginningOfSentence = new boolean[1];
+        int token = 0;
+        do {
+            token = getNextWordNative(mNativeDict, token, codePoints, isBeginningOfSentence);
+            final String word = StringUtils.getStringFromNullTerminatedCodePointArray(codePoints);
+            if (isBeginningOfSentence[0] || word.isEmpty()) {
+                continue;
+            }
+            if (wordCount == hashCodes.length) {
+                hashCodes = Arrays.copyOf(hashCodes, wordCount * 2);
+            }
+            hashCodes[wordCount++] = word.hashCode();
+        } while (token != 0);
+        // Leave room for the words that will be added to an updatable dictionary.
+        final WordMembershipFilter wordFilter = new WordMembershipFilter(mIsUpdatable
+                ? Math.max(wordCount * 2, INITIAL_WORD_FILTER_CAPACITY) : wordCount);
+        for (int i = 0; i < wordCount; ++i) {
+            wordFilter.addHashCode(hashCodes[i]);
+        }
+        mWordFilter = wordFilter;
+        mNeedsToRebuildWordFilter = false;
+    }
+
+    /**
+     * Returns whether the word filter has been dropped because too many words were added, in
+     * which case the lookups go to native code until {@link #buildWordFilter()} is called again.
+     */
+    public boolean needsToRebuildWordFilter() {
+        return mNeedsToRebuildWordFilter;
+    }
+
+    /**
+     * Returns false if the word is certainly not in the dictionary. This doesn't go to native
+     * code, and can be called without locking the dictionary.
+     */
+    public boolean mightContainWord(@Nullable final String word) {
+        final WordMembershipFilter wordFilter = mWordFilter;
+        return wordFilter == null || word == null || wordFilter.mightContain(word);
+    }
+
+    private void addToWordFilter(@Nullable final CharSequence word) {
+        final WordMembershipFilter wordFilter = mWordFilter;
+        if (wordFilter == null || TextUtils.isEmpty(word)) {
+            return;
+        }
+        final String wordString = word.toString();
+        // Most learned words and the words of their contexts are already in the dictionary.
+        if (wordFilter.mightContain(wordString)) {
+            return;
+        }
+        wordFilter.add(wordString);
+        if (wordFilter.isOverCapacity()) {
+            // Stop using the filter before false positives become frequent. Building a larger
+            // one iterates over the whole dictionary, so it is left to the owner of the
+            // dictionary rather than done here on the write path.
+            mWordFilter = null;
+            mNeedsToRebuildWordFilter = true;
+        }
+    }
+
+    private void addToWordFilter(@Nonnull final NgramContext ngramContext,
+            @Nullable final String word) {
+        // The words of the context are added to the dictionary if they are not in it.
+        for (int i = 1; i <= ngramContext.getPrevWordCount(); ++i) {
+            addToWordFilter(ngramContext.getNthPrevWord(i));
+        }
+        addToWordFilter(word);
+    }
+
     // Add a unigram entry to binary dictionary with unigram attributes in native code.
     public boolean addUnigramEntry(final String word, final int probability,
             final String shortcutTarget, final int shortcutProbability,
@@ -459,6 +654,7 @@ public final class BinaryDictionary extends Dictionary {
                 timestamp)) {
             return false;
         }
+        addToWordFilter(word);
         mHasUpdated = true;
         return true;
     }
@@ -490,6 +686,24 @@ public final class BinaryDictionary extends Dictionary {
                 isBeginningOfSentenceArray, wordCodePoints, probability, timestamp)) {
             return false;
         }
+        addToWordFilter(ngramContext, word);
+        mHasUpdated = true;
+        return true;
+    }
+
+    // Remove an n-gram entry from the binary dictionary in native code.
+    public boolean removeNgramEntry(final NgramContext ngramContext, final String word) {
+        if (!ngramContext.isValid() || TextUtils.isEmpty(word)) {
+            return false;
+        }
+        final int[][] prevWordCodePointArrays = new int[ngramContext.getPrevWordCount()][];
+        final boolean[] isBeginningOfSentenceArray = new boolean[ngramContext.getPrevWordCount()];
+        ngramContext.outputToArray(prevWordCodePointArrays, isBeginningOfSentenceArray);
+        final int[] wordCodePoints = StringUtils.toCodePointArray(word);
+        if (!removeNgramEntryNative(mNativeDict, prevWordCodePointArrays,
+                isBeginningOfSentenceArray, wordCodePoints)) {
+            return false;
+        }
         mHasUpdated = true;
         return true;
     }
@@ -508,15 +722,23 @@ public final class BinaryDictionary extends Dictionary {
                 isBeginningOfSentenceArray, wordCodePoints, isValidWord, count, timestamp)) {
             return false;
         }
+        addToWordFilter(ngramContext, word);
         mHasUpdated = true;
         return true;
     }
 
+    @UsedForTesting
+    long getNativeDictForTesting() {
+        return mNativeDict;
+    }
+
     @UsedForTesting
     public void updateEntriesForInputEvents(final WordInputEventForPersonalization[] inputEvents) {
         if (!isValidDictionary()) {
             return;
         }
+        // The words of the events are not tracked, so the lookups go to native code from now on.
+        mWordFilter = null;
         int processedEventCount = 0;
         while (processedEventCount < inputEvents.length) {
             if (needsToRunGC(true /* mindsBlockByGC */)) {
@@ -642,16 +864,7 @@ public final class BinaryDictionary extends Dictionary {
 
     @Override
     public void close() {
-        synchronized (mDicTraverseSessions) {
-            final int sessionsSize = mDicTraverseSessions.size();
-            for (int index = 0; index < sessionsSize; ++index) {
-                final DicTraverseSession traverseSession = mDicTraverseSessions.valueAt(index);
-                if (traverseSession != null) {
-                    traverseSession.close();
-                }
-            }
-            mDicTraverseSessions.clear();
-        }
+        mDicTraverseSessionPool.close();
         closeInternalLocked();
     }
 
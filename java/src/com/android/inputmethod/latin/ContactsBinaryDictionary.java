@@ -22,18 +22,21 @@ import android.net.Uri;
 import android.provider.ContactsContract;
 import android.provider.ContactsContract.Contacts;
 import android.util.Log;
+import android.util.Pair;
 
 import com.android.inputmethod.annotations.ExternallyReferenced;
 import com.android.inputmethod.latin.ContactsManager.ContactsChangedListener;
-import com.android.inputmethod.latin.common.StringUtils;
+import com.android.inputmethod.latin.ContactsManager.NameDelta;
 import com.android.inputmethod.latin.permissions.PermissionsUtil;
 import com.android.inputmethod.latin.personalization.AccountUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 
+import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
 public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
@@ -50,6 +53,12 @@ public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
     private final boolean mUseFirstLastBigrams;
     private final ContactsManager mContactsManager;
 
+    /**
+     * The names of the user profile in the last rebuild, which are kept when contact names are
+     * removed. Guarded by the write lock of the dictionary.
+     */
+    private ArrayList<String> mProfileNames = new ArrayList<>();
+
     protected ContactsBinaryDictionary(final Context context, final Locale locale,
             final File dictFile, final String name) {
         super(context, getDictName(name, locale, dictFile), locale, Dictionary.TYPE_CONTACTS,
@@ -121,6 +130,9 @@ public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
         for (final String name : validNames) {
             addNameLocked(name);
         }
+        if (uri.equals(ContactsContract.Profile.CONTENT_URI)) {
+            mProfileNames = validNames;
+        }
         if (uri.equals(Contacts.CONTENT_URI)) {
             // Since we were able to add content successfully, update the local
             // state of the manager.
@@ -133,46 +145,97 @@ public class ContactsBinaryDictionary extends ExpandableBinaryDictionary
      * bigrams depending on locale.
      */
     private void addNameLocked(final String name) {
-        int len = StringUtils.codePointCount(name);
         NgramContext ngramContext = NgramContext.getEmptyPrevWordsContext(
                 BinaryDictionary.MAX_PREV_WORD_COUNT_FOR_N_GRAM);
-        // TODO: Better tokenization for non-Latin writing systems
-        for (int i = 0; i < len; i++) {
-            if (Character.isLetter(name.codePointAt(i))) {
-                int end = ContactsDictionaryUtils.getWordEndPosition(name, len, i);
-                String word = name.substring(i, end);
-                if (DEBUG_DUMP) {
-                    Log.d(TAG, "addName word = " + word);
-                }
-                i = end - 1;
-                // Don't add single letter words, possibly confuses
-                // capitalization of i.
-                final int wordLen = StringUtils.codePointCount(word);
-                if (wordLen <= MAX_WORD_LENGTH && wordLen > 1) {
-                    if (DEBUG) {
-                        Log.d(TAG, "addName " + name + ", " + word + ", "  + ngramContext);
-                    }
-                    runGCIfRequiredLocked(true /* mindsBlockByGC */);
-                    addUnigramLocked(word, ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS,
-                            null /* shortcut */, 0 /* shortcutFreq */, false /* isNotAWord */,
-                            false /* isPossiblyOffensive */,
-                            BinaryDictionary.NOT_A_VALID_TIMESTAMP);
-                    if (ngramContext.isValid() && mUseFirstLastBigrams) {
-                        runGCIfRequiredLocked(true /* mindsBlockByGC */);
-                        addNgramEntryLocked(ngramContext,
-                                word,
-                                ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS_BIGRAM,
-                                BinaryDictionary.NOT_A_VALID_TIMESTAMP);
-                    }
-                    ngramContext = ngramContext.getNextNgramContext(
-                            new NgramContext.WordInfo(word));
-                }
+        for (final String word : ContactsDictionaryUtils.getNameWords(name, MAX_WORD_LENGTH)) {
+            if (DEBUG_DUMP) {
+                Log.d(TAG, "addName word = " + word);
+            }
+            if (DEBUG) {
+                Log.d(TAG, "addName " + name + ", " + word + ", "  + ngramContext);
+            }
+            runGCIfRequiredLocked(true /* mindsBlockByGC */);
+            addUnigramLocked(word, ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS,
+                    null /* shortcut */, 0 /* shortcutFreq */, false /* isNotAWord */,
+                    false /* isPossiblyOffensive */,
+                    BinaryDictionary.NOT_A_VALID_TIMESTAMP);
+            if (ngramContext.isValid() && mUseFirstLastBigrams) {
+                runGCIfRequiredLocked(true /* mindsBlockByGC */);
+                addNgramEntryLocked(ngramContext,
+                        word,
+                        ContactsDictionaryConstants.FREQUENCY_FOR_CONTACTS_BIGRAM,
+                        BinaryDictionary.NOT_A_VALID_TIMESTAMP);
+            }
+            ngramContext = ngramContext.getNextNgramContext(
+                    new NgramContext.WordInfo(word));
+        }
+    }
+
+    /**
+     * Removes the words of a name and their n-grams, except those that are also in the names
+     * that are kept.
+     */
+    private void removeNameLocked(final String name, final HashSet<String> keptWords,
+            final HashSet<Pair<NgramContext, String>> keptNgrams) {
+        final BinaryDictionary binaryDictionary = getBinaryDictionary();
+        NgramContext ngramContext = NgramContext.getEmptyPrevWordsContext(
+                BinaryDictionary.MAX_PREV_WORD_COUNT_FOR_N_GRAM);
+        for (final String word : ContactsDictionaryUtils.getNameWords(name, MAX_WORD_LENGTH)) {
+            if (ngramContext.isValid() && mUseFirstLastBigrams
+                    && !keptNgrams.contains(new Pair<>(ngramContext, word))) {
+                binaryDictionary.removeNgramEntry(ngramContext, word);
+            }
+            ngramContext = ngramContext.getNextNgramContext(new NgramContext.WordInfo(word));
+        }
+        for (final String word : ContactsDictionaryUtils.getNameWords(name, MAX_WORD_LENGTH)) {
+            if (!keptWords.contains(word)) {
+                binaryDictionary.removeUnigramEntry(word);
+                onWordChangedLocked(word);
             }
         }
     }
 
+    private void addWordsOfName(final String name, final HashSet<String> outWords,
+            final HashSet<Pair<NgramContext, String>> outNgrams) {
+        NgramContext ngramContext = NgramContext.getEmptyPrevWordsContext(
+                BinaryDictionary.MAX_PREV_WORD_COUNT_FOR_N_GRAM);
+        for (final String word : ContactsDictionaryUtils.getNameWords(name, MAX_WORD_LENGTH)) {
+            outWords.add(word);
+            outNgrams.add(new Pair<>(ngramContext, word));
+            ngramContext = ngramContext.getNextNgramContext(new NgramContext.WordInfo(word));
+        }
+    }
+
     @Override
     public void onContactsChange() {
         setNeedsToRecreate();
     }
+
+    @Override
+    public void onContactNamesChange(@Nonnull final NameDelta delta,
+            @Nonnull final ArrayList<String> validNames) {
+        updateDictionaryWithWriteLock(new Runnable() {
+            @Override
+            public void run() {
+                final HashSet<String> keptWords = new HashSet<>();
+                final HashSet<Pair<NgramContext, String>> keptNgrams = new HashSet<>();
+                if (!delta.mRemovedNames.isEmpty()) {
+                    for (final String name : validNames) {
+                        addWordsOfName(name, keptWords, keptNgrams);
+                    }
+                    for (final String name : mProfileNames) {
+                        addWordsOfName(name, keptWords, keptNgrams);
+                    }
+                }
+                for (final String name : delta.mRemovedNames) {
+                    removeNameLocked(name, keptWords, keptNgrams);
+                }
+                for (final String name : delta.mAddedNames) {
+                    addNameLocked(name);
+                }
+            }
+        });
+        // Keep the file in sync, the names at the last rebuild are not persisted.
+        asyncFlushBinaryDictionary();
+    }
 }
@@ -25,11 +25,16 @@ import android.provider.ContactsContract.Contacts;
 import android.util.Log;
 
 import com.android.inputmethod.latin.ContactsManager.ContactsChangedListener;
+import com.android.inputmethod.latin.ContactsManager.NameDelta;
 import com.android.inputmethod.latin.define.DebugFlags;
+import com.android.inputmethod.latin.define.ProductionFlags;
 import com.android.inputmethod.latin.permissions.PermissionsUtil;
 import com.android.inputmethod.latin.utils.ExecutorUtils;
+import com.android.inputmethod.latin.utils.TaskLane;
 
 import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -38,9 +43,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class ContactsContentObserver implements Runnable {
     private static final String TAG = "ContactsContentObserver";
 
+    // Changes are often notified in bursts, for example during a sync, so they are checked once
+    // after this delay.
+    private static final long DELAY_FOR_CHECKING_CHANGES_IN_MILLIS = TimeUnit.SECONDS.toMillis(2);
+
     private final Context mContext;
     private final ContactsManager mManager;
     private final AtomicBoolean mRunning = new AtomicBoolean(false);
+    private final AtomicBoolean mIsCheckScheduled = new AtomicBoolean(false);
+    private volatile boolean mIsUnregistered = false;
 
     private ContentObserver mContentObserver;
     private ContactsChangedListener mContactsChangedListener;
@@ -65,16 +76,39 @@ public class ContactsContentObserver implements Runnable {
         mContentObserver = new ContentObserver(null /* handler */) {
             @Override
             public void onChange(boolean self) {
-                ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD)
-                        .execute(ContactsContentObserver.this);
+                scheduleCheck();
             }
         };
         final ContentResolver contentResolver = mContext.getContentResolver();
         contentResolver.registerContentObserver(Contacts.CONTENT_URI, true, mContentObserver);
     }
 
+    private void scheduleCheck() {
+        if (!ProductionFlags.ENABLE_INCREMENTAL_CONTACTS_UPDATES) {
+            ExecutorUtils.getTaskLane(ExecutorUtils.BULK).execute(this, TaskLane.PRIORITY_NORMAL,
+                    this);
+            return;
+        }
+        // The changes notified until the check starts are covered by that check.
+        if (!mIsCheckScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.BULK).schedule(new Runnable() {
+            @Override
+            public void run() {
+                ExecutorUtils.getTaskLane(ExecutorUtils.BULK).execute(
+                        ContactsContentObserver.this, TaskLane.PRIORITY_NORMAL,
+                        ContactsContentObserver.this);
+            }
+        }, DELAY_FOR_CHECKING_CHANGES_IN_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
     @Override
     public void run() {
+        mIsCheckScheduled.set(false);
+        if (mIsUnregistered) {
+            return;
+        }
         if (!PermissionsUtil.checkAllPermissionsGranted(
                 mContext, Manifest.permission.READ_CONTACTS)) {
             Log.i(TAG, "No permission to read contacts. Not updating the contacts.");
@@ -88,13 +122,46 @@ public class ContactsContentObserver implements Runnable {
             }
             return;
         }
-        if (haveContentsChanged()) {
+        try {
+            if (ProductionFlags.ENABLE_INCREMENTAL_CONTACTS_UPDATES
+                    && mManager.getNamesAtLastRebuild() != null) {
+                notifyNameChanges();
+            } else if (haveContentsChanged()) {
+                if (DebugFlags.DEBUG_ENABLED) {
+                    Log.d(TAG, "run() : Contacts have changed. Notifying listeners.");
+                }
+                mContactsChangedListener.onContactsChange();
+            }
+        } finally {
+            mRunning.set(false);
+        }
+    }
+
+    /**
+     * Reads the valid names once and notifies the listener of the names added and removed since
+     * the last update, so that the dictionary doesn't have to read all the contacts again.
+     */
+    void notifyNameChanges() {
+        final long startTime = SystemClock.uptimeMillis();
+        final int contactCount = mManager.getContactCount();
+        final Set<String> previousNames = mManager.getNamesAtLastRebuild();
+        final ArrayList<String> names = mManager.getValidNames(Contacts.CONTENT_URI);
+        final NameDelta delta = NameDelta.compute(previousNames, names);
+        // Update the state before the listener applies the delta, so that the next check is
+        // computed from these names. The listener applies the deltas in order.
+        mManager.updateLocalState(names, contactCount);
+        if (delta.isEmpty()) {
             if (DebugFlags.DEBUG_ENABLED) {
-                Log.d(TAG, "run() : Contacts have changed. Notifying listeners.");
+                Log.d(TAG, "notifyNameChanges() : No change detected in "
+                        + (SystemClock.uptimeMillis() - startTime) + " ms)");
             }
-            mContactsChangedListener.onContactsChange();
+            return;
+        }
+        if (DebugFlags.DEBUG_ENABLED) {
+            Log.d(TAG, "notifyNameChanges() : " + delta.mAddedNames.size() + " added, "
+                    + delta.mRemovedNames.size() + " removed");
         }
-        mRunning.set(false);
+        mContactsChangedListener.onContactNamesChange(delta, names);
     }
 
     boolean haveContentsChanged() {
@@ -106,12 +173,6 @@ public class ContactsContentObserver implements Runnable {
 
         final long startTime = SystemClock.uptimeMillis();
         final int contactCount = mManager.getContactCount();
-        if (contactCount > ContactsDictionaryConstants.MAX_CONTACTS_PROVIDER_QUERY_LIMIT) {
-            // If there are too many contacts then return false. In this rare case it is impossible
-            // to include all of them anyways and the cost of rebuilding the dictionary is too high.
-            // TODO: Sort and check only the most recent contacts?
-            return false;
-        }
         if (contactCount != mManager.getContactCountAtLastRebuild()) {
             if (DebugFlags.DEBUG_ENABLED) {
                 Log.d(TAG, "haveContentsChanged() : Count changed from "
@@ -131,6 +192,8 @@ public class ContactsContentObserver implements Runnable {
     }
 
     public void unregister() {
+        mIsUnregistered = true;
         mContext.getContentResolver().unregisterContentObserver(mContentObserver);
+        ExecutorUtils.getTaskLane(ExecutorUtils.BULK).cancelTasks(this);
     }
 }
@@ -37,14 +37,15 @@ public class ContactsDictionaryConstants {
     public static final int FREQUENCY_FOR_CONTACTS_BIGRAM = 90;
 
     /**
-     *  Do not attempt to query contacts if there are more than this many entries.
+     * The number of contacts read per query when reading all the contacts.
      */
-    public static final int MAX_CONTACTS_PROVIDER_QUERY_LIMIT = 10000;
+    public static final int CONTACTS_QUERY_PAGE_SIZE = 500;
 
     /**
      * Index of the column for 'name' in content providers:
      * Contacts & ContactsContract.Profile.
      */
+    public static final int ID_INDEX = 0;
     public static final int NAME_INDEX = 1;
     public static final int TIMES_CONTACTED_INDEX = 2;
     public static final int LAST_TIME_CONTACTED_INDEX = 3;
@@ -17,7 +17,9 @@
 package com.android.inputmethod.latin;
 
 import com.android.inputmethod.latin.common.Constants;
+import com.android.inputmethod.latin.common.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Locale;
 
 /**
@@ -42,6 +44,30 @@ public class ContactsDictionaryUtils {
         return end;
     }
 
+    /**
+     * Returns the words of a name (e.g., firstname/lastname) that go in the contacts dictionary,
+     * in order. Single letter words and words longer than maxWordLength are skipped.
+     */
+    public static ArrayList<String> getNameWords(final String name, final int maxWordLength) {
+        final ArrayList<String> words = new ArrayList<>();
+        final int len = StringUtils.codePointCount(name);
+        // TODO: Better tokenization for non-Latin writing systems
+        for (int i = 0; i < len; i++) {
+            if (Character.isLetter(name.codePointAt(i))) {
+                final int end = getWordEndPosition(name, len, i);
+                final String word = name.substring(i, end);
+                i = end - 1;
+                // Don't add single letter words, possibly confuses
+                // capitalization of i.
+                final int wordLen = StringUtils.codePointCount(word);
+                if (wordLen <= maxWordLength && wordLen > 1) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
     /**
      * Returns true if the locale supports using first name and last name as bigrams.
      */
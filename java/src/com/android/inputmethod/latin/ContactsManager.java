@@ -20,6 +20,7 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteException;
 import android.net.Uri;
+import android.provider.ContactsContract;
 import android.provider.ContactsContract.Contacts;
 import android.text.TextUtils;
 import android.util.Log;
@@ -28,12 +29,19 @@ import com.android.inputmethod.latin.common.Constants;
 import com.android.inputmethod.latin.common.StringUtils;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
 /**
  * Manages all interactions with Contacts DB.
  *
@@ -55,6 +63,8 @@ public class ContactsManager {
         public final boolean mInVisibleGroup;
 
         private float mAffinity = 0.0f;
+        // The order in which the contact was read, which ranks the contacts of equal affinity.
+        private long mReadOrder;
 
         RankedContact(final Cursor cursor) {
             mName = cursor.getString(
@@ -93,10 +103,100 @@ public class ContactsManager {
         }
     }
 
-    private static class AffinityComparator implements Comparator<RankedContact> {
+    // Orders the contacts from the lowest affinity, and the last read first for equal affinities.
+    private static class LowestAffinityFirstComparator implements Comparator<RankedContact> {
         @Override
         public int compare(RankedContact contact1, RankedContact contact2) {
-            return Float.compare(contact2.getAffinity(), contact1.getAffinity());
+            final int affinityComparison =
+                    Float.compare(contact1.getAffinity(), contact2.getAffinity());
+            if (affinityComparison != 0) {
+                return affinityComparison;
+            }
+            return Long.compare(contact2.mReadOrder, contact1.mReadOrder);
+        }
+    }
+
+    /**
+     * The contacts with the highest affinity among the contacts offered, with at most one contact
+     * per name, kept in a heap of bounded size so that the contacts can be read as a stream.
+     */
+    static class TopContacts {
+        private final int mMaxCount;
+        private final LowestAffinityFirstComparator mComparator =
+                new LowestAffinityFirstComparator();
+        private final PriorityQueue<RankedContact> mContacts;
+        private final HashMap<String, RankedContact> mContactsByName = new HashMap<>();
+        private long mNextReadOrder = 0;
+
+        TopContacts(final int maxCount) {
+            mMaxCount = maxCount;
+            mContacts = new PriorityQueue<>(maxCount, mComparator);
+        }
+
+        /**
+         * Offers a contact whose affinity has been computed. It is kept if it ranks among the
+         * best contacts so far; the first contact read wins between equal affinities.
+         */
+        void offer(final RankedContact contact) {
+            contact.mReadOrder = mNextReadOrder++;
+            final RankedContact contactWithSameName = mContactsByName.get(contact.mName);
+            if (contactWithSameName != null) {
+                // A name is ranked by its contact with the highest affinity.
+                if (contact.getAffinity() <= contactWithSameName.getAffinity()) {
+                    return;
+                }
+                mContacts.remove(contactWithSameName);
+            } else if (mContacts.size() >= mMaxCount) {
+                final RankedContact lowestContact = mContacts.peek();
+                if (mComparator.compare(contact, lowestContact) <= 0) {
+                    return;
+                }
+                mContacts.poll();
+                mContactsByName.remove(lowestContact.mName);
+            }
+            mContacts.add(contact);
+            mContactsByName.put(contact.mName, contact);
+        }
+
+        ArrayList<String> getNames() {
+            return new ArrayList<>(mContactsByName.keySet());
+        }
+    }
+
+    /**
+     * The names added and removed between two sets of valid contact names.
+     */
+    public static final class NameDelta {
+        public final ArrayList<String> mAddedNames;
+        public final ArrayList<String> mRemovedNames;
+
+        private NameDelta(final ArrayList<String> addedNames,
+                final ArrayList<String> removedNames) {
+            mAddedNames = addedNames;
+            mRemovedNames = removedNames;
+        }
+
+        public static NameDelta compute(@Nonnull final Collection<String> previousNames,
+                @Nonnull final Collection<String> currentNames) {
+            final HashSet<String> previousNameSet = new HashSet<>(previousNames);
+            final HashSet<String> currentNameSet = new HashSet<>(currentNames);
+            final ArrayList<String> addedNames = new ArrayList<>();
+            for (final String name : currentNameSet) {
+                if (!previousNameSet.contains(name)) {
+                    addedNames.add(name);
+                }
+            }
+            final ArrayList<String> removedNames = new ArrayList<>();
+            for (final String name : previousNameSet) {
+                if (!currentNameSet.contains(name)) {
+                    removedNames.add(name);
+                }
+            }
+            return new NameDelta(addedNames, removedNames);
+        }
+
+        public boolean isEmpty() {
+            return mAddedNames.isEmpty() && mRemovedNames.isEmpty();
         }
     }
 
@@ -105,7 +205,20 @@ public class ContactsManager {
      * to Contacts content provider.
      */
     public static interface ContactsChangedListener {
+        /**
+         * Called when the contacts have changed and have to be read again.
+         */
         public void onContactsChange();
+
+        /**
+         * Called when the valid contact names have changed since the last update of the local
+         * state of the manager.
+         *
+         * @param delta the names added and removed.
+         * @param validNames all the valid names, as returned by {@link #getValidNames}.
+         */
+        public void onContactNamesChange(@Nonnull NameDelta delta,
+                @Nonnull ArrayList<String> validNames);
     }
 
     /**
@@ -120,6 +233,12 @@ public class ContactsManager {
      */
     private AtomicInteger mHashCodeAtLastRebuild = new AtomicInteger(0);
 
+    /**
+     * The valid contact names in the most recent dictionary rebuild or update, or null if the
+     * dictionary hasn't been built since the manager was created.
+     */
+    private volatile Set<String> mNamesAtLastRebuild = null;
+
     private final Context mContext;
     private final ContactsContentObserver mObserver;
 
@@ -141,6 +260,11 @@ public class ContactsManager {
         return mHashCodeAtLastRebuild.get();
     }
 
+    @Nullable
+    public Set<String> getNamesAtLastRebuild() {
+        return mNamesAtLastRebuild;
+    }
+
     /**
      * Returns all the valid names in the Contacts DB. Callers should also
      * call {@link #updateLocalState(ArrayList)} after they are done with result
@@ -153,23 +277,44 @@ public class ContactsManager {
         // Check all contacts since it's not possible to find out which names have changed.
         // This is needed because it's possible to receive extraneous onChange events even when no
         // name has changed.
-        final Cursor cursor = mContext.getContentResolver().query(uri,
-                ContactsDictionaryConstants.PROJECTION, null, null, null);
-        final ArrayList<RankedContact> contacts = new ArrayList<>();
-        int maxTimesContacted = 0;
-        if (cursor != null) {
+        final int maxTimesContacted = getMaxTimesContacted(uri);
+        final long currentTime = System.currentTimeMillis();
+        final TopContacts topContacts = new TopContacts(MAX_CONTACT_NAMES);
+        // The contacts are read in pages ordered by id, so that the memory used does not depend
+        // on the number of contacts.
+        boolean hasLastId = false;
+        long lastId = 0;
+        while (true) {
+            final boolean pageHasLowerBound = hasLastId;
+            final long lowerBoundId = lastId;
+            final Cursor cursor = mContext.getContentResolver().query(
+                    getUriWithLimit(uri, ContactsDictionaryConstants.CONTACTS_QUERY_PAGE_SIZE),
+                    ContactsDictionaryConstants.PROJECTION,
+                    pageHasLowerBound ? Contacts._ID + " > ?" : null,
+                    pageHasLowerBound ? new String[] { Long.toString(lowerBoundId) } : null,
+                    Contacts._ID + " ASC");
+            if (cursor == null) {
+                break;
+            }
+            final int rowCount;
+            int newRowCount = 0;
             try {
+                rowCount = cursor.getCount();
                 if (cursor.moveToFirst()) {
                     while (!cursor.isAfterLast()) {
-                        final String name = cursor.getString(
-                                ContactsDictionaryConstants.NAME_INDEX);
-                        if (isValidName(name)) {
-                            final int timesContacted = cursor.getInt(
-                                    ContactsDictionaryConstants.TIMES_CONTACTED_INDEX);
-                            if (timesContacted > maxTimesContacted) {
-                                maxTimesContacted = timesContacted;
+                        final long id = cursor.getLong(ContactsDictionaryConstants.ID_INDEX);
+                        // Skip the rows of the previous pages in case the selection is ignored.
+                        if (!pageHasLowerBound || id > lowerBoundId) {
+                            ++newRowCount;
+                            hasLastId = true;
+                            lastId = Math.max(lastId, id);
+                            final String name = cursor.getString(
+                                    ContactsDictionaryConstants.NAME_INDEX);
+                            if (isValidName(name)) {
+                                final RankedContact contact = new RankedContact(cursor);
+                                contact.computeAffinity(maxTimesContacted, currentTime);
+                                topContacts.offer(contact);
                             }
-                            contacts.add(new RankedContact(cursor));
                         }
                         cursor.moveToNext();
                     }
@@ -177,17 +322,43 @@ public class ContactsManager {
             } finally {
                 cursor.close();
             }
+            if (newRowCount == 0
+                    || rowCount < ContactsDictionaryConstants.CONTACTS_QUERY_PAGE_SIZE) {
+                break;
+            }
         }
-        final long currentTime = System.currentTimeMillis();
-        for (RankedContact contact : contacts) {
-            contact.computeAffinity(maxTimesContacted, currentTime);
-        }
-        Collections.sort(contacts, new AffinityComparator());
-        final HashSet<String> names = new HashSet<>();
-        for (int i = 0; i < contacts.size() && names.size() < MAX_CONTACT_NAMES; ++i) {
-            names.add(contacts.get(i).mName);
+        return topContacts.getNames();
+    }
+
+    /**
+     * Returns the highest number of times a contact has been contacted, which the affinities are
+     * relative to.
+     */
+    private int getMaxTimesContacted(final Uri uri) {
+        final Cursor cursor = mContext.getContentResolver().query(getUriWithLimit(uri, 1),
+                ContactsDictionaryConstants.PROJECTION, null, null,
+                Contacts.TIMES_CONTACTED + " DESC");
+        int maxTimesContacted = 0;
+        if (cursor != null) {
+            try {
+                // Read all the rows in case the limit is ignored.
+                if (cursor.moveToFirst()) {
+                    while (!cursor.isAfterLast()) {
+                        maxTimesContacted = Math.max(maxTimesContacted, cursor.getInt(
+                                ContactsDictionaryConstants.TIMES_CONTACTED_INDEX));
+                        cursor.moveToNext();
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
         }
-        return new ArrayList<>(names);
+        return maxTimesContacted;
+    }
+
+    private static Uri getUriWithLimit(final Uri uri, final int limit) {
+        return uri.buildUpon().appendQueryParameter(ContactsContract.LIMIT_PARAM_KEY,
+                Integer.toString(limit)).build();
     }
 
     /**
@@ -232,8 +403,16 @@ public class ContactsManager {
      * are done with all the updates of the content provider successfully.
      */
     public void updateLocalState(final ArrayList<String> names) {
-        mContactCountAtLastRebuild.set(getContactCount());
+        updateLocalState(names, getContactCount());
+    }
+
+    /**
+     * Updates the local state of the manager with a contact count that was just read.
+     */
+    public void updateLocalState(final ArrayList<String> names, final int contactCount) {
+        mContactCountAtLastRebuild.set(contactCount);
         mHashCodeAtLastRebuild.set(names.hashCode());
+        mNamesAtLastRebuild = Collections.unmodifiableSet(new HashSet<>(names));
     }
 
     /**
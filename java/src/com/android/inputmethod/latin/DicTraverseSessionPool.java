@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import android.os.SystemClock;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of the {@link DicTraverseSession}s of a {@link BinaryDictionary}.
+ *
+ * A caller borrows a session for the duration of a native search and returns it afterwards.
+ * An idle session is kept for the session id it was last used with, so that a caller keeps
+ * getting the same native session as long as it is not idle for too long. Idle sessions are
+ * released after {@link #IDLE_TIMEOUT_MILLIS}, and at most {@link #MAX_SESSION_COUNT} sessions
+ * are in use at a time; further callers wait for a session to be returned. The pool only
+ * synchronizes on its concurrent map, so callers with different session ids don't contend.
+ */
+final class DicTraverseSessionPool {
+    // Enough for the IME and a few concurrent spell checker or parallel lookups.
+    @UsedForTesting
+    static final int MAX_SESSION_COUNT = 8;
+    @UsedForTesting
+    static final long IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    public static final class PooledSession {
+        public final DicTraverseSession mSession;
+        // The generation of the pool the session was created in. Sessions of an older
+        // generation were initialized for a native dictionary that has been closed since.
+        final int mGeneration;
+        long mIdleSinceMillis;
+
+        PooledSession(final DicTraverseSession session, final int generation) {
+            mSession = session;
+            mGeneration = generation;
+        }
+    }
+
+    private final Locale mLocale;
+    private final long mDictSize;
+    private final Semaphore mPermits = new Semaphore(MAX_SESSION_COUNT);
+    // The idle sessions, by the session id they were last used with.
+    private final ConcurrentHashMap<Integer, PooledSession> mIdleSessions =
+            new ConcurrentHashMap<>();
+    // The number of sessions alive, in use or idle.
+    private final AtomicInteger mSessionCount = new AtomicInteger(0);
+    private final AtomicInteger mGeneration = new AtomicInteger(0);
+    private final AtomicBoolean mIsIdleSweepScheduled = new AtomicBoolean(false);
+
+    public DicTraverseSessionPool(final Locale locale, final long dictSize) {
+        mLocale = locale;
+        mDictSize = dictSize;
+    }
+
+    /**
+     * Borrows a session to search the native dictionary. The session must be returned with
+     * {@link #returnSession} once the search is done.
+     *
+     * @param sessionId the session id of the caller.
+     * @param nativeDict the native dictionary the session will search.
+     */
+    public PooledSession borrowSession(final int sessionId, final long nativeDict) {
+        mPermits.acquireUninterruptibly();
+        final int generation = mGeneration.get();
+        PooledSession pooledSession = mIdleSessions.remove(sessionId);
+        if (pooledSession == null && mSessionCount.get() >= MAX_SESSION_COUNT) {
+            // Reuse the session of another session id rather than allocating one more.
+            pooledSession = removeAnyIdleSession();
+        }
+        if (pooledSession != null && pooledSession.mGeneration != generation) {
+            closeSession(pooledSession);
+            pooledSession = null;
+        }
+        if (pooledSession == null) {
+            mSessionCount.incrementAndGet();
+            pooledSession = new PooledSession(
+                    new DicTraverseSession(mLocale, nativeDict, mDictSize), generation);
+        }
+        return pooledSession;
+    }
+
+    /**
+     * Returns a session borrowed with {@link #borrowSession}.
+     */
+    public void returnSession(final int sessionId, final PooledSession pooledSession) {
+        try {
+            if (pooledSession.mGeneration != mGeneration.get()
+                    || mSessionCount.get() > MAX_SESSION_COUNT) {
+                closeSession(pooledSession);
+                return;
+            }
+            pooledSession.mIdleSinceMillis = SystemClock.uptimeMillis();
+            final PooledSession replacedSession = mIdleSessions.put(sessionId, pooledSession);
+            if (replacedSession != null) {
+                closeSession(replacedSession);
+            }
+            scheduleIdleSweep();
+        } finally {
+            mPermits.release();
+        }
+    }
+
+    /**
+     * Releases the idle sessions. The sessions in use are released when they are returned.
+     * This must be called when the native dictionary is closed.
+     */
+    public void close() {
+        mGeneration.incrementAndGet();
+        releaseIdleSessions(Long.MAX_VALUE /* idleSinceMillisLimit */);
+    }
+
+    @UsedForTesting
+    int getSessionCountForTesting() {
+        return mSessionCount.get();
+    }
+
+    @UsedForTesting
+    int getIdleSessionCountForTesting() {
+        return mIdleSessions.size();
+    }
+
+    private PooledSession removeAnyIdleSession() {
+        for (final Integer sessionId : mIdleSessions.keySet()) {
+            final PooledSession pooledSession = mIdleSessions.remove(sessionId);
+            if (pooledSession != null) {
+                return pooledSession;
+            }
+        }
+        return null;
+    }
+
+    private void closeSession(final PooledSession pooledSession) {
+        pooledSession.mSession.close();
+        mSessionCount.decrementAndGet();
+    }
+
+    /**
+     * Releases the sessions that have been idle since before the specified time.
+     * @return whether idle sessions remain.
+     */
+    private boolean releaseIdleSessions(final long idleSinceMillisLimit) {
+        final Iterator<Map.Entry<Integer, PooledSession>> iterator =
+                mIdleSessions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<Integer, PooledSession> entry = iterator.next();
+            final PooledSession pooledSession = entry.getValue();
+            if (pooledSession.mIdleSinceMillis <= idleSinceMillisLimit
+                    && mIdleSessions.remove(entry.getKey(), pooledSession)) {
+                closeSession(pooledSession);
+            }
+        }
+        return !mIdleSessions.isEmpty();
+    }
+
+    /**
+     * Releases the sessions that have been idle for {@link #IDLE_TIMEOUT_MILLIS} at the
+     * specified uptime.
+     * @return whether idle sessions remain.
+     */
+    @UsedForTesting
+    boolean sweepIdleSessions(final long uptimeMillis) {
+        return releaseIdleSessions(uptimeMillis - IDLE_TIMEOUT_MILLIS);
+    }
+
+    private void scheduleIdleSweep() {
+        if (!mIsIdleSweepScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.DICTIONARY_IO).schedule(new Runnable() {
+            @Override
+            public void run() {
+                mIsIdleSweepScheduled.set(false);
+                if (sweepIdleSessions(SystemClock.uptimeMillis())) {
+                    scheduleIdleSweep();
+                }
+            }
+        }, IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+}
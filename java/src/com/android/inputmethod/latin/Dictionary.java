@@ -20,6 +20,7 @@ import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.common.ComposedData;
 import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+import com.android.inputmethod.latin.utils.SuggestionCandidates;
 
 import java.util.ArrayList;
 import java.util.Locale;
@@ -102,6 +103,64 @@ public abstract class Dictionary {
             final int sessionId, final float weightForLocale,
             final float[] inOutWeightOfLangModelVsSpatialModel);
 
+    /**
+     * Searches for suggestions for a given context and adds them to a bounded set of candidates.
+     * The default implementation adds the results of {@link #getSuggestions}. Implementations
+     * that can read their results as code points override it to avoid creating objects for the
+     * suggestions that don't make it into the candidates.
+     * @param outCandidates the candidates to add the suggestions to.
+     * See {@link #getSuggestions} for the other parameters.
+     */
+    public void addSuggestionCandidates(final ComposedData composedData,
+            final NgramContext ngramContext, final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int sessionId, final float weightForLocale,
+            final float[] inOutWeightOfLangModelVsSpatialModel,
+            final SuggestionCandidates outCandidates) {
+        final ArrayList<SuggestedWordInfo> suggestions = getSuggestions(composedData,
+                ngramContext, proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                weightForLocale, inOutWeightOfLangModelVsSpatialModel);
+        if (null == suggestions) return;
+        for (final SuggestedWordInfo suggestion : suggestions) {
+            outCandidates.add(suggestion);
+        }
+    }
+
+    /**
+     * Searches for suggestions for several words at once, for example the words of a sentence.
+     * The default implementation calls {@link #getSuggestions} for each word. Implementations
+     * override it to share the per-query setup, such as locking or looking up the traverse
+     * session, across the whole batch.
+     * @param composedDataArray the key sequences to match, one per word.
+     * @param ngramContexts the contexts for n-gram, one per word.
+     * @param proximityInfoHandle the handle for key proximity. Is ignored by some implementations.
+     * @param settingsValuesForSuggestion the settings values used for the suggestion.
+     * @param sessionId the session id.
+     * @param weightForLocale the weight given to this locale, to multiply the output scores for
+     * multilingual input.
+     * @param inOutWeightsOfLangModelVsSpatialModel the weights of the language model as a ratio of
+     * the spatial model, one per word. See {@link #getSuggestions}.
+     * @return the lists of suggestions, one per word (each possibly null)
+     */
+    public ArrayList<ArrayList<SuggestedWordInfo>> getSuggestionsForWords(
+            final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+            final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int sessionId, final float weightForLocale,
+            final float[] inOutWeightsOfLangModelVsSpatialModel) {
+        final ArrayList<ArrayList<SuggestedWordInfo>> suggestionsForWords =
+                new ArrayList<>(composedDataArray.length);
+        final float[] weightOfLangModelVsSpatialModel = new float[1];
+        for (int i = 0; i < composedDataArray.length; ++i) {
+            weightOfLangModelVsSpatialModel[0] = inOutWeightsOfLangModelVsSpatialModel[i];
+            suggestionsForWords.add(getSuggestions(composedDataArray[i], ngramContexts[i],
+                    proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                    weightForLocale, weightOfLangModelVsSpatialModel));
+            inOutWeightsOfLangModelVsSpatialModel[i] = weightOfLangModelVsSpatialModel[0];
+        }
+        return suggestionsForWords;
+    }
+
     /**
      * Checks if the given word has to be treated as a valid word. Please note that some
      * dictionaries have entries that should be treated as invalid words.
@@ -112,6 +171,21 @@ public abstract class Dictionary {
         return isInDictionary(word);
     }
 
+    /**
+     * Checks several words at once, for example the words of a sentence. Only the words that are
+     * not yet known to be valid are looked up.
+     * @param words the words to search for.
+     * @param inOutIsValid whether each word is valid. Entries that are false are set to true when
+     * the corresponding word is a valid word in this dictionary; other entries are left unchanged.
+     */
+    public void updateValidityOfWords(final String[] words, final boolean[] inOutIsValid) {
+        for (int i = 0; i < words.length; ++i) {
+            if (!inOutIsValid[i] && isValidWord(words[i])) {
+                inOutIsValid[i] = true;
+            }
+        }
+    }
+
     /**
      * Checks if the given word is in the dictionary regardless of it being valid or not.
      */
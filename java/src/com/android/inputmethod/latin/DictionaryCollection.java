@@ -21,6 +21,7 @@ import android.util.Log;
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.common.ComposedData;
 import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+import com.android.inputmethod.latin.utils.SuggestionCandidates;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -34,6 +35,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 public final class DictionaryCollection extends Dictionary {
     private final String TAG = DictionaryCollection.class.getSimpleName();
     protected final CopyOnWriteArrayList<Dictionary> mDictionaries;
+    // Guarded by this.
+    private boolean mIsClosed;
 
     public DictionaryCollection(final String dictType, final Locale locale) {
         super(dictType, locale);
@@ -82,6 +85,53 @@ public final class DictionaryCollection extends Dictionary {
         return suggestions;
     }
 
+    @Override
+    public void addSuggestionCandidates(final ComposedData composedData,
+            final NgramContext ngramContext, final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int sessionId, final float weightForLocale,
+            final float[] inOutWeightOfLangModelVsSpatialModel,
+            final SuggestionCandidates outCandidates) {
+        for (final Dictionary dictionary : mDictionaries) {
+            dictionary.addSuggestionCandidates(composedData, ngramContext, proximityInfoHandle,
+                    settingsValuesForSuggestion, sessionId, weightForLocale,
+                    inOutWeightOfLangModelVsSpatialModel, outCandidates);
+        }
+    }
+
+    @Override
+    public ArrayList<ArrayList<SuggestedWordInfo>> getSuggestionsForWords(
+            final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+            final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int sessionId, final float weightForLocale,
+            final float[] inOutWeightsOfLangModelVsSpatialModel) {
+        final CopyOnWriteArrayList<Dictionary> dictionaries = mDictionaries;
+        final ArrayList<ArrayList<SuggestedWordInfo>> suggestionsForWords =
+                new ArrayList<>(composedDataArray.length);
+        for (int i = 0; i < composedDataArray.length; ++i) {
+            suggestionsForWords.add(dictionaries.isEmpty() ? null
+                    : new ArrayList<SuggestedWordInfo>());
+        }
+        for (final Dictionary dictionary : dictionaries) {
+            final ArrayList<ArrayList<SuggestedWordInfo>> sugg =
+                    dictionary.getSuggestionsForWords(composedDataArray, ngramContexts,
+                            proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                            weightForLocale, inOutWeightsOfLangModelVsSpatialModel);
+            for (int i = 0; i < composedDataArray.length; ++i) {
+                if (null != sugg.get(i)) suggestionsForWords.get(i).addAll(sugg.get(i));
+            }
+        }
+        return suggestionsForWords;
+    }
+
+    @Override
+    public void updateValidityOfWords(final String[] words, final boolean[] inOutIsValid) {
+        for (final Dictionary dictionary : mDictionaries) {
+            dictionary.updateValidityOfWords(words, inOutIsValid);
+        }
+    }
+
     @Override
     public boolean isInDictionary(final String word) {
         for (int i = mDictionaries.size() - 1; i >= 0; --i)
@@ -115,14 +165,20 @@ public final class DictionaryCollection extends Dictionary {
     }
 
     @Override
-    public void close() {
+    public synchronized void close() {
+        mIsClosed = true;
         for (final Dictionary dict : mDictionaries)
             dict.close();
     }
 
-    // Warning: this is not thread-safe. Take necessary precaution when calling.
-    public void addDictionary(final Dictionary newDict) {
+    // This may be called while the collection is read or closed on other threads. A dictionary
+    // added after the collection was closed is closed instead.
+    public synchronized void addDictionary(final Dictionary newDict) {
         if (null == newDict) return;
+        if (mIsClosed) {
+            newDict.close();
+            return;
+        }
         if (mDictionaries.contains(newDict)) {
             Log.w(TAG, "This collection already contains this dictionary: " + newDict);
         }
@@ -17,7 +17,6 @@
 package com.android.inputmethod.latin;
 
 import android.content.Context;
-import android.util.LruCache;
 
 import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.keyboard.Keyboard;
@@ -55,18 +54,6 @@ public interface DictionaryFacilitator {
             Dictionary.TYPE_USER_HISTORY,
             Dictionary.TYPE_USER};
 
-    /**
-     * The facilitator will put words into the cache whenever it decodes them.
-     * @param cache
-     */
-    void setValidSpellingWordReadCache(final LruCache<String, Boolean> cache);
-
-    /**
-     * The facilitator will get words from the cache whenever it needs to check their spelling.
-     * @param cache
-     */
-    void setValidSpellingWordWriteCache(final LruCache<String, Boolean> cache);
-
     /**
      * Returns whether this facilitator is exactly for this locale.
      *
@@ -121,6 +108,26 @@ public interface DictionaryFacilitator {
             final String dictNamePrefix,
             @Nullable final DictionaryInitializationListener listener);
 
+    /**
+     * Same as {@link #resetDictionaries(Context, Locale, boolean, boolean, boolean, String,
+     * String, DictionaryInitializationListener)}, but also suggests words in other languages the
+     * user types in. The suggestions of the language the user is most probably typing in are
+     * favored, which changes as words of another language are committed.
+     *
+     * @param secondaryLocales the other languages, in order of preference. Only the first ones
+     * are used if there are too many.
+     */
+    void resetDictionaries(
+            final Context context,
+            final Locale newLocale,
+            final List<Locale> secondaryLocales,
+            final boolean useContactsDict,
+            final boolean usePersonalizedDicts,
+            final boolean forceReloadMainDictionary,
+            @Nullable final String account,
+            final String dictNamePrefix,
+            @Nullable final DictionaryInitializationListener listener);
+
     @UsedForTesting
     void resetDictionariesForTesting(
             final Context context,
@@ -162,8 +169,28 @@ public interface DictionaryFacilitator {
             final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
             final int inputStyle);
 
+    /**
+     * Batch version of {@link #getSuggestionResults} for several words, for example the words of
+     * a sentence. Each dictionary is queried once for the whole batch.
+     *
+     * @return the suggestion results, one per word.
+     */
+    @Nonnull List<SuggestionResults> getSuggestionResultsForWords(
+            final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+            @Nonnull final Keyboard keyboard,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
+            final int inputStyle);
+
     boolean isValidSpellingWord(final String word);
 
+    /**
+     * Batch version of {@link #isValidSpellingWord}. Each dictionary is queried once for the
+     * whole batch.
+     *
+     * @return whether each word is valid.
+     */
+    @Nonnull boolean[] isValidSpellingWords(final String[] words);
+
     boolean isValidSuggestionWord(final String word);
 
     boolean clearUserHistoryDictionary(final Context context);
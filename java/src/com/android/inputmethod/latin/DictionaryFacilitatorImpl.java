@@ -18,9 +18,9 @@ package com.android.inputmethod.latin;
 
 import android.Manifest;
 import android.content.Context;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.LruCache;
 
 import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.keyboard.Keyboard;
@@ -28,12 +28,14 @@ import com.android.inputmethod.latin.NgramContext.WordInfo;
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.common.ComposedData;
 import com.android.inputmethod.latin.common.Constants;
-import com.android.inputmethod.latin.common.StringUtils;
+import com.android.inputmethod.latin.define.ProductionFlags;
 import com.android.inputmethod.latin.permissions.PermissionsUtil;
 import com.android.inputmethod.latin.personalization.UserHistoryDictionary;
 import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
 import com.android.inputmethod.latin.utils.ExecutorUtils;
+import com.android.inputmethod.latin.utils.SuggestionCandidates;
 import com.android.inputmethod.latin.utils.SuggestionResults;
+import com.android.inputmethod.latin.utils.TaskLane;
 
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
@@ -45,9 +47,19 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -68,9 +80,29 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     // dictionary.
     private static final int CAPITALIZED_FORM_MAX_PROBABILITY_FOR_INSERT = 140;
 
-    private DictionaryGroup mDictionaryGroup = new DictionaryGroup();
+    // The default time budget for a whole parallel suggestion lookup. Dictionaries that have not
+    // answered by then are left out of the results of this query.
+    private static final long DEFAULT_PARALLEL_LOOKUP_DEADLINE_MILLIS = 200;
+
+    /**
+     * The maximum number of locales whose dictionaries are used at the same time.
+     */
+    public static final int MAX_DICTIONARY_GROUPS = 3;
+
+    // The number of words committed in a row in another language after which that language
+    // becomes the most probable one.
+    private static final int CONFIDENCE_TO_SWITCH_LANGUAGE = 2;
+    private static final int MAX_CONFIDENCE = 2 * CONFIDENCE_TO_SWITCH_LANGUAGE;
+
+    // The current dictionary groups, the first one being for the locale of the subtype. The
+    // queries acquire them with acquireDictionaryGroups() and the writers replace them with
+    // replaceDictionaryGroupsLocked().
+    private final AtomicReference<DictionaryGroup[]> mDictionaryGroups =
+            new AtomicReference<>(new DictionaryGroup[] { new DictionaryGroup() });
+    // The locale of the group the committed words are learned in.
+    private volatile Locale mMostProbableLocale;
     private volatile CountDownLatch mLatchForWaitingLoadingMainDictionaries = new CountDownLatch(0);
-    // To synchronize assigning mDictionaryGroup to ensure closing dictionaries.
+    // To serialize the writers of mDictionaryGroups, and to guard the confidence of the groups.
     private final Object mLock = new Object();
 
     public static final Map<String, Class<? extends ExpandableBinaryDictionary>>
@@ -86,22 +118,30 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     private static final Class<?>[] DICT_FACTORY_METHOD_ARG_TYPES =
             new Class[] { Context.class, Locale.class, File.class, String.class, String.class };
 
-    private LruCache<String, Boolean> mValidSpellingWordReadCache;
-    private LruCache<String, Boolean> mValidSpellingWordWriteCache;
-
-    @Override
-    public void setValidSpellingWordReadCache(final LruCache<String, Boolean> cache) {
-        mValidSpellingWordReadCache = cache;
-    }
+    private volatile boolean mIsParallelSuggestionLookupEnabled =
+            ProductionFlags.ENABLE_PARALLEL_SUGGESTION_LOOKUP;
+    private volatile long mParallelLookupDeadlineMillis = DEFAULT_PARALLEL_LOOKUP_DEADLINE_MILLIS;
+    // The candidates the dictionaries add their suggestions to, reused across lookups. Each
+    // lookup borrows its own, since the typing, gesture and spell checker lookups may run
+    // concurrently with the same session id.
+    private final ConcurrentLinkedQueue<SuggestionCandidates> mIdleSuggestionCandidates =
+            new ConcurrentLinkedQueue<>();
 
-    @Override
-    public void setValidSpellingWordWriteCache(final LruCache<String, Boolean> cache) {
-        mValidSpellingWordWriteCache = cache;
+    /**
+     * Enables or disables querying the dictionaries of the group concurrently for suggestions.
+     *
+     * @param enabled whether to query the dictionaries concurrently.
+     * @param deadlineMillis the time budget for a whole query, in milliseconds. The suggestions
+     * of dictionaries that have not answered in time are dropped for that query.
+     */
+    public void setParallelSuggestionLookup(final boolean enabled, final long deadlineMillis) {
+        mParallelLookupDeadlineMillis = deadlineMillis;
+        mIsParallelSuggestionLookupEnabled = enabled;
     }
 
     @Override
     public boolean isForLocale(final Locale locale) {
-        return locale != null && locale.equals(mDictionaryGroup.mLocale);
+        return locale != null && locale.equals(mDictionaryGroups.get()[0].mLocale);
     }
 
     /**
@@ -110,13 +150,18 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
      * @param account the account to test against.
      */
     public boolean isForAccount(@Nullable final String account) {
-        return TextUtils.equals(mDictionaryGroup.mAccount, account);
+        return TextUtils.equals(mDictionaryGroups.get()[0].mAccount, account);
     }
 
     /**
      * A group of dictionaries that work together for a single language.
+     *
+     * The dictionaries of a group don't change: replacing one publishes a new group. A group is
+     * reference counted so that the queries that are using it keep its dictionaries open. When a
+     * group is replaced, the dictionaries that are not in the new group are closed once the last
+     * query using the group releases it.
      */
-    private static class DictionaryGroup {
+    static class DictionaryGroup {
         // TODO: Add null analysis annotations.
         // TODO: Run evaluation to determine a reasonable value for these constants. The current
         // values are ad-hoc and chosen without any particular care or methodology.
@@ -134,16 +179,29 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
          */
         @Nullable public final String mAccount;
 
-        @Nullable private Dictionary mMainDict;
+        @Nullable private final Dictionary mMainDict;
         // Confidence that the most probable language is actually the language the user is
         // typing in. For now, this is simply the number of times a word from this language
-        // has been committed in a row.
+        // has been committed in a row. Guarded by the lock of the facilitator.
         private int mConfidence = 0;
 
-        public float mWeightForTypingInLocale = WEIGHT_FOR_MOST_PROBABLE_LANGUAGE;
-        public float mWeightForGesturingInLocale = WEIGHT_FOR_MOST_PROBABLE_LANGUAGE;
-        public final ConcurrentHashMap<String, ExpandableBinaryDictionary> mSubDictMap =
-                new ConcurrentHashMap<>();
+        public volatile float mWeightForTypingInLocale = WEIGHT_FOR_MOST_PROBABLE_LANGUAGE;
+        public volatile float mWeightForGesturingInLocale = WEIGHT_FOR_MOST_PROBABLE_LANGUAGE;
+        public final Map<String, ExpandableBinaryDictionary> mSubDictMap;
+        @Nullable private final String mValidWordCacheScope;
+
+        // One reference while the group is the current group, plus one per query using it.
+        private final AtomicInteger mReferenceCount = new AtomicInteger(1);
+        // The group that replaced this one. It is retained until this group is released so that
+        // the dictionaries they share stay open. Written before the reference of the current
+        // group is released, and read after the last reference is released.
+        @Nullable private DictionaryGroup mReplacement;
+        // Locks serializing the parallel lookups on a dictionary type for a given session id. A
+        // lookup that missed its deadline may still be using the traverse session of that session
+        // id, so the next lookup on the same dictionary must wait for it on the worker thread.
+        // Shared with the groups replacing this one for the same locale, which may share its
+        // dictionaries, and dropped with the last of them.
+        private final ConcurrentHashMap<Integer, Object[]> mParallelLookupLocks;
 
         public DictionaryGroup() {
             this(null /* locale */, null /* mainDict */, null /* account */,
@@ -154,28 +212,87 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
                 @Nullable final Dictionary mainDict,
                 @Nullable final String account,
                 final Map<String, ExpandableBinaryDictionary> subDicts) {
+            this(locale, mainDict, account, subDicts, null /* previousGroup */);
+        }
+
+        /**
+         * @param previousGroup the group for the same locale this group replaces and may share
+         * dictionaries with, or null.
+         */
+        public DictionaryGroup(@Nullable final Locale locale,
+                @Nullable final Dictionary mainDict,
+                @Nullable final String account,
+                final Map<String, ExpandableBinaryDictionary> subDicts,
+                @Nullable final DictionaryGroup previousGroup) {
             mLocale = locale;
             mAccount = account;
-            // The main dictionary can be asynchronously loaded.
-            setMainDict(mainDict);
+            mMainDict = mainDict;
+            final HashMap<String, ExpandableBinaryDictionary> subDictMap = new HashMap<>();
             for (final Map.Entry<String, ExpandableBinaryDictionary> entry : subDicts.entrySet()) {
-                setSubDict(entry.getKey(), entry.getValue());
+                if (entry.getValue() != null) {
+                    subDictMap.put(entry.getKey(), entry.getValue());
+                }
             }
+            mSubDictMap = Collections.unmodifiableMap(subDictMap);
+            mValidWordCacheScope = newValidWordCacheScope(locale, subDictMap.keySet());
+            mParallelLookupLocks = previousGroup != null ? previousGroup.mParallelLookupLocks
+                    : new ConcurrentHashMap<Integer, Object[]>();
         }
 
-        private void setSubDict(final String dictType, final ExpandableBinaryDictionary dict) {
-            if (dict != null) {
-                mSubDictMap.put(dictType, dict);
+        // The user history doesn't make words valid, so the groups with the same other kinds of
+        // dictionaries share the validity of their words.
+        @Nullable
+        private static String newValidWordCacheScope(@Nullable final Locale locale,
+                final Set<String> subDictTypes) {
+            if (locale == null) {
+                return null;
             }
+            final StringBuilder scope = new StringBuilder(locale.toString());
+            for (final String dictType : ALL_DICTIONARY_TYPES) {
+                if (!Dictionary.TYPE_USER_HISTORY.equals(dictType)
+                        && subDictTypes.contains(dictType)) {
+                    scope.append(':').append(dictType);
+                }
+            }
+            return scope.toString();
         }
 
-        public void setMainDict(final Dictionary mainDict) {
-            // Close old dictionary if exists. Main dictionary can be assigned multiple times.
-            final Dictionary oldDict = mMainDict;
-            mMainDict = mainDict;
-            if (oldDict != null && mainDict != oldDict) {
-                oldDict.close();
+        /**
+         * Returns the scope of the validity of the words of the group in the
+         * {@link ValidWordCache}, or null if it must not be cached because the main dictionary
+         * is not loaded yet.
+         */
+        @Nullable
+        public String getValidWordCacheScope() {
+            if (mMainDict == null || !mMainDict.isInitialized()) {
+                return null;
             }
+            return mValidWordCacheScope;
+        }
+
+        /**
+         * Returns a copy of this group with another main dictionary. The main dictionary can be
+         * asynchronously loaded.
+         */
+        public DictionaryGroup withMainDict(@Nullable final Dictionary mainDict) {
+            final DictionaryGroup dictionaryGroup =
+                    new DictionaryGroup(mLocale, mainDict, mAccount, mSubDictMap, this);
+            dictionaryGroup.mConfidence = mConfidence;
+            dictionaryGroup.mWeightForTypingInLocale = mWeightForTypingInLocale;
+            dictionaryGroup.mWeightForGesturingInLocale = mWeightForGesturingInLocale;
+            return dictionaryGroup;
+        }
+
+        /**
+         * Sets the weights of the suggestions of the group, which favor the most probable
+         * language.
+         */
+        public void setIsMostProbableLanguage(final boolean isMostProbableLanguage) {
+            mWeightForTypingInLocale = isMostProbableLanguage ? WEIGHT_FOR_MOST_PROBABLE_LANGUAGE
+                    : WEIGHT_FOR_TYPING_IN_NOT_MOST_PROBABLE_LANGUAGE;
+            mWeightForGesturingInLocale = isMostProbableLanguage
+                    ? WEIGHT_FOR_MOST_PROBABLE_LANGUAGE
+                    : WEIGHT_FOR_GESTURING_IN_NOT_MOST_PROBABLE_LANGUAGE;
         }
 
         public Dictionary getDict(final String dictType) {
@@ -203,17 +320,84 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             return mSubDictMap.containsKey(dictType);
         }
 
-        public void closeDict(final String dictType) {
-            final Dictionary dict;
-            if (Dictionary.TYPE_MAIN.equals(dictType)) {
-                dict = mMainDict;
-            } else {
-                dict = mSubDictMap.remove(dictType);
+        /**
+         * Returns the locks serializing the parallel lookups for a session id, one per type in
+         * {@link DictionaryFacilitatorImpl#ALL_DICTIONARY_TYPES}.
+         */
+        public Object[] getParallelLookupLocks(final int sessionId) {
+            final Object[] locks = mParallelLookupLocks.get(sessionId);
+            if (locks != null) {
+                return locks;
+            }
+            final Object[] newLocks = new Object[ALL_DICTIONARY_TYPES.length];
+            for (int i = 0; i < newLocks.length; i++) {
+                newLocks[i] = new Object();
+            }
+            final Object[] existingLocks = mParallelLookupLocks.putIfAbsent(sessionId, newLocks);
+            return existingLocks != null ? existingLocks : newLocks;
+        }
+
+        private boolean containsDict(@Nonnull final Dictionary dict) {
+            return dict == mMainDict || mSubDictMap.containsValue(dict);
+        }
+
+        /**
+         * Adds a reference to the group unless it has already been released for good.
+         *
+         * @return whether the reference was added.
+         */
+        public boolean tryRetain() {
+            while (true) {
+                final int referenceCount = mReferenceCount.get();
+                if (referenceCount <= 0) {
+                    return false;
+                }
+                if (mReferenceCount.compareAndSet(referenceCount, referenceCount + 1)) {
+                    return true;
+                }
             }
-            if (dict != null) {
-                dict.close();
+        }
+
+        /**
+         * Adds a reference to the group. The caller must already hold one.
+         */
+        public void retain() {
+            mReferenceCount.incrementAndGet();
+        }
+
+        /**
+         * Removes a reference to the group. The dictionaries of a replaced group that are not in
+         * its replacement are closed when the last reference is removed.
+         */
+        public void release() {
+            if (mReferenceCount.decrementAndGet() != 0) {
+                return;
+            }
+            final DictionaryGroup replacement = mReplacement;
+            if (mMainDict != null
+                    && (replacement == null || !replacement.containsDict(mMainDict))) {
+                mMainDict.close();
+            }
+            for (final ExpandableBinaryDictionary subDict : mSubDictMap.values()) {
+                if (replacement == null || !replacement.containsDict(subDict)) {
+                    subDict.close();
+                }
+            }
+            if (replacement != null) {
+                replacement.release();
             }
         }
+
+        /**
+         * Removes the reference of the current group once the group has been replaced.
+         *
+         * @param replacement the current group, which must not have been replaced yet.
+         */
+        public void retire(@Nonnull final DictionaryGroup replacement) {
+            replacement.retain();
+            mReplacement = replacement;
+            release();
+        }
     }
 
     public DictionaryFacilitatorImpl() {
@@ -229,17 +413,83 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
 
     @Override
     public boolean isActive() {
-        return mDictionaryGroup.mLocale != null;
+        return mDictionaryGroups.get()[0].mLocale != null;
     }
 
     @Override
     public Locale getLocale() {
-        return mDictionaryGroup.mLocale;
+        return mDictionaryGroups.get()[0].mLocale;
     }
 
     @Override
     public boolean usesContacts() {
-        return mDictionaryGroup.getSubDict(Dictionary.TYPE_CONTACTS) != null;
+        return mDictionaryGroups.get()[0].getSubDict(Dictionary.TYPE_CONTACTS) != null;
+    }
+
+    /**
+     * Returns the current dictionary groups with a reference to each of them, which the caller
+     * must release with {@link #releaseDictionaryGroups} once done with their dictionaries.
+     */
+    @Nonnull
+    private DictionaryGroup[] acquireDictionaryGroups() {
+        while (true) {
+            final DictionaryGroup[] dictionaryGroups = mDictionaryGroups.get();
+            int retainedCount = 0;
+            while (retainedCount < dictionaryGroups.length
+                    && dictionaryGroups[retainedCount].tryRetain()) {
+                ++retainedCount;
+            }
+            if (retainedCount == dictionaryGroups.length) {
+                return dictionaryGroups;
+            }
+            // A group has been replaced and released since the groups were read; read the new
+            // ones.
+            for (int i = 0; i < retainedCount; ++i) {
+                dictionaryGroups[i].release();
+            }
+        }
+    }
+
+    private static void releaseDictionaryGroups(@Nonnull final DictionaryGroup[] dictionaryGroups) {
+        for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+            dictionaryGroup.release();
+        }
+    }
+
+    /**
+     * Makes groups the current groups. The dictionaries of a previous group that are not in the
+     * new group for the same locale are closed once the queries using it are done.
+     */
+    private void replaceDictionaryGroupsLocked(
+            @Nonnull final DictionaryGroup[] newDictionaryGroups) {
+        final DictionaryGroup[] oldDictionaryGroups =
+                mDictionaryGroups.getAndSet(newDictionaryGroups);
+        for (final DictionaryGroup oldDictionaryGroup : oldDictionaryGroups) {
+            boolean isKept = false;
+            for (final DictionaryGroup newDictionaryGroup : newDictionaryGroups) {
+                isKept |= (newDictionaryGroup == oldDictionaryGroup);
+            }
+            if (isKept) {
+                continue;
+            }
+            final DictionaryGroup replacement = findDictionaryGroupWithLocale(
+                    newDictionaryGroups, oldDictionaryGroup.mLocale);
+            oldDictionaryGroup.retire(replacement != null ? replacement : new DictionaryGroup());
+        }
+    }
+
+    /**
+     * Replaces one of the current groups.
+     */
+    private void replaceDictionaryGroupLocked(@Nonnull final DictionaryGroup oldDictionaryGroup,
+            @Nonnull final DictionaryGroup newDictionaryGroup) {
+        final DictionaryGroup[] newDictionaryGroups = mDictionaryGroups.get().clone();
+        for (int i = 0; i < newDictionaryGroups.length; ++i) {
+            if (newDictionaryGroups[i] == oldDictionaryGroup) {
+                newDictionaryGroups[i] = newDictionaryGroup;
+            }
+        }
+        replaceDictionaryGroupsLocked(newDictionaryGroups);
     }
 
     @Override
@@ -270,9 +520,17 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     }
 
     @Nullable
-    static DictionaryGroup findDictionaryGroupWithLocale(final DictionaryGroup dictionaryGroup,
-            final Locale locale) {
-        return locale.equals(dictionaryGroup.mLocale) ? dictionaryGroup : null;
+    static DictionaryGroup findDictionaryGroupWithLocale(final DictionaryGroup[] dictionaryGroups,
+            @Nullable final Locale locale) {
+        if (locale == null) {
+            return null;
+        }
+        for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+            if (locale.equals(dictionaryGroup.mLocale)) {
+                return dictionaryGroup;
+            }
+        }
+        return null;
     }
 
     @Override
@@ -285,7 +543,22 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             @Nullable final String account,
             final String dictNamePrefix,
             @Nullable final DictionaryInitializationListener listener) {
-        final HashMap<Locale, ArrayList<String>> existingDictionariesToCleanup = new HashMap<>();
+        resetDictionaries(context, newLocale, Collections.<Locale>emptyList(), useContactsDict,
+                usePersonalizedDicts, forceReloadMainDictionary, account, dictNamePrefix,
+                listener);
+    }
+
+    @Override
+    public void resetDictionaries(
+            final Context context,
+            final Locale newLocale,
+            final List<Locale> secondaryLocales,
+            final boolean useContactsDict,
+            final boolean usePersonalizedDicts,
+            final boolean forceReloadMainDictionary,
+            @Nullable final String account,
+            final String dictNamePrefix,
+            @Nullable final DictionaryInitializationListener listener) {
         // TODO: Make subDictTypesToUse configurable by resource or a static final list.
         final HashSet<String> subDictTypesToUse = new HashSet<>();
         subDictTypesToUse.add(Dictionary.TYPE_USER);
@@ -299,27 +572,61 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         if (usePersonalizedDicts) {
             subDictTypesToUse.add(Dictionary.TYPE_USER_HISTORY);
         }
+        // The user and contacts dictionaries don't depend on the language, so the other locales
+        // only have their main dictionary and the history of the words committed in them.
+        final HashSet<String> secondarySubDictTypesToUse = new HashSet<>();
+        if (usePersonalizedDicts) {
+            secondarySubDictTypesToUse.add(Dictionary.TYPE_USER_HISTORY);
+        }
 
-        // Gather all dictionaries. We'll remove them from the list to clean up later.
-        final ArrayList<String> dictTypeForLocale = new ArrayList<>();
-        existingDictionariesToCleanup.put(newLocale, dictTypeForLocale);
-        final DictionaryGroup currentDictionaryGroupForLocale =
-                findDictionaryGroupWithLocale(mDictionaryGroup, newLocale);
-        if (currentDictionaryGroupForLocale != null) {
-            for (final String dictType : DYNAMIC_DICTIONARY_TYPES) {
-                if (currentDictionaryGroupForLocale.hasDict(dictType, account)) {
-                    dictTypeForLocale.add(dictType);
-                }
+        final ArrayList<Locale> locales = new ArrayList<>();
+        locales.add(newLocale);
+        for (final Locale locale : secondaryLocales) {
+            if (locales.size() >= MAX_DICTIONARY_GROUPS) {
+                break;
             }
-            if (currentDictionaryGroupForLocale.hasDict(Dictionary.TYPE_MAIN, account)) {
-                dictTypeForLocale.add(Dictionary.TYPE_MAIN);
+            if (locale != null && !locales.contains(locale)) {
+                locales.add(locale);
+            }
+        }
+
+        // The dictionaries of the current groups that are not reused are closed when they are
+        // replaced.
+        final DictionaryGroup[] currentDictionaryGroups = mDictionaryGroups.get();
+        final DictionaryGroup[] newDictionaryGroups = new DictionaryGroup[locales.size()];
+        for (int i = 0; i < newDictionaryGroups.length; ++i) {
+            final Locale locale = locales.get(i);
+            newDictionaryGroups[i] = newDictionaryGroup(context, locale,
+                    findDictionaryGroupWithLocale(currentDictionaryGroups, locale),
+                    i == 0 ? subDictTypesToUse : secondarySubDictTypesToUse,
+                    forceReloadMainDictionary, account, dictNamePrefix);
+            // The language of the subtype is the most probable one until the user commits words
+            // in another language.
+            newDictionaryGroups[i].setIsMostProbableLanguage(i == 0);
+        }
+
+        // Replace Dictionaries.
+        synchronized (mLock) {
+            replaceDictionaryGroupsLocked(newDictionaryGroups);
+            mMostProbableLocale = newLocale;
+            if (hasAtLeastOneUninitializedMainDictionary()) {
+                asyncReloadUninitializedMainDictionaries(context, forceReloadMainDictionary,
+                        listener);
             }
         }
+        if (listener != null) {
+            listener.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary());
+        }
+    }
 
-        final DictionaryGroup dictionaryGroupForLocale =
-                findDictionaryGroupWithLocale(mDictionaryGroup, newLocale);
-        final ArrayList<String> dictTypesToCleanupForLocale =
-                existingDictionariesToCleanup.get(newLocale);
+    /**
+     * Creates a group for a locale, reusing the dictionaries of the existing group for that
+     * locale if any. The main dictionary is loaded asynchronously if it is not reused.
+     */
+    private static DictionaryGroup newDictionaryGroup(final Context context, final Locale locale,
+            @Nullable final DictionaryGroup dictionaryGroupForLocale,
+            final HashSet<String> subDictTypesToUse, final boolean forceReloadMainDictionary,
+            @Nullable final String account, final String dictNamePrefix) {
         final boolean noExistingDictsForThisLocale = (null == dictionaryGroupForLocale);
 
         final Dictionary mainDict;
@@ -328,7 +635,6 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             mainDict = null;
         } else {
             mainDict = dictionaryGroupForLocale.getDict(Dictionary.TYPE_MAIN);
-            dictTypesToCleanupForLocale.remove(Dictionary.TYPE_MAIN);
         }
 
         final Map<String, ExpandableBinaryDictionary> subDicts = new HashMap<>();
@@ -337,84 +643,124 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             if (noExistingDictsForThisLocale
                     || !dictionaryGroupForLocale.hasDict(subDictType, account)) {
                 // Create a new dictionary.
-                subDict = getSubDict(subDictType, context, newLocale, null /* dictFile */,
+                subDict = getSubDict(subDictType, context, locale, null /* dictFile */,
                         dictNamePrefix, account);
             } else {
-                // Reuse the existing dictionary, and don't close it at the end
+                // Reuse the existing dictionary, which is kept open by the new group.
                 subDict = dictionaryGroupForLocale.getSubDict(subDictType);
-                dictTypesToCleanupForLocale.remove(subDictType);
             }
             subDicts.put(subDictType, subDict);
         }
-        DictionaryGroup newDictionaryGroup =
-                new DictionaryGroup(newLocale, mainDict, account, subDicts);
-
-        // Replace Dictionaries.
-        final DictionaryGroup oldDictionaryGroup;
-        synchronized (mLock) {
-            oldDictionaryGroup = mDictionaryGroup;
-            mDictionaryGroup = newDictionaryGroup;
-            if (hasAtLeastOneUninitializedMainDictionary()) {
-                asyncReloadUninitializedMainDictionaries(context, newLocale, listener);
-            }
-        }
-        if (listener != null) {
-            listener.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary());
-        }
-
-        // Clean up old dictionaries.
-        for (final Locale localeToCleanUp : existingDictionariesToCleanup.keySet()) {
-            final ArrayList<String> dictTypesToCleanUp =
-                    existingDictionariesToCleanup.get(localeToCleanUp);
-            final DictionaryGroup dictionarySetToCleanup =
-                    findDictionaryGroupWithLocale(oldDictionaryGroup, localeToCleanUp);
-            for (final String dictType : dictTypesToCleanUp) {
-                dictionarySetToCleanup.closeDict(dictType);
-            }
-        }
-
-        if (mValidSpellingWordWriteCache != null) {
-            mValidSpellingWordWriteCache.evictAll();
-        }
+        return new DictionaryGroup(locale, mainDict, account, subDicts,
+                dictionaryGroupForLocale);
     }
 
     private void asyncReloadUninitializedMainDictionaries(final Context context,
-            final Locale locale, final DictionaryInitializationListener listener) {
+            final boolean forceReload, final DictionaryInitializationListener listener) {
         final CountDownLatch latchForWaitingLoadingMainDictionary = new CountDownLatch(1);
         mLatchForWaitingLoadingMainDictionaries = latchForWaitingLoadingMainDictionary;
-        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
-            @Override
-            public void run() {
-                doReloadUninitializedMainDictionaries(
-                        context, locale, listener, latchForWaitingLoadingMainDictionary);
-            }
-        });
+        // Loading the main dictionary comes before the maintenance of the other dictionaries.
+        ExecutorUtils.getTaskLane(ExecutorUtils.DICTIONARY_IO).execute(this,
+                TaskLane.PRIORITY_HIGH, new Runnable() {
+                    @Override
+                    public void run() {
+                        doReloadUninitializedMainDictionaries(context, forceReload, listener,
+                                latchForWaitingLoadingMainDictionary);
+                    }
+                });
     }
 
-    void doReloadUninitializedMainDictionaries(final Context context, final Locale locale,
+    void doReloadUninitializedMainDictionaries(final Context context, final boolean forceReload,
             final DictionaryInitializationListener listener,
             final CountDownLatch latchForWaitingLoadingMainDictionary) {
-        final DictionaryGroup dictionaryGroup =
-                findDictionaryGroupWithLocale(mDictionaryGroup, locale);
-        if (null == dictionaryGroup) {
-            // This should never happen, but better safe than crashy
-            Log.w(TAG, "Expected a dictionary group for " + locale + " but none found");
-            return;
+        // The groups are in order of priority, the locale of the subtype coming first.
+        for (final DictionaryGroup dictionaryGroup : mDictionaryGroups.get()) {
+            final Dictionary mainDict = dictionaryGroup.getDict(Dictionary.TYPE_MAIN);
+            if (dictionaryGroup.mLocale == null || (mainDict != null && mainDict.isInitialized())) {
+                continue;
+            }
+            if (!reloadMainDictionary(context, dictionaryGroup.mLocale, forceReload, listener)) {
+                break;
+            }
+        }
+        latchForWaitingLoadingMainDictionary.countDown();
+    }
+
+    /**
+     * Sets the main dictionary of the group for a locale, from the dictionary shared with the
+     * other facilitators if there is one, or else from the word lists of the locale.
+     *
+     * @return false if the loading was interrupted.
+     */
+    private boolean reloadMainDictionary(final Context context, final Locale locale,
+            final boolean forceReload, final DictionaryInitializationListener listener) {
+        final Dictionary sharedMainDict =
+                forceReload ? null : SharedMainDictionaries.acquire(locale);
+        if (sharedMainDict != null) {
+            if (!setMainDictionary(locale, sharedMainDict)) {
+                sharedMainDict.close();
+            }
+            if (listener != null) {
+                listener.onUpdateMainDictionaryAvailability(
+                        hasAtLeastOneInitializedMainDictionary());
+            }
+            return true;
+        }
+        // The word lists are opened in parallel, and the main dictionary is used as soon as the
+        // first one is ready. They are not opened on the suggestion executor, so that the lookups
+        // don't wait for them.
+        final MainDictionaryLoad mainDictionaryLoad =
+                DictionaryFactory.loadMainDictionaryFromManager(context, locale,
+                        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.WORD_LIST_IO));
+        try {
+            mainDictionaryLoad.awaitFirstWordList();
+        } catch (final InterruptedException e) {
+            Log.e(TAG, "Interrupted while loading the main dictionary for " + locale, e);
+            mainDictionaryLoad.cancel();
+            return false;
         }
-        final Dictionary mainDict =
-                DictionaryFactory.createMainDictionaryFromManager(context, locale);
         synchronized (mLock) {
-            if (locale.equals(dictionaryGroup.mLocale)) {
-                dictionaryGroup.setMainDict(mainDict);
+            if (null != findDictionaryGroupWithLocale(mDictionaryGroups.get(), locale)) {
+                setMainDictionary(locale, SharedMainDictionaries.share(locale,
+                        mainDictionaryLoad.getDictionaryCollection()));
             } else {
-                // Dictionary facilitator has been reset for another locale.
-                mainDict.close();
+                // Dictionary facilitator has been reset for other locales.
+                mainDictionaryLoad.cancel();
             }
         }
         if (listener != null) {
             listener.onUpdateMainDictionaryAvailability(hasAtLeastOneInitializedMainDictionary());
         }
-        latchForWaitingLoadingMainDictionary.countDown();
+        try {
+            // The main dictionary is fully loaded once all the word lists are opened.
+            mainDictionaryLoad.awaitAllWordLists();
+        } catch (final InterruptedException e) {
+            Log.e(TAG, "Interrupted while loading the main dictionary for " + locale, e);
+            return false;
+        }
+        // Words looked up before the other word lists joined the collection may have been cached
+        // as invalid.
+        ValidWordCache.getInstance().invalidateAll();
+        return true;
+    }
+
+    /**
+     * Replaces the group for a locale with one using the specified main dictionary.
+     *
+     * @return false if there is no group for the locale anymore.
+     */
+    private boolean setMainDictionary(final Locale locale, final Dictionary mainDict) {
+        synchronized (mLock) {
+            final DictionaryGroup dictionaryGroup =
+                    findDictionaryGroupWithLocale(mDictionaryGroups.get(), locale);
+            if (dictionaryGroup == null) {
+                return false;
+            }
+            replaceDictionaryGroupLocked(dictionaryGroup, dictionaryGroup.withMainDict(mainDict));
+            // The validity of the words may have been cached with a former main dictionary.
+            ValidWordCache.getInstance().invalidateAll();
+            return true;
+        }
     }
 
     @UsedForTesting
@@ -445,39 +791,56 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
                 subDicts.put(dictType, dict);
             }
         }
-        mDictionaryGroup = new DictionaryGroup(locale, mainDictionary, account, subDicts);
+        synchronized (mLock) {
+            replaceDictionaryGroupsLocked(new DictionaryGroup[] {
+                    new DictionaryGroup(locale, mainDictionary, account, subDicts) });
+            mMostProbableLocale = locale;
+        }
+    }
+
+    @UsedForTesting
+    void resetDictionaryGroupsForTesting(@Nonnull final DictionaryGroup[] dictionaryGroups) {
+        synchronized (mLock) {
+            replaceDictionaryGroupsLocked(dictionaryGroups);
+            mMostProbableLocale = dictionaryGroups[0].mLocale;
+        }
     }
 
     public void closeDictionaries() {
-        final DictionaryGroup dictionaryGroupToClose;
+        // The dictionaries are closed once the queries using them are done.
         synchronized (mLock) {
-            dictionaryGroupToClose = mDictionaryGroup;
-            mDictionaryGroup = new DictionaryGroup();
+            replaceDictionaryGroupsLocked(new DictionaryGroup[] { new DictionaryGroup() });
+            mMostProbableLocale = null;
         }
-        for (final String dictType : ALL_DICTIONARY_TYPES) {
-            dictionaryGroupToClose.closeDict(dictType);
+        // The main dictionaries that haven't started loading would be closed right away.
+        if (ExecutorUtils.getTaskLane(ExecutorUtils.DICTIONARY_IO).cancelTasks(this) > 0) {
+            mLatchForWaitingLoadingMainDictionaries.countDown();
         }
     }
 
     @UsedForTesting
     public ExpandableBinaryDictionary getSubDictForTesting(final String dictName) {
-        return mDictionaryGroup.getSubDict(dictName);
+        return mDictionaryGroups.get()[0].getSubDict(dictName);
     }
 
     // The main dictionaries are loaded asynchronously.  Don't cache the return value
     // of these methods.
     public boolean hasAtLeastOneInitializedMainDictionary() {
-        final Dictionary mainDict = mDictionaryGroup.getDict(Dictionary.TYPE_MAIN);
-        if (mainDict != null && mainDict.isInitialized()) {
-            return true;
+        for (final DictionaryGroup dictionaryGroup : mDictionaryGroups.get()) {
+            final Dictionary mainDict = dictionaryGroup.getDict(Dictionary.TYPE_MAIN);
+            if (mainDict != null && mainDict.isInitialized()) {
+                return true;
+            }
         }
         return false;
     }
 
     public boolean hasAtLeastOneUninitializedMainDictionary() {
-        final Dictionary mainDict = mDictionaryGroup.getDict(Dictionary.TYPE_MAIN);
-        if (mainDict == null || !mainDict.isInitialized()) {
-            return true;
+        for (final DictionaryGroup dictionaryGroup : mDictionaryGroups.get()) {
+            final Dictionary mainDict = dictionaryGroup.getDict(Dictionary.TYPE_MAIN);
+            if (mainDict == null || !mainDict.isInitialized()) {
+                return true;
+            }
         }
         return false;
     }
@@ -491,52 +854,111 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     public void waitForLoadingDictionariesForTesting(final long timeout, final TimeUnit unit)
             throws InterruptedException {
         waitForLoadingMainDictionaries(timeout, unit);
-        for (final ExpandableBinaryDictionary dict : mDictionaryGroup.mSubDictMap.values()) {
-            dict.waitAllTasksForTests();
+        for (final DictionaryGroup dictionaryGroup : mDictionaryGroups.get()) {
+            for (final ExpandableBinaryDictionary dict : dictionaryGroup.mSubDictMap.values()) {
+                dict.waitAllTasksForTests();
+            }
         }
     }
 
     public void addToUserHistory(final String suggestion, final boolean wasAutoCapitalized,
             @Nonnull final NgramContext ngramContext, final long timeStampInSeconds,
             final boolean blockPotentiallyOffensive) {
-        // Update the spelling cache before learning. Words that are not yet added to user history
-        // and appear in no other language model are not considered valid.
-        putWordIntoValidSpellingWordCache("addToUserHistory", suggestion);
-
         final String[] words = suggestion.split(Constants.WORD_SEPARATOR);
         NgramContext ngramContextForCurrentWord = ngramContext;
-        for (int i = 0; i < words.length; i++) {
-            final String currentWord = words[i];
-            final boolean wasCurrentWordAutoCapitalized = (i == 0) ? wasAutoCapitalized : false;
-            addWordToUserHistory(mDictionaryGroup, ngramContextForCurrentWord, currentWord,
-                    wasCurrentWordAutoCapitalized, (int) timeStampInSeconds,
-                    blockPotentiallyOffensive);
-            ngramContextForCurrentWord =
-                    ngramContextForCurrentWord.getNextNgramContext(new WordInfo(currentWord));
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            // The words are learned in the language the user is most probably typing in.
+            final DictionaryGroup dictionaryGroup = findDictionaryGroupWithLocale(
+                    dictionaryGroups, updateMostProbableLocale(dictionaryGroups, words));
+            if (dictionaryGroup == null) {
+                return;
+            }
+            for (int i = 0; i < words.length; i++) {
+                final String currentWord = words[i];
+                final boolean wasCurrentWordAutoCapitalized =
+                        (i == 0) ? wasAutoCapitalized : false;
+                addWordToUserHistory(dictionaryGroup, ngramContextForCurrentWord, currentWord,
+                        wasCurrentWordAutoCapitalized, (int) timeStampInSeconds,
+                        blockPotentiallyOffensive);
+                ngramContextForCurrentWord =
+                        ngramContextForCurrentWord.getNextNgramContext(new WordInfo(currentWord));
+            }
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
         }
     }
 
-    private void putWordIntoValidSpellingWordCache(
-            @Nonnull final String caller,
-            @Nonnull final String originalWord) {
-        if (mValidSpellingWordWriteCache == null) {
-            return;
+    /**
+     * Updates the confidence of each language with the committed words, and switches the most
+     * probable language to another one once enough words have been committed in a row in it.
+     *
+     * The words are looked up in the acquired groups without holding the lock, which only guards
+     * the update of the confidences.
+     *
+     * @param dictionaryGroups the dictionary groups acquired by the caller.
+     * @return the locale of the most probable language.
+     */
+    @Nullable
+    private Locale updateMostProbableLocale(@Nonnull final DictionaryGroup[] dictionaryGroups,
+            final String[] words) {
+        if (dictionaryGroups.length < 2) {
+            return dictionaryGroups[0].mLocale;
         }
-
-        final String lowerCaseWord = originalWord.toLowerCase(getLocale());
-        final boolean lowerCaseValid = isValidSpellingWord(lowerCaseWord);
-        mValidSpellingWordWriteCache.put(lowerCaseWord, lowerCaseValid);
-
-        final String capitalWord =
-                StringUtils.capitalizeFirstAndDowncaseRest(originalWord, getLocale());
-        final boolean capitalValid;
-        if (lowerCaseValid) {
-            // The lower case form of the word is valid, so the upper case must be valid.
-            capitalValid = true;
-        } else {
-            capitalValid = isValidSpellingWord(capitalWord);
+        final boolean[] hasMainDict = new boolean[dictionaryGroups.length];
+        final boolean[] areAllWordsValid = new boolean[dictionaryGroups.length];
+        for (int i = 0; i < dictionaryGroups.length; ++i) {
+            final DictionaryGroup dictionaryGroup = dictionaryGroups[i];
+            final Dictionary mainDict = dictionaryGroup.getDict(Dictionary.TYPE_MAIN);
+            if (mainDict == null || !mainDict.isInitialized()) {
+                continue;
+            }
+            hasMainDict[i] = true;
+            areAllWordsValid[i] = true;
+            for (final String word : words) {
+                areAllWordsValid[i] &= mainDict.isValidWord(word)
+                        || mainDict.isValidWord(word.toLowerCase(dictionaryGroup.mLocale));
+            }
+        }
+        synchronized (mLock) {
+            if (mDictionaryGroups.get() != dictionaryGroups) {
+                // The groups have been replaced since they were acquired, and the new ones carry
+                // the confidences they had then. Leave them as they are for this commit.
+                return mMostProbableLocale;
+            }
+            DictionaryGroup mostProbableDictionaryGroup =
+                    findDictionaryGroupWithLocale(dictionaryGroups, mMostProbableLocale);
+            if (mostProbableDictionaryGroup == null) {
+                mostProbableDictionaryGroup = dictionaryGroups[0];
+            }
+            DictionaryGroup mostConfidentDictionaryGroup = mostProbableDictionaryGroup;
+            for (int i = 0; i < dictionaryGroups.length; ++i) {
+                if (!hasMainDict[i]) {
+                    continue;
+                }
+                final DictionaryGroup dictionaryGroup = dictionaryGroups[i];
+                if (areAllWordsValid[i]) {
+                    dictionaryGroup.mConfidence =
+                            Math.min(dictionaryGroup.mConfidence + 1, MAX_CONFIDENCE);
+                } else {
+                    dictionaryGroup.mConfidence = 0;
+                }
+                if (dictionaryGroup.mConfidence > mostConfidentDictionaryGroup.mConfidence) {
+                    mostConfidentDictionaryGroup = dictionaryGroup;
+                }
+            }
+            if (mostConfidentDictionaryGroup != mostProbableDictionaryGroup
+                    && mostConfidentDictionaryGroup.mConfidence
+                            >= CONFIDENCE_TO_SWITCH_LANGUAGE) {
+                mostProbableDictionaryGroup = mostConfidentDictionaryGroup;
+            }
+            for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+                dictionaryGroup.setIsMostProbableLanguage(
+                        mostProbableDictionaryGroup.mLocale.equals(dictionaryGroup.mLocale));
+            }
+            mMostProbableLocale = mostProbableDictionaryGroup.mLocale;
+            return mostProbableDictionaryGroup.mLocale;
         }
-        mValidSpellingWordWriteCache.put(capitalWord, capitalValid);
     }
 
     private void addWordToUserHistory(final DictionaryGroup dictionaryGroup,
@@ -544,17 +966,19 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
             final int timeStampInSeconds, final boolean blockPotentiallyOffensive) {
         final ExpandableBinaryDictionary userHistoryDictionary =
                 dictionaryGroup.getSubDict(Dictionary.TYPE_USER_HISTORY);
-        if (userHistoryDictionary == null || !isForLocale(userHistoryDictionary.mLocale)) {
+        if (userHistoryDictionary == null
+                || !userHistoryDictionary.mLocale.equals(dictionaryGroup.mLocale)) {
             return;
         }
-        final int maxFreq = getFrequency(word);
+        final int maxFreq = getFrequency(dictionaryGroup, word);
         if (maxFreq == 0 && blockPotentiallyOffensive) {
             return;
         }
         final String lowerCasedWord = word.toLowerCase(dictionaryGroup.mLocale);
         final String secondWord;
         if (wasAutoCapitalized) {
-            if (isValidSuggestionWord(word) && !isValidSuggestionWord(lowerCasedWord)) {
+            if (isValidWord(dictionaryGroup, word, ALL_DICTIONARY_TYPES)
+                    && !isValidWord(dictionaryGroup, lowerCasedWord, ALL_DICTIONARY_TYPES)) {
                 // If the word was auto-capitalized and exists only as a capitalized word in the
                 // dictionary, then we must not downcase it before registering it. For example,
                 // the name of the contacts in start-of-sentence position would come here with the
@@ -591,9 +1015,16 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     }
 
     private void removeWord(final String dictName, final String word) {
-        final ExpandableBinaryDictionary dictionary = mDictionaryGroup.getSubDict(dictName);
-        if (dictionary != null) {
-            dictionary.removeUnigramEntryDynamically(word);
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+                final ExpandableBinaryDictionary dictionary = dictionaryGroup.getSubDict(dictName);
+                if (dictionary != null) {
+                    dictionary.removeUnigramEntryDynamically(word);
+                }
+            }
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
         }
     }
 
@@ -605,10 +1036,6 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         if (eventType != Constants.EVENT_BACKSPACE) {
             removeWord(Dictionary.TYPE_USER_HISTORY, word);
         }
-
-        // Update the spelling cache after unlearning. Words that are removed from user history
-        // and appear in no other language model are not considered valid.
-        putWordIntoValidSpellingWordCache("unlearnFromUserHistory", word.toLowerCase());
     }
 
     // TODO: Revise the way to fusion suggestion results.
@@ -621,51 +1048,416 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         final SuggestionResults suggestionResults = new SuggestionResults(
                 SuggestedWords.MAX_SUGGESTIONS, ngramContext.isBeginningOfSentenceContext(),
                 false /* firstSuggestionExceedsConfidenceThreshold */);
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            if (mIsParallelSuggestionLookupEnabled) {
+                addSuggestionsInParallel(dictionaryGroups, composedData, ngramContext,
+                        proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                        suggestionResults);
+            } else {
+                addSuggestionResults(dictionaryGroups, composedData, ngramContext,
+                        proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                        suggestionResults);
+            }
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
+        }
+        return suggestionResults;
+    }
+
+    private static float getWeightForLocale(final DictionaryGroup dictionaryGroup,
+            final ComposedData composedData) {
+        return composedData.mIsBatchMode ? dictionaryGroup.mWeightForGesturingInLocale
+                : dictionaryGroup.mWeightForTypingInLocale;
+    }
+
+    private void addSuggestionResults(final DictionaryGroup[] dictionaryGroups,
+            final ComposedData composedData, final NgramContext ngramContext,
+            final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
+            final SuggestionResults suggestionResults) {
         final float[] weightOfLangModelVsSpatialModel =
                 new float[] { Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL };
-        for (final String dictType : ALL_DICTIONARY_TYPES) {
-            final Dictionary dictionary = mDictionaryGroup.getDict(dictType);
-            if (null == dictionary) continue;
-            final float weightForLocale = composedData.mIsBatchMode
-                    ? mDictionaryGroup.mWeightForGesturingInLocale
-                    : mDictionaryGroup.mWeightForTypingInLocale;
-            final ArrayList<SuggestedWordInfo> dictionarySuggestions =
-                    dictionary.getSuggestions(composedData, ngramContext,
-                            proximityInfoHandle, settingsValuesForSuggestion, sessionId,
-                            weightForLocale, weightOfLangModelVsSpatialModel);
-            if (null == dictionarySuggestions) continue;
-            suggestionResults.addAll(dictionarySuggestions);
-            if (null != suggestionResults.mRawSuggestions) {
-                suggestionResults.mRawSuggestions.addAll(dictionarySuggestions);
+        if (null == suggestionResults.mRawSuggestions) {
+            // Merge the suggestions of all the dictionaries as code points, and only create
+            // objects for the ones that make it into the results.
+            final SuggestionCandidates candidates = borrowSuggestionCandidates();
+            try {
+                for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+                    final float weightForLocale =
+                            getWeightForLocale(dictionaryGroup, composedData);
+                    for (final String dictType : ALL_DICTIONARY_TYPES) {
+                        final Dictionary dictionary = dictionaryGroup.getDict(dictType);
+                        if (null == dictionary) continue;
+                        dictionary.addSuggestionCandidates(composedData, ngramContext,
+                                proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                                weightForLocale, weightOfLangModelVsSpatialModel, candidates);
+                    }
+                }
+                candidates.addTo(suggestionResults);
+            } finally {
+                returnSuggestionCandidates(candidates);
+            }
+            return;
+        }
+        for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+            final float weightForLocale = getWeightForLocale(dictionaryGroup, composedData);
+            for (final String dictType : ALL_DICTIONARY_TYPES) {
+                final Dictionary dictionary = dictionaryGroup.getDict(dictType);
+                if (null == dictionary) continue;
+                final ArrayList<SuggestedWordInfo> dictionarySuggestions =
+                        dictionary.getSuggestions(composedData, ngramContext,
+                                proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                                weightForLocale, weightOfLangModelVsSpatialModel);
+                addDictionarySuggestions(dictionarySuggestions, suggestionResults);
             }
         }
-        return suggestionResults;
     }
 
-    public boolean isValidSpellingWord(final String word) {
-        if (mValidSpellingWordReadCache != null) {
-            final Boolean cachedValue = mValidSpellingWordReadCache.get(word);
-            if (cachedValue != null) {
-                return cachedValue;
+    /**
+     * Borrows empty candidates for a lookup. They must be returned with
+     * {@link #returnSuggestionCandidates} once the lookup is done.
+     */
+    @Nonnull
+    private SuggestionCandidates borrowSuggestionCandidates() {
+        final SuggestionCandidates candidates = mIdleSuggestionCandidates.poll();
+        if (candidates != null) {
+            return candidates;
+        }
+        return new SuggestionCandidates(
+                SuggestedWords.MAX_SUGGESTIONS, BinaryDictionary.DICTIONARY_MAX_WORD_LENGTH);
+    }
+
+    private void returnSuggestionCandidates(@Nonnull final SuggestionCandidates candidates) {
+        candidates.clear();
+        mIdleSuggestionCandidates.offer(candidates);
+    }
+
+    private static void addDictionarySuggestions(
+            @Nullable final ArrayList<SuggestedWordInfo> dictionarySuggestions,
+            @Nonnull final SuggestionResults suggestionResults) {
+        if (null == dictionarySuggestions) return;
+        suggestionResults.addAll(dictionarySuggestions);
+        if (null != suggestionResults.mRawSuggestions) {
+            suggestionResults.mRawSuggestions.addAll(dictionarySuggestions);
+        }
+    }
+
+    /**
+     * The lookup of the suggestions of a dictionary on the suggestion executor. It holds a
+     * reference to the group of the dictionary until it has run or has been cancelled.
+     */
+    private static final class SuggestionLookup implements Callable<ArrayList<SuggestedWordInfo>> {
+        @Nonnull public final String mDictType;
+        @Nonnull private final DictionaryGroup mDictionaryGroup;
+        @Nonnull private final Dictionary mDictionary;
+        @Nonnull private final Object mLock;
+        private final ComposedData mComposedData;
+        private final NgramContext mNgramContext;
+        private final long mProximityInfoHandle;
+        private final SettingsValuesForSuggestion mSettingsValuesForSuggestion;
+        private final int mSessionId;
+        private final float mWeightForLocale;
+        private final float[] mWeightOfLangModelVsSpatialModel = new float[1];
+        // Set by whichever of the lookup and its cancellation comes first, so that the reference
+        // to the group is released exactly once.
+        private final AtomicBoolean mIsClaimed = new AtomicBoolean(false);
+        @Nullable private Future<ArrayList<SuggestedWordInfo>> mFuture;
+        private boolean mHasCompleted;
+
+        public SuggestionLookup(@Nonnull final String dictType,
+                @Nonnull final DictionaryGroup dictionaryGroup,
+                @Nonnull final Dictionary dictionary, @Nonnull final Object lock,
+                final ComposedData composedData, final NgramContext ngramContext,
+                final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId) {
+            mDictType = dictType;
+            mDictionaryGroup = dictionaryGroup;
+            mDictionary = dictionary;
+            mLock = lock;
+            mComposedData = composedData;
+            mNgramContext = ngramContext;
+            mProximityInfoHandle = proximityInfoHandle;
+            mSettingsValuesForSuggestion = settingsValuesForSuggestion;
+            mSessionId = sessionId;
+            mWeightForLocale = getWeightForLocale(dictionaryGroup, composedData);
+        }
+
+        /**
+         * Submits the lookup with the weight of the language model vs the spatial model known so
+         * far.
+         */
+        public void submit(@Nonnull final ExecutorService executor,
+                final float weightOfLangModelVsSpatialModel) {
+            mWeightOfLangModelVsSpatialModel[0] = weightOfLangModelVsSpatialModel;
+            mDictionaryGroup.retain();
+            mFuture = executor.submit(this);
+        }
+
+        @Override
+        public ArrayList<SuggestedWordInfo> call() {
+            if (!mIsClaimed.compareAndSet(false, true)) {
+                // The lookup has been cancelled before it started.
+                return null;
+            }
+            try {
+                synchronized (mLock) {
+                    return mDictionary.getSuggestions(mComposedData, mNgramContext,
+                            mProximityInfoHandle, mSettingsValuesForSuggestion, mSessionId,
+                            mWeightForLocale, mWeightOfLangModelVsSpatialModel);
+                }
+            } finally {
+                mDictionaryGroup.release();
+            }
+        }
+
+        /**
+         * Waits for the lookup until the deadline.
+         *
+         * @return the suggestions of the dictionary, or null if there are none or if the lookup
+         * failed or missed the deadline.
+         */
+        @Nullable
+        public ArrayList<SuggestedWordInfo> getSuggestions(final long deadline)
+                throws InterruptedException {
+            try {
+                final ArrayList<SuggestedWordInfo> suggestions = mFuture.get(
+                        Math.max(0, deadline - SystemClock.uptimeMillis()),
+                        TimeUnit.MILLISECONDS);
+                mHasCompleted = true;
+                return suggestions;
+            } catch (final TimeoutException e) {
+                Log.w(TAG, "Suggestion lookup timed out: " + mDictType);
+            } catch (final ExecutionException e) {
+                Log.e(TAG, "Suggestion lookup failed: " + mDictType, e);
+            }
+            return null;
+        }
+
+        /**
+         * Returns the weight of the language model vs the spatial model after the lookup, or
+         * {@link Dictionary#NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL} if it has not completed.
+         */
+        public float getWeightOfLangModelVsSpatialModel() {
+            return mHasCompleted ? mWeightOfLangModelVsSpatialModel[0]
+                    : Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL;
+        }
+
+        /**
+         * Cancels the lookup if it has not completed. Does nothing if it has not been submitted.
+         */
+        public void cancel() {
+            if (null == mFuture) return;
+            mFuture.cancel(true /* mayInterruptIfRunning */);
+            if (mIsClaimed.compareAndSet(false, true)) {
+                mDictionaryGroup.release();
+            }
+        }
+    }
+
+    /**
+     * Queries all the dictionaries of the groups concurrently on the suggestion executor and
+     * merges their suggestions in group and then {@link #ALL_DICTIONARY_TYPES} order, so that the
+     * results do not depend on which lookup finished first.
+     *
+     * As in the serial lookup, the weight of the language model vs the spatial model computed by
+     * the first dictionary is passed on to the others: the dictionaries are queried one at a time
+     * until one of them has computed it, and then all the remaining ones at once. The lookups that
+     * have not completed by the deadline are cancelled.
+     */
+    private void addSuggestionsInParallel(final DictionaryGroup[] dictionaryGroups,
+            final ComposedData composedData, final NgramContext ngramContext,
+            final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
+            final SuggestionResults suggestionResults) {
+        final long deadline = SystemClock.uptimeMillis() + mParallelLookupDeadlineMillis;
+        final ExecutorService executor =
+                ExecutorUtils.getBackgroundExecutor(ExecutorUtils.SUGGESTION);
+        final int dictTypeCount = ALL_DICTIONARY_TYPES.length;
+        final ArrayList<SuggestionLookup> lookups =
+                new ArrayList<>(dictionaryGroups.length * dictTypeCount);
+        for (int groupIndex = 0; groupIndex < dictionaryGroups.length; groupIndex++) {
+            final DictionaryGroup dictionaryGroup = dictionaryGroups[groupIndex];
+            final Object[] locks = dictionaryGroup.getParallelLookupLocks(sessionId);
+            for (int i = 0; i < dictTypeCount; i++) {
+                final Dictionary dictionary = dictionaryGroup.getDict(ALL_DICTIONARY_TYPES[i]);
+                if (null == dictionary) continue;
+                lookups.add(new SuggestionLookup(ALL_DICTIONARY_TYPES[i], dictionaryGroup,
+                        dictionary, locks[i], composedData, ngramContext, proximityInfoHandle,
+                        settingsValuesForSuggestion, sessionId));
+            }
+        }
+        float weightOfLangModelVsSpatialModel =
+                Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL;
+        try {
+            int lookupIndex = 0;
+            while (lookupIndex < lookups.size() && weightOfLangModelVsSpatialModel
+                    == Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL) {
+                final SuggestionLookup lookup = lookups.get(lookupIndex++);
+                lookup.submit(executor, weightOfLangModelVsSpatialModel);
+                addDictionarySuggestions(lookup.getSuggestions(deadline), suggestionResults);
+                weightOfLangModelVsSpatialModel = lookup.getWeightOfLangModelVsSpatialModel();
+            }
+            for (int i = lookupIndex; i < lookups.size(); i++) {
+                lookups.get(i).submit(executor, weightOfLangModelVsSpatialModel);
+            }
+            for (int i = lookupIndex; i < lookups.size(); i++) {
+                addDictionarySuggestions(lookups.get(i).getSuggestions(deadline),
+                        suggestionResults);
+            }
+        } catch (final InterruptedException e) {
+            Log.i(TAG, "Interrupted during waiting for suggestion lookups.", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            for (final SuggestionLookup lookup : lookups) {
+                lookup.cancel();
+            }
+        }
+    }
+
+    @Override
+    @Nonnull public List<SuggestionResults> getSuggestionResultsForWords(
+            final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+            @Nonnull final Keyboard keyboard,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
+            final int inputStyle) {
+        final long proximityInfoHandle = keyboard.getProximityInfo().getNativeProximityInfo();
+        final int wordCount = composedDataArray.length;
+        final ArrayList<SuggestionResults> suggestionResultsForWords = new ArrayList<>(wordCount);
+        final float[] weightsOfLangModelVsSpatialModel = new float[wordCount];
+        for (int i = 0; i < wordCount; ++i) {
+            suggestionResultsForWords.add(new SuggestionResults(
+                    SuggestedWords.MAX_SUGGESTIONS, ngramContexts[i].isBeginningOfSentenceContext(),
+                    false /* firstSuggestionExceedsConfidenceThreshold */));
+            weightsOfLangModelVsSpatialModel[i] =
+                    Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL;
+        }
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            // Batches come from already typed text, so the weight for gesturing never applies.
+            for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+                for (final String dictType : ALL_DICTIONARY_TYPES) {
+                    final Dictionary dictionary = dictionaryGroup.getDict(dictType);
+                    if (null == dictionary) continue;
+                    final ArrayList<ArrayList<SuggestedWordInfo>> dictionarySuggestionsForWords =
+                            dictionary.getSuggestionsForWords(composedDataArray, ngramContexts,
+                                    proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                                    dictionaryGroup.mWeightForTypingInLocale,
+                                    weightsOfLangModelVsSpatialModel);
+                    for (int i = 0; i < wordCount; ++i) {
+                        addDictionarySuggestions(dictionarySuggestionsForWords.get(i),
+                                suggestionResultsForWords.get(i));
+                    }
+                }
             }
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
         }
+        return suggestionResultsForWords;
+    }
 
-        return isValidWord(word, ALL_DICTIONARY_TYPES);
+    public boolean isValidSpellingWord(final String word) {
+        return isValidSuggestionWord(word);
+    }
+
+    @Override
+    @Nonnull public boolean[] isValidSpellingWords(final String[] words) {
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            return isValidSpellingWords(dictionaryGroups, words);
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
+        }
+    }
+
+    private boolean[] isValidSpellingWords(final DictionaryGroup[] dictionaryGroups,
+            final String[] words) {
+        final boolean[] isValid = new boolean[words.length];
+        final ValidWordCache validWordCache = ValidWordCache.getInstance();
+        final int[] indicesToLookUp = new int[words.length];
+        for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+            if (dictionaryGroup.mLocale == null) continue;
+            final String scope = dictionaryGroup.getValidWordCacheScope();
+            final long generation = validWordCache.getGeneration();
+            // Only look up the words that are neither empty, valid in another group nor cached.
+            int lookUpCount = 0;
+            for (int i = 0; i < words.length; ++i) {
+                if (isValid[i] || TextUtils.isEmpty(words[i])) continue;
+                final Boolean cachedValue =
+                        (scope != null) ? validWordCache.get(scope, words[i]) : null;
+                if (cachedValue != null) {
+                    isValid[i] = cachedValue;
+                } else {
+                    indicesToLookUp[lookUpCount++] = i;
+                }
+            }
+            if (lookUpCount == 0) continue;
+            final String[] wordsToLookUp = new String[lookUpCount];
+            for (int i = 0; i < lookUpCount; ++i) {
+                wordsToLookUp[i] = words[indicesToLookUp[i]];
+            }
+            final boolean[] isValidLookedUp = new boolean[lookUpCount];
+            for (final String dictType : ALL_DICTIONARY_TYPES) {
+                final Dictionary dictionary = dictionaryGroup.getDict(dictType);
+                if (null == dictionary) continue;
+                dictionary.updateValidityOfWords(wordsToLookUp, isValidLookedUp);
+            }
+            for (int i = 0; i < lookUpCount; ++i) {
+                isValid[indicesToLookUp[i]] = isValidLookedUp[i];
+                if (scope != null) {
+                    validWordCache.put(scope, wordsToLookUp[i], isValidLookedUp[i], generation);
+                }
+            }
+        }
+        return isValid;
     }
 
     public boolean isValidSuggestionWord(final String word) {
-        return isValidWord(word, ALL_DICTIONARY_TYPES);
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+                if (isValidWordWithCache(dictionaryGroup, word)) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
+        }
     }
 
-    private boolean isValidWord(final String word, final String[] dictionariesToCheck) {
+    /**
+     * Same as {@link #isValidWord} for all the dictionaries of the group, but the validity is
+     * shared with the other facilitators through the {@link ValidWordCache}.
+     */
+    private static boolean isValidWordWithCache(final DictionaryGroup dictionaryGroup,
+            final String word) {
+        final String scope = dictionaryGroup.getValidWordCacheScope();
+        if (scope == null || TextUtils.isEmpty(word)) {
+            return isValidWord(dictionaryGroup, word, ALL_DICTIONARY_TYPES);
+        }
+        final ValidWordCache validWordCache = ValidWordCache.getInstance();
+        final long generation = validWordCache.getGeneration();
+        final Boolean cachedValue = validWordCache.get(scope, word);
+        if (cachedValue != null) {
+            return cachedValue;
+        }
+        final boolean isValid = isValidWord(dictionaryGroup, word, ALL_DICTIONARY_TYPES);
+        validWordCache.put(scope, word, isValid, generation);
+        return isValid;
+    }
+
+    private static boolean isValidWord(final DictionaryGroup dictionaryGroup, final String word,
+            final String[] dictionariesToCheck) {
         if (TextUtils.isEmpty(word)) {
             return false;
         }
-        if (mDictionaryGroup.mLocale == null) {
+        if (dictionaryGroup.mLocale == null) {
             return false;
         }
         for (final String dictType : dictionariesToCheck) {
-            final Dictionary dictionary = mDictionaryGroup.getDict(dictType);
+            final Dictionary dictionary = dictionaryGroup.getDict(dictType);
             // Ideally the passed map would come out of a {@link java.util.concurrent.Future} and
             // would be immutable once it's finished initializing, but concretely a null test is
             // probably good enough for the time being.
@@ -677,13 +1469,13 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
         return false;
     }
 
-    private int getFrequency(final String word) {
+    private static int getFrequency(final DictionaryGroup dictionaryGroup, final String word) {
         if (TextUtils.isEmpty(word)) {
             return Dictionary.NOT_A_PROBABILITY;
         }
         int maxFreq = Dictionary.NOT_A_PROBABILITY;
         for (final String dictType : ALL_DICTIONARY_TYPES) {
-            final Dictionary dictionary = mDictionaryGroup.getDict(dictType);
+            final Dictionary dictionary = dictionaryGroup.getDict(dictType);
             if (dictionary == null) continue;
             final int tempFreq = dictionary.getFrequency(word);
             if (tempFreq >= maxFreq) {
@@ -694,12 +1486,20 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
     }
 
     private boolean clearSubDictionary(final String dictName) {
-        final ExpandableBinaryDictionary dictionary = mDictionaryGroup.getSubDict(dictName);
-        if (dictionary == null) {
-            return false;
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            boolean isCleared = false;
+            for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+                final ExpandableBinaryDictionary dictionary = dictionaryGroup.getSubDict(dictName);
+                if (dictionary != null) {
+                    dictionary.clear();
+                    isCleared = true;
+                }
+            }
+            return isCleared;
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
         }
-        dictionary.clear();
-        return true;
     }
 
     @Override
@@ -709,28 +1509,46 @@ public class DictionaryFacilitatorImpl implements DictionaryFacilitator {
 
     @Override
     public void dumpDictionaryForDebug(final String dictName) {
-        final ExpandableBinaryDictionary dictToDump = mDictionaryGroup.getSubDict(dictName);
-        if (dictToDump == null) {
-            Log.e(TAG, "Cannot dump " + dictName + ". "
-                    + "The dictionary is not being used for suggestion or cannot be dumped.");
-            return;
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            boolean isDumped = false;
+            for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+                final ExpandableBinaryDictionary dictToDump = dictionaryGroup.getSubDict(dictName);
+                if (dictToDump != null) {
+                    dictToDump.dumpAllWordsForDebug();
+                    isDumped = true;
+                }
+            }
+            if (!isDumped) {
+                Log.e(TAG, "Cannot dump " + dictName + ". "
+                        + "The dictionary is not being used for suggestion or cannot be dumped.");
+            }
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
         }
-        dictToDump.dumpAllWordsForDebug();
     }
 
     @Override
     @Nonnull public List<DictionaryStats> getDictionaryStats(final Context context) {
         final ArrayList<DictionaryStats> statsOfEnabledSubDicts = new ArrayList<>();
-        for (final String dictType : DYNAMIC_DICTIONARY_TYPES) {
-            final ExpandableBinaryDictionary dictionary = mDictionaryGroup.getSubDict(dictType);
-            if (dictionary == null) continue;
-            statsOfEnabledSubDicts.add(dictionary.getDictionaryStats());
+        final DictionaryGroup[] dictionaryGroups = acquireDictionaryGroups();
+        try {
+            for (final DictionaryGroup dictionaryGroup : dictionaryGroups) {
+                for (final String dictType : DYNAMIC_DICTIONARY_TYPES) {
+                    final ExpandableBinaryDictionary dictionary =
+                            dictionaryGroup.getSubDict(dictType);
+                    if (dictionary == null) continue;
+                    statsOfEnabledSubDicts.add(dictionary.getDictionaryStats());
+                }
+            }
+        } finally {
+            releaseDictionaryGroups(dictionaryGroups);
         }
         return statsOfEnabledSubDicts;
     }
 
     @Override
     public String dump(final Context context) {
-        return "";
+        return ValidWordCache.getInstance().dump();
     }
 }
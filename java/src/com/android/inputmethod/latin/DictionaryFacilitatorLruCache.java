@@ -16,33 +16,95 @@
 
 package com.android.inputmethod.latin;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
+import android.app.ActivityManager;
 import android.content.Context;
 import android.util.Log;
 
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+
 /**
  * Cache for dictionary facilitators of multiple locales.
- * This class automatically creates and releases up to 3 facilitator instances using LRU policy.
+ * This class keeps one facilitator per locale and releases the least recently used ones when the
+ * estimated size of their dictionaries exceeds a memory budget. The most recently used facilitator
+ * is always kept, even if it alone exceeds the budget.
+ *
+ * The facilitators are reference counted: {@link #acquire} returns a facilitator that is not
+ * closed until the caller releases it with {@link #release}, even if it is evicted in the meantime.
  */
 public class DictionaryFacilitatorLruCache {
     private static final String TAG = "DictionaryFacilitatorLruCache";
     private static final int WAIT_FOR_LOADING_MAIN_DICT_IN_MILLISECONDS = 1000;
     private static final int MAX_RETRY_COUNT_FOR_WAITING_FOR_LOADING_DICT = 5;
 
+    // The budget is this fraction of the memory class of the device. The dictionaries are memory
+    // mapped outside of the Java heap, but the memory class is how the system scales what an app
+    // may use to the device. A quarter of it, 16MB to 128MB on current devices, keeps the main
+    // dictionaries of two or three locales of a few megabytes each on low-end devices, and of
+    // all the enabled locales on most others.
+    private static final int MEMORY_CLASS_DIVISOR_FOR_BUDGET = 4;
+    // Rough cost of a facilitator on top of its main dictionary files: the user and contacts
+    // dictionaries, the traverse sessions and the Java objects.
+    private static final long FACILITATOR_OVERHEAD_IN_BYTES = 1024L * 1024;
+
     private final Context mContext;
     private final String mDictionaryNamePrefix;
+    private final long mMemoryBudgetInBytes;
+    // Guards mCache, mEvictedEntriesInUse and the sizes and reference counts of the entries.
+    // Never held while loading or closing dictionaries.
     private final Object mLock = new Object();
-    private final DictionaryFacilitator mDictionaryFacilitator;
-    private boolean mUseContactsDictionary;
-    private Locale mLocale;
+    private final LinkedHashMap<Locale, CacheEntry> mCache =
+            new LinkedHashMap<>(4 /* initialCapacity */, 0.75f /* loadFactor */,
+                    true /* accessOrder */);
+    // The entries that have been evicted while in use, to close once they are released.
+    private final ArrayList<CacheEntry> mEvictedEntriesInUse = new ArrayList<>();
+    private volatile boolean mUseContactsDictionary;
+
+    /**
+     * A facilitator for one locale. Loading and closing its dictionaries is synchronized on the
+     * entry itself, so that a locale being loaded does not block lookups in other locales.
+     */
+    private static final class CacheEntry {
+        public final DictionaryFacilitator mDictionaryFacilitator;
+        // Guarded by the entry.
+        public boolean mIsLoaded;
+        public boolean mUsesContactsDictionary;
+        // Guarded by DictionaryFacilitatorLruCache#mLock.
+        public long mEstimatedSizeInBytes = FACILITATOR_OVERHEAD_IN_BYTES;
+        // The number of callers using the facilitator, and whether the entry has been removed
+        // from the cache. Guarded by DictionaryFacilitatorLruCache#mLock.
+        public int mReferenceCount;
+        public boolean mIsEvicted;
+
+        public CacheEntry(final DictionaryFacilitator dictionaryFacilitator) {
+            mDictionaryFacilitator = dictionaryFacilitator;
+        }
+    }
 
     public DictionaryFacilitatorLruCache(final Context context, final String dictionaryNamePrefix) {
+        this(context, dictionaryNamePrefix, getDefaultMemoryBudgetInBytes(context));
+    }
+
+    private static long getDefaultMemoryBudgetInBytes(final Context context) {
+        final ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        return activityManager.getMemoryClass() * 1024L * 1024 / MEMORY_CLASS_DIVISOR_FOR_BUDGET;
+    }
+
+    @UsedForTesting
+    DictionaryFacilitatorLruCache(final Context context, final String dictionaryNamePrefix,
+            final long memoryBudgetInBytes) {
         mContext = context;
         mDictionaryNamePrefix = dictionaryNamePrefix;
-        mDictionaryFacilitator = DictionaryFacilitatorProvider.getDictionaryFacilitator(
-                true /* isNeededForSpellChecking */);
+        mMemoryBudgetInBytes = memoryBudgetInBytes;
     }
 
     private static void waitForLoadingMainDictionary(
@@ -64,43 +126,197 @@ public class DictionaryFacilitatorLruCache {
         }
     }
 
-    private void resetDictionariesForLocaleLocked() {
-        // Nothing to do if the locale is null.  This would be the case before any get() calls.
-        if (mLocale != null) {
-          // Note: Given that personalized dictionaries are not used here; we can pass null account.
-          mDictionaryFacilitator.resetDictionaries(mContext, mLocale,
-              mUseContactsDictionary, false /* usePersonalizedDicts */,
-              false /* forceReloadMainDictionary */, null /* account */,
-              mDictionaryNamePrefix, null /* listener */);
+    private long estimateSizeInBytes(final Locale locale) {
+        long size = FACILITATOR_OVERHEAD_IN_BYTES;
+        final ArrayList<AssetFileAddress> dictionaryFiles = BinaryDictionaryGetter
+                .getDictionaryFiles(locale, mContext, false /* notifyDictionaryPackForUpdates */);
+        if (dictionaryFiles != null) {
+            for (final AssetFileAddress dictionaryFile : dictionaryFiles) {
+                size += dictionaryFile.mLength;
+            }
         }
+        return size;
+    }
+
+    private void resetDictionariesForLocaleLocked(final CacheEntry entry, final Locale locale,
+            final boolean useContactsDictionary) {
+        // Note: Given that personalized dictionaries are not used here; we can pass null account.
+        entry.mDictionaryFacilitator.resetDictionaries(mContext, locale,
+                useContactsDictionary, false /* usePersonalizedDicts */,
+                false /* forceReloadMainDictionary */, null /* account */,
+                mDictionaryNamePrefix, null /* listener */);
+        entry.mUsesContactsDictionary = useContactsDictionary;
+        entry.mIsLoaded = true;
     }
 
     public void setUseContactsDictionary(final boolean useContactsDictionary) {
+        // Facilitators that have already been loaded are reset on their next use.
+        mUseContactsDictionary = useContactsDictionary;
+    }
+
+    /**
+     * Returns the facilitator for a locale, with its dictionaries loaded. The caller must release
+     * it with {@link #release} once done with it.
+     */
+    public DictionaryFacilitator acquire(final Locale locale) {
+        final CacheEntry entry;
         synchronized (mLock) {
-            if (mUseContactsDictionary == useContactsDictionary) {
-                // The value has not been changed.
-                return;
+            CacheEntry cachedEntry = mCache.get(locale);
+            if (cachedEntry == null) {
+                cachedEntry = new CacheEntry(DictionaryFacilitatorProvider
+                        .getDictionaryFacilitator(true /* isNeededForSpellChecking */));
+                mCache.put(locale, cachedEntry);
+            }
+            entry = cachedEntry;
+            ++entry.mReferenceCount;
+        }
+        boolean isAcquired = false;
+        try {
+            final boolean useContactsDictionary = mUseContactsDictionary;
+            boolean hasBeenReset = false;
+            synchronized (entry) {
+                if (!entry.mIsLoaded || entry.mUsesContactsDictionary != useContactsDictionary) {
+                    resetDictionariesForLocaleLocked(entry, locale, useContactsDictionary);
+                    hasBeenReset = true;
+                }
+            }
+            waitForLoadingMainDictionary(entry.mDictionaryFacilitator);
+            final long estimatedSizeInBytes = hasBeenReset ? estimateSizeInBytes(locale) : 0;
+            final ArrayList<CacheEntry> entriesToClose;
+            synchronized (mLock) {
+                if (hasBeenReset) {
+                    entry.mEstimatedSizeInBytes = estimatedSizeInBytes;
+                }
+                entriesToClose = trimToBudgetLocked(entry);
+            }
+            closeAsync(entriesToClose);
+            isAcquired = true;
+            return entry.mDictionaryFacilitator;
+        } finally {
+            if (!isAcquired) {
+                releaseEntry(entry);
             }
-            mUseContactsDictionary = useContactsDictionary;
-            resetDictionariesForLocaleLocked();
-            waitForLoadingMainDictionary(mDictionaryFacilitator);
         }
     }
 
-    public DictionaryFacilitator get(final Locale locale) {
+    /**
+     * Releases a facilitator returned by {@link #acquire}. A facilitator that has been evicted
+     * while in use is closed once the last caller using it releases it.
+     */
+    public void release(final DictionaryFacilitator dictionaryFacilitator) {
+        final CacheEntry entry;
         synchronized (mLock) {
-            if (!mDictionaryFacilitator.isForLocale(locale)) {
-                mLocale = locale;
-                resetDictionariesForLocaleLocked();
+            entry = findEntryLocked(dictionaryFacilitator);
+        }
+        if (entry == null) {
+            Log.w(TAG, "Releasing a facilitator that is not in use.");
+            return;
+        }
+        releaseEntry(entry);
+    }
+
+    private CacheEntry findEntryLocked(final DictionaryFacilitator dictionaryFacilitator) {
+        for (final CacheEntry entry : mCache.values()) {
+            if (entry.mDictionaryFacilitator == dictionaryFacilitator) {
+                return entry;
+            }
+        }
+        for (final CacheEntry entry : mEvictedEntriesInUse) {
+            if (entry.mDictionaryFacilitator == dictionaryFacilitator) {
+                return entry;
             }
-            waitForLoadingMainDictionary(mDictionaryFacilitator);
-            return mDictionaryFacilitator;
         }
+        return null;
     }
 
+    private void releaseEntry(final CacheEntry entry) {
+        synchronized (mLock) {
+            if (--entry.mReferenceCount > 0 || !entry.mIsEvicted) {
+                return;
+            }
+            mEvictedEntriesInUse.remove(entry);
+        }
+        closeAsync(Collections.singletonList(entry));
+    }
+
+    /**
+     * Removes the least recently used entries until the total estimated size fits the budget.
+     * @param entryToKeep the entry being returned to the caller, which is never evicted.
+     * @return the removed entries that are not in use, which need to be closed.
+     */
+    private ArrayList<CacheEntry> trimToBudgetLocked(final CacheEntry entryToKeep) {
+        final ArrayList<CacheEntry> entriesToClose = new ArrayList<>();
+        long totalSizeInBytes = 0;
+        for (final CacheEntry entry : mCache.values()) {
+            totalSizeInBytes += entry.mEstimatedSizeInBytes;
+        }
+        // Iteration goes from the least recently used entry to the most recently used one.
+        final Iterator<CacheEntry> iterator = mCache.values().iterator();
+        while (totalSizeInBytes > mMemoryBudgetInBytes && iterator.hasNext()) {
+            final CacheEntry entry = iterator.next();
+            if (entry == entryToKeep) {
+                continue;
+            }
+            iterator.remove();
+            totalSizeInBytes -= entry.mEstimatedSizeInBytes;
+            evictLocked(entry, entriesToClose);
+        }
+        return entriesToClose;
+    }
+
+    /**
+     * Marks an entry removed from the cache as evicted.
+     * @param outEntriesToClose the entries to close, which the entry is added to unless in use.
+     */
+    private void evictLocked(final CacheEntry entry, final List<CacheEntry> outEntriesToClose) {
+        entry.mIsEvicted = true;
+        if (entry.mReferenceCount > 0) {
+            mEvictedEntriesInUse.add(entry);
+        } else {
+            outEntriesToClose.add(entry);
+        }
+    }
+
+    private static void closeEntry(final CacheEntry entry) {
+        synchronized (entry) {
+            entry.mDictionaryFacilitator.closeDictionaries();
+        }
+    }
+
+    private static void closeAsync(final List<CacheEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.SPELLING).execute(new Runnable() {
+            @Override
+            public void run() {
+                for (final CacheEntry entry : entries) {
+                    closeEntry(entry);
+                }
+            }
+        });
+    }
+
+    /**
+     * Closes the facilitators, or for the ones in use, once they are released.
+     */
     public void closeDictionaries() {
+        final ArrayList<CacheEntry> entries = new ArrayList<>();
+        synchronized (mLock) {
+            for (final CacheEntry entry : mCache.values()) {
+                evictLocked(entry, entries);
+            }
+            mCache.clear();
+        }
+        for (final CacheEntry entry : entries) {
+            closeEntry(entry);
+        }
+    }
+
+    @UsedForTesting
+    int getCachedLocaleCountForTesting() {
         synchronized (mLock) {
-            mDictionaryFacilitator.closeDictionaries();
+            return mCache.size();
         }
     }
 }
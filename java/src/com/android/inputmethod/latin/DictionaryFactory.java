@@ -25,8 +25,10 @@ import com.android.inputmethod.latin.utils.DictionaryInfoUtils;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Factory for dictionary instances.
@@ -56,15 +58,9 @@ public final class DictionaryFactory {
                 BinaryDictionaryGetter.getDictionaryFiles(locale, context, true);
         if (null != assetFileList) {
             for (final AssetFileAddress f : assetFileList) {
-                final ReadOnlyBinaryDictionary readOnlyBinaryDictionary =
-                        new ReadOnlyBinaryDictionary(f.mFilename, f.mOffset, f.mLength,
-                                false /* useFullEditDistance */, locale, Dictionary.TYPE_MAIN);
-                if (readOnlyBinaryDictionary.isValidDictionary()) {
-                    dictList.add(readOnlyBinaryDictionary);
-                } else {
-                    readOnlyBinaryDictionary.close();
-                    // Prevent this dictionary to do any further harm.
-                    killDictionary(context, f);
+                final Dictionary dictionary = openMainDictionaryWordList(context, locale, f);
+                if (dictionary != null) {
+                    dictList.add(dictionary);
                 }
             }
         }
@@ -75,6 +71,44 @@ public final class DictionaryFactory {
         return new DictionaryCollection(Dictionary.TYPE_MAIN, locale, dictList);
     }
 
+    /**
+     * Starts opening the word lists of a main dictionary from a dictionary pack in parallel.
+     *
+     * The word lists are independent files, so they are opened on the specified executor at the
+     * same time and added to the collection of the returned load as soon as each one is ready.
+     * @param context application context for reading resources
+     * @param locale the locale for which to create the dictionary
+     * @param executor the executor to open the word lists on
+     * @return the load of the main dictionary
+     */
+    static MainDictionaryLoad loadMainDictionaryFromManager(final Context context,
+            final Locale locale, final ExecutorService executor) {
+        final ArrayList<AssetFileAddress> assetFileList =
+                BinaryDictionaryGetter.getDictionaryFiles(locale, context, true);
+        return new MainDictionaryLoad(locale,
+                null == assetFileList ? Collections.<AssetFileAddress>emptyList() : assetFileList,
+                new MainDictionaryLoad.WordListOpener() {
+                    @Override
+                    public Dictionary open(final AssetFileAddress wordList) {
+                        return openMainDictionaryWordList(context, locale, wordList);
+                    }
+                }, executor);
+    }
+
+    private static Dictionary openMainDictionaryWordList(final Context context,
+            final Locale locale, final AssetFileAddress f) {
+        final ReadOnlyBinaryDictionary readOnlyBinaryDictionary =
+                new ReadOnlyBinaryDictionary(f.mFilename, f.mOffset, f.mLength,
+                        false /* useFullEditDistance */, locale, Dictionary.TYPE_MAIN);
+        if (readOnlyBinaryDictionary.isValidDictionary()) {
+            return readOnlyBinaryDictionary;
+        }
+        readOnlyBinaryDictionary.close();
+        // Prevent this dictionary to do any further harm.
+        killDictionary(context, f);
+        return null;
+    }
+
     /**
      * Kills a dictionary so that it is never used again, if possible.
      * @param context The context to contact the dictionary provider, if possible.
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * An immutable, reference-counted read view of a dictionary.
+ *
+ * The holder of the view publishes a new one with {@link Holder#publish} and readers borrow the
+ * current one with {@link Holder#acquire}, releasing it once done. A view that has been replaced
+ * is closed when its last reader releases it, so readers never see a closed dictionary and never
+ * wait for the writer that publishes a new view.
+ */
+final class DictionaryReadSnapshot {
+    private final Dictionary mDictionary;
+    // The holder owns one reference until the snapshot is replaced.
+    private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+    private DictionaryReadSnapshot(@Nonnull final Dictionary dictionary) {
+        mDictionary = dictionary;
+    }
+
+    @Nonnull
+    public Dictionary getDictionary() {
+        return mDictionary;
+    }
+
+    private boolean tryRetain() {
+        while (true) {
+            final int refCount = mRefCount.get();
+            if (refCount <= 0) {
+                return false;
+            }
+            if (mRefCount.compareAndSet(refCount, refCount + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Releases a snapshot obtained from {@link Holder#acquire}.
+     */
+    public void release() {
+        if (mRefCount.decrementAndGet() == 0) {
+            mDictionary.close();
+        }
+    }
+
+    /**
+     * Holds the current snapshot of a dictionary. This class is thread-safe.
+     */
+    static final class Holder {
+        private final AtomicReference<DictionaryReadSnapshot> mCurrent =
+                new AtomicReference<>();
+
+        /**
+         * Replaces the current snapshot with the specified dictionary, or removes it if the
+         * dictionary is null. The previous snapshot is closed once it is no longer read.
+         */
+        public void publish(@Nullable final Dictionary dictionary) {
+            final DictionaryReadSnapshot snapshot =
+                    (dictionary == null) ? null : new DictionaryReadSnapshot(dictionary);
+            final DictionaryReadSnapshot previous = mCurrent.getAndSet(snapshot);
+            if (previous != null) {
+                previous.release();
+            }
+        }
+
+        public boolean hasSnapshot() {
+            return mCurrent.get() != null;
+        }
+
+        /**
+         * Returns the current snapshot with a reference that must be released, or null if there
+         * is no snapshot.
+         */
+        @Nullable
+        public DictionaryReadSnapshot acquire() {
+            while (true) {
+                final DictionaryReadSnapshot snapshot = mCurrent.get();
+                if (snapshot == null) {
+                    return null;
+                }
+                if (snapshot.tryRetain()) {
+                    return snapshot;
+                }
+                // The snapshot was replaced and closed in the meantime; read the new one.
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+import com.android.inputmethod.latin.utils.TaskLane;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A journal of the pending write tasks of a dictionary, applied in batches.
+ *
+ * Write tasks are queued in order, and a single task on the executor applies all the pending
+ * ones under one acquisition of the write lock, instead of each write task acquiring the lock on
+ * its own. Before the first update of a batch, a preparation task is run once for the whole batch,
+ * for example to run the GC of the dictionary if needed, and a finishing task is run after the
+ * lock of each batch is released. A batch holds at most
+ * {@link #MAX_BATCH_SIZE} tasks so that readers waiting for the lock are not held back too long.
+ * A task that throws ends its batch, and the exception is thrown once the lock is released; the
+ * tasks after it are left for the next batch.
+ */
+final class DictionaryWriteJournal {
+    static final int MAX_BATCH_SIZE = 64;
+
+    private static final class Entry {
+        public final Runnable mTask;
+        public final boolean mIsUpdate;
+
+        public Entry(final Runnable task, final boolean isUpdate) {
+            mTask = task;
+            mIsUpdate = isUpdate;
+        }
+    }
+
+    private final String mExecutorName;
+    private final Lock mWriteLock;
+    private final Runnable mPrepareUpdateBatchLocked;
+    private final Runnable mFinishBatch;
+    private final ConcurrentLinkedQueue<Entry> mPendingEntries = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mPendingCount = new AtomicInteger(0);
+    private final AtomicBoolean mIsBatchScheduled = new AtomicBoolean(false);
+
+    private final AtomicLong mBatchCount = new AtomicLong(0);
+    private final AtomicLong mAppliedCount = new AtomicLong(0);
+    private volatile int mLastBatchSize;
+    private volatile int mMaxBatchSize;
+
+    private final Runnable mApplyBatchTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                applyBatch();
+            } finally {
+                mIsBatchScheduled.set(false);
+                if (!mPendingEntries.isEmpty()) {
+                    scheduleBatch();
+                }
+            }
+        }
+    };
+
+    /**
+     * @param executorName the name of the task lane to apply the batches on, as one of the
+     * {@link ExecutorUtils} names. It must run tasks one at a time.
+     * @param writeLock the lock to hold while applying a batch.
+     * @param prepareUpdateBatchLocked the task to run under the lock before the first update of a
+     * batch.
+     */
+    public DictionaryWriteJournal(@Nonnull final String executorName,
+            @Nonnull final Lock writeLock, @Nonnull final Runnable prepareUpdateBatchLocked) {
+        this(executorName, writeLock, prepareUpdateBatchLocked, new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    /**
+     * @param finishBatch the task to run after the lock of a batch is released.
+     */
+    public DictionaryWriteJournal(@Nonnull final String executorName,
+            @Nonnull final Lock writeLock, @Nonnull final Runnable prepareUpdateBatchLocked,
+            @Nonnull final Runnable finishBatch) {
+        mExecutorName = executorName;
+        mWriteLock = writeLock;
+        mPrepareUpdateBatchLocked = prepareUpdateBatchLocked;
+        mFinishBatch = finishBatch;
+    }
+
+    /**
+     * Queues an update of the dictionary contents, such as learning or unlearning a word.
+     */
+    public void addUpdate(@Nonnull final Runnable updateTask) {
+        add(new Entry(updateTask, true /* isUpdate */));
+    }
+
+    /**
+     * Queues a task that needs the write lock but is not an update, such as closing or flushing
+     * the dictionary. It is applied in order with the updates.
+     */
+    public void addTask(@Nonnull final Runnable task) {
+        add(new Entry(task, false /* isUpdate */));
+    }
+
+    private void add(final Entry entry) {
+        mPendingEntries.add(entry);
+        mPendingCount.incrementAndGet();
+        scheduleBatch();
+    }
+
+    private void scheduleBatch() {
+        if (mIsBatchScheduled.compareAndSet(false, true)) {
+            ExecutorUtils.getTaskLane(mExecutorName).execute(this, TaskLane.PRIORITY_NORMAL,
+                    mApplyBatchTask);
+        }
+    }
+
+    /**
+     * Applies the pending tasks on the calling thread. This must be called from the executor of
+     * the journal, for example before a task that reads the dictionary.
+     */
+    public void applyPendingTasks() {
+        while (!mPendingEntries.isEmpty()) {
+            applyBatch();
+        }
+    }
+
+    private void applyBatch() {
+        if (mPendingEntries.isEmpty()) {
+            return;
+        }
+        int batchSize = 0;
+        boolean isPrepared = false;
+        mWriteLock.lock();
+        try {
+            Entry entry;
+            while (batchSize < MAX_BATCH_SIZE && (entry = mPendingEntries.poll()) != null) {
+                mPendingCount.decrementAndGet();
+                ++batchSize;
+                if (entry.mIsUpdate && !isPrepared) {
+                    mPrepareUpdateBatchLocked.run();
+                    isPrepared = true;
+                }
+                entry.mTask.run();
+            }
+        } finally {
+            mWriteLock.unlock();
+            // A failing task ends the batch, but the tasks before it have been applied.
+            finishBatch(batchSize);
+        }
+    }
+
+    private void finishBatch(final int batchSize) {
+        mFinishBatch.run();
+        mBatchCount.incrementAndGet();
+        mAppliedCount.addAndGet(batchSize);
+        mLastBatchSize = batchSize;
+        if (batchSize > mMaxBatchSize) {
+            mMaxBatchSize = batchSize;
+        }
+    }
+
+    /**
+     * Returns the number of write tasks waiting to be applied.
+     */
+    public int getQueueDepth() {
+        return mPendingCount.get();
+    }
+
+    public int getLastBatchSize() {
+        return mLastBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return mMaxBatchSize;
+    }
+
+    public long getBatchCount() {
+        return mBatchCount.get();
+    }
+
+    public long getAppliedTaskCount() {
+        return mAppliedCount.get();
+    }
+}
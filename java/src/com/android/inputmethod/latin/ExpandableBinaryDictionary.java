@@ -24,6 +24,7 @@ import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.common.ComposedData;
 import com.android.inputmethod.latin.common.FileUtils;
 import com.android.inputmethod.latin.define.DecoderSpecificConstants;
+import com.android.inputmethod.latin.define.ProductionFlags;
 import com.android.inputmethod.latin.makedict.DictionaryHeader;
 import com.android.inputmethod.latin.makedict.FormatSpec;
 import com.android.inputmethod.latin.makedict.UnsupportedFormatException;
@@ -32,16 +33,20 @@ import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
 import com.android.inputmethod.latin.utils.AsyncResultHolder;
 import com.android.inputmethod.latin.utils.CombinedFormatUtils;
 import com.android.inputmethod.latin.utils.ExecutorUtils;
+import com.android.inputmethod.latin.utils.SuggestionCandidates;
+import com.android.inputmethod.latin.utils.TaskLane;
 import com.android.inputmethod.latin.utils.WordInputEventForPersonalization;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -67,6 +72,10 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     private static final int TIMEOUT_FOR_READ_OPS_IN_MILLISECONDS = 100;
 
+    // Past this number of changed words, all the words are invalidated.
+    private static final int MAX_CHANGED_WORD_COUNT = 256;
+    private static final long NOT_A_CHANGE_COUNT = -1;
+
     /**
      * The maximum length of a word in this dictionary.
      */
@@ -83,9 +92,10 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
 
     /**
      * The binary dictionary generated dynamically from the fusion dictionary. This is used to
-     * answer unigram and bigram queries.
+     * answer unigram and bigram queries. Written under the write lock, and read without the lock
+     * only to check its word filter.
      */
-    private BinaryDictionary mBinaryDictionary;
+    private volatile BinaryDictionary mBinaryDictionary;
 
     /**
      * The name of this dictionary, used as a part of the filename for storing the binary
@@ -102,8 +112,40 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     /** Indicates whether the current dictionary needs to be recreated. */
     private boolean mNeedsToRecreate;
 
+    /** Indicates whether a task for rebuilding the word filter has been scheduled. */
+    private final AtomicBoolean mIsRebuildingWordFilter = new AtomicBoolean(false);
+
     private final ReentrantReadWriteLock mLock;
 
+    /** The name of the executor that runs the background tasks of this dictionary. */
+    private final String mExecutorName;
+
+    /** The pending write tasks, applied in batches under the write lock. */
+    private final DictionaryWriteJournal mWriteJournal;
+
+    /**
+     * A read-only view of the last flushed contents of the dictionary file. Reads that can't get
+     * the read lock right away, for example during a flush, a GC or a rebuild, are served from
+     * this view instead of waiting for the writer. The view is opened from the mmapped file, so
+     * it stays valid while the writer replaces the file.
+     */
+    private final DictionaryReadSnapshot.Holder mReadSnapshot =
+            new DictionaryReadSnapshot.Holder();
+    private final AtomicLong mSnapshotReadCount = new AtomicLong(0);
+
+    /**
+     * The words changed by the writes, with the number of the change, to invalidate them in the
+     * {@link ValidWordCache} after each batch of writes. A read served by the snapshot or that
+     * timed out on the lock may cache the former validity of a word, so a word is invalidated
+     * again after each batch until the snapshot includes the change. Guarded by itself.
+     */
+    private final HashMap<String, Long> mChangedWords = new HashMap<>();
+    private long mChangeCount = 0;
+    // The number of the last change of any word, or NOT_A_CHANGE_COUNT.
+    private long mAllWordsChangeCount = NOT_A_CHANGE_COUNT;
+    // The number of the last change included in the read snapshot.
+    private long mPublishedChangeCount = 0;
+
     private Map<String, String> mAdditionalAttributeMap = null;
 
     /* A extension for a binary dictionary file. */
@@ -149,6 +191,39 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         mIsReloading = new AtomicBoolean();
         mNeedsToRecreate = false;
         mLock = new ReentrantReadWriteLock();
+        mExecutorName = getExecutorName(dictType);
+        mWriteJournal = new DictionaryWriteJournal(mExecutorName, mLock.writeLock(),
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        // Check the GC once for a batch of updates rather than for each update.
+                        if (getBinaryDictionary() != null) {
+                            runGCIfRequiredLocked(true /* mindsBlockByGC */);
+                            asyncRebuildWordFilterIfRequired();
+                        }
+                    }
+                },
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        invalidateChangedWords();
+                    }
+                });
+    }
+
+    /**
+     * Returns the executor to run the tasks of a type of dictionary on. Learning the typed words
+     * is latency-critical, and rebuilding the contacts dictionary can take long enough to delay
+     * the other dictionaries if they shared an executor.
+     */
+    private static String getExecutorName(final String dictType) {
+        if (Dictionary.TYPE_USER_HISTORY.equals(dictType)) {
+            return ExecutorUtils.KEYBOARD;
+        }
+        if (Dictionary.TYPE_CONTACTS.equals(dictType)) {
+            return ExecutorUtils.BULK;
+        }
+        return ExecutorUtils.DICTIONARY_IO;
     }
 
     public static File getDictFile(final Context context, final String dictName,
@@ -163,13 +238,16 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     }
 
     private void asyncExecuteTaskWithWriteLock(final Runnable task) {
-        asyncExecuteTaskWithLock(mLock.writeLock(), task);
+        mWriteJournal.addTask(task);
     }
 
-    private static void asyncExecuteTaskWithLock(final Lock lock, final Runnable task) {
-        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.KEYBOARD).execute(new Runnable() {
+    private void asyncExecuteTaskWithReadLock(final Runnable task) {
+        final Lock lock = mLock.readLock();
+        final Runnable taskWithReadLock = new Runnable() {
             @Override
             public void run() {
+                // Let the task see the writes that were requested before it.
+                mWriteJournal.applyPendingTasks();
                 lock.lock();
                 try {
                     task.run();
@@ -177,7 +255,42 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                     lock.unlock();
                 }
             }
-        });
+        };
+        ExecutorUtils.getTaskLane(mExecutorName).execute(this, TaskLane.PRIORITY_NORMAL,
+                taskWithReadLock);
+    }
+
+    /**
+     * Schedules building the word filter of the binary dictionary again once it has outgrown its
+     * capacity. It iterates over the whole dictionary, so it runs as a low priority task under the
+     * read lock rather than in the write that filled the filter.
+     */
+    private void asyncRebuildWordFilterIfRequired() {
+        final BinaryDictionary binaryDictionary = getBinaryDictionary();
+        if (binaryDictionary == null || !binaryDictionary.needsToRebuildWordFilter()
+                || !mIsRebuildingWordFilter.compareAndSet(false, true)) {
+            return;
+        }
+        ExecutorUtils.getTaskLane(ExecutorUtils.DICTIONARY_IO).execute(this,
+                TaskLane.PRIORITY_LOW, new Runnable() {
+                    @Override
+                    public void run() {
+                        final Lock lock = mLock.readLock();
+                        lock.lock();
+                        try {
+                            mIsRebuildingWordFilter.set(false);
+                            // The dictionary may have been replaced or closed since then.
+                            final BinaryDictionary currentBinaryDictionary =
+                                    getBinaryDictionary();
+                            if (currentBinaryDictionary != null
+                                    && currentBinaryDictionary.needsToRebuildWordFilter()) {
+                                currentBinaryDictionary.buildWordFilter();
+                            }
+                        } finally {
+                            lock.unlock();
+                        }
+                    }
+                });
     }
 
     @Nullable
@@ -201,6 +314,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
             @Override
             public void run() {
                 closeBinaryDictionary();
+                mReadSnapshot.publish(null);
             }
         });
     }
@@ -222,11 +336,13 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
             @Override
             public void run() {
                 removeBinaryDictionaryLocked();
+                mReadSnapshot.publish(null);
             }
         });
     }
 
     void removeBinaryDictionaryLocked() {
+        onAllWordsChangedLocked();
         closeBinaryDictionary();
         if (mDictFile.exists() && !FileUtils.deleteRecursively(mDictFile)) {
             Log.e(TAG, "Can't remove a file: " + mDictFile.getName());
@@ -234,15 +350,103 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     }
 
     private void openBinaryDictionaryLocked() {
-        mBinaryDictionary = new BinaryDictionary(
+        final BinaryDictionary binaryDictionary = new BinaryDictionary(
                 mDictFile.getAbsolutePath(), 0 /* offset */, mDictFile.length(),
                 true /* useFullEditDistance */, mLocale, mDictType, true /* isUpdatable */);
+        if (ProductionFlags.ENABLE_WORD_MEMBERSHIP_FILTER) {
+            binaryDictionary.buildWordFilter();
+        }
+        mBinaryDictionary = binaryDictionary;
+    }
+
+    /**
+     * Replaces the read snapshot with a read-only view of the dictionary file. This must be
+     * called after the file has been written.
+     */
+    private void publishReadSnapshotLocked() {
+        if (!ProductionFlags.ENABLE_DYNAMIC_DICTIONARY_SNAPSHOT_READS) {
+            return;
+        }
+        mReadSnapshot.publish(openReadSnapshotLocked());
+        onReadSnapshotPublishedLocked();
+    }
+
+    @Nullable
+    private BinaryDictionary openReadSnapshotLocked() {
+        if (!mDictFile.exists()) {
+            return null;
+        }
+        final BinaryDictionary snapshot = new BinaryDictionary(
+                mDictFile.getAbsolutePath(), 0 /* offset */, mDictFile.length(),
+                true /* useFullEditDistance */, mLocale, mDictType, false /* isUpdatable */);
+        if (!snapshot.isValidDictionary()) {
+            snapshot.close();
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Records that the validity of a word may have changed. This must be called by the write
+     * tasks that add or remove words.
+     */
+    protected void onWordChangedLocked(final String word) {
+        synchronized (mChangedWords) {
+            if (mChangedWords.size() >= MAX_CHANGED_WORD_COUNT) {
+                onAllWordsChangedLocked();
+                return;
+            }
+            mChangedWords.put(word, ++mChangeCount);
+        }
+    }
+
+    /**
+     * Records that the validity of any word may have changed, for example when the dictionary is
+     * recreated.
+     */
+    protected void onAllWordsChangedLocked() {
+        synchronized (mChangedWords) {
+            mAllWordsChangeCount = ++mChangeCount;
+            mChangedWords.clear();
+        }
+    }
+
+    private void onReadSnapshotPublishedLocked() {
+        synchronized (mChangedWords) {
+            mPublishedChangeCount = mChangeCount;
+        }
+    }
+
+    private void invalidateChangedWords() {
+        synchronized (mChangedWords) {
+            if (mAllWordsChangeCount != NOT_A_CHANGE_COUNT) {
+                ValidWordCache.getInstance().invalidateAll();
+            } else if (!mChangedWords.isEmpty()) {
+                ValidWordCache.getInstance().invalidateWords(mChangedWords.keySet());
+            }
+            // Without a snapshot, the reads that follow the batch see all the changes.
+            final long publishedChangeCount =
+                    mReadSnapshot.hasSnapshot() ? mPublishedChangeCount : mChangeCount;
+            if (mAllWordsChangeCount <= publishedChangeCount) {
+                mAllWordsChangeCount = NOT_A_CHANGE_COUNT;
+            }
+            final Iterator<Long> changeCounts = mChangedWords.values().iterator();
+            while (changeCounts.hasNext()) {
+                if (changeCounts.next() <= publishedChangeCount) {
+                    changeCounts.remove();
+                }
+            }
+        }
     }
 
     void createOnMemoryBinaryDictionaryLocked() {
-        mBinaryDictionary = new BinaryDictionary(
+        final BinaryDictionary binaryDictionary = new BinaryDictionary(
                 mDictFile.getAbsolutePath(), true /* useFullEditDistance */, mLocale, mDictType,
                 DICTIONARY_FORMAT_VERSION, getHeaderAttributeMap());
+        if (ProductionFlags.ENABLE_WORD_MEMBERSHIP_FILTER) {
+            binaryDictionary.buildWordFilter();
+        }
+        mBinaryDictionary = binaryDictionary;
     }
 
     public void clear() {
@@ -251,6 +455,8 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
             public void run() {
                 removeBinaryDictionaryLocked();
                 createOnMemoryBinaryDictionaryLocked();
+                mReadSnapshot.publish(null);
+                onReadSnapshotPublishedLocked();
             }
         });
     }
@@ -273,22 +479,55 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
     protected void runGCIfRequiredLocked(final boolean mindsBlockByGC) {
         if (mBinaryDictionary.needsToRunGC(mindsBlockByGC)) {
             mBinaryDictionary.flushWithGC();
+            publishReadSnapshotLocked();
         }
     }
 
-    private void updateDictionaryWithWriteLock(@Nonnull final Runnable updateTask) {
+    /**
+     * Queues an update of the dictionary contents. The task runs under the write lock, and only
+     * if the binary dictionary has been loaded.
+     */
+    protected void updateDictionaryWithWriteLock(@Nonnull final Runnable updateTask) {
         reloadDictionaryIfRequired();
-        final Runnable task = new Runnable() {
+        // The GC check is run once per batch by the write journal.
+        mWriteJournal.addUpdate(new Runnable() {
             @Override
             public void run() {
                 if (getBinaryDictionary() == null) {
                     return;
                 }
-                runGCIfRequiredLocked(true /* mindsBlockByGC */);
                 updateTask.run();
             }
-        };
-        asyncExecuteTaskWithWriteLock(task);
+        });
+    }
+
+    /**
+     * Returns the number of write tasks waiting to be applied to the dictionary.
+     */
+    public int getPendingWriteCount() {
+        return mWriteJournal.getQueueDepth();
+    }
+
+    /**
+     * Returns the number of reads that were served from the read snapshot because a writer held
+     * the lock.
+     */
+    public long getSnapshotReadCount() {
+        return mSnapshotReadCount.get();
+    }
+
+    /**
+     * Returns the number of write tasks applied in the last batch.
+     */
+    public int getLastWriteBatchSize() {
+        return mWriteJournal.getLastBatchSize();
+    }
+
+    /**
+     * Returns the largest number of write tasks applied in one batch.
+     */
+    public int getMaxWriteBatchSize() {
+        return mWriteJournal.getMaxBatchSize();
     }
 
     /**
@@ -313,26 +552,22 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 false /* isBeginningOfSentence */, isNotAWord, isPossiblyOffensive, timestamp)) {
             Log.e(TAG, "Cannot add unigram entry. word: " + word);
         }
+        onWordChangedLocked(word);
     }
 
     /**
      * Dynamically remove the unigram entry from the dictionary.
      */
     public void removeUnigramEntryDynamically(final String word) {
-        reloadDictionaryIfRequired();
-        asyncExecuteTaskWithWriteLock(new Runnable() {
+        updateDictionaryWithWriteLock(new Runnable() {
             @Override
             public void run() {
-                final BinaryDictionary binaryDictionary = getBinaryDictionary();
-                if (binaryDictionary == null) {
-                    return;
-                }
-                runGCIfRequiredLocked(true /* mindsBlockByGC */);
-                if (!binaryDictionary.removeUnigramEntry(word)) {
+                if (!getBinaryDictionary().removeUnigramEntry(word)) {
                     if (DEBUG) {
                         Log.i(TAG, "Cannot remove unigram entry: " + word);
                     }
                 }
+                onWordChangedLocked(word);
             }
         });
     }
@@ -342,14 +577,9 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
      */
     public void addNgramEntry(@Nonnull final NgramContext ngramContext, final String word,
             final int frequency, final int timestamp) {
-        reloadDictionaryIfRequired();
-        asyncExecuteTaskWithWriteLock(new Runnable() {
+        updateDictionaryWithWriteLock(new Runnable() {
             @Override
             public void run() {
-                if (getBinaryDictionary() == null) {
-                    return;
-                }
-                runGCIfRequiredLocked(true /* mindsBlockByGC */);
                 addNgramEntryLocked(ngramContext, word, frequency, timestamp);
             }
         });
@@ -373,17 +603,14 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         updateDictionaryWithWriteLock(new Runnable() {
             @Override
             public void run() {
-                final BinaryDictionary binaryDictionary = getBinaryDictionary();
-                if (binaryDictionary == null) {
-                    return;
-                }
-                if (!binaryDictionary.updateEntriesForWordWithNgramContext(ngramContext, word,
+                if (!getBinaryDictionary().updateEntriesForWordWithNgramContext(ngramContext, word,
                         isValidWord, count, timestamp)) {
                     if (DEBUG) {
                         Log.e(TAG, "Cannot update counter. word: " + word
                                 + " context: " + ngramContext.toString());
                     }
                 }
+                onWordChangedLocked(word);
             }
         });
     }
@@ -419,6 +646,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                     binaryDictionary.updateEntriesForInputEvents(
                             inputEvents.toArray(
                                     new WordInputEventForPersonalization[inputEvents.size()]));
+                    onAllWordsChangedLocked();
                 } finally {
                     if (callback != null) {
                         callback.onFinished();
@@ -428,6 +656,31 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         });
     }
 
+    /**
+     * Tries to get the read lock. When a read snapshot can answer instead, this doesn't wait for
+     * a writer that holds the lock.
+     */
+    private boolean tryLockForRead() throws InterruptedException {
+        if (mReadSnapshot.hasSnapshot()) {
+            return mLock.readLock().tryLock();
+        }
+        return mLock.readLock().tryLock(TIMEOUT_FOR_READ_OPS_IN_MILLISECONDS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the read snapshot to read instead of the dictionary, or null if there is none. The
+     * returned snapshot must be released.
+     */
+    @Nullable
+    private DictionaryReadSnapshot acquireReadSnapshot() {
+        final DictionaryReadSnapshot snapshot = mReadSnapshot.acquire();
+        if (snapshot != null) {
+            mSnapshotReadCount.incrementAndGet();
+        }
+        return snapshot;
+    }
+
     @Override
     public ArrayList<SuggestedWordInfo> getSuggestions(final ComposedData composedData,
             final NgramContext ngramContext, final long proximityInfoHandle,
@@ -436,8 +689,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         reloadDictionaryIfRequired();
         boolean lockAcquired = false;
         try {
-            lockAcquired = mLock.readLock().tryLock(
-                    TIMEOUT_FOR_READ_OPS_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+            lockAcquired = tryLockForRead();
             if (lockAcquired) {
                 if (mBinaryDictionary == null) {
                     return null;
@@ -460,16 +712,165 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 mLock.readLock().unlock();
             }
         }
+        if (!lockAcquired) {
+            final DictionaryReadSnapshot snapshot = acquireReadSnapshot();
+            if (snapshot != null) {
+                try {
+                    return snapshot.getDictionary().getSuggestions(composedData, ngramContext,
+                            proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                            weightForLocale, inOutWeightOfLangModelVsSpatialModel);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        }
         return null;
     }
 
+    @Override
+    public void addSuggestionCandidates(final ComposedData composedData,
+            final NgramContext ngramContext, final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
+            final float weightForLocale, final float[] inOutWeightOfLangModelVsSpatialModel,
+            final SuggestionCandidates outCandidates) {
+        reloadDictionaryIfRequired();
+        boolean lockAcquired = false;
+        try {
+            lockAcquired = tryLockForRead();
+            if (lockAcquired) {
+                if (mBinaryDictionary == null) {
+                    return;
+                }
+                mBinaryDictionary.addSuggestionCandidates(composedData, ngramContext,
+                        proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                        weightForLocale, inOutWeightOfLangModelVsSpatialModel, outCandidates);
+                if (mBinaryDictionary.isCorrupted()) {
+                    Log.i(TAG, "Dictionary (" + mDictName +") is corrupted. "
+                            + "Remove and regenerate it.");
+                    removeBinaryDictionary();
+                }
+            }
+        } catch (final InterruptedException e) {
+            Log.e(TAG, "Interrupted tryLock() in addSuggestionCandidates().", e);
+        } finally {
+            if (lockAcquired) {
+                mLock.readLock().unlock();
+            }
+        }
+        if (!lockAcquired) {
+            final DictionaryReadSnapshot snapshot = acquireReadSnapshot();
+            if (snapshot != null) {
+                try {
+                    snapshot.getDictionary().addSuggestionCandidates(composedData, ngramContext,
+                            proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                            weightForLocale, inOutWeightOfLangModelVsSpatialModel, outCandidates);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches for suggestions for a batch of words, acquiring the read lock once for the whole
+     * batch.
+     */
+    @Override
+    public ArrayList<ArrayList<SuggestedWordInfo>> getSuggestionsForWords(
+            final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+            final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion, final int sessionId,
+            final float weightForLocale, final float[] inOutWeightsOfLangModelVsSpatialModel) {
+        reloadDictionaryIfRequired();
+        boolean lockAcquired = false;
+        try {
+            lockAcquired = tryLockForRead();
+            if (lockAcquired && mBinaryDictionary != null) {
+                final ArrayList<ArrayList<SuggestedWordInfo>> suggestionsForWords =
+                        mBinaryDictionary.getSuggestionsForWords(composedDataArray,
+                                ngramContexts, proximityInfoHandle, settingsValuesForSuggestion,
+                                sessionId, weightForLocale, inOutWeightsOfLangModelVsSpatialModel);
+                if (mBinaryDictionary.isCorrupted()) {
+                    Log.i(TAG, "Dictionary (" + mDictName +") is corrupted. "
+                            + "Remove and regenerate it.");
+                    removeBinaryDictionary();
+                }
+                return suggestionsForWords;
+            }
+        } catch (final InterruptedException e) {
+            Log.e(TAG, "Interrupted tryLock() in getSuggestionsForWords().", e);
+        } finally {
+            if (lockAcquired) {
+                mLock.readLock().unlock();
+            }
+        }
+        if (!lockAcquired) {
+            final DictionaryReadSnapshot snapshot = acquireReadSnapshot();
+            if (snapshot != null) {
+                try {
+                    return snapshot.getDictionary().getSuggestionsForWords(composedDataArray,
+                            ngramContexts, proximityInfoHandle, settingsValuesForSuggestion,
+                            sessionId, weightForLocale, inOutWeightsOfLangModelVsSpatialModel);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        }
+        final ArrayList<ArrayList<SuggestedWordInfo>> suggestionsForWords =
+                new ArrayList<>(composedDataArray.length);
+        for (int i = 0; i < composedDataArray.length; ++i) {
+            suggestionsForWords.add(null);
+        }
+        return suggestionsForWords;
+    }
+
+    /**
+     * Checks a batch of words, acquiring the read lock once for the whole batch.
+     */
+    @Override
+    public void updateValidityOfWords(final String[] words, final boolean[] inOutIsValid) {
+        reloadDictionaryIfRequired();
+        if (!mightContainAnyWord(words, inOutIsValid)) {
+            return;
+        }
+        boolean lockAcquired = false;
+        try {
+            lockAcquired = tryLockForRead();
+            if (lockAcquired && mBinaryDictionary != null) {
+                for (int i = 0; i < words.length; ++i) {
+                    if (!inOutIsValid[i] && isInDictionaryLocked(words[i])) {
+                        inOutIsValid[i] = true;
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            Log.e(TAG, "Interrupted tryLock() in updateValidityOfWords().", e);
+        } finally {
+            if (lockAcquired) {
+                mLock.readLock().unlock();
+            }
+        }
+        if (!lockAcquired) {
+            final DictionaryReadSnapshot snapshot = acquireReadSnapshot();
+            if (snapshot != null) {
+                try {
+                    snapshot.getDictionary().updateValidityOfWords(words, inOutIsValid);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        }
+    }
+
     @Override
     public boolean isInDictionary(final String word) {
         reloadDictionaryIfRequired();
+        if (!mightContainWord(word)) {
+            return false;
+        }
         boolean lockAcquired = false;
         try {
-            lockAcquired = mLock.readLock().tryLock(
-                    TIMEOUT_FOR_READ_OPS_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+            lockAcquired = tryLockForRead();
             if (lockAcquired) {
                 if (mBinaryDictionary == null) {
                     return false;
@@ -483,6 +884,40 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 mLock.readLock().unlock();
             }
         }
+        if (!lockAcquired) {
+            final DictionaryReadSnapshot snapshot = acquireReadSnapshot();
+            if (snapshot != null) {
+                try {
+                    return snapshot.getDictionary().isInDictionary(word);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns false if the word is certainly not in the dictionary, which the word filter of the
+     * binary dictionary answers without the lock.
+     */
+    private boolean mightContainWord(final String word) {
+        final BinaryDictionary binaryDictionary = mBinaryDictionary;
+        // While a writer holds the lock, the reads may go to the read snapshot, which can have
+        // words that the dictionary being rewritten doesn't have yet. The dictionary is read
+        // before the lock so that a dictionary replaced by a writer is not trusted until the
+        // writer is done.
+        return binaryDictionary == null || mLock.isWriteLocked()
+                || binaryDictionary.mightContainWord(word);
+    }
+
+    // Whether any of the words that are not known to be valid yet may be in the dictionary.
+    private boolean mightContainAnyWord(final String[] words, final boolean[] isValid) {
+        for (int i = 0; i < words.length; ++i) {
+            if (!isValid[i] && mightContainWord(words[i])) {
+                return true;
+            }
+        }
         return false;
     }
 
@@ -496,8 +931,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         reloadDictionaryIfRequired();
         boolean lockAcquired = false;
         try {
-            lockAcquired = mLock.readLock().tryLock(
-                    TIMEOUT_FOR_READ_OPS_IN_MILLISECONDS, TimeUnit.MILLISECONDS);
+            lockAcquired = tryLockForRead();
             if (lockAcquired) {
                 if (mBinaryDictionary == null) {
                     return NOT_A_PROBABILITY;
@@ -511,6 +945,16 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 mLock.readLock().unlock();
             }
         }
+        if (!lockAcquired) {
+            final DictionaryReadSnapshot snapshot = acquireReadSnapshot();
+            if (snapshot != null) {
+                try {
+                    return snapshot.getDictionary().getMaxFrequencyOfExactMatches(word);
+                } finally {
+                    snapshot.release();
+                }
+            }
+        }
         return NOT_A_PROBABILITY;
     }
 
@@ -532,6 +976,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
             }
         }
         final BinaryDictionary oldBinaryDictionary = mBinaryDictionary;
+        onAllWordsChangedLocked();
         openBinaryDictionaryLocked();
         if (oldBinaryDictionary != null) {
             oldBinaryDictionary.close();
@@ -554,6 +999,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         loadInitialContentsLocked();
         // Run GC and flush to file when initial contents have been loaded.
         mBinaryDictionary.flushWithGCIfHasUpdated();
+        publishReadSnapshotLocked();
     }
 
     /**
@@ -619,6 +1065,8 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                             // the dictionary file. createNewDictionaryLocked will remove the
                             // existing files if appropriate.
                             createNewDictionaryLocked();
+                        } else {
+                            publishReadSnapshotLocked();
                         }
                     }
                     clearNeedsToRecreate();
@@ -645,6 +1093,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
                 } else {
                     binaryDictionary.flush();
                 }
+                publishReadSnapshotLocked();
             }
         });
     }
@@ -655,7 +1104,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         final File dictFile = mDictFile;
         final AsyncResultHolder<DictionaryStats> result =
                 new AsyncResultHolder<>("DictionaryStats");
-        asyncExecuteTaskWithLock(mLock.readLock(), new Runnable() {
+        asyncExecuteTaskWithReadLock(new Runnable() {
             @Override
             public void run() {
                 result.set(new DictionaryStats(mLocale, dictName, dictName, dictFile, 0));
@@ -691,7 +1140,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         reloadDictionaryIfRequired();
         final String tag = TAG;
         final String dictName = mDictName;
-        asyncExecuteTaskWithLock(mLock.readLock(), new Runnable() {
+        asyncExecuteTaskWithReadLock(new Runnable() {
             @Override
             public void run() {
                 Log.d(tag, "Dump dictionary: " + dictName + " for " + mLocale);
@@ -730,7 +1179,7 @@ abstract public class ExpandableBinaryDictionary extends Dictionary {
         reloadDictionaryIfRequired();
         final AsyncResultHolder<WordProperty[]> result =
                 new AsyncResultHolder<>("WordPropertiesForSync");
-        asyncExecuteTaskWithLock(mLock.readLock(), new Runnable() {
+        asyncExecuteTaskWithReadLock(new Runnable() {
             @Override
             public void run() {
                 final ArrayList<WordProperty> wordPropertyList = new ArrayList<>();
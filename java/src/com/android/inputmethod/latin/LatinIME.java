@@ -72,6 +72,7 @@ import com.android.inputmethod.event.InputTransaction;
 import com.android.inputmethod.keyboard.Keyboard;
 import com.android.inputmethod.keyboard.KeyboardActionListener;
 import com.android.inputmethod.keyboard.KeyboardId;
+import com.android.inputmethod.keyboard.KeyboardLayoutSet;
 import com.android.inputmethod.keyboard.KeyboardSwitcher;
 import com.android.inputmethod.keyboard.MainKeyboardView;
 import com.android.inputmethod.latin.Suggest.OnGetSuggestedWordsCallback;
@@ -104,6 +105,7 @@ import com.android.inputmethod.latin.utils.ViewLayoutUtils;
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
@@ -679,6 +681,7 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         if (mainKeyboardView != null) {
             mainKeyboardView.setMainDictionaryAvailability(isMainDictionaryAvailable);
         }
+        mInputLogic.mSuggest.resetCachedSuggestions();
         if (mHandler.hasPendingWaitForDictionaryLoad()) {
             mHandler.cancelWaitForDictionaryLoad();
             mHandler.postResumeSuggestions(false /* shouldDelay */);
@@ -715,10 +718,12 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
     private void resetDictionaryFacilitator(final Locale locale) {
         final SettingsValues settingsValues = mSettings.getCurrent();
         mDictionaryFacilitator.resetDictionaries(this /* context */, locale,
+                getSecondaryDictionaryLocales(locale),
                 settingsValues.mUseContactsDict, settingsValues.mUsePersonalizedDicts,
                 false /* forceReloadMainDictionary */,
                 settingsValues.mAccount, "" /* dictNamePrefix */,
                 this /* DictionaryInitializationListener */);
+        mInputLogic.mSuggest.resetCachedSuggestions();
         if (settingsValues.mAutoCorrectionEnabledPerUserSettings) {
             mInputLogic.mSuggest.setAutoCorrectionThreshold(
                     settingsValues.mAutoCorrectionThreshold);
@@ -726,13 +731,24 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         mInputLogic.mSuggest.setPlausibilityThreshold(settingsValues.mPlausibilityThreshold);
     }
 
+    /**
+     * Returns the other locales to suggest words in along with the locale of the subtype.
+     */
+    private List<Locale> getSecondaryDictionaryLocales(final Locale locale) {
+        if (!ProductionFlags.ENABLE_MULTI_LOCALE_SUGGESTIONS || locale == null) {
+            return Collections.<Locale>emptyList();
+        }
+        return mRichImm.getOtherEnabledSubtypeLocales(locale);
+    }
+
     /**
      * Reset suggest by loading the main dictionary of the current locale.
      */
     /* package private */ void resetSuggestMainDict() {
         final SettingsValues settingsValues = mSettings.getCurrent();
-        mDictionaryFacilitator.resetDictionaries(this /* context */,
-                mDictionaryFacilitator.getLocale(), settingsValues.mUseContactsDict,
+        final Locale locale = mDictionaryFacilitator.getLocale();
+        mDictionaryFacilitator.resetDictionaries(this /* context */, locale,
+                getSecondaryDictionaryLocales(locale), settingsValues.mUseContactsDict,
                 settingsValues.mUsePersonalizedDicts,
                 true /* forceReloadMainDictionary */,
                 settingsValues.mAccount, "" /* dictNamePrefix */,
@@ -791,6 +807,12 @@ public class LatinIME extends InputMethodService implements KeyboardActionListen
         super.onConfigurationChanged(conf);
     }
 
+    @Override
+    public void onTrimMemory(final int level) {
+        super.onTrimMemory(level);
+        KeyboardLayoutSet.onTrimMemory(level);
+    }
+
     @Override
     public void onInitializeInterface() {
         mDisplayContext = getDisplayContext();
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The loading of the word lists of a main dictionary, opened in parallel.
+ *
+ * Each word list is added to the dictionary collection as soon as it is opened, so the collection
+ * can be used once the first one is ready while the others are still being opened. A word list
+ * that is opened after the collection was closed is closed right away.
+ */
+final class MainDictionaryLoad {
+    /**
+     * Opens one word list of the main dictionary.
+     */
+    interface WordListOpener {
+        /**
+         * @return the opened dictionary, or null if the word list is not valid.
+         */
+        @Nullable
+        Dictionary open(@Nonnull AssetFileAddress wordList);
+    }
+
+    private final DictionaryCollection mDictionaryCollection;
+    private final ArrayList<Future<Dictionary>> mWordListFutures;
+    // Whether each word list has started to be opened or has been cancelled, whichever is first.
+    private final ArrayList<AtomicBoolean> mIsWordListClaimed;
+    private final CountDownLatch mFirstWordListLatch = new CountDownLatch(1);
+    private final CountDownLatch mAllWordListsLatch = new CountDownLatch(1);
+    private final AtomicInteger mRemainingWordListCount;
+
+    /**
+     * Starts opening the specified word lists on the executor.
+     */
+    public MainDictionaryLoad(@Nonnull final Locale locale,
+            @Nonnull final List<AssetFileAddress> wordLists,
+            @Nonnull final WordListOpener opener, @Nonnull final ExecutorService executor) {
+        mDictionaryCollection = new DictionaryCollection(Dictionary.TYPE_MAIN, locale);
+        mWordListFutures = new ArrayList<>(wordLists.size());
+        mIsWordListClaimed = new ArrayList<>(wordLists.size());
+        mRemainingWordListCount = new AtomicInteger(wordLists.size());
+        if (wordLists.isEmpty()) {
+            mFirstWordListLatch.countDown();
+            mAllWordListsLatch.countDown();
+            return;
+        }
+        for (final AssetFileAddress wordList : wordLists) {
+            final AtomicBoolean isClaimed = new AtomicBoolean(false);
+            mIsWordListClaimed.add(isClaimed);
+            mWordListFutures.add(executor.submit(new Callable<Dictionary>() {
+                @Override
+                public Dictionary call() {
+                    if (!isClaimed.compareAndSet(false, true)) {
+                        // Cancelled.
+                        return null;
+                    }
+                    Dictionary dictionary = null;
+                    try {
+                        dictionary = opener.open(wordList);
+                        mDictionaryCollection.addDictionary(dictionary);
+                        return dictionary;
+                    } finally {
+                        onWordListDone(dictionary != null);
+                    }
+                }
+            }));
+        }
+    }
+
+    private void onWordListDone(final boolean isOpened) {
+        if (isOpened) {
+            mFirstWordListLatch.countDown();
+        }
+        if (mRemainingWordListCount.decrementAndGet() == 0) {
+            mFirstWordListLatch.countDown();
+            mAllWordListsLatch.countDown();
+        }
+    }
+
+    /**
+     * Returns the collection the word lists are added to as they are opened.
+     */
+    @Nonnull
+    public DictionaryCollection getDictionaryCollection() {
+        return mDictionaryCollection;
+    }
+
+    /**
+     * Returns the futures of the word lists, in the order they were specified. A future returns
+     * the opened dictionary, or null if the word list was not valid.
+     */
+    @Nonnull
+    public List<Future<Dictionary>> getWordListFutures() {
+        return Collections.unmodifiableList(mWordListFutures);
+    }
+
+    /**
+     * Waits until a word list has been opened, or all of them have failed.
+     */
+    public void awaitFirstWordList() throws InterruptedException {
+        mFirstWordListLatch.await();
+    }
+
+    /**
+     * Waits until all the word lists have been opened or have failed.
+     */
+    public void awaitAllWordLists() throws InterruptedException {
+        mAllWordListsLatch.await();
+    }
+
+    /**
+     * Stops opening the word lists that haven't started and closes the collection.
+     */
+    public void cancel() {
+        for (int i = 0; i < mWordListFutures.size(); ++i) {
+            if (mIsWordListClaimed.get(i).compareAndSet(false, true)) {
+                // The word list won't be opened.
+                mWordListFutures.get(i).cancel(false /* mayInterruptIfRunning */);
+                onWordListDone(false /* isOpened */);
+            }
+        }
+        mDictionaryCollection.close();
+    }
+}
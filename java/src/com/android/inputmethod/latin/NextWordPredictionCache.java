@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.utils.SuggestionResults;
+
+import java.util.ArrayList;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A small cache of the next-word predictions computed ahead of time for the n-gram contexts the
+ * user is likely to be in after committing a word.
+ *
+ * The predictions for an empty typed word only depend on the n-gram context and the dictionaries,
+ * so entries are keyed by the context and dropped with {@link #clear} when the dictionaries change.
+ * Predictions computed while the cache was being cleared are not added. This class is
+ * thread-safe.
+ */
+final class NextWordPredictionCache {
+    private static final int CAPACITY = 4;
+
+    private static final class Entry {
+        public final NgramContext mNgramContext;
+        public final boolean mBlockPotentiallyOffensive;
+        public final SuggestionResults mSuggestionResults;
+
+        public Entry(final NgramContext ngramContext, final boolean blockPotentiallyOffensive,
+                final SuggestionResults suggestionResults) {
+            mNgramContext = ngramContext;
+            mBlockPotentiallyOffensive = blockPotentiallyOffensive;
+            mSuggestionResults = suggestionResults;
+        }
+    }
+
+    // The entries, least recently used first.
+    private final ArrayList<Entry> mEntries = new ArrayList<>(CAPACITY);
+    private int mGeneration;
+    private int mHitCount;
+    private int mMissCount;
+
+    /**
+     * Returns the generation of the cache, to pass to {@link #put} once the predictions are
+     * computed.
+     */
+    public synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    private int indexOf(final NgramContext ngramContext, final boolean blockPotentiallyOffensive) {
+        for (int i = mEntries.size() - 1; i >= 0; --i) {
+            final Entry entry = mEntries.get(i);
+            if (entry.mBlockPotentiallyOffensive == blockPotentiallyOffensive
+                    && entry.mNgramContext.equals(ngramContext)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public synchronized boolean contains(@Nonnull final NgramContext ngramContext,
+            final boolean blockPotentiallyOffensive) {
+        return indexOf(ngramContext, blockPotentiallyOffensive) >= 0;
+    }
+
+    @Nullable
+    public synchronized SuggestionResults get(@Nonnull final NgramContext ngramContext,
+            final boolean blockPotentiallyOffensive) {
+        final int index = indexOf(ngramContext, blockPotentiallyOffensive);
+        if (index < 0) {
+            ++mMissCount;
+            return null;
+        }
+        ++mHitCount;
+        final Entry entry = mEntries.remove(index);
+        mEntries.add(entry);
+        return entry.mSuggestionResults;
+    }
+
+    /**
+     * Adds predictions unless the cache was cleared since the specified generation.
+     */
+    public synchronized void put(final int generation, @Nonnull final NgramContext ngramContext,
+            final boolean blockPotentiallyOffensive,
+            @Nonnull final SuggestionResults suggestionResults) {
+        if (generation != mGeneration) {
+            return;
+        }
+        final int index = indexOf(ngramContext, blockPotentiallyOffensive);
+        if (index >= 0) {
+            mEntries.remove(index);
+        } else if (mEntries.size() >= CAPACITY) {
+            mEntries.remove(0);
+        }
+        mEntries.add(new Entry(ngramContext, blockPotentiallyOffensive, suggestionResults));
+    }
+
+    public synchronized void clear() {
+        ++mGeneration;
+        mEntries.clear();
+    }
+
+    public synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    @UsedForTesting
+    synchronized int getEntryCountForTesting() {
+        return mEntries.size();
+    }
+}
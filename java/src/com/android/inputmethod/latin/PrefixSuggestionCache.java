@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.keyboard.Keyboard;
+import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.common.InputPointers;
+import com.android.inputmethod.latin.utils.SuggestionResults;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Caches the suggestions computed for each prefix of the word being typed.
+ *
+ * When a code point is deleted, the suggestions of the resulting prefix were already computed
+ * while typing it, and are returned from here without any search. When a code point is appended,
+ * the suggestions are computed by a full dictionary search; this cache doesn't help with that.
+ *
+ * The prefixes are only kept while the same word is typed in the same context with the same
+ * keyboard; anything else restarts the tracking. This class is not thread-safe.
+ */
+final class PrefixSuggestionCache {
+    public static final int QUERY_TYPE_RESTART = 0;
+    public static final int QUERY_TYPE_APPEND = 1;
+    public static final int QUERY_TYPE_DELETE = 2;
+
+    private static final class Prefix {
+        public final String mTypedWord;
+        public final int[] mXCoordinates;
+        public final int[] mYCoordinates;
+        public final SuggestionResults mSuggestionResults;
+
+        public Prefix(final String typedWord, final int[] xCoordinates, final int[] yCoordinates,
+                final SuggestionResults suggestionResults) {
+            mTypedWord = typedWord;
+            mXCoordinates = xCoordinates;
+            mYCoordinates = yCoordinates;
+            mSuggestionResults = suggestionResults;
+        }
+
+        public boolean isPrefixOf(final ComposedData composedData) {
+            if (!composedData.mTypedWord.startsWith(mTypedWord)) {
+                return false;
+            }
+            final InputPointers inputPointers = composedData.mInputPointers;
+            final int pointerSize = mXCoordinates.length;
+            if (inputPointers.getPointerSize() < pointerSize) {
+                return false;
+            }
+            final int[] xCoordinates = inputPointers.getXCoordinates();
+            final int[] yCoordinates = inputPointers.getYCoordinates();
+            for (int i = 0; i < pointerSize; ++i) {
+                if (xCoordinates[i] != mXCoordinates[i] || yCoordinates[i] != mYCoordinates[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // The prefixes of the word being typed, shortest first.
+    private final ArrayList<Prefix> mPrefixes = new ArrayList<>();
+    @Nullable private NgramContext mNgramContext;
+    @Nullable private Keyboard mKeyboard;
+    private boolean mBlockPotentiallyOffensive;
+    private int mLastQueryType = QUERY_TYPE_RESTART;
+
+    private int mAppendCount;
+    private int mDeleteCount;
+    private int mRestartCount;
+
+    /**
+     * Gets the suggestions already computed for the typed word, and forgets the prefixes that are
+     * not prefixes of it. This must be followed by {@link #onSuggestionResults} when it returns
+     * null.
+     *
+     * @return the suggestions, or null if they have to be computed.
+     */
+    @Nullable
+    public SuggestionResults getSuggestionResults(@Nonnull final ComposedData composedData,
+            @Nonnull final NgramContext ngramContext, @Nullable final Keyboard keyboard,
+            final boolean blockPotentiallyOffensive) {
+        if (composedData.mIsBatchMode || keyboard != mKeyboard
+                || blockPotentiallyOffensive != mBlockPotentiallyOffensive
+                || !ngramContext.equals(mNgramContext)) {
+            reset();
+            mNgramContext = ngramContext;
+            mKeyboard = keyboard;
+            mBlockPotentiallyOffensive = blockPotentiallyOffensive;
+            return restart();
+        }
+        final int prefixCount = mPrefixes.size();
+        while (!mPrefixes.isEmpty() && !getLastPrefix().isPrefixOf(composedData)) {
+            mPrefixes.remove(mPrefixes.size() - 1);
+        }
+        if (mPrefixes.isEmpty()) {
+            return restart();
+        }
+        final Prefix lastPrefix = getLastPrefix();
+        if (lastPrefix.mTypedWord.equals(composedData.mTypedWord)
+                && lastPrefix.mXCoordinates.length
+                        == composedData.mInputPointers.getPointerSize()) {
+            if (mPrefixes.size() < prefixCount) {
+                mLastQueryType = QUERY_TYPE_DELETE;
+                ++mDeleteCount;
+            }
+            return lastPrefix.mSuggestionResults;
+        }
+        // The typed word extends the last prefix, so its suggestions have to be computed.
+        mLastQueryType = QUERY_TYPE_APPEND;
+        ++mAppendCount;
+        return null;
+    }
+
+    /**
+     * Records the suggestions computed for the typed word.
+     */
+    public void onSuggestionResults(@Nonnull final ComposedData composedData,
+            @Nonnull final SuggestionResults suggestionResults) {
+        if (composedData.mIsBatchMode || composedData.mTypedWord.isEmpty()) {
+            return;
+        }
+        final InputPointers inputPointers = composedData.mInputPointers;
+        final int pointerSize = inputPointers.getPointerSize();
+        mPrefixes.add(new Prefix(composedData.mTypedWord,
+                Arrays.copyOf(inputPointers.getXCoordinates(), pointerSize),
+                Arrays.copyOf(inputPointers.getYCoordinates(), pointerSize),
+                suggestionResults));
+    }
+
+    public void reset() {
+        mPrefixes.clear();
+        mNgramContext = null;
+        mKeyboard = null;
+    }
+
+    private SuggestionResults restart() {
+        mLastQueryType = QUERY_TYPE_RESTART;
+        ++mRestartCount;
+        return null;
+    }
+
+    private Prefix getLastPrefix() {
+        return mPrefixes.get(mPrefixes.size() - 1);
+    }
+
+    public int getLastQueryType() {
+        return mLastQueryType;
+    }
+
+    public int getAppendCount() {
+        return mAppendCount;
+    }
+
+    public int getDeleteCount() {
+        return mDeleteCount;
+    }
+
+    public int getRestartCount() {
+        return mRestartCount;
+    }
+
+    @UsedForTesting
+    int getPrefixCountForTesting() {
+        return mPrefixes.size();
+    }
+}
@@ -18,7 +18,9 @@ package com.android.inputmethod.latin;
 
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.define.ProductionFlags;
 import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+import com.android.inputmethod.latin.utils.SuggestionCandidates;
 
 import java.util.ArrayList;
 import java.util.Locale;
@@ -43,6 +45,9 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
         super(dictType, locale);
         mBinaryDictionary = new BinaryDictionary(filename, offset, length, useFullEditDistance,
                 locale, dictType, false /* isUpdatable */);
+        if (ProductionFlags.ENABLE_WORD_MEMBERSHIP_FILTER) {
+            mBinaryDictionary.buildWordFilter();
+        }
     }
 
     public boolean isValidDictionary() {
@@ -67,8 +72,77 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
         return null;
     }
 
+    @Override
+    public void addSuggestionCandidates(final ComposedData composedData,
+            final NgramContext ngramContext, final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int sessionId, final float weightForLocale,
+            final float[] inOutWeightOfLangModelVsSpatialModel,
+            final SuggestionCandidates outCandidates) {
+        if (mLock.readLock().tryLock()) {
+            try {
+                mBinaryDictionary.addSuggestionCandidates(composedData, ngramContext,
+                        proximityInfoHandle, settingsValuesForSuggestion, sessionId,
+                        weightForLocale, inOutWeightOfLangModelVsSpatialModel, outCandidates);
+            } finally {
+                mLock.readLock().unlock();
+            }
+        }
+    }
+
+    @Override
+    public ArrayList<ArrayList<SuggestedWordInfo>> getSuggestionsForWords(
+            final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+            final long proximityInfoHandle,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int sessionId, final float weightForLocale,
+            final float[] inOutWeightsOfLangModelVsSpatialModel) {
+        if (mLock.readLock().tryLock()) {
+            try {
+                return mBinaryDictionary.getSuggestionsForWords(composedDataArray,
+                        ngramContexts, proximityInfoHandle, settingsValuesForSuggestion,
+                        sessionId, weightForLocale, inOutWeightsOfLangModelVsSpatialModel);
+            } finally {
+                mLock.readLock().unlock();
+            }
+        }
+        final ArrayList<ArrayList<SuggestedWordInfo>> suggestionsForWords =
+                new ArrayList<>(composedDataArray.length);
+        for (int i = 0; i < composedDataArray.length; ++i) {
+            suggestionsForWords.add(null);
+        }
+        return suggestionsForWords;
+    }
+
+    @Override
+    public void updateValidityOfWords(final String[] words, final boolean[] inOutIsValid) {
+        if (!mightContainAnyWord(words, inOutIsValid)) {
+            return;
+        }
+        if (mLock.readLock().tryLock()) {
+            try {
+                mBinaryDictionary.updateValidityOfWords(words, inOutIsValid);
+            } finally {
+                mLock.readLock().unlock();
+            }
+        }
+    }
+
+    // Whether any of the words that are not known to be valid yet may be in the dictionary.
+    private boolean mightContainAnyWord(final String[] words, final boolean[] isValid) {
+        for (int i = 0; i < words.length; ++i) {
+            if (!isValid[i] && mBinaryDictionary.mightContainWord(words[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public boolean isInDictionary(final String word) {
+        if (!mBinaryDictionary.mightContainWord(word)) {
+            return false;
+        }
         if (mLock.readLock().tryLock()) {
             try {
                 return mBinaryDictionary.isInDictionary(word);
@@ -93,6 +167,9 @@ public final class ReadOnlyBinaryDictionary extends Dictionary {
 
     @Override
     public int getFrequency(final String word) {
+        if (!mBinaryDictionary.mightContainWord(word)) {
+            return NOT_A_PROBABILITY;
+        }
         if (mLock.readLock().tryLock()) {
             try {
                 return mBinaryDictionary.getFrequency(word);
@@ -38,6 +38,7 @@ import com.android.inputmethod.latin.utils.AdditionalSubtypeUtils;
 import com.android.inputmethod.latin.utils.LanguageOnSpacebarUtils;
 import com.android.inputmethod.latin.utils.SubtypeLocaleUtils;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -429,6 +430,26 @@ public class RichInputMethodManager {
         return null;
     }
 
+    /**
+     * Returns the locales of the enabled subtypes of this IME other than the specified one, in
+     * the order of the subtypes and without duplicates.
+     */
+    @Nonnull
+    public List<Locale> getOtherEnabledSubtypeLocales(@Nonnull final Locale locale) {
+        final ArrayList<Locale> locales = new ArrayList<>();
+        for (final InputMethodSubtype subtype :
+                getMyEnabledInputMethodSubtypeList(true /* allowsImplicitlySelectedSubtypes */)) {
+            if (!KEYBOARD_MODE.equals(subtype.getMode())) {
+                continue;
+            }
+            final Locale subtypeLocale = SubtypeLocaleUtils.getSubtypeLocale(subtype);
+            if (!subtypeLocale.equals(locale) && !locales.contains(subtypeLocale)) {
+                locales.add(subtypeLocale);
+            }
+        }
+        return locales;
+    }
+
     public InputMethodSubtype findSubtypeByLocale(final Locale locale) {
         // Find the best subtype based on a straightforward matching algorithm.
         // TODO: Use LocaleList#getFirstMatch() instead.
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+import com.android.inputmethod.latin.utils.SuggestionCandidates;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The main dictionaries shared by the dictionary facilitators of the process, for example the one
+ * of the keyboard and the ones of the spell checker, so that a main dictionary is opened once per
+ * locale.
+ *
+ * The facilitators use handles on the shared dictionaries. Closing a handle releases it, and a
+ * shared dictionary is closed when its last handle is closed.
+ */
+final class SharedMainDictionaries {
+    private static final class Entry {
+        @Nonnull public final Dictionary mDictionary;
+        // Guarded by sEntries.
+        public int mHandleCount;
+
+        public Entry(@Nonnull final Dictionary dictionary) {
+            mDictionary = dictionary;
+        }
+    }
+
+    // The dictionary that is handed out for each locale. Replaced entries stay open until their
+    // handles are closed.
+    private static final HashMap<Locale, Entry> sEntries = new HashMap<>();
+
+    private SharedMainDictionaries() {
+        // This utility class is not publicly instantiable.
+    }
+
+    /**
+     * Returns a new handle on the main dictionary shared for a locale, or null if there is no
+     * initialized one.
+     */
+    @Nullable
+    public static Dictionary acquire(@Nonnull final Locale locale) {
+        synchronized (sEntries) {
+            final Entry entry = sEntries.get(locale);
+            if (entry == null || !entry.mDictionary.isInitialized()) {
+                return null;
+            }
+            return newHandleLocked(locale, entry);
+        }
+    }
+
+    /**
+     * Shares a main dictionary that was just opened for a locale, in place of the one shared so
+     * far if any.
+     *
+     * @return a handle on the dictionary, which the caller must use instead of the dictionary.
+     */
+    @Nonnull
+    public static Dictionary share(@Nonnull final Locale locale,
+            @Nonnull final Dictionary dictionary) {
+        synchronized (sEntries) {
+            final Entry entry = new Entry(dictionary);
+            sEntries.put(locale, entry);
+            return newHandleLocked(locale, entry);
+        }
+    }
+
+    @UsedForTesting
+    static boolean isShared(@Nonnull final Locale locale) {
+        synchronized (sEntries) {
+            return sEntries.containsKey(locale);
+        }
+    }
+
+    private static Dictionary newHandleLocked(final Locale locale, final Entry entry) {
+        ++entry.mHandleCount;
+        return new Handle(locale, entry);
+    }
+
+    private static void release(final Locale locale, final Entry entry) {
+        synchronized (sEntries) {
+            if (--entry.mHandleCount > 0) {
+                return;
+            }
+            if (sEntries.get(locale) == entry) {
+                sEntries.remove(locale);
+            }
+        }
+        entry.mDictionary.close();
+    }
+
+    /**
+     * A handle on a shared main dictionary, which forwards the queries to it.
+     */
+    private static final class Handle extends Dictionary {
+        private final Entry mEntry;
+        private final Dictionary mDictionary;
+        private final AtomicBoolean mIsClosed = new AtomicBoolean(false);
+
+        public Handle(final Locale locale, final Entry entry) {
+            super(Dictionary.TYPE_MAIN, locale);
+            mEntry = entry;
+            mDictionary = entry.mDictionary;
+        }
+
+        @Override
+        public ArrayList<SuggestedWordInfo> getSuggestions(final ComposedData composedData,
+                final NgramContext ngramContext, final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId, final float weightForLocale,
+                final float[] inOutWeightOfLangModelVsSpatialModel) {
+            return mDictionary.getSuggestions(composedData, ngramContext, proximityInfoHandle,
+                    settingsValuesForSuggestion, sessionId, weightForLocale,
+                    inOutWeightOfLangModelVsSpatialModel);
+        }
+
+        @Override
+        public void addSuggestionCandidates(final ComposedData composedData,
+                final NgramContext ngramContext, final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId, final float weightForLocale,
+                final float[] inOutWeightOfLangModelVsSpatialModel,
+                final SuggestionCandidates outCandidates) {
+            mDictionary.addSuggestionCandidates(composedData, ngramContext, proximityInfoHandle,
+                    settingsValuesForSuggestion, sessionId, weightForLocale,
+                    inOutWeightOfLangModelVsSpatialModel, outCandidates);
+        }
+
+        @Override
+        public ArrayList<ArrayList<SuggestedWordInfo>> getSuggestionsForWords(
+                final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+                final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId, final float weightForLocale,
+                final float[] inOutWeightsOfLangModelVsSpatialModel) {
+            return mDictionary.getSuggestionsForWords(composedDataArray, ngramContexts,
+                    proximityInfoHandle, settingsValuesForSuggestion, sessionId, weightForLocale,
+                    inOutWeightsOfLangModelVsSpatialModel);
+        }
+
+        @Override
+        public boolean isValidWord(final String word) {
+            return mDictionary.isValidWord(word);
+        }
+
+        @Override
+        public void updateValidityOfWords(final String[] words, final boolean[] inOutIsValid) {
+            mDictionary.updateValidityOfWords(words, inOutIsValid);
+        }
+
+        @Override
+        public boolean isInDictionary(final String word) {
+            return mDictionary.isInDictionary(word);
+        }
+
+        @Override
+        public int getFrequency(final String word) {
+            return mDictionary.getFrequency(word);
+        }
+
+        @Override
+        public int getMaxFrequencyOfExactMatches(final String word) {
+            return mDictionary.getMaxFrequencyOfExactMatches(word);
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return !mIsClosed.get() && mDictionary.isInitialized();
+        }
+
+        @Override
+        public boolean shouldAutoCommit(final SuggestedWordInfo candidate) {
+            return mDictionary.shouldAutoCommit(candidate);
+        }
+
+        @Override
+        public void close() {
+            if (mIsClosed.compareAndSet(false, true)) {
+                release(mLocale, mEntry);
+            }
+        }
+    }
+}
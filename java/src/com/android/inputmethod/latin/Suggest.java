@@ -21,15 +21,22 @@ import android.text.TextUtils;
 import static com.android.inputmethod.latin.define.DecoderSpecificConstants.SHOULD_AUTO_CORRECT_USING_NON_WHITE_LISTED_SUGGESTION;
 import static com.android.inputmethod.latin.define.DecoderSpecificConstants.SHOULD_REMOVE_PREVIOUSLY_REJECTED_SUGGESTION;
 
+import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.keyboard.Keyboard;
+import com.android.inputmethod.latin.NgramContext.WordInfo;
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+import com.android.inputmethod.latin.common.ComposedData;
 import com.android.inputmethod.latin.common.Constants;
+import com.android.inputmethod.latin.common.InputPointers;
 import com.android.inputmethod.latin.common.StringUtils;
 import com.android.inputmethod.latin.define.DebugFlags;
+import com.android.inputmethod.latin.define.ProductionFlags;
 import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
 import com.android.inputmethod.latin.utils.AutoCorrectionUtils;
 import com.android.inputmethod.latin.utils.BinaryDictionaryUtils;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
 import com.android.inputmethod.latin.utils.SuggestionResults;
+import com.android.inputmethod.latin.utils.TaskLane;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -49,6 +56,12 @@ public final class Suggest {
     // We are sharing the same ID between typing and gesture to save RAM footprint.
     public static final int SESSION_ID_TYPING = 0;
     public static final int SESSION_ID_GESTURE = 0;
+    // Predictions are prefetched on another session, so as not to disturb the typing session.
+    public static final int SESSION_ID_PREDICTION_PREFETCH = 1;
+
+    // An auto-correction whose normalized score is below this many times the auto-correction
+    // threshold is considered marginal.
+    private static final float MARGINAL_AUTO_CORRECTION_THRESHOLD_FACTOR = 2.0f;
 
     // Close to -2**31
     private static final int SUPPRESS_SUGGEST_THRESHOLD = -2000000000;
@@ -69,6 +82,14 @@ public final class Suggest {
     private float mAutoCorrectionThreshold;
     private float mPlausibilityThreshold;
 
+    // The suggestions of the prefixes of the word being typed, guarded by itself.
+    private final PrefixSuggestionCache mPrefixSuggestionCache =
+            new PrefixSuggestionCache();
+    private final NextWordPredictionCache mNextWordPredictionCache =
+            new NextWordPredictionCache();
+    // The keyboard of the last typing query, used to prefetch predictions.
+    private volatile Keyboard mLastKeyboard;
+
     public Suggest(final DictionaryFacilitator dictionaryFacilitator) {
         mDictionaryFacilitator = dictionaryFacilitator;
     }
@@ -91,6 +112,91 @@ public final class Suggest {
         mPlausibilityThreshold = threshold;
     }
 
+    /**
+     * Forgets the suggestions computed for the prefixes of the word being typed and the
+     * predictions prefetched for the next word. This must be called when the dictionaries change.
+     */
+    public void resetCachedSuggestions() {
+        synchronized (mPrefixSuggestionCache) {
+            mPrefixSuggestionCache.reset();
+        }
+        mNextWordPredictionCache.clear();
+        ExecutorUtils.getTaskLane(ExecutorUtils.KEYBOARD).cancelTasks(this);
+    }
+
+    /**
+     * Forgets the predictions prefetched for the next word, including those being computed. This
+     * must be called when a word is added to or removed from the user history, since the
+     * predictions of every n-gram context may depend on it.
+     */
+    public void invalidateNextWordPredictions() {
+        mNextWordPredictionCache.clear();
+    }
+
+    @UsedForTesting
+    PrefixSuggestionCache getPrefixSuggestionCacheForTesting() {
+        return mPrefixSuggestionCache;
+    }
+
+    /**
+     * Returns whether an auto-correction was close enough to the threshold that the user may well
+     * revert it to the typed word.
+     */
+    public boolean isMarginalAutoCorrection(@Nonnull final SuggestedWordInfo autoCorrection,
+            @Nonnull final String typedWord) {
+        return !AutoCorrectionUtils.suggestionExceedsThreshold(autoCorrection, typedWord,
+                mAutoCorrectionThreshold * MARGINAL_AUTO_CORRECTION_THRESHOLD_FACTOR);
+    }
+
+    /**
+     * Starts computing the next-word predictions for the contexts that follow the committed word
+     * candidates, so that they are ready when the suggestion strip asks for them.
+     *
+     * The predictions are computed on the keyboard executor, after the user history updates that
+     * the commit has queued there.
+     *
+     * @param ngramContext the n-gram context of the committed word.
+     * @param committedWords the words the user is likely to continue from, most likely first.
+     * @param settingsValuesForSuggestion the settings to compute the predictions with.
+     */
+    public void prefetchNextWordPredictions(@Nonnull final NgramContext ngramContext,
+            @Nonnull final String[] committedWords,
+            @Nonnull final SettingsValuesForSuggestion settingsValuesForSuggestion) {
+        final Keyboard keyboard = mLastKeyboard;
+        if (!ProductionFlags.ENABLE_NEXT_WORD_PREDICTION_PREFETCH || keyboard == null) {
+            return;
+        }
+        final int generation = mNextWordPredictionCache.getGeneration();
+        final Runnable prefetchTask = new Runnable() {
+            @Override
+            public void run() {
+                final boolean blockPotentiallyOffensive =
+                        settingsValuesForSuggestion.mBlockPotentiallyOffensive;
+                final ComposedData composedData = new ComposedData(new InputPointers(1),
+                        false /* isBatchMode */, "" /* typedWord */);
+                for (final String committedWord : committedWords) {
+                    final NgramContext nextNgramContext =
+                            ngramContext.getNextNgramContext(new WordInfo(committedWord));
+                    if (mNextWordPredictionCache.contains(nextNgramContext,
+                            blockPotentiallyOffensive)) {
+                        continue;
+                    }
+                    final SuggestionResults suggestionResults =
+                            mDictionaryFacilitator.getSuggestionResults(composedData,
+                                    nextNgramContext, keyboard, settingsValuesForSuggestion,
+                                    SESSION_ID_PREDICTION_PREFETCH,
+                                    SuggestedWords.INPUT_STYLE_PREDICTION);
+                    mNextWordPredictionCache.put(generation, nextNgramContext,
+                            blockPotentiallyOffensive, suggestionResults);
+                }
+            }
+        };
+        // The predictions are speculative, so they run after the pending updates of the user
+        // history.
+        ExecutorUtils.getTaskLane(ExecutorUtils.KEYBOARD).execute(this, TaskLane.PRIORITY_LOW,
+                prefetchTask);
+    }
+
     public interface OnGetSuggestedWordsCallback {
         public void onGetSuggestedWords(final SuggestedWords suggestedWords);
     }
@@ -147,6 +253,40 @@ public final class Suggest {
         return firstSuggestedWordInfo;
     }
 
+    private SuggestionResults getSuggestionResultsForTyping(final ComposedData composedData,
+            final NgramContext ngramContext, final Keyboard keyboard,
+            final SettingsValuesForSuggestion settingsValuesForSuggestion,
+            final int inputStyleIfNotPrediction) {
+        mLastKeyboard = keyboard;
+        if (ProductionFlags.ENABLE_NEXT_WORD_PREDICTION_PREFETCH
+                && composedData.mTypedWord.isEmpty()) {
+            final SuggestionResults prefetchedResults = mNextWordPredictionCache.get(
+                    ngramContext, settingsValuesForSuggestion.mBlockPotentiallyOffensive);
+            if (prefetchedResults != null) {
+                return prefetchedResults;
+            }
+        }
+        if (!ProductionFlags.ENABLE_PREFIX_SUGGESTION_CACHE) {
+            return mDictionaryFacilitator.getSuggestionResults(composedData, ngramContext,
+                    keyboard, settingsValuesForSuggestion, SESSION_ID_TYPING,
+                    inputStyleIfNotPrediction);
+        }
+        synchronized (mPrefixSuggestionCache) {
+            final SuggestionResults cachedResults =
+                    mPrefixSuggestionCache.getSuggestionResults(composedData, ngramContext,
+                            keyboard, settingsValuesForSuggestion.mBlockPotentiallyOffensive);
+            if (cachedResults != null) {
+                return cachedResults;
+            }
+            final SuggestionResults suggestionResults =
+                    mDictionaryFacilitator.getSuggestionResults(composedData, ngramContext,
+                            keyboard, settingsValuesForSuggestion, SESSION_ID_TYPING,
+                            inputStyleIfNotPrediction);
+            mPrefixSuggestionCache.onSuggestionResults(composedData, suggestionResults);
+            return suggestionResults;
+        }
+    }
+
     // Retrieves suggestions for non-batch input (typing, recorrection, predictions...)
     // and calls the callback function with the suggestions.
     private void getSuggestedWordsForNonBatchInput(final WordComposer wordComposer,
@@ -161,9 +301,9 @@ public final class Suggest {
                 ? typedWordString.substring(0, typedWordString.length() - trailingSingleQuotesCount)
                 : typedWordString;
 
-        final SuggestionResults suggestionResults = mDictionaryFacilitator.getSuggestionResults(
+        final SuggestionResults suggestionResults = getSuggestionResultsForTyping(
                 wordComposer.getComposedDataSnapshot(), ngramContext, keyboard,
-                settingsValuesForSuggestion, SESSION_ID_TYPING, inputStyleIfNotPrediction);
+                settingsValuesForSuggestion, inputStyleIfNotPrediction);
         final Locale locale = mDictionaryFacilitator.getLocale();
         final ArrayList<SuggestedWordInfo> suggestionsContainer =
                 getTransformedSuggestedWordInfoList(wordComposer, suggestionResults,
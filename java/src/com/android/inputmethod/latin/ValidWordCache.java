@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import android.util.LruCache;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * The validity of the words looked up in the dictionaries, shared by the dictionary facilitators
+ * of the process, for example the one of the keyboard and the ones of the spell checker.
+ *
+ * The validity of a word is cached for a scope, which names the locale and the kinds of
+ * dictionaries it was looked up in, so that the facilitators using the same dictionaries share
+ * the cached words. The dictionaries invalidate the words they change.
+ *
+ * A validity that was looked up while the dictionaries were being changed may be stale. To not
+ * cache it, the callers get the current generation before looking a word up, and the validity is
+ * only cached if there has been no invalidation since.
+ */
+public final class ValidWordCache {
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private static final ValidWordCache sInstance = new ValidWordCache(DEFAULT_CAPACITY);
+
+    private static final class Key {
+        public final String mScope;
+        public final String mWord;
+
+        public Key(@Nonnull final String scope, @Nonnull final String word) {
+            mScope = scope;
+            mWord = word;
+        }
+
+        @Override
+        public int hashCode() {
+            return mScope.hashCode() * 31 + mWord.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key) o;
+            return mScope.equals(key.mScope) && mWord.equals(key.mWord);
+        }
+    }
+
+    private final LruCache<Key, Boolean> mCache;
+    // The scopes that have been cached, to invalidate a word in all of them. Guarded by this.
+    private final HashSet<String> mScopes = new HashSet<>();
+    // Incremented by every invalidation. Guarded by this for writing.
+    private volatile long mGeneration = 0;
+
+    private final AtomicLong mHitCount = new AtomicLong(0);
+    private final AtomicLong mMissCount = new AtomicLong(0);
+    private final AtomicLong mInvalidationCount = new AtomicLong(0);
+
+    public static ValidWordCache getInstance() {
+        return sInstance;
+    }
+
+    @UsedForTesting
+    ValidWordCache(final int capacity) {
+        mCache = new LruCache<>(capacity);
+    }
+
+    /**
+     * Returns the current generation, to pass to {@link #put} for a word looked up from now on.
+     */
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Returns the cached validity of a word, or null if it's not cached.
+     */
+    @Nullable
+    public Boolean get(@Nonnull final String scope, @Nonnull final String word) {
+        final Boolean isValid = mCache.get(new Key(scope, word));
+        if (isValid == null) {
+            mMissCount.incrementAndGet();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+        return isValid;
+    }
+
+    /**
+     * Caches the validity of a word, unless a word has been invalidated since the generation.
+     *
+     * @param generation the value of {@link #getGeneration()} before the word was looked up.
+     */
+    public synchronized void put(@Nonnull final String scope, @Nonnull final String word,
+            final boolean isValid, final long generation) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mScopes.add(scope);
+        mCache.put(new Key(scope, word), isValid);
+    }
+
+    /**
+     * Invalidates the cached validity of words in all the scopes.
+     */
+    public synchronized void invalidateWords(@Nonnull final Collection<String> words) {
+        ++mGeneration;
+        mInvalidationCount.incrementAndGet();
+        for (final String scope : mScopes) {
+            for (final String word : words) {
+                mCache.remove(new Key(scope, word));
+            }
+        }
+    }
+
+    /**
+     * Invalidates all the cached words.
+     */
+    public synchronized void invalidateAll() {
+        ++mGeneration;
+        mInvalidationCount.incrementAndGet();
+        mCache.evictAll();
+        mScopes.clear();
+    }
+
+    /**
+     * Sets the maximum number of words to cache, evicting the least recently used ones if needed.
+     */
+    public void setCapacity(final int capacity) {
+        mCache.resize(capacity);
+    }
+
+    public int getCapacity() {
+        return mCache.maxSize();
+    }
+
+    public int size() {
+        return mCache.size();
+    }
+
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Returns the ratio of the lookups that were served from the cache, or 0 if there was none.
+     */
+    public float getHitRate() {
+        final long hitCount = mHitCount.get();
+        final long lookupCount = hitCount + mMissCount.get();
+        return lookupCount == 0 ? 0.0f : (float) hitCount / lookupCount;
+    }
+
+    public long getInvalidationCount() {
+        return mInvalidationCount.get();
+    }
+
+    public String dump() {
+        return "ValidWordCache: size=" + size() + "/" + getCapacity()
+                + " hits=" + getHitCount() + " misses=" + getMissCount()
+                + " hitRate=" + getHitRate()
+                + " evictions=" + mCache.evictionCount()
+                + " invalidations=" + getInvalidationCount();
+    }
+}
@@ -29,6 +29,61 @@ public final class ProductionFlags {
      */
     public static final boolean INCLUDE_RAW_SUGGESTIONS = false;
 
+    /**
+     * When {@code true}, the dictionaries of a group are queried concurrently for suggestions
+     * instead of one after the other.
+     */
+    public static final boolean ENABLE_PARALLEL_SUGGESTION_LOOKUP = false;
+
+    /**
+     * When {@code true}, the suggestions computed for the prefixes of the word being typed are
+     * cached so that deleting a code point does not search the dictionaries again. Typing a code
+     * point still searches them.
+     */
+    public static final boolean ENABLE_PREFIX_SUGGESTION_CACHE = true;
+
+    /**
+     * When {@code true}, the next-word predictions are computed as soon as a word is committed
+     * instead of when the suggestion strip is next updated.
+     */
+    public static final boolean ENABLE_NEXT_WORD_PREDICTION_PREFETCH = true;
+
+    /**
+     * When {@code true}, the dynamic dictionaries keep a read-only view of their last flushed
+     * contents, used by the reads that would otherwise wait for or give up on a writer.
+     */
+    public static final boolean ENABLE_DYNAMIC_DICTIONARY_SNAPSHOT_READS = true;
+
+    /**
+     * When {@code true}, the contacts dictionary applies the names added and removed when the
+     * contacts change instead of being rebuilt from all the contacts.
+     */
+    public static final boolean ENABLE_INCREMENTAL_CONTACTS_UPDATES = true;
+
+    /**
+     * When {@code true}, the keyboard also suggests words in the languages of the other enabled
+     * subtypes, favoring the language the user is most probably typing in.
+     */
+    public static final boolean ENABLE_MULTI_LOCALE_SUGGESTIONS = false;
+
+    /**
+     * When {@code true}, the binary dictionaries keep a filter of their words, which answers most
+     * lookups of the words that are not in a dictionary without searching it.
+     */
+    public static final boolean ENABLE_WORD_MEMBERSHIP_FILTER = true;
+
+    /**
+     * When {@code true}, a keyboard that has been loaded from its XML once is loaded again from
+     * its compiled layout.
+     */
+    public static final boolean ENABLE_COMPILED_KEYBOARD_LAYOUTS = true;
+
+    /**
+     * When {@code true}, the shifted and symbols keyboards of a keyboard layout set are built on a
+     * background thread once its first keyboard is shown.
+     */
+    public static final boolean ENABLE_KEYBOARD_PREBUILDING = true;
+
     /**
      * When false, the metrics logging is not yet ready to be enabled.
      */
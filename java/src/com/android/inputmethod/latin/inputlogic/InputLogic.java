@@ -1233,6 +1233,7 @@ public final class InputLogic {
             System.currentTimeMillis());
         mDictionaryFacilitator.unlearnFromUserHistory(
             word, ngramContext, timeStampInSeconds, eventType);
+        mSuggest.invalidateNextWordPredictions();
     }
 
     /**
@@ -1441,6 +1442,8 @@ public final class InputLogic {
                 System.currentTimeMillis());
         mDictionaryFacilitator.addToUserHistory(suggestion, wasAutoCapitalized,
                 ngramContext, timeStampInSeconds, settingsValues.mBlockPotentiallyOffensive);
+        // The predictions prefetched so far don't account for the word just learned.
+        mSuggest.invalidateNextWordPredictions();
     }
 
     public void performUpdateSuggestionStripSync(final SettingsValues settingsValues,
@@ -2119,6 +2122,11 @@ public final class InputLogic {
             commitChosenWord(settingsValues, stringToCommit,
                     LastComposedWord.COMMIT_TYPE_DECIDED_WORD, separator);
             if (!typedWord.equals(stringToCommit)) {
+                if (mSuggest.isMarginalAutoCorrection(autoCorrectionOrNull, typedWord)) {
+                    // The user may well revert to the typed word, so predict after it too.
+                    prefetchNextWordPredictions(settingsValues, mLastComposedWord.mNgramContext,
+                            separator, typedWord);
+                }
                 // This will make the correction flash for a short while as a visual clue
                 // to the user that auto-correction happened. It has no other effect; in particular
                 // note that this won't affect the text inside the text field AT ALL: it only makes
@@ -2207,6 +2215,33 @@ public final class InputLogic {
                     + "WordComposer.commitWord()");
             startTimeMillis = System.currentTimeMillis();
         }
+        prefetchNextWordPredictions(settingsValues, ngramContext, separatorString, chosenWord);
+    }
+
+    /**
+     * Starts computing the predictions for the word after a committed word, before the suggestion
+     * strip asks for them.
+     *
+     * @param settingsValues the current values of the settings.
+     * @param ngramContext the n-gram context of the committed word.
+     * @param separatorString the separator that caused the commit, or NOT_A_SEPARATOR if none.
+     * @param committedWord the committed word, or a word the user may turn it back into.
+     */
+    private void prefetchNextWordPredictions(final SettingsValues settingsValues,
+            final NgramContext ngramContext, final String separatorString,
+            final String committedWord) {
+        if (!settingsValues.needsToLookupSuggestions()
+                || !settingsValues.mBigramPredictionEnabled) {
+            return;
+        }
+        // After other separators, the next word is predicted in another context, for example at
+        // the beginning of a sentence.
+        if (!LastComposedWord.NOT_A_SEPARATOR.equals(separatorString)
+                && !Constants.STRING_SPACE.equals(separatorString)) {
+            return;
+        }
+        mSuggest.prefetchNextWordPredictions(ngramContext, new String[] { committedWord },
+                new SettingsValuesForSuggestion(settingsValues.mBlockPotentiallyOffensive));
     }
 
     /**
@@ -133,4 +133,9 @@ public class UserHistoryDictionary extends ExpandableBinaryDictionary {
         // Strings out of this dictionary should not be considered existing words.
         return false;
     }
+
+    @Override
+    public void updateValidityOfWords(final String[] words, final boolean[] inOutIsValid) {
+        // Strings out of this dictionary should not be considered existing words.
+    }
 }
@@ -16,15 +16,24 @@
 
 package com.android.inputmethod.latin.spellcheck;
 
+import android.content.ContentUris;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
 import android.preference.PreferenceManager;
+import android.provider.UserDictionary.Words;
 import android.service.textservice.SpellCheckerService;
 import android.text.InputType;
+import android.text.TextUtils;
+import android.util.Log;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodSubtype;
 import android.view.textservice.SuggestionsInfo;
 
+import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.keyboard.Keyboard;
 import com.android.inputmethod.keyboard.KeyboardId;
 import com.android.inputmethod.keyboard.KeyboardLayoutSet;
@@ -35,15 +44,18 @@ import com.android.inputmethod.latin.R;
 import com.android.inputmethod.latin.RichInputMethodSubtype;
 import com.android.inputmethod.latin.SuggestedWords;
 import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.common.LocaleUtils;
 import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
 import com.android.inputmethod.latin.utils.AdditionalSubtypeUtils;
 import com.android.inputmethod.latin.utils.ScriptUtils;
 import com.android.inputmethod.latin.utils.SuggestionResults;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import javax.annotation.Nonnull;
 
@@ -64,15 +76,34 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
 
     private static final String[] EMPTY_STRING_ARRAY = new String[0];
 
-    private final int MAX_NUM_OF_THREADS_READ_DICTIONARY = 2;
-    private final Semaphore mSemaphore = new Semaphore(MAX_NUM_OF_THREADS_READ_DICTIONARY,
-            true /* fair */);
+    private static final int SUGGESTIONS_CACHE_SIZE_IN_BYTES = 512 * 1024;
+
+    // Dictionary reads share the read lock and may run concurrently; closing the dictionaries
+    // takes the write lock and waits for the reads in flight to finish.
+    private final ReentrantReadWriteLock mDictionaryLock = new ReentrantReadWriteLock();
     // TODO: Make each spell checker session has its own session id.
+    // Each concurrent suggestion lookup needs its own traverse session id. The pool grows on
+    // demand, so it holds as many ids as the maximum number of concurrent lookups.
     private final ConcurrentLinkedQueue<Integer> mSessionIdPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mNextSessionId = new AtomicInteger(0);
 
     private final DictionaryFacilitatorLruCache mDictionaryFacilitatorCache =
             new DictionaryFacilitatorLruCache(this /* context */, DICTIONARY_NAME_PREFIX);
     private final ConcurrentHashMap<Locale, Keyboard> mKeyboardCache = new ConcurrentHashMap<>();
+    // The suggestions for the words not in the dictionary, shared by all the sessions.
+    private final SuggestionsCache mSuggestionsCache =
+            new SuggestionsCache(SUGGESTIONS_CACHE_SIZE_IN_BYTES);
+    private final ContentObserver mUserDictionaryObserver = new ContentObserver(null) {
+        @Override
+        public void onChange(final boolean selfChange) {
+            onChange(selfChange, null /* uri */);
+        }
+
+        @Override
+        public void onChange(final boolean selfChange, final Uri uri) {
+            onUserDictionaryChanged(uri);
+        }
+    };
 
     // The threshold for a suggestion to be considered "recommended".
     private float mRecommendedThreshold;
@@ -85,9 +116,16 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
 
     public AndroidSpellCheckerService() {
         super();
-        for (int i = 0; i < MAX_NUM_OF_THREADS_READ_DICTIONARY; i++) {
-            mSessionIdPool.add(i);
-        }
+    }
+
+    /**
+     * Returns a service that is not bound, running on the resources of the given context.
+     */
+    @UsedForTesting
+    static AndroidSpellCheckerService newInstanceForTesting(final Context context) {
+        final AndroidSpellCheckerService service = new AndroidSpellCheckerService();
+        service.attachBaseContext(context);
+        return service;
     }
 
     @Override
@@ -98,6 +136,61 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
         final SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
         prefs.registerOnSharedPreferenceChangeListener(this);
         onSharedPreferenceChanged(prefs, PREF_USE_CONTACTS_KEY);
+        getContentResolver().registerContentObserver(Words.CONTENT_URI, true,
+                mUserDictionaryObserver);
+    }
+
+    @Override
+    public void onDestroy() {
+        getContentResolver().unregisterContentObserver(mUserDictionaryObserver);
+        if (DEBUG) {
+            Log.d(TAG, "Suggestions cache: hits = " + mSuggestionsCache.getHitCount()
+                    + ", misses = " + mSuggestionsCache.getMissCount()
+                    + ", size = " + mSuggestionsCache.getSizeInBytes() + " bytes");
+        }
+        super.onDestroy();
+    }
+
+    SuggestionsCache getSuggestionsCache() {
+        return mSuggestionsCache;
+    }
+
+    /**
+     * Drops the cached suggestions that a user dictionary change may affect. When the change is
+     * about a single word that can still be read, only the entries related to that word are
+     * dropped. Otherwise, e.g. when the word was deleted, the whole cache is cleared.
+     */
+    private void onUserDictionaryChanged(final Uri uri) {
+        long id = -1;
+        if (uri != null) {
+            try {
+                id = ContentUris.parseId(uri);
+            } catch (final NumberFormatException e) {
+                // Not the URI of a single word.
+            }
+        }
+        if (id < 0) {
+            mSuggestionsCache.clearCache();
+            return;
+        }
+        final Cursor cursor = getContentResolver().query(uri,
+                new String[] { Words.WORD, Words.LOCALE }, null, null, null);
+        if (cursor == null) {
+            mSuggestionsCache.clearCache();
+            return;
+        }
+        try {
+            if (!cursor.moveToFirst() || TextUtils.isEmpty(cursor.getString(0))) {
+                mSuggestionsCache.clearCache();
+                return;
+            }
+            final String localeString = cursor.getString(1);
+            final Locale locale = TextUtils.isEmpty(localeString) ? null
+                    : LocaleUtils.constructLocaleFromString(localeString);
+            mSuggestionsCache.invalidateWord(locale, cursor.getString(0));
+        } finally {
+            cursor.close();
+        }
     }
 
     public float getRecommendedThreshold() {
@@ -133,6 +226,7 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
         if (!PREF_USE_CONTACTS_KEY.equals(key)) return;
         final boolean useContactsDictionary = prefs.getBoolean(PREF_USE_CONTACTS_KEY, true);
         mDictionaryFacilitatorCache.setUseContactsDictionary(useContactsDictionary);
+        mSuggestionsCache.clearCache();
     }
 
     @Override
@@ -162,56 +256,114 @@ public final class AndroidSpellCheckerService extends SpellCheckerService
     }
 
     public boolean isValidWord(final Locale locale, final String word) {
-        mSemaphore.acquireUninterruptibly();
+        mDictionaryLock.readLock().lock();
+        try {
+            final DictionaryFacilitator dictionaryFacilitatorForLocale =
+                    mDictionaryFacilitatorCache.acquire(locale);
+            try {
+                return dictionaryFacilitatorForLocale.isValidSpellingWord(word);
+            } finally {
+                mDictionaryFacilitatorCache.release(dictionaryFacilitatorForLocale);
+            }
+        } finally {
+            mDictionaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Batch version of {@link #isValidWord} for the words of a sentence.
+     */
+    public boolean[] isValidWords(final Locale locale, final String[] words) {
+        mDictionaryLock.readLock().lock();
         try {
-            DictionaryFacilitator dictionaryFacilitatorForLocale =
-                    mDictionaryFacilitatorCache.get(locale);
-            return dictionaryFacilitatorForLocale.isValidSpellingWord(word);
+            final DictionaryFacilitator dictionaryFacilitatorForLocale =
+                    mDictionaryFacilitatorCache.acquire(locale);
+            try {
+                return dictionaryFacilitatorForLocale.isValidSpellingWords(words);
+            } finally {
+                mDictionaryFacilitatorCache.release(dictionaryFacilitatorForLocale);
+            }
         } finally {
-            mSemaphore.release();
+            mDictionaryLock.readLock().unlock();
         }
     }
 
+    private int obtainSessionId() {
+        final Integer sessionId = mSessionIdPool.poll();
+        return sessionId != null ? sessionId : mNextSessionId.getAndIncrement();
+    }
+
     public SuggestionResults getSuggestionResults(final Locale locale,
             final ComposedData composedData, final NgramContext ngramContext,
             @Nonnull final Keyboard keyboard) {
-        Integer sessionId = null;
-        mSemaphore.acquireUninterruptibly();
+        mDictionaryLock.readLock().lock();
+        final int sessionId = obtainSessionId();
         try {
-            sessionId = mSessionIdPool.poll();
-            DictionaryFacilitator dictionaryFacilitatorForLocale =
-                    mDictionaryFacilitatorCache.get(locale);
-            return dictionaryFacilitatorForLocale.getSuggestionResults(composedData, ngramContext,
-                    keyboard, mSettingsValuesForSuggestion,
-                    sessionId, SuggestedWords.INPUT_STYLE_TYPING);
+            final DictionaryFacilitator dictionaryFacilitatorForLocale =
+                    mDictionaryFacilitatorCache.acquire(locale);
+            try {
+                return dictionaryFacilitatorForLocale.getSuggestionResults(composedData,
+                        ngramContext, keyboard, mSettingsValuesForSuggestion,
+                        sessionId, SuggestedWords.INPUT_STYLE_TYPING);
+            } finally {
+                mDictionaryFacilitatorCache.release(dictionaryFacilitatorForLocale);
+            }
         } finally {
-            if (sessionId != null) {
-                mSessionIdPool.add(sessionId);
+            mSessionIdPool.add(sessionId);
+            mDictionaryLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Batch version of {@link #getSuggestionResults} for the words of a sentence. The words share
+     * one traverse session and each dictionary is queried once for the whole batch.
+     */
+    public List<SuggestionResults> getSuggestionResultsForWords(final Locale locale,
+            final ComposedData[] composedDataArray, final NgramContext[] ngramContexts,
+            @Nonnull final Keyboard keyboard) {
+        mDictionaryLock.readLock().lock();
+        final int sessionId = obtainSessionId();
+        try {
+            final DictionaryFacilitator dictionaryFacilitatorForLocale =
+                    mDictionaryFacilitatorCache.acquire(locale);
+            try {
+                return dictionaryFacilitatorForLocale.getSuggestionResultsForWords(
+                        composedDataArray, ngramContexts, keyboard, mSettingsValuesForSuggestion,
+                        sessionId, SuggestedWords.INPUT_STYLE_TYPING);
+            } finally {
+                mDictionaryFacilitatorCache.release(dictionaryFacilitatorForLocale);
             }
-            mSemaphore.release();
+        } finally {
+            mSessionIdPool.add(sessionId);
+            mDictionaryLock.readLock().unlock();
         }
     }
 
     public boolean hasMainDictionaryForLocale(final Locale locale) {
-        mSemaphore.acquireUninterruptibly();
+        mDictionaryLock.readLock().lock();
         try {
             final DictionaryFacilitator dictionaryFacilitator =
-                    mDictionaryFacilitatorCache.get(locale);
-            return dictionaryFacilitator.hasAtLeastOneInitializedMainDictionary();
+                    mDictionaryFacilitatorCache.acquire(locale);
+            try {
+                return dictionaryFacilitator.hasAtLeastOneInitializedMainDictionary();
+            } finally {
+                mDictionaryFacilitatorCache.release(dictionaryFacilitator);
+            }
         } finally {
-            mSemaphore.release();
+            mDictionaryLock.readLock().unlock();
         }
     }
 
     @Override
     public boolean onUnbind(final Intent intent) {
-        mSemaphore.acquireUninterruptibly(MAX_NUM_OF_THREADS_READ_DICTIONARY);
+        mDictionaryLock.writeLock().lock();
         try {
             mDictionaryFacilitatorCache.closeDictionaries();
         } finally {
-            mSemaphore.release(MAX_NUM_OF_THREADS_READ_DICTIONARY);
+            mDictionaryLock.writeLock().unlock();
         }
         mKeyboardCache.clear();
+        mSuggestionsCache.clearCache();
         return false;
     }
 
@@ -84,7 +84,8 @@ public final class AndroidSpellCheckerSession extends AndroidWordLevelSpellCheck
                 if (TextUtils.isEmpty(splitText)) {
                     continue;
                 }
-                if (mSuggestionsCache.getSuggestionsFromCache(splitText.toString()) == null) {
+                if (!mSuggestionsCache.hasSuggestionsForWord(
+                        getSpellCheckerLocale(), splitText.toString())) {
                     continue;
                 }
                 final int newLength = splitText.length();
@@ -186,12 +187,31 @@ public final class AndroidSpellCheckerSession extends AndroidWordLevelSpellCheck
                 splitTextInfos[j] = mItems.get(j).mTextInfo;
             }
             retval[i] = SentenceLevelAdapter.reconstructSuggestions(
-                    textInfoParams, onGetSuggestionsMultiple(
-                            splitTextInfos, suggestionsLimit, true));
+                    textInfoParams, getSuggestionsForWords(splitTextInfos, suggestionsLimit));
         }
         return retval;
     }
 
+    /**
+     * Gets suggestions for the sequential words of a sentence, querying the dictionaries for the
+     * whole sentence at once rather than word by word.
+     */
+    private SuggestionsInfo[] getSuggestionsForWords(final TextInfo[] textInfos,
+            final int suggestionsLimit) {
+        long ident = Binder.clearCallingIdentity();
+        try {
+            final SuggestionsInfo[] retval =
+                    onGetSuggestionsForWordsInternal(textInfos, suggestionsLimit);
+            for (int i = 0; i < retval.length; ++i) {
+                retval[i].setCookieAndSequence(
+                        textInfos[i].getCookie(), textInfos[i].getSequence());
+            }
+            return retval;
+        } finally {
+            Binder.restoreCallingIdentity(ident);
+        }
+    }
+
     @Override
     public SuggestionsInfo[] onGetSuggestionsMultiple(TextInfo[] textInfos,
             int suggestionsLimit, boolean sequentialWords) {
@@ -16,22 +16,21 @@
 
 package com.android.inputmethod.latin.spellcheck;
 
-import android.content.ContentResolver;
-import android.database.ContentObserver;
 import android.os.Binder;
-import android.provider.UserDictionary.Words;
 import android.service.textservice.SpellCheckerService.Session;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.LruCache;
 import android.view.textservice.SuggestionsInfo;
 import android.view.textservice.TextInfo;
 
+import com.android.inputmethod.annotations.UsedForTesting;
 import com.android.inputmethod.compat.SuggestionsInfoCompatUtils;
+import com.android.inputmethod.compat.TextInfoCompatUtils;
 import com.android.inputmethod.keyboard.Keyboard;
 import com.android.inputmethod.latin.NgramContext;
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.WordComposer;
+import com.android.inputmethod.latin.common.ComposedData;
 import com.android.inputmethod.latin.common.Constants;
 import com.android.inputmethod.latin.common.LocaleUtils;
 import com.android.inputmethod.latin.common.StringUtils;
@@ -55,74 +54,40 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
     // Cache this for performance
     private int mScript; // One of SCRIPT_LATIN or SCRIPT_CYRILLIC for now.
     private final AndroidSpellCheckerService mService;
-    protected final SuggestionsCache mSuggestionsCache = new SuggestionsCache();
-    private final ContentObserver mObserver;
+    // Shared by all the sessions of the service.
+    protected final SuggestionsCache mSuggestionsCache;
 
     private static final String quotesRegexp =
             "(\\u0022|\\u0027|\\u0060|\\u00B4|\\u2018|\\u2018|\\u201C|\\u201D)";
 
-    private static final class SuggestionsParams {
-        public final String[] mSuggestions;
-        public final int mFlags;
-        public SuggestionsParams(String[] suggestions, int flags) {
-            mSuggestions = suggestions;
-            mFlags = flags;
-        }
-    }
-
-    protected static final class SuggestionsCache {
-        private static final int MAX_CACHE_SIZE = 50;
-        private final LruCache<String, SuggestionsParams> mUnigramSuggestionsInfoCache =
-                new LruCache<>(MAX_CACHE_SIZE);
-
-        private static String generateKey(final String query) {
-            return query + "";
-        }
-
-        public SuggestionsParams getSuggestionsFromCache(final String query) {
-            return mUnigramSuggestionsInfoCache.get(query);
-        }
-
-        public void putSuggestionsToCache(
-                final String query, final String[] suggestions, final int flags) {
-            if (suggestions == null || TextUtils.isEmpty(query)) {
-                return;
-            }
-            mUnigramSuggestionsInfoCache.put(
-                    generateKey(query),
-                    new SuggestionsParams(suggestions, flags));
-        }
-
-        public void clearCache() {
-            mUnigramSuggestionsInfoCache.evictAll();
-        }
-    }
-
     AndroidWordLevelSpellCheckerSession(final AndroidSpellCheckerService service) {
         mService = service;
-        final ContentResolver cres = service.getContentResolver();
-
-        mObserver = new ContentObserver(null) {
-            @Override
-            public void onChange(boolean self) {
-                mSuggestionsCache.clearCache();
-            }
-        };
-        cres.registerContentObserver(Words.CONTENT_URI, true, mObserver);
+        mSuggestionsCache = service.getSuggestionsCache();
     }
 
     @Override
     public void onCreate() {
         final String localeString = getLocale();
-        mLocale = (null == localeString) ? null
-                : LocaleUtils.constructLocaleFromString(localeString);
+        setSpellCheckerLocale((null == localeString) ? null
+                : LocaleUtils.constructLocaleFromString(localeString));
+    }
+
+    private void setSpellCheckerLocale(final Locale locale) {
+        mLocale = locale;
         mScript = ScriptUtils.getScriptFromSpellCheckerLocale(mLocale);
     }
 
-    @Override
-    public void onClose() {
-        final ContentResolver cres = mService.getContentResolver();
-        cres.unregisterContentObserver(mObserver);
+    /**
+     * Creates the session for a locale without the spell checker framework, which is what
+     * provides the locale to {@link #onCreate()}.
+     */
+    @UsedForTesting
+    void onCreateForTesting(final Locale locale) {
+        setSpellCheckerLocale(locale);
+    }
+
+    protected Locale getSpellCheckerLocale() {
+        return mLocale;
     }
 
     private static final int CHECKABILITY_CHECKABLE = 0;
@@ -220,14 +185,18 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
         return onGetSuggestionsInternal(textInfo, null, suggestionsLimit);
     }
 
+    private static String getTextToCheck(final TextInfo textInfo) {
+        return textInfo.getText().
+                replaceAll(AndroidSpellCheckerService.APOSTROPHE,
+                        AndroidSpellCheckerService.SINGLE_QUOTE).
+                replaceAll("^" + quotesRegexp, "").
+                replaceAll(quotesRegexp + "$", "");
+    }
+
     protected SuggestionsInfo onGetSuggestionsInternal(
             final TextInfo textInfo, final NgramContext ngramContext, final int suggestionsLimit) {
         try {
-            final String text = textInfo.getText().
-                    replaceAll(AndroidSpellCheckerService.APOSTROPHE,
-                            AndroidSpellCheckerService.SINGLE_QUOTE).
-                    replaceAll("^" + quotesRegexp, "").
-                    replaceAll(quotesRegexp + "$", "");
+            final String text = getTextToCheck(textInfo);
 
             if (!mService.hasMainDictionaryForLocale(mLocale)) {
                 return AndroidSpellCheckerService.getNotInDictEmptySuggestions(
@@ -272,6 +241,12 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
                 Log.i(TAG, "onGetSuggestionsInternal() : [" + text + "] is NOT a valid word");
             }
 
+            final SuggestionsInfo cachedSuggestionsInfo =
+                    getSuggestionsInfoFromCache(text, ngramContext, suggestionsLimit);
+            if (cachedSuggestionsInfo != null) {
+                return cachedSuggestionsInfo;
+            }
+
             final Keyboard keyboard = mService.getKeyboardForLocale(mLocale);
             if (null == keyboard) {
                 Log.w(TAG, "onGetSuggestionsInternal() : No keyboard for locale: " + mLocale);
@@ -288,42 +263,209 @@ public abstract class AndroidWordLevelSpellCheckerSession extends Session {
             // TODO: Don't gather suggestions if the limit is <= 0 unless necessary
             final SuggestionResults suggestionResults = mService.getSuggestionResults(
                     mLocale, composer.getComposedDataSnapshot(), ngramContext, keyboard);
-            final Result result = getResult(capitalizeType, mLocale, suggestionsLimit,
-                    mService.getRecommendedThreshold(), text, suggestionResults);
-            if (DebugFlags.DEBUG_ENABLED) {
-                if (result.mSuggestions != null && result.mSuggestions.length > 0) {
-                    final StringBuilder builder = new StringBuilder();
-                    for (String suggestion : result.mSuggestions) {
-                        builder.append(" [");
-                        builder.append(suggestion);
-                        builder.append("]");
-                    }
-                    Log.i(TAG, "onGetSuggestionsInternal() : Suggestions =" + builder);
+            return getSuggestionsInfoForInvalidWord(text, ngramContext, capitalizeType,
+                    suggestionsLimit, suggestionResults);
+        } catch (RuntimeException e) {
+            // Don't kill the keyboard if there is a bug in the spell checker
+            Log.e(TAG, "Exception while spellchecking", e);
+            return AndroidSpellCheckerService.getNotInDictEmptySuggestions(
+                    false /* reportAsTypo */);
+        }
+    }
+
+    /**
+     * Gets suggestions for the words of a sentence. Each word is checked as
+     * {@link #onGetSuggestionsInternal(TextInfo, NgramContext, int)} would, with the n-gram context
+     * carried forward from word to word. However, the plain words of the sentence are validated
+     * with one dictionary query, and the suggestions for the invalid ones are gathered with
+     * another, instead of querying the dictionaries once per word.
+     *
+     * @param textInfos the words of the sentence, in order.
+     * @param suggestionsLimit the maximum number of suggestions to return for each word.
+     * @return the suggestions, one per word.
+     */
+    protected SuggestionsInfo[] onGetSuggestionsForWordsInternal(final TextInfo[] textInfos,
+            final int suggestionsLimit) {
+        final int length = textInfos.length;
+        final SuggestionsInfo[] retval = new SuggestionsInfo[length];
+        try {
+            final NgramContext[] ngramContexts = new NgramContext[length];
+            for (int i = 0; i < length; ++i) {
+                if (i == 0) {
+                    ngramContexts[i] = NgramContext.EMPTY_PREV_WORDS_INFO;
+                    continue;
                 }
+                final CharSequence prevWord =
+                        TextInfoCompatUtils.getCharSequenceOrString(textInfos[i - 1]);
+                // Note that an empty string would be used to indicate the initial word
+                // in the future.
+                ngramContexts[i] = ngramContexts[i - 1].getNextNgramContext(
+                        new NgramContext.WordInfo(TextUtils.isEmpty(prevWord) ? null : prevWord));
+            }
+            if (!mService.hasMainDictionaryForLocale(mLocale)) {
+                for (int i = 0; i < length; ++i) {
+                    retval[i] = AndroidSpellCheckerService.getNotInDictEmptySuggestions(
+                            false /* reportAsTypo */);
+                }
+                return retval;
+            }
+
+            // Gather every capitalization to test for the plain words, and let the word-level
+            // path handle special patterns like email, URI, telephone number.
+            final String[] texts = new String[length];
+            final int[] capitalizeTypes = new int[length];
+            final int[] firstCandidateIndices = new int[length + 1];
+            final ArrayList<String> candidates = new ArrayList<>();
+            for (int i = 0; i < length; ++i) {
+                firstCandidateIndices[i] = candidates.size();
+                final String text = getTextToCheck(textInfos[i]);
+                if (CHECKABILITY_CHECKABLE != getCheckabilityInScript(text, mScript)) {
+                    retval[i] = onGetSuggestionsInternal(textInfos[i], ngramContexts[i],
+                            suggestionsLimit);
+                    continue;
+                }
+                texts[i] = text;
+                capitalizeTypes[i] = StringUtils.getCapitalizationType(text);
+                addCapitalizationsToTest(text, capitalizeTypes[i], candidates);
+            }
+            firstCandidateIndices[length] = candidates.size();
+            final boolean[] isCandidateValid = mService.isValidWords(mLocale,
+                    candidates.toArray(new String[candidates.size()]));
+
+            final ArrayList<Integer> invalidWordIndices = new ArrayList<>();
+            for (int i = 0; i < length; ++i) {
+                if (texts[i] == null) continue;
+                boolean isValid = false;
+                for (int j = firstCandidateIndices[i]; j < firstCandidateIndices[i + 1]; ++j) {
+                    isValid |= isCandidateValid[j];
+                }
+                if (isValid) {
+                    retval[i] = AndroidSpellCheckerService.getInDictEmptySuggestions();
+                    continue;
+                }
+                retval[i] = getSuggestionsInfoFromCache(texts[i], ngramContexts[i],
+                        suggestionsLimit);
+                if (retval[i] == null) {
+                    invalidWordIndices.add(i);
+                }
+            }
+            if (invalidWordIndices.isEmpty()) {
+                return retval;
+            }
+
+            final Keyboard keyboard = mService.getKeyboardForLocale(mLocale);
+            if (null == keyboard) {
+                Log.w(TAG, "onGetSuggestionsForWordsInternal() : No keyboard for locale: "
+                        + mLocale);
+                // If there is no keyboard for this locale, don't do any spell-checking.
+                for (final int i : invalidWordIndices) {
+                    retval[i] = AndroidSpellCheckerService.getNotInDictEmptySuggestions(
+                            false /* reportAsTypo */);
+                }
+                return retval;
+            }
+            final int invalidWordCount = invalidWordIndices.size();
+            final ComposedData[] composedDataArray = new ComposedData[invalidWordCount];
+            final NgramContext[] invalidWordNgramContexts = new NgramContext[invalidWordCount];
+            final WordComposer composer = new WordComposer();
+            for (int k = 0; k < invalidWordCount; ++k) {
+                final int i = invalidWordIndices.get(k);
+                final int[] codePoints = StringUtils.toCodePointArray(texts[i]);
+                composer.setComposingWord(codePoints, keyboard.getCoordinates(codePoints));
+                composedDataArray[k] = composer.getComposedDataSnapshot();
+                invalidWordNgramContexts[k] = ngramContexts[i];
+            }
+            final List<SuggestionResults> suggestionResultsForWords =
+                    mService.getSuggestionResultsForWords(mLocale, composedDataArray,
+                            invalidWordNgramContexts, keyboard);
+            for (int k = 0; k < invalidWordCount; ++k) {
+                final int i = invalidWordIndices.get(k);
+                retval[i] = getSuggestionsInfoForInvalidWord(texts[i], ngramContexts[i],
+                        capitalizeTypes[i], suggestionsLimit, suggestionResultsForWords.get(k));
             }
-            // Handle word not in dictionary.
-            // This is called only once per unique word, so entering multiple
-            // instances of the same word does not result in more than one call
-            // to this method.
-            // Also, upon changing the orientation of the device, this is called
-            // again for every unique invalid word in the text box.
-            StatsUtils.onInvalidWordIdentification(text);
-
-            final int flags =
-                    SuggestionsInfo.RESULT_ATTR_LOOKS_LIKE_TYPO
-                    | (result.mHasRecommendedSuggestions
-                            ? SuggestionsInfoCompatUtils
-                                    .getValueOf_RESULT_ATTR_HAS_RECOMMENDED_SUGGESTIONS()
-                            : 0);
-            final SuggestionsInfo retval = new SuggestionsInfo(flags, result.mSuggestions);
-            mSuggestionsCache.putSuggestionsToCache(text, result.mSuggestions, flags);
             return retval;
         } catch (RuntimeException e) {
             // Don't kill the keyboard if there is a bug in the spell checker
             Log.e(TAG, "Exception while spellchecking", e);
-            return AndroidSpellCheckerService.getNotInDictEmptySuggestions(
-                    false /* reportAsTypo */);
+            for (int i = 0; i < length; ++i) {
+                if (retval[i] == null) {
+                    retval[i] = AndroidSpellCheckerService.getNotInDictEmptySuggestions(
+                            false /* reportAsTypo */);
+                }
+            }
+            return retval;
+        }
+    }
+
+    /**
+     * Adds the capitalizations of a word that {@link #isInDictForAnyCapitalization} tests.
+     */
+    private void addCapitalizationsToTest(final String text, final int capitalizeType,
+            final ArrayList<String> outCandidates) {
+        outCandidates.add(text);
+        if (StringUtils.CAPITALIZE_NONE == capitalizeType) return;
+        final String lowerCaseText = text.toLowerCase(mLocale);
+        outCandidates.add(lowerCaseText);
+        if (StringUtils.CAPITALIZE_FIRST == capitalizeType) return;
+        outCandidates.add(StringUtils.capitalizeFirstAndDowncaseRest(lowerCaseText, mLocale));
+    }
+
+    /**
+     * Returns the suggestions cached for a word that is not in the dictionary, or null if there
+     * are none.
+     */
+    private SuggestionsInfo getSuggestionsInfoFromCache(final String text,
+            final NgramContext ngramContext, final int suggestionsLimit) {
+        if (suggestionsLimit <= 0) {
+            return null;
+        }
+        final SuggestionsCache.SuggestionsParams cachedSuggestionsParams =
+                mSuggestionsCache.getSuggestionsFromCache(mLocale, text, ngramContext,
+                        suggestionsLimit);
+        if (cachedSuggestionsParams == null) {
+            return null;
+        }
+        if (DebugFlags.DEBUG_ENABLED) {
+            Log.i(TAG, "getSuggestionsInfoFromCache() : Cache hit: " + text);
+        }
+        return new SuggestionsInfo(cachedSuggestionsParams.mFlags,
+                cachedSuggestionsParams.getSuggestions(suggestionsLimit));
+    }
+
+    private SuggestionsInfo getSuggestionsInfoForInvalidWord(final String text,
+            final NgramContext ngramContext, final int capitalizeType, final int suggestionsLimit,
+            final SuggestionResults suggestionResults) {
+        final Result result = getResult(capitalizeType, mLocale, suggestionsLimit,
+                mService.getRecommendedThreshold(), text, suggestionResults);
+        if (DebugFlags.DEBUG_ENABLED) {
+            if (result.mSuggestions != null && result.mSuggestions.length > 0) {
+                final StringBuilder builder = new StringBuilder();
+                for (String suggestion : result.mSuggestions) {
+                    builder.append(" [");
+                    builder.append(suggestion);
+                    builder.append("]");
+                }
+                Log.i(TAG, "onGetSuggestionsInternal() : Suggestions =" + builder);
+            }
         }
+        // Handle word not in dictionary.
+        // This is called only once per unique word, so entering multiple
+        // instances of the same word does not result in more than one call
+        // to this method.
+        // Also, upon changing the orientation of the device, this is called
+        // again for every unique invalid word in the text box.
+        StatsUtils.onInvalidWordIdentification(text);
+
+        final int flags =
+                SuggestionsInfo.RESULT_ATTR_LOOKS_LIKE_TYPO
+                | (result.mHasRecommendedSuggestions
+                        ? SuggestionsInfoCompatUtils
+                                .getValueOf_RESULT_ATTR_HAS_RECOMMENDED_SUGGESTIONS()
+                        : 0);
+        final SuggestionsInfo retval = new SuggestionsInfo(flags, result.mSuggestions);
+        mSuggestionsCache.putSuggestionsToCache(mLocale, text, ngramContext, result.mSuggestions,
+                flags, suggestionsLimit);
+        return retval;
     }
 
     private static final class Result {
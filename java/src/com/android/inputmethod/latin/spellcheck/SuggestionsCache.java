@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.spellcheck;
+
+import android.text.TextUtils;
+import android.util.LruCache;
+import android.util.Pair;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.NgramContext;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of the suggestions computed for words that are not in the dictionary, shared by all the
+ * spell checker sessions of the process.
+ *
+ * Entries are keyed by locale, word and n-gram context, and the cache is bounded by an estimate
+ * of the memory used by its entries. When the user dictionary changes, only the entries the
+ * change may affect are dropped.
+ */
+final class SuggestionsCache {
+    // Maximum number of edits between a word added to the user dictionary and a cached word for
+    // the new word to possibly be suggested for the cached word.
+    private static final int MAX_EDIT_DISTANCE_FOR_INVALIDATION = 2;
+
+    // Rough per-object costs used to estimate the size of the entries.
+    private static final int ENTRY_OVERHEAD_IN_BYTES = 96;
+    private static final int STRING_OVERHEAD_IN_BYTES = 40;
+
+    public static final class SuggestionsParams {
+        public final String[] mSuggestions;
+        public final int mFlags;
+        // The suggestions limit these suggestions were computed for.
+        public final int mSuggestionsLimit;
+
+        public SuggestionsParams(final String[] suggestions, final int flags,
+                final int suggestionsLimit) {
+            mSuggestions = suggestions;
+            mFlags = flags;
+            mSuggestionsLimit = suggestionsLimit;
+        }
+
+        /**
+         * Returns whether these suggestions can serve a request for the specified limit.
+         */
+        public boolean covers(final int suggestionsLimit) {
+            return suggestionsLimit <= mSuggestionsLimit
+                    || mSuggestions.length < mSuggestionsLimit;
+        }
+
+        /**
+         * Returns the suggestions truncated to the specified limit.
+         */
+        public String[] getSuggestions(final int suggestionsLimit) {
+            if (mSuggestions.length <= suggestionsLimit) {
+                return mSuggestions;
+            }
+            return Arrays.copyOf(mSuggestions, suggestionsLimit);
+        }
+    }
+
+    private static final class Key {
+        public final Locale mLocale;
+        public final String mWord;
+        public final String mContext;
+        private final int mHashCode;
+
+        public Key(final Locale locale, final String word, final String context) {
+            mLocale = locale;
+            mWord = word;
+            mContext = context;
+            mHashCode = Arrays.hashCode(new Object[] { locale, word, context });
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            final Key key = (Key)o;
+            return mLocale.equals(key.mLocale) && mWord.equals(key.mWord)
+                    && mContext.equals(key.mContext);
+        }
+    }
+
+    private final LruCache<Key, SuggestionsParams> mCache;
+    // The number of cached entries for each locale and word, over all the n-gram contexts.
+    // Guarded by itself.
+    private final HashMap<Pair<Locale, String>, Integer> mEntryCounts = new HashMap<>();
+    private final AtomicInteger mHitCount = new AtomicInteger(0);
+    private final AtomicInteger mMissCount = new AtomicInteger(0);
+
+    public SuggestionsCache(final int maxSizeInBytes) {
+        mCache = new LruCache<Key, SuggestionsParams>(maxSizeInBytes) {
+            @Override
+            protected int sizeOf(final Key key, final SuggestionsParams value) {
+                int size = ENTRY_OVERHEAD_IN_BYTES + getStringSizeInBytes(key.mWord)
+                        + getStringSizeInBytes(key.mContext);
+                for (final String suggestion : value.mSuggestions) {
+                    size += getStringSizeInBytes(suggestion);
+                }
+                return size;
+            }
+
+            @Override
+            protected void entryRemoved(final boolean evicted, final Key key,
+                    final SuggestionsParams oldValue, final SuggestionsParams newValue) {
+                // Called for replaced entries as well, each put having counted one entry.
+                updateEntryCount(key, -1);
+            }
+        };
+    }
+
+    private void updateEntryCount(final Key key, final int delta) {
+        final Pair<Locale, String> wordKey = new Pair<>(key.mLocale, key.mWord);
+        synchronized (mEntryCounts) {
+            final Integer count = mEntryCounts.get(wordKey);
+            final int newCount = (count == null ? 0 : count) + delta;
+            if (newCount > 0) {
+                mEntryCounts.put(wordKey, newCount);
+            } else {
+                mEntryCounts.remove(wordKey);
+            }
+        }
+    }
+
+    private static int getStringSizeInBytes(final String string) {
+        return STRING_OVERHEAD_IN_BYTES + string.length() * 2;
+    }
+
+    private static Key generateKey(final Locale locale, final String word,
+            final NgramContext ngramContext) {
+        return new Key(locale, word, ngramContext.extractPrevWordsContext());
+    }
+
+    /**
+     * Gets the cached suggestions for a word.
+     *
+     * @return the suggestions, or null if none that cover the specified limit are cached.
+     */
+    @Nullable
+    public SuggestionsParams getSuggestionsFromCache(@Nonnull final Locale locale,
+            final String word, @Nonnull final NgramContext ngramContext,
+            final int suggestionsLimit) {
+        if (TextUtils.isEmpty(word)) {
+            return null;
+        }
+        final SuggestionsParams params = mCache.get(generateKey(locale, word, ngramContext));
+        if (params == null || !params.covers(suggestionsLimit)) {
+            mMissCount.incrementAndGet();
+            return null;
+        }
+        mHitCount.incrementAndGet();
+        return params;
+    }
+
+    /**
+     * Returns whether suggestions are cached for a word in any n-gram context.
+     */
+    public boolean hasSuggestionsForWord(@Nonnull final Locale locale, final String word) {
+        if (TextUtils.isEmpty(word)) {
+            return false;
+        }
+        synchronized (mEntryCounts) {
+            return mEntryCounts.containsKey(new Pair<>(locale, word));
+        }
+    }
+
+    public void putSuggestionsToCache(@Nonnull final Locale locale, final String word,
+            @Nonnull final NgramContext ngramContext, final String[] suggestions,
+            final int flags, final int suggestionsLimit) {
+        if (suggestions == null || TextUtils.isEmpty(word)) {
+            return;
+        }
+        final Key key = generateKey(locale, word, ngramContext);
+        // Counted before the put so that the count never goes negative when the entry is
+        // evicted or replaced by another thread right away.
+        updateEntryCount(key, 1);
+        mCache.put(key, new SuggestionsParams(suggestions, flags, suggestionsLimit));
+    }
+
+    /**
+     * Drops the entries that a change of a user dictionary word may affect: the entries for the
+     * word itself, the entries suggesting it, and the entries for words close enough to it that
+     * it may now be suggested for them.
+     *
+     * @param locale the locale of the user dictionary word, or null if it is for all locales.
+     * @param word the user dictionary word.
+     */
+    public void invalidateWord(@Nullable final Locale locale, @Nonnull final String word) {
+        final String lowerCaseWord = word.toLowerCase(locale == null ? Locale.ROOT : locale);
+        for (final Map.Entry<Key, SuggestionsParams> entry : mCache.snapshot().entrySet()) {
+            final Key key = entry.getKey();
+            if (locale != null && !locale.getLanguage().equals(key.mLocale.getLanguage())) {
+                continue;
+            }
+            if (isAffectedBy(key.mWord.toLowerCase(key.mLocale), entry.getValue(),
+                    lowerCaseWord)) {
+                mCache.remove(key);
+            }
+        }
+    }
+
+    private static boolean isAffectedBy(final String lowerCaseCachedWord,
+            final SuggestionsParams params, final String lowerCaseWord) {
+        if (isWithinEditDistance(lowerCaseCachedWord, lowerCaseWord,
+                MAX_EDIT_DISTANCE_FOR_INVALIDATION)) {
+            return true;
+        }
+        for (final String suggestion : params.mSuggestions) {
+            if (suggestion.equalsIgnoreCase(lowerCaseWord)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the Levenshtein distance between two strings is at most maxDistance.
+     */
+    private static boolean isWithinEditDistance(final String a, final String b,
+            final int maxDistance) {
+        final int aLength = a.length();
+        final int bLength = b.length();
+        if (Math.abs(aLength - bLength) > maxDistance) {
+            return false;
+        }
+        int[] prevRow = new int[bLength + 1];
+        int[] row = new int[bLength + 1];
+        for (int j = 0; j <= bLength; ++j) {
+            prevRow[j] = j;
+        }
+        for (int i = 1; i <= aLength; ++i) {
+            row[0] = i;
+            int minInRow = row[0];
+            for (int j = 1; j <= bLength; ++j) {
+                final int cost = (a.charAt(i - 1) == b.charAt(j - 1)) ? 0 : 1;
+                row[j] = Math.min(Math.min(row[j - 1] + 1, prevRow[j] + 1),
+                        prevRow[j - 1] + cost);
+                minInRow = Math.min(minInRow, row[j]);
+            }
+            if (minInRow > maxDistance) {
+                return false;
+            }
+            final int[] tmp = prevRow;
+            prevRow = row;
+            row = tmp;
+        }
+        return prevRow[bLength] <= maxDistance;
+    }
+
+    public void clearCache() {
+        mCache.evictAll();
+    }
+
+    public int getHitCount() {
+        return mHitCount.get();
+    }
+
+    public int getMissCount() {
+        return mMissCount.get();
+    }
+
+    public int getSizeInBytes() {
+        return mCache.size();
+    }
+
+    @UsedForTesting
+    int getEntryCountForTesting() {
+        return mCache.snapshot().size();
+    }
+}
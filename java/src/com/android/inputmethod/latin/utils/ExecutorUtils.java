@@ -21,6 +21,7 @@ import android.util.Log;
 import com.android.inputmethod.annotations.UsedForTesting;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.HashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -33,16 +34,56 @@ public class ExecutorUtils {
 
     private static final String TAG = "ExecutorUtils";
 
+    // Latency-critical work of the keyboard, such as learning the words the user types.
     public static final String KEYBOARD = "Keyboard";
     public static final String SPELLING = "Spelling";
+    public static final String SUGGESTION = "Suggestion";
+    // Loading, flushing and maintaining the dictionaries.
+    public static final String DICTIONARY_IO = "DictionaryIo";
+    // Opening the word lists of the main dictionaries, which the DictionaryIo lane waits for.
+    public static final String WORD_LIST_IO = "WordListIo";
+    // Long rebuilds from external data, such as the contacts, and other work that must not delay
+    // the other lanes, such as prebuilding keyboards.
+    public static final String BULK = "Bulk";
+
+    private static final String[] ALL_EXECUTOR_NAMES =
+            { KEYBOARD, SPELLING, SUGGESTION, DICTIONARY_IO, WORD_LIST_IO, BULK };
+
+    // The suggestion executor runs one dictionary lookup per thread, so there is no point in
+    // having more threads than dictionaries in a group or than available cores.
+    private static final int MAX_SUGGESTION_THREAD_COUNT = 4;
+    private static final int SUGGESTION_THREAD_COUNT = Math.max(1,
+            Math.min(MAX_SUGGESTION_THREAD_COUNT, Runtime.getRuntime().availableProcessors()));
+    // The word list executor opens the word lists of a main dictionary in parallel, one per thread.
+    // A locale rarely has more word lists than this, and mapping them is mostly I/O.
+    private static final int WORD_LIST_IO_THREAD_COUNT = 3;
 
     private static ScheduledExecutorService sKeyboardExecutorService = newExecutorService(KEYBOARD);
     private static ScheduledExecutorService sSpellingExecutorService = newExecutorService(SPELLING);
+    private static ScheduledExecutorService sSuggestionExecutorService =
+            newExecutorService(SUGGESTION, SUGGESTION_THREAD_COUNT);
+    private static ScheduledExecutorService sDictionaryIoExecutorService =
+            newExecutorService(DICTIONARY_IO);
+    private static ScheduledExecutorService sWordListIoExecutorService =
+            newExecutorService(WORD_LIST_IO, WORD_LIST_IO_THREAD_COUNT);
+    private static ScheduledExecutorService sBulkExecutorService = newExecutorService(BULK);
+
+    private static final HashMap<String, TaskLane> sTaskLanes = new HashMap<>();
+    static {
+        for (final String name : ALL_EXECUTOR_NAMES) {
+            sTaskLanes.put(name, new TaskLane(name));
+        }
+    }
 
     private static ScheduledExecutorService newExecutorService(final String name) {
         return Executors.newSingleThreadScheduledExecutor(new ExecutorFactory(name));
     }
 
+    private static ScheduledExecutorService newExecutorService(final String name,
+            final int threadCount) {
+        return Executors.newScheduledThreadPool(threadCount, new ExecutorFactory(name));
+    }
+
     private static class ExecutorFactory implements ThreadFactory {
         private final String mName;
 
@@ -89,11 +130,31 @@ public class ExecutorUtils {
                 return sKeyboardExecutorService;
             case SPELLING:
                 return sSpellingExecutorService;
+            case SUGGESTION:
+                return sSuggestionExecutorService;
+            case DICTIONARY_IO:
+                return sDictionaryIoExecutorService;
+            case WORD_LIST_IO:
+                return sWordListIoExecutorService;
+            case BULK:
+                return sBulkExecutorService;
             default:
                 throw new IllegalArgumentException("Invalid executor: " + name);
         }
     }
 
+    /**
+     * @param name Executor's name.
+     * @return the prioritized task lane that runs its tasks on the executor.
+     */
+    public static TaskLane getTaskLane(final String name) {
+        final TaskLane taskLane = sTaskLanes.get(name);
+        if (taskLane == null) {
+            throw new IllegalArgumentException("Invalid executor: " + name);
+        }
+        return taskLane;
+    }
+
     public static void killTasks(final String name) {
         final ScheduledExecutorService executorService = getBackgroundExecutor(name);
         executorService.shutdownNow();
@@ -102,6 +163,7 @@ public class ExecutorUtils {
         } catch (InterruptedException e) {
             Log.wtf(TAG, "Failed to shut down: " + name);
         }
+        getTaskLane(name).cancelAllTasks();
         if (executorService == sExecutorServiceForTests) {
             // Don't do anything to the test service.
             return;
@@ -113,6 +175,20 @@ public class ExecutorUtils {
             case SPELLING:
                 sSpellingExecutorService = newExecutorService(SPELLING);
                 break;
+            case SUGGESTION:
+                sSuggestionExecutorService =
+                        newExecutorService(SUGGESTION, SUGGESTION_THREAD_COUNT);
+                break;
+            case DICTIONARY_IO:
+                sDictionaryIoExecutorService = newExecutorService(DICTIONARY_IO);
+                break;
+            case WORD_LIST_IO:
+                sWordListIoExecutorService =
+                        newExecutorService(WORD_LIST_IO, WORD_LIST_IO_THREAD_COUNT);
+                break;
+            case BULK:
+                sBulkExecutorService = newExecutorService(BULK);
+                break;
             default:
                 throw new IllegalArgumentException("Invalid executor: " + name);
         }
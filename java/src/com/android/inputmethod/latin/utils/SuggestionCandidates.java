@@ -0,0 +1,343 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import com.android.inputmethod.annotations.UsedForTesting;
+import com.android.inputmethod.latin.Dictionary;
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+
+import java.util.Arrays;
+
+/**
+ * A bounded collection of the best suggestion candidates, stored in primitive arrays.
+ *
+ * Dictionaries add their raw results here as code point slices, and only the candidates that
+ * survive the merge are turned into {@link SuggestedWordInfo} objects by
+ * {@link #addTo(SuggestionResults)}. Candidates are ranked like {@link SuggestionResults}: higher
+ * score first, then fewer code points, then code point order. Like {@link SuggestionResults},
+ * this holds at most one candidate per word, the best one.
+ *
+ * The candidates are kept in a binary heap whose root is the worst candidate held, and are
+ * indexed by word in an open addressing hash table, so adding a candidate costs O(log(capacity))
+ * plus the hashing of its code points. Adding does not allocate. This class is not thread-safe.
+ */
+public final class SuggestionCandidates {
+    private final int mCapacity;
+    private final int mMaxWordLength;
+
+    // Per-slot data. The code points of slot i are stored from i * mMaxWordLength.
+    private final int[] mCodePoints;
+    private final int[] mCodePointCounts;
+    private final int[] mScores;
+    private final int[] mKindAndFlags;
+    private final int[] mIndicesOfTouchPointOfSecondWord;
+    private final int[] mAutoCommitFirstWordConfidences;
+    private final Dictionary[] mSourceDicts;
+    private final int[] mWordHashCodes;
+    // The index in mHeap of each slot.
+    private final int[] mHeapIndices;
+
+    // Slot indices, arranged as a heap whose root is the worst candidate.
+    private final int[] mHeap;
+    private int mSize;
+
+    // The slots indexed by the hash code of their word with linear probing, stored plus one so
+    // that 0 means an empty bucket. Kept at most half full.
+    private final int[] mWordTable;
+    private final int mWordTableMask;
+
+    public SuggestionCandidates(final int capacity, final int maxWordLength) {
+        mCapacity = capacity;
+        mMaxWordLength = maxWordLength;
+        mCodePoints = new int[capacity * maxWordLength];
+        mCodePointCounts = new int[capacity];
+        mScores = new int[capacity];
+        mKindAndFlags = new int[capacity];
+        mIndicesOfTouchPointOfSecondWord = new int[capacity];
+        mAutoCommitFirstWordConfidences = new int[capacity];
+        mSourceDicts = new Dictionary[capacity];
+        mWordHashCodes = new int[capacity];
+        mHeapIndices = new int[capacity];
+        mHeap = new int[capacity];
+        mSize = 0;
+        mWordTable = new int[Integer.highestOneBit(Math.max(capacity, 1)) * 4];
+        mWordTableMask = mWordTable.length - 1;
+    }
+
+    public void clear() {
+        Arrays.fill(mSourceDicts, 0, mSize, null);
+        Arrays.fill(mWordTable, 0);
+        mSize = 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Adds a candidate whose code points are a slice of an array.
+     *
+     * @return true if the candidate was kept, false if it was not good enough or the word is
+     * already held with a score at least as high.
+     */
+    public boolean add(final int[] codePoints, final int start, final int codePointCount,
+            final int score, final int kindAndFlags, final Dictionary sourceDict,
+            final int indexOfTouchPointOfSecondWord, final int autoCommitFirstWordConfidence) {
+        if (codePointCount <= 0 || codePointCount > mMaxWordLength || mCapacity == 0) {
+            return false;
+        }
+        if (mSize == mCapacity && compareToSlot(codePoints, start, codePointCount, score,
+                mHeap[0]) >= 0) {
+            // Not better than the worst candidate held.
+            return false;
+        }
+        final int wordHashCode = getWordHashCode(codePoints, start, codePointCount);
+        final int heldSlot = findSlot(codePoints, start, codePointCount, wordHashCode);
+        if (heldSlot >= 0) {
+            // Keep the best candidate for the word.
+            if (score <= mScores[heldSlot]) {
+                return false;
+            }
+            setSlot(heldSlot, codePoints, start, codePointCount, score, kindAndFlags,
+                    sourceDict, indexOfTouchPointOfSecondWord, autoCommitFirstWordConfidence);
+            siftDown(mHeapIndices[heldSlot]);
+            return true;
+        }
+        final int slot;
+        final int heapIndex;
+        if (mSize < mCapacity) {
+            slot = mSize;
+            heapIndex = mSize;
+            ++mSize;
+        } else {
+            slot = mHeap[0];
+            heapIndex = 0;
+            removeFromWordTable(slot);
+        }
+        setSlot(slot, codePoints, start, codePointCount, score, kindAndFlags, sourceDict,
+                indexOfTouchPointOfSecondWord, autoCommitFirstWordConfidence);
+        mWordHashCodes[slot] = wordHashCode;
+        addToWordTable(slot);
+        mHeap[heapIndex] = slot;
+        if (heapIndex == 0) {
+            siftDown(0);
+        } else {
+            siftUp(heapIndex);
+        }
+        return true;
+    }
+
+    private void setSlot(final int slot, final int[] codePoints, final int start,
+            final int codePointCount, final int score, final int kindAndFlags,
+            final Dictionary sourceDict, final int indexOfTouchPointOfSecondWord,
+            final int autoCommitFirstWordConfidence) {
+        System.arraycopy(codePoints, start, mCodePoints, slot * mMaxWordLength, codePointCount);
+        mCodePointCounts[slot] = codePointCount;
+        mScores[slot] = score;
+        mKindAndFlags[slot] = kindAndFlags;
+        mSourceDicts[slot] = sourceDict;
+        mIndicesOfTouchPointOfSecondWord[slot] = indexOfTouchPointOfSecondWord;
+        mAutoCommitFirstWordConfidences[slot] = autoCommitFirstWordConfidence;
+    }
+
+    /**
+     * Adds a candidate that is already a {@link SuggestedWordInfo}.
+     *
+     * @return true if the candidate was kept, false if it was not good enough or the word is
+     * already held with a score at least as high.
+     */
+    public boolean add(final SuggestedWordInfo info) {
+        final String word = info.mWord;
+        final int codePointCount = info.mCodePointCount;
+        if (codePointCount <= 0 || codePointCount > mMaxWordLength) {
+            return false;
+        }
+        // This is only used for dictionaries without a primitive result path, which have already
+        // allocated the word.
+        final int[] codePoints = new int[codePointCount];
+        for (int i = 0, index = 0; i < codePointCount; ++i) {
+            codePoints[i] = word.codePointAt(index);
+            index = word.offsetByCodePoints(index, 1);
+        }
+        return add(codePoints, 0, codePointCount, info.mScore, info.mKindAndFlags,
+                info.mSourceDict, info.mIndexOfTouchPointOfSecondWord,
+                info.mAutoCommitFirstWordConfidence);
+    }
+
+    /**
+     * Creates the {@link SuggestedWordInfo} objects for the candidates held and adds them to the
+     * results.
+     */
+    public void addTo(final SuggestionResults suggestionResults) {
+        for (int i = 0; i < mSize; ++i) {
+            final int slot = mHeap[i];
+            suggestionResults.add(new SuggestedWordInfo(
+                    new String(mCodePoints, slot * mMaxWordLength, mCodePointCounts[slot]),
+                    "" /* prevWordsContext */, mScores[slot], mKindAndFlags[slot],
+                    mSourceDicts[slot], mIndicesOfTouchPointOfSecondWord[slot],
+                    mAutoCommitFirstWordConfidences[slot]));
+        }
+    }
+
+    @UsedForTesting
+    int getWorstScoreForTesting() {
+        return mSize == 0 ? Integer.MIN_VALUE : mScores[mHeap[0]];
+    }
+
+    /**
+     * Compares a candidate with the candidate in a slot.
+     *
+     * @return a negative number if the candidate ranks before the slot, a positive number if it
+     * ranks after it, and 0 if they are equal.
+     */
+    private int compareToSlot(final int[] codePoints, final int start, final int codePointCount,
+            final int score, final int slot) {
+        if (score != mScores[slot]) {
+            return score > mScores[slot] ? -1 : 1;
+        }
+        final int slotCodePointCount = mCodePointCounts[slot];
+        if (codePointCount != slotCodePointCount) {
+            return codePointCount < slotCodePointCount ? -1 : 1;
+        }
+        final int slotStart = slot * mMaxWordLength;
+        for (int i = 0; i < codePointCount; ++i) {
+            final int codePoint = codePoints[start + i];
+            final int slotCodePoint = mCodePoints[slotStart + i];
+            if (codePoint != slotCodePoint) {
+                return codePoint < slotCodePoint ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    private static int getWordHashCode(final int[] codePoints, final int start,
+            final int codePointCount) {
+        int hashCode = 1;
+        for (int i = start; i < start + codePointCount; ++i) {
+            hashCode = 31 * hashCode + codePoints[i];
+        }
+        return hashCode;
+    }
+
+    private int getHomeBucket(final int wordHashCode) {
+        return (wordHashCode ^ (wordHashCode >>> 16)) & mWordTableMask;
+    }
+
+    /**
+     * Returns the slot holding a word, or -1 if the word is not held.
+     */
+    private int findSlot(final int[] codePoints, final int start, final int codePointCount,
+            final int wordHashCode) {
+        for (int bucket = getHomeBucket(wordHashCode); mWordTable[bucket] != 0;
+                bucket = (bucket + 1) & mWordTableMask) {
+            final int slot = mWordTable[bucket] - 1;
+            if (mWordHashCodes[slot] == wordHashCode
+                    && hasSameWord(codePoints, start, codePointCount, slot)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void addToWordTable(final int slot) {
+        int bucket = getHomeBucket(mWordHashCodes[slot]);
+        while (mWordTable[bucket] != 0) {
+            bucket = (bucket + 1) & mWordTableMask;
+        }
+        mWordTable[bucket] = slot + 1;
+    }
+
+    private void removeFromWordTable(final int slot) {
+        int hole = getHomeBucket(mWordHashCodes[slot]);
+        while (mWordTable[hole] != slot + 1) {
+            hole = (hole + 1) & mWordTableMask;
+        }
+        // Shift back the following entries of the probe sequence that may not be found anymore
+        // once there is a hole before them.
+        for (int bucket = (hole + 1) & mWordTableMask; mWordTable[bucket] != 0;
+                bucket = (bucket + 1) & mWordTableMask) {
+            final int homeBucket = getHomeBucket(mWordHashCodes[mWordTable[bucket] - 1]);
+            if (((bucket - homeBucket) & mWordTableMask) >= ((bucket - hole) & mWordTableMask)) {
+                mWordTable[hole] = mWordTable[bucket];
+                hole = bucket;
+            }
+        }
+        mWordTable[hole] = 0;
+    }
+
+    private boolean hasSameWord(final int[] codePoints, final int start,
+            final int codePointCount, final int slot) {
+        if (codePointCount != mCodePointCounts[slot]) {
+            return false;
+        }
+        final int slotStart = slot * mMaxWordLength;
+        for (int i = 0; i < codePointCount; ++i) {
+            if (codePoints[start + i] != mCodePoints[slotStart + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compareSlots(final int slot1, final int slot2) {
+        return compareToSlot(mCodePoints, slot1 * mMaxWordLength, mCodePointCounts[slot1],
+                mScores[slot1], slot2);
+    }
+
+    // The heap keeps the worst candidate at the root: a parent never ranks before its children.
+    private void siftUp(int index) {
+        final int slot = mHeap[index];
+        while (index > 0) {
+            final int parentIndex = (index - 1) / 2;
+            if (compareSlots(slot, mHeap[parentIndex]) <= 0) {
+                break;
+            }
+            mHeap[index] = mHeap[parentIndex];
+            mHeapIndices[mHeap[index]] = index;
+            index = parentIndex;
+        }
+        mHeap[index] = slot;
+        mHeapIndices[slot] = index;
+    }
+
+    private void siftDown(int index) {
+        final int slot = mHeap[index];
+        while (true) {
+            int worstChildIndex = 2 * index + 1;
+            if (worstChildIndex >= mSize) {
+                break;
+            }
+            final int rightChildIndex = worstChildIndex + 1;
+            if (rightChildIndex < mSize
+                    && compareSlots(mHeap[rightChildIndex], mHeap[worstChildIndex]) > 0) {
+                worstChildIndex = rightChildIndex;
+            }
+            if (compareSlots(mHeap[worstChildIndex], slot) <= 0) {
+                break;
+            }
+            mHeap[index] = mHeap[worstChildIndex];
+            mHeapIndices[mHeap[index]] = index;
+            index = worstChildIndex;
+        }
+        mHeap[index] = slot;
+        mHeapIndices[slot] = index;
+    }
+}
@@ -19,16 +19,24 @@ package com.android.inputmethod.latin.utils;
 import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
 import com.android.inputmethod.latin.define.ProductionFlags;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.TreeSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 /**
- * A TreeSet of SuggestedWordInfo that is bounded in size and throws everything that's smaller
- * than its limit
+ * A collection of SuggestedWordInfo that is bounded in size and throws everything that's smaller
+ * than its limit. It holds at most one suggestion per word, the best one, and iterates over the
+ * suggestions best first.
+ *
+ * The suggestions are kept in a fixed-capacity heap whose root is the worst suggestion held, so
+ * once the collection is full, a suggestion with a lower score than the worst one is rejected
+ * with a single comparison.
  */
-public final class SuggestionResults extends TreeSet<SuggestedWordInfo> {
+public final class SuggestionResults extends AbstractCollection<SuggestedWordInfo> {
     public final ArrayList<SuggestedWordInfo> mRawSuggestions;
     // TODO: Instead of a boolean , we may want to include the context of this suggestion results,
     // such as {@link NgramContext}.
@@ -36,16 +44,19 @@ public final class SuggestionResults extends TreeSet<SuggestedWordInfo> {
     public final boolean mFirstSuggestionExceedsConfidenceThreshold;
     private final int mCapacity;
 
-    public SuggestionResults(final int capacity, final boolean isBeginningOfSentence,
-            final boolean firstSuggestionExceedsConfidenceThreshold) {
-        this(sSuggestedWordInfoComparator, capacity, isBeginningOfSentence,
-                firstSuggestionExceedsConfidenceThreshold);
-    }
+    // The suggestions, arranged as a heap whose root is the worst suggestion.
+    private final SuggestedWordInfo[] mHeap;
+    // The hash codes of the words of the suggestions in mHeap, to find a word without comparing
+    // strings.
+    private final int[] mWordHashCodes;
+    private int mSize;
+    // The suggestions sorted best first, or null if they changed since they were last sorted.
+    // Results that are done being built are read from several threads, so a read sorts into a
+    // new array and publishes it, and never changes an array another reader may hold.
+    private volatile SuggestedWordInfo[] mSorted;
 
-    private SuggestionResults(final Comparator<SuggestedWordInfo> comparator, final int capacity,
-            final boolean isBeginningOfSentence,
+    public SuggestionResults(final int capacity, final boolean isBeginningOfSentence,
             final boolean firstSuggestionExceedsConfidenceThreshold) {
-        super(comparator);
         mCapacity = capacity;
         if (ProductionFlags.INCLUDE_RAW_SUGGESTIONS) {
             mRawSuggestions = new ArrayList<>();
@@ -54,21 +65,145 @@ public final class SuggestionResults extends TreeSet<SuggestedWordInfo> {
         }
         mIsBeginningOfSentence = isBeginningOfSentence;
         mFirstSuggestionExceedsConfidenceThreshold = firstSuggestionExceedsConfidenceThreshold;
+        mHeap = new SuggestedWordInfo[capacity];
+        mWordHashCodes = new int[capacity];
+        mSize = 0;
+        mSorted = null;
     }
 
     @Override
     public boolean add(final SuggestedWordInfo e) {
-        if (size() < mCapacity) return super.add(e);
-        if (comparator().compare(e, last()) > 0) return false;
-        super.add(e);
-        pollLast(); // removes the last element
+        if (mCapacity <= 0) return false;
+        if (mSize == mCapacity) {
+            final SuggestedWordInfo worst = mHeap[0];
+            if (e.mScore < worst.mScore) return false;
+            if (sSuggestedWordInfoComparator.compare(e, worst) >= 0) return false;
+        }
+        final int wordHashCode = e.mWord.hashCode();
+        for (int i = 0; i < mSize; ++i) {
+            if (mWordHashCodes[i] != wordHashCode || !mHeap[i].mWord.equals(e.mWord)) continue;
+            // Keep the best suggestion for the word.
+            if (sSuggestedWordInfoComparator.compare(e, mHeap[i]) >= 0) return false;
+            mHeap[i] = e;
+            siftDown(i);
+            mSorted = null;
+            return true;
+        }
+        if (mSize < mCapacity) {
+            mHeap[mSize] = e;
+            mWordHashCodes[mSize] = wordHashCode;
+            siftUp(mSize);
+            ++mSize;
+        } else {
+            mHeap[0] = e;
+            mWordHashCodes[0] = wordHashCode;
+            siftDown(0);
+        }
+        mSorted = null;
         return true;
     }
 
     @Override
     public boolean addAll(final Collection<? extends SuggestedWordInfo> e) {
         if (null == e) return false;
-        return super.addAll(e);
+        boolean changed = false;
+        for (final SuggestedWordInfo info : e) {
+            changed |= add(info);
+        }
+        return changed;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mHeap, 0, mSize, null);
+        mSize = 0;
+        mSorted = null;
+    }
+
+    /**
+     * Returns the best suggestion.
+     * @throws NoSuchElementException if there is no suggestion.
+     */
+    public SuggestedWordInfo first() {
+        final SuggestedWordInfo[] sorted = getSorted();
+        if (sorted.length == 0) throw new NoSuchElementException();
+        return sorted[0];
+    }
+
+    @Override
+    public Iterator<SuggestedWordInfo> iterator() {
+        final SuggestedWordInfo[] sorted = getSorted();
+        final int size = sorted.length;
+        return new Iterator<SuggestedWordInfo>() {
+            private int mIndex = 0;
+
+            @Override
+            public boolean hasNext() {
+                return mIndex < size;
+            }
+
+            @Override
+            public SuggestedWordInfo next() {
+                if (mIndex >= size) throw new NoSuchElementException();
+                return sorted[mIndex++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private SuggestedWordInfo[] getSorted() {
+        SuggestedWordInfo[] sorted = mSorted;
+        if (sorted == null) {
+            // Concurrent readers may both sort, each into its own array with the same contents.
+            sorted = Arrays.copyOf(mHeap, mSize);
+            Arrays.sort(sorted, sSuggestedWordInfoComparator);
+            mSorted = sorted;
+        }
+        return sorted;
+    }
+
+    // The heap keeps the worst suggestion at the root: a parent never ranks before its children.
+    private void siftUp(int index) {
+        final SuggestedWordInfo info = mHeap[index];
+        final int wordHashCode = mWordHashCodes[index];
+        while (index > 0) {
+            final int parentIndex = (index - 1) / 2;
+            if (sSuggestedWordInfoComparator.compare(info, mHeap[parentIndex]) <= 0) break;
+            mHeap[index] = mHeap[parentIndex];
+            mWordHashCodes[index] = mWordHashCodes[parentIndex];
+            index = parentIndex;
+        }
+        mHeap[index] = info;
+        mWordHashCodes[index] = wordHashCode;
+    }
+
+    private void siftDown(int index) {
+        final SuggestedWordInfo info = mHeap[index];
+        final int wordHashCode = mWordHashCodes[index];
+        while (true) {
+            int worstChildIndex = 2 * index + 1;
+            if (worstChildIndex >= mSize) break;
+            final int rightChildIndex = worstChildIndex + 1;
+            if (rightChildIndex < mSize && sSuggestedWordInfoComparator.compare(
+                    mHeap[rightChildIndex], mHeap[worstChildIndex]) > 0) {
+                worstChildIndex = rightChildIndex;
+            }
+            if (sSuggestedWordInfoComparator.compare(mHeap[worstChildIndex], info) <= 0) break;
+            mHeap[index] = mHeap[worstChildIndex];
+            mWordHashCodes[index] = mWordHashCodes[worstChildIndex];
+            index = worstChildIndex;
+        }
+        mHeap[index] = info;
+        mWordHashCodes[index] = wordHashCode;
     }
 
     static final class SuggestedWordInfoComparator implements Comparator<SuggestedWordInfo> {
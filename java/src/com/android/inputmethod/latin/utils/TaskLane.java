@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * A prioritized queue of tasks run on one of the {@link ExecutorUtils} executors.
+ *
+ * Pending tasks run by priority, and in submission order for the same priority. Tasks are
+ * submitted with an owner so that the pending tasks of an owner can be cancelled when it goes
+ * away; a task that has already started is not interrupted. The lane records how long tasks wait
+ * in the queue and how long they run. This class is thread-safe.
+ */
+public final class TaskLane {
+    public static final int PRIORITY_HIGH = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_LOW = 2;
+
+    private static final class Task implements Comparable<Task> {
+        public final Object mOwner;
+        public final int mPriority;
+        public final long mSequenceNumber;
+        public final long mEnqueueTimeNanos;
+        public final Runnable mRunnable;
+
+        public Task(final Object owner, final int priority, final long sequenceNumber,
+                final Runnable runnable) {
+            mOwner = owner;
+            mPriority = priority;
+            mSequenceNumber = sequenceNumber;
+            mEnqueueTimeNanos = System.nanoTime();
+            mRunnable = runnable;
+        }
+
+        @Override
+        public int compareTo(final Task other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            return Long.compare(mSequenceNumber, other.mSequenceNumber);
+        }
+    }
+
+    private final String mExecutorName;
+    private final PriorityQueue<Task> mPendingTasks = new PriorityQueue<>();
+    private long mNextSequenceNumber;
+
+    // Metrics, guarded by mPendingTasks.
+    private long mCompletedTaskCount;
+    private long mCancelledTaskCount;
+    private long mTotalQueueTimeNanos;
+    private long mMaxQueueTimeNanos;
+    private long mTotalRunTimeNanos;
+    private long mMaxRunTimeNanos;
+
+    // Each submission posts one of these to the executor, which runs the most urgent pending task
+    // at the time it runs.
+    private final Runnable mRunNextTask = new Runnable() {
+        @Override
+        public void run() {
+            runNextTask();
+        }
+    };
+
+    /**
+     * @param executorName the name of the executor to run the tasks on, as one of the
+     * {@link ExecutorUtils} names.
+     */
+    TaskLane(@Nonnull final String executorName) {
+        mExecutorName = executorName;
+    }
+
+    public String getName() {
+        return mExecutorName;
+    }
+
+    /**
+     * Queues a task.
+     *
+     * @param owner the owner of the task for {@link #cancelTasks}, or null.
+     * @param priority one of the PRIORITY_* constants.
+     * @param task the task to run.
+     */
+    public void execute(@Nullable final Object owner, final int priority,
+            @Nonnull final Runnable task) {
+        synchronized (mPendingTasks) {
+            mPendingTasks.add(new Task(owner, priority, mNextSequenceNumber++, task));
+        }
+        ExecutorUtils.getBackgroundExecutor(mExecutorName).execute(mRunNextTask);
+    }
+
+    /**
+     * Removes the pending tasks of an owner. A task of the owner that is running is not affected.
+     *
+     * @return the number of tasks removed.
+     */
+    public int cancelTasks(@Nonnull final Object owner) {
+        int cancelledCount = 0;
+        synchronized (mPendingTasks) {
+            final Iterator<Task> iterator = mPendingTasks.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().mOwner == owner) {
+                    iterator.remove();
+                    ++cancelledCount;
+                }
+            }
+            mCancelledTaskCount += cancelledCount;
+        }
+        return cancelledCount;
+    }
+
+    /**
+     * Removes all the pending tasks, for example when the executor is shut down.
+     */
+    void cancelAllTasks() {
+        synchronized (mPendingTasks) {
+            mCancelledTaskCount += mPendingTasks.size();
+            mPendingTasks.clear();
+        }
+    }
+
+    private void runNextTask() {
+        final Task task;
+        synchronized (mPendingTasks) {
+            task = mPendingTasks.poll();
+        }
+        if (task == null) {
+            // The task was cancelled or run by an earlier submission.
+            return;
+        }
+        final long startTimeNanos = System.nanoTime();
+        try {
+            task.mRunnable.run();
+        } finally {
+            final long endTimeNanos = System.nanoTime();
+            final long queueTimeNanos = startTimeNanos - task.mEnqueueTimeNanos;
+            final long runTimeNanos = endTimeNanos - startTimeNanos;
+            synchronized (mPendingTasks) {
+                ++mCompletedTaskCount;
+                mTotalQueueTimeNanos += queueTimeNanos;
+                mMaxQueueTimeNanos = Math.max(mMaxQueueTimeNanos, queueTimeNanos);
+                mTotalRunTimeNanos += runTimeNanos;
+                mMaxRunTimeNanos = Math.max(mMaxRunTimeNanos, runTimeNanos);
+            }
+        }
+    }
+
+    public int getPendingTaskCount() {
+        synchronized (mPendingTasks) {
+            return mPendingTasks.size();
+        }
+    }
+
+    public long getCompletedTaskCount() {
+        synchronized (mPendingTasks) {
+            return mCompletedTaskCount;
+        }
+    }
+
+    public long getCancelledTaskCount() {
+        synchronized (mPendingTasks) {
+            return mCancelledTaskCount;
+        }
+    }
+
+    public long getTotalQueueTimeMillis() {
+        synchronized (mPendingTasks) {
+            return TimeUnit.NANOSECONDS.toMillis(mTotalQueueTimeNanos);
+        }
+    }
+
+    public long getMaxQueueTimeMillis() {
+        synchronized (mPendingTasks) {
+            return TimeUnit.NANOSECONDS.toMillis(mMaxQueueTimeNanos);
+        }
+    }
+
+    public long getTotalRunTimeMillis() {
+        synchronized (mPendingTasks) {
+            return TimeUnit.NANOSECONDS.toMillis(mTotalRunTimeNanos);
+        }
+    }
+
+    public long getMaxRunTimeMillis() {
+        synchronized (mPendingTasks) {
+            return TimeUnit.NANOSECONDS.toMillis(mMaxRunTimeNanos);
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (mPendingTasks) {
+            return mExecutorName + ": pending=" + mPendingTasks.size()
+                    + " completed=" + mCompletedTaskCount
+                    + " cancelled=" + mCancelledTaskCount
+                    + " maxQueueTimeMs=" + TimeUnit.NANOSECONDS.toMillis(mMaxQueueTimeNanos)
+                    + " maxRunTimeMs=" + TimeUnit.NANOSECONDS.toMillis(mMaxRunTimeNanos);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A compact set of words that can tell that a word is certainly not in it, or that it may be.
+ *
+ * This is a Bloom filter on the hash codes of the words, with about 1% of false positives while
+ * it holds no more words than its capacity. Words can be added while other threads look words
+ * up, but they can't be removed: a removed word only becomes a false positive.
+ *
+ * Only the added words that set at least one bit are counted, so that adding the same words
+ * again doesn't bring the filter over its capacity.
+ */
+public final class WordMembershipFilter {
+    private static final int BITS_PER_WORD = 10;
+    private static final int HASH_FUNCTION_COUNT = 7;
+    private static final int MIN_CAPACITY = 64;
+    private static final int BITS_PER_ELEMENT = 64;
+
+    private final AtomicLongArray mBits;
+    private final int mBitCount;
+    private final int mCapacity;
+    private final AtomicInteger mWordCount = new AtomicInteger(0);
+
+    /**
+     * @param capacity the number of words the filter is sized for.
+     */
+    public WordMembershipFilter(final int capacity) {
+        mCapacity = Math.max(capacity, MIN_CAPACITY);
+        final long elementCount = ((long) mCapacity * BITS_PER_WORD + BITS_PER_ELEMENT - 1)
+                / BITS_PER_ELEMENT;
+        final int cappedElementCount =
+                (int) Math.min(elementCount, Integer.MAX_VALUE / BITS_PER_ELEMENT);
+        mBits = new AtomicLongArray(cappedElementCount);
+        mBitCount = cappedElementCount * BITS_PER_ELEMENT;
+    }
+
+    public void add(final String word) {
+        addHashCode(word.hashCode());
+    }
+
+    /**
+     * Adds a word by its {@link String#hashCode()}.
+     */
+    public void addHashCode(final int hashCode) {
+        final int hash1 = mix(hashCode);
+        final int hash2 = mix(hash1);
+        boolean hasSetBit = false;
+        for (int i = 0; i < HASH_FUNCTION_COUNT; ++i) {
+            hasSetBit |= setBit(getBitIndex(hash1 + i * hash2));
+        }
+        if (hasSetBit) {
+            mWordCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Returns false if the word has certainly not been added.
+     */
+    public boolean mightContain(final String word) {
+        final int hash1 = mix(word.hashCode());
+        final int hash2 = mix(hash1);
+        for (int i = 0; i < HASH_FUNCTION_COUNT; ++i) {
+            if (!isBitSet(getBitIndex(hash1 + i * hash2))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether more words than the capacity have been added, which makes false positives
+     * increasingly likely.
+     */
+    public boolean isOverCapacity() {
+        return mWordCount.get() > mCapacity;
+    }
+
+    /**
+     * Returns the number of added words that set at least one bit.
+     */
+    public int getWordCount() {
+        return mWordCount.get();
+    }
+
+    private int getBitIndex(final int hash) {
+        return (hash & Integer.MAX_VALUE) % mBitCount;
+    }
+
+    /**
+     * @return whether the bit was not set yet.
+     */
+    private boolean setBit(final int bitIndex) {
+        final int elementIndex = bitIndex / BITS_PER_ELEMENT;
+        final long mask = 1L << (bitIndex % BITS_PER_ELEMENT);
+        while (true) {
+            final long element = mBits.get(elementIndex);
+            if ((element & mask) != 0) {
+                return false;
+            }
+            if (mBits.compareAndSet(elementIndex, element, element | mask)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean isBitSet(final int bitIndex) {
+        return (mBits.get(bitIndex / BITS_PER_ELEMENT) & (1L << (bitIndex % BITS_PER_ELEMENT)))
+                != 0;
+    }
+
+    // The finalizer of MurmurHash3, which spreads the similar hash codes of similar words.
+    private static int mix(final int hash) {
+        int h = hash;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
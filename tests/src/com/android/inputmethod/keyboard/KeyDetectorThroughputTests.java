@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import android.util.Log;
+
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.keyboard.internal.KeyboardIconsSet;
+import com.android.inputmethod.keyboard.internal.KeyboardParams;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Compares the throughput of {@link KeyDetector#detectHitKey(int, int)}, which uses the
+ * {@link KeyHitTable} of the keyboard, with the former detection among the nearest keys.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class KeyDetectorThroughputTests {
+    private static final String TAG = KeyDetectorThroughputTests.class.getSimpleName();
+
+    private static final String[] ROWS = { "qwertyuiop", "asdfghjkl", "zxcvbnm" };
+    private static final int KEY_WIDTH = 108;
+    private static final int KEY_HEIGHT = 160;
+    private static final int KEYBOARD_WIDTH = KEY_WIDTH * 10;
+    private static final int KEYBOARD_HEIGHT = KEY_HEIGHT * ROWS.length;
+    private static final int POINT_STEP = 7;
+    private static final int DETECTION_COUNT = 1000000;
+
+    private static Keyboard newKeyboard() {
+        final KeyboardParams params = new KeyboardParams();
+        params.mOccupiedWidth = KEYBOARD_WIDTH;
+        params.mOccupiedHeight = KEYBOARD_HEIGHT;
+        params.GRID_WIDTH = 32;
+        params.GRID_HEIGHT = 16;
+        for (int row = 0; row < ROWS.length; ++row) {
+            final String letters = ROWS[row];
+            // Center the shorter rows, like the keyboard layouts do.
+            final int rowX = (KEYBOARD_WIDTH - letters.length() * KEY_WIDTH) / 2;
+            for (int i = 0; i < letters.length(); ++i) {
+                final char letter = letters.charAt(i);
+                params.onAddKey(new Key(String.valueOf(letter), KeyboardIconsSet.ICON_UNDEFINED,
+                        letter, null /* outputText */, null /* hintLabel */, 0 /* labelFlags */,
+                        Key.BACKGROUND_TYPE_NORMAL, rowX + i * KEY_WIDTH, row * KEY_HEIGHT,
+                        KEY_WIDTH, KEY_HEIGHT, 0 /* horizontalGap */, 0 /* verticalGap */));
+            }
+        }
+        return new Keyboard(params);
+    }
+
+    // The former KeyDetector#detectHitKey, which reads every nearest key.
+    private static Key detectHitKeyAmongNearestKeys(final Keyboard keyboard, final int touchX,
+            final int touchY) {
+        int minDistance = Integer.MAX_VALUE;
+        Key primaryKey = null;
+        for (final Key key: keyboard.getNearestKeys(touchX, touchY)) {
+            if (!key.isOnKey(touchX, touchY)) {
+                continue;
+            }
+            final int distance = key.squaredDistanceToEdge(touchX, touchY);
+            if (distance > minDistance) {
+                continue;
+            }
+            if (primaryKey == null || distance < minDistance
+                    || key.getCode() > primaryKey.getCode()) {
+                minDistance = distance;
+                primaryKey = key;
+            }
+        }
+        return primaryKey;
+    }
+
+    @Test
+    public void testDetectHitKeyThroughput() {
+        final Keyboard keyboard = newKeyboard();
+        assertNotNull(keyboard.getKeyHitTable());
+        final KeyDetector keyDetector = new KeyDetector();
+        keyDetector.setKeyboard(keyboard, 0.0f /* correctionX */, 0.0f /* correctionY */);
+
+        // Both detections find the same keys, including outside of the keyboard.
+        for (int y = -KEY_HEIGHT; y < KEYBOARD_HEIGHT + KEY_HEIGHT; y += POINT_STEP) {
+            for (int x = -KEY_WIDTH; x < KEYBOARD_WIDTH + KEY_WIDTH; x += POINT_STEP) {
+                assertSame("x=" + x + " y=" + y, detectHitKeyAmongNearestKeys(keyboard, x, y),
+                        keyDetector.detectHitKey(x, y));
+            }
+        }
+
+        // Move events go from key to key, so sweep the keyboard.
+        int hitCount = 0;
+        long startTime = System.nanoTime();
+        for (int i = 0; i < DETECTION_COUNT; ++i) {
+            final int x = (i * POINT_STEP) % KEYBOARD_WIDTH;
+            final int y = (i / KEYBOARD_WIDTH * POINT_STEP) % KEYBOARD_HEIGHT;
+            if (detectHitKeyAmongNearestKeys(keyboard, x, y) != null) {
+                ++hitCount;
+            }
+        }
+        final long nearestKeysNanos = System.nanoTime() - startTime;
+        startTime = System.nanoTime();
+        for (int i = 0; i < DETECTION_COUNT; ++i) {
+            final int x = (i * POINT_STEP) % KEYBOARD_WIDTH;
+            final int y = (i / KEYBOARD_WIDTH * POINT_STEP) % KEYBOARD_HEIGHT;
+            if (keyDetector.detectHitKey(x, y) != null) {
+                ++hitCount;
+            }
+        }
+        final long keyHitTableNanos = System.nanoTime() - startTime;
+
+        Log.d(TAG, "detections = " + DETECTION_COUNT + ", hits = " + hitCount);
+        Log.d(TAG, "nearest keys: " + nearestKeysNanos / 1000000 + " ms, "
+                + DETECTION_COUNT * 1000000000L / nearestKeysNanos + " detections/s");
+        Log.d(TAG, "key hit table: " + keyHitTableNanos / 1000000 + " ms, "
+                + DETECTION_COUNT * 1000000000L / keyHitTableNanos + " detections/s");
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import android.test.suitebuilder.annotation.SmallTest;
+import android.view.inputmethod.EditorInfo;
+
+import com.android.inputmethod.keyboard.internal.KeyboardCache;
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@SmallTest
+public class KeyboardLayoutSetPrebuildTests extends KeyboardLayoutSetTestsBase {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private ScheduledExecutorService mExecutor;
+    private KeyboardLayoutSet mKeyboardLayoutSet;
+
+    @Override
+    protected int getKeyboardThemeForTests() {
+        return KeyboardTheme.THEME_ID_LXX_LIGHT;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        ExecutorUtils.setExecutorServiceForTests(mExecutor);
+        mKeyboardLayoutSet = createKeyboardLayoutSet(getSubtype(Locale.US, "qwerty"),
+                new EditorInfo());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        KeyboardLayoutSet.setPrebuildStartedListenerForTesting(null);
+        mKeyboardLayoutSet.cancelPrebuildingKeyboards();
+        ExecutorUtils.setExecutorServiceForTests(null);
+        mExecutor.shutdownNow();
+        super.tearDown();
+    }
+
+    private void waitForExecutor() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+    }
+
+    public void testPrebuiltKeyboardIsReturnedFromCache() throws InterruptedException {
+        final KeyboardCache<KeyboardId, Keyboard> keyboardCache =
+                KeyboardLayoutSet.getKeyboardCache();
+        final Keyboard alphabetKeyboard =
+                mKeyboardLayoutSet.getKeyboard(KeyboardId.ELEMENT_ALPHABET);
+        mKeyboardLayoutSet.prebuildKeyboards(alphabetKeyboard);
+        waitForExecutor();
+
+        final long hitCount = keyboardCache.getHitCount();
+        final long missCount = keyboardCache.getMissCount();
+        final Keyboard symbolsKeyboard =
+                mKeyboardLayoutSet.getKeyboard(KeyboardId.ELEMENT_SYMBOLS);
+        assertEquals(KeyboardId.ELEMENT_SYMBOLS, symbolsKeyboard.mId.mElementId);
+        assertEquals(hitCount + 1, keyboardCache.getHitCount());
+        assertEquals(missCount, keyboardCache.getMissCount());
+    }
+
+    public void testGetKeyboardDoesNotWaitForPrebuild() throws InterruptedException {
+        final Keyboard alphabetKeyboard =
+                mKeyboardLayoutSet.getKeyboard(KeyboardId.ELEMENT_ALPHABET);
+        final CountDownLatch prebuildStartedLatch = new CountDownLatch(1);
+        final CountDownLatch prebuildReleasedLatch = new CountDownLatch(1);
+        KeyboardLayoutSet.setPrebuildStartedListenerForTesting(new Runnable() {
+            @Override
+            public void run() {
+                prebuildStartedLatch.countDown();
+                try {
+                    prebuildReleasedLatch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        mKeyboardLayoutSet.prebuildKeyboards(alphabetKeyboard);
+        assertTrue(prebuildStartedLatch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+
+        // The prebuilding thread is now held in the middle of prebuilding a keyboard.
+        final AtomicReference<Keyboard> symbolsKeyboard = new AtomicReference<>();
+        final CountDownLatch builtLatch = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                symbolsKeyboard.set(mKeyboardLayoutSet.getKeyboard(KeyboardId.ELEMENT_SYMBOLS));
+                builtLatch.countDown();
+            }
+        }).start();
+        final boolean isBuiltDuringPrebuild =
+                builtLatch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        prebuildReleasedLatch.countDown();
+        assertTrue(isBuiltDuringPrebuild);
+        assertEquals(KeyboardId.ELEMENT_SYMBOLS, symbolsKeyboard.get().mId.mElementId);
+        waitForExecutor();
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.keyboard.internal.KeyboardIconsSet;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ProximityGridTests {
+    private static final int GRID_WIDTH = 32;
+    private static final int GRID_HEIGHT = 16;
+    private static final int KEY_WIDTH = 100;
+    private static final int KEY_HEIGHT = 150;
+    private static final int CELL_WIDTH = 10 * KEY_WIDTH / GRID_WIDTH + 1;
+    private static final int CELL_HEIGHT = 3 * KEY_HEIGHT / GRID_HEIGHT + 1;
+
+    private static List<Key> newKeys(final String letters) {
+        final ArrayList<Key> keys = new ArrayList<>();
+        for (int i = 0; i < letters.length(); ++i) {
+            final int row = i / 10;
+            final int column = i % 10;
+            final char letter = letters.charAt(i);
+            keys.add(new Key(String.valueOf(letter), KeyboardIconsSet.ICON_UNDEFINED, letter,
+                    null /* outputText */, null /* hintLabel */, 0 /* labelFlags */,
+                    Key.BACKGROUND_TYPE_NORMAL, column * KEY_WIDTH, row * KEY_HEIGHT, KEY_WIDTH,
+                    KEY_HEIGHT, 0 /* horizontalGap */, 0 /* verticalGap */));
+        }
+        return keys;
+    }
+
+    private static ProximityGrid getGrid(final List<Key> keys) {
+        return ProximityGrid.getGrid(GRID_WIDTH, GRID_HEIGHT, CELL_WIDTH, CELL_HEIGHT, KEY_WIDTH,
+                keys);
+    }
+
+    @Test
+    public void testNearestKeys() {
+        final List<Key> keys = newKeys("qwertyuiopasdfghjklzxcvbnm");
+        final ProximityGrid grid = getGrid(keys);
+        final List<Key>[] neighborLists = grid.newNeighborLists(keys);
+        // Most cells have the same neighbors as another cell.
+        assertTrue(grid.getListCount() < GRID_WIDTH * GRID_HEIGHT);
+
+        // The middle of "s" is near "w", "a", "d" and "x", but not near "p".
+        final List<Key> nearestKeys = neighborLists[grid.getListIndex(
+                KEY_WIDTH * 3 / 2, KEY_HEIGHT * 3 / 2)];
+        final List<Key> expectedKeys = new ArrayList<>();
+        for (final Key key : keys) {
+            if (key.getLabel().matches("[qweasdzxc]")) {
+                expectedKeys.add(key);
+            }
+        }
+        assertEquals(expectedKeys, nearestKeys);
+    }
+
+    @Test
+    public void testGridIsSharedByKeysWithSameGeometry() {
+        final List<Key> keys = newKeys("qwertyuiopasdfghjklzxcvbnm");
+        final ProximityGrid grid = getGrid(keys);
+        final List<Key> shiftedKeys = newKeys("QWERTYUIOPASDFGHJKLZXCVBNM");
+        assertSame(grid, getGrid(shiftedKeys));
+
+        final List<Key> shiftedNearestKeys = grid.newNeighborLists(shiftedKeys)[
+                grid.getListIndex(KEY_WIDTH / 2, KEY_HEIGHT / 2)];
+        assertEquals("Q", shiftedNearestKeys.get(0).getLabel());
+
+        final List<Key> otherKeys = newKeys("qwertyuiopasdfghjkl");
+        assertNotSame(grid, getGrid(otherKeys));
+    }
+}
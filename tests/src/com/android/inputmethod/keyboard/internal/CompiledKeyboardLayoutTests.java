@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.keyboard.Key;
+import com.android.inputmethod.keyboard.Keyboard;
+import com.android.inputmethod.latin.common.Constants;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class CompiledKeyboardLayoutTests {
+    @Test
+    public void testValuesAreReadAsWritten() {
+        final CompiledKeyboardLayout.Writer writer = new CompiledKeyboardLayout.Writer();
+        final int[] values = { 0, 1, -1, 300, Integer.MAX_VALUE, Integer.MIN_VALUE };
+        for (final int value : values) {
+            writer.writeInt(value);
+        }
+        writer.writeBoolean(true);
+        writer.writeFloat(-0.25f);
+        writer.writeString(null);
+        writer.writeString("label");
+        writer.writeString("label");
+        final CompiledKeyboardLayout layout = writer.toLayout();
+
+        final CompiledKeyboardLayout.Reader reader = new CompiledKeyboardLayout.Reader(layout);
+        for (final int value : values) {
+            assertEquals(value, reader.readInt());
+        }
+        assertTrue(reader.readBoolean());
+        assertEquals(-0.25f, reader.readFloat(), 0.0f);
+        assertNull(reader.readString());
+        assertEquals("label", reader.readString());
+        assertEquals("label", reader.readString());
+    }
+
+    @Test
+    public void testKeyboardIsLoadedAsCompiled() {
+        final KeyboardParams params = new KeyboardParams();
+        params.mOccupiedWidth = 1000;
+        params.mOccupiedHeight = 400;
+        params.mHorizontalGap = 10;
+        params.mVerticalGap = 20;
+        params.mMaxMoreKeysKeyboardColumn = 5;
+        params.GRID_WIDTH = 8;
+        params.GRID_HEIGHT = 4;
+        params.onAddKey(new Key("q", KeyboardIconsSet.ICON_UNDEFINED, 'q', null /* outputText */,
+                "1" /* hintLabel */, 0 /* labelFlags */, Key.BACKGROUND_TYPE_NORMAL,
+                0 /* x */, 0 /* y */, 100 /* width */, 100 /* height */, 10, 20));
+        params.onAddKey(new Key(null /* label */, 1 /* iconId */, Constants.CODE_SHIFT,
+                null /* outputText */, null /* hintLabel */, 0 /* labelFlags */,
+                Key.BACKGROUND_TYPE_STICKY_OFF, 0 /* x */, 100 /* y */, 150 /* width */,
+                100 /* height */, 10, 20));
+        params.onAddKey(new Key(".com", KeyboardIconsSet.ICON_UNDEFINED,
+                Constants.CODE_OUTPUT_TEXT, ".com" /* outputText */, null /* hintLabel */,
+                0 /* labelFlags */, Key.BACKGROUND_TYPE_FUNCTIONAL, 150 /* x */, 100 /* y */,
+                100 /* width */, 100 /* height */, 10, 20));
+        final CompiledKeyboardLayout layout = CompiledKeyboardLayout.compile(params);
+
+        final KeyboardParams loadedParams = new KeyboardParams();
+        layout.load(InstrumentationRegistry.getTargetContext(), loadedParams);
+        assertEquals(params.mOccupiedWidth, loadedParams.mOccupiedWidth);
+        assertEquals(params.mOccupiedHeight, loadedParams.mOccupiedHeight);
+        assertEquals(params.mHorizontalGap, loadedParams.mHorizontalGap);
+        assertEquals(params.mVerticalGap, loadedParams.mVerticalGap);
+        assertEquals(params.mMaxMoreKeysKeyboardColumn, loadedParams.mMaxMoreKeysKeyboardColumn);
+        assertEquals(params.GRID_WIDTH, loadedParams.GRID_WIDTH);
+        assertEquals(params.GRID_HEIGHT, loadedParams.GRID_HEIGHT);
+        assertEquals(params.mMostCommonKeyWidth, loadedParams.mMostCommonKeyWidth);
+        assertEquals(params.mMostCommonKeyHeight, loadedParams.mMostCommonKeyHeight);
+        assertEquals(1, loadedParams.mShiftKeys.size());
+        assertFalse(loadedParams.mTouchPositionCorrection.isValid());
+
+        final ArrayList<Key> keys = new ArrayList<>(params.mSortedKeys);
+        final ArrayList<Key> loadedKeys = new ArrayList<>(loadedParams.mSortedKeys);
+        assertEquals(keys.size(), loadedKeys.size());
+        for (int i = 0; i < keys.size(); ++i) {
+            final Key key = keys.get(i);
+            final Key loadedKey = loadedKeys.get(i);
+            assertEquals(key, loadedKey);
+            assertEquals(key.getHitBox(), loadedKey.getHitBox());
+            assertEquals(key.getOutputText(), loadedKey.getOutputText());
+            assertEquals(key.isEnabled(), loadedKey.isEnabled());
+        }
+
+        // The loaded parameters are enough to build the keyboard and its proximity info.
+        final Keyboard keyboard = new Keyboard(loadedParams);
+        assertNotNull(keyboard.getProximityInfo());
+        assertTrue(keyboard.getNearestKeys(50 /* x */, 50 /* y */).contains(loadedKeys.get(0)));
+    }
+}
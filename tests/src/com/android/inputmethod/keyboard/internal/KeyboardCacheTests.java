@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.keyboard.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class KeyboardCacheTests {
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        final KeyboardCache<String, String> cache = new KeyboardCache<>(300, 0 /* pinnedCount */);
+        cache.put("alphabet", "A", 100);
+        cache.put("symbols", "S", 100);
+        cache.put("phone", "P", 100);
+        assertEquals("A", cache.get("alphabet"));
+        cache.put("number", "N", 100);
+        assertNull(cache.get("symbols"));
+        assertEquals("A", cache.get("alphabet"));
+        assertEquals(300, cache.getByteSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testFrequentlyUsedIsPinned() {
+        final KeyboardCache<String, String> cache = new KeyboardCache<>(300, 1 /* pinnedCount */);
+        cache.put("alphabet", "A", 100);
+        cache.get("alphabet");
+        cache.get("alphabet");
+        cache.put("symbols", "S", 100);
+        cache.put("phone", "P", 100);
+        cache.put("number", "N", 100);
+        // The alphabet keyboard is the least recently used one, but it's used the most.
+        assertEquals("A", cache.get("alphabet"));
+        assertNull(cache.get("symbols"));
+    }
+
+    @Test
+    public void testAddedKeyboardIsKeptOverBudget() {
+        final KeyboardCache<String, String> cache = new KeyboardCache<>(300, 1 /* pinnedCount */);
+        cache.put("alphabet", "A", 100);
+        cache.get("alphabet");
+        cache.put("emoji", "E", 1000);
+        assertNull(cache.get("alphabet"));
+        assertEquals("E", cache.get("emoji"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testUnpinnableIsNotPinned() {
+        final KeyboardCache<String, String> cache = new KeyboardCache<>(300, 1 /* pinnedCount */);
+        cache.put("spellchecker", "C", 100, false /* isPinnable */);
+        cache.get("spellchecker");
+        cache.get("spellchecker");
+        cache.put("alphabet", "A", 100);
+        cache.put("symbols", "S", 100);
+        cache.put("phone", "P", 100);
+        // The spell checker keyboard is used the most, but it can't be pinned.
+        assertNull(cache.get("spellchecker"));
+        assertEquals("A", cache.get("alphabet"));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testClear() {
+        final KeyboardCache<String, String> cache = new KeyboardCache<>(300, 1 /* pinnedCount */);
+        cache.put("alphabet", "A", 100);
+        cache.get("alphabet");
+        cache.clear();
+        assertNull(cache.get("alphabet"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getByteSize());
+    }
+}
@@ -439,6 +439,63 @@ public class BinaryDictionaryTests {
         binaryDictionary.close();
     }
 
+    @Test
+    public void testWordFilter() {
+        final File dictFile = createEmptyDictionaryAndGetFile(FormatSpec.VERSION403);
+        BinaryDictionary binaryDictionary = getBinaryDictionary(dictFile);
+        final int probability = 100;
+        addUnigramWord(binaryDictionary, "aaa", probability);
+        binaryDictionary.flush();
+        binaryDictionary.close();
+
+        binaryDictionary = getBinaryDictionary(dictFile);
+        binaryDictionary.buildWordFilter();
+        assertTrue(binaryDictionary.mightContainWord("aaa"));
+        assertEquals(probability, binaryDictionary.getFrequency("aaa"));
+        // The words added after the filter was built are found as well.
+        addUnigramWord(binaryDictionary, "abcd", probability);
+        assertTrue(binaryDictionary.mightContainWord("abcd"));
+        assertEquals(probability, binaryDictionary.getFrequency("abcd"));
+        assertEquals(Dictionary.NOT_A_PROBABILITY, binaryDictionary.getFrequency("cdef"));
+        // The filter is dropped when it outgrows its capacity, and can be rebuilt later.
+        for (int i = 0; i < 2000; i++) {
+            addUnigramWord(binaryDictionary, "word" + i, probability);
+        }
+        assertTrue(binaryDictionary.needsToRebuildWordFilter());
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(binaryDictionary.mightContainWord("word" + i));
+        }
+        binaryDictionary.buildWordFilter();
+        assertFalse(binaryDictionary.needsToRebuildWordFilter());
+        for (int i = 0; i < 2000; i++) {
+            assertTrue(binaryDictionary.mightContainWord("word" + i));
+        }
+        binaryDictionary.close();
+    }
+
+    @Test
+    public void testWordFilterIsNotFilledByKnownWords() {
+        final File dictFile = createEmptyDictionaryAndGetFile(FormatSpec.VERSION403);
+        final BinaryDictionary binaryDictionary = getBinaryDictionary(dictFile);
+        final int probability = 100;
+        addUnigramWord(binaryDictionary, "aaa", probability);
+        addUnigramWord(binaryDictionary, "abb", probability);
+        binaryDictionary.buildWordFilter();
+        // Learning the same words again and again, with the same contexts, doesn't bring the
+        // filter over its capacity.
+        for (int i = 0; i < 5000; i++) {
+            addUnigramWord(binaryDictionary, "aaa", probability);
+            addBigramWords(binaryDictionary, "aaa", "abb", probability);
+            binaryDictionary.updateEntriesForWordWithNgramContext(
+                    new NgramContext(new WordInfo("abb")), "aaa", true /* isValidWord */,
+                    1 /* count */, BinaryDictionary.NOT_A_VALID_TIMESTAMP /* timestamp */);
+        }
+        assertFalse(binaryDictionary.needsToRebuildWordFilter());
+        assertTrue(binaryDictionary.mightContainWord("aaa"));
+        assertTrue(binaryDictionary.mightContainWord("abb"));
+        binaryDictionary.close();
+    }
+
     @Test
     public void testFlushWithGCDictionary() {
         final File dictFile = createEmptyDictionaryAndGetFile(FormatSpec.VERSION403);
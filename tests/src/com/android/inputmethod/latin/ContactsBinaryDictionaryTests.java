@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.provider.ContactsContract;
+import android.provider.ContactsContract.Contacts;
+import android.test.mock.MockContentResolver;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.ContactsManager.NameDelta;
+import com.android.inputmethod.latin.ContactsManagerTest.ContextWithMockContentResolver;
+import com.android.inputmethod.latin.ContactsManagerTest.FakeContactsContentProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Tests for applying contact name changes to {@link ContactsBinaryDictionary}.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class ContactsBinaryDictionaryTests {
+    private static final String TEST_DICT_NAME = "ContactsBinaryDictionaryTests";
+
+    private File mDictFile;
+    private ContactsBinaryDictionary mDictionary;
+
+    @Before
+    public void setUp() throws Exception {
+        final FakeContactsContentProvider contentProvider = new FakeContactsContentProvider();
+        final MatrixCursor cursor = new MatrixCursor(ContactsDictionaryConstants.PROJECTION);
+        cursor.addRow(new Object[] { 1L, "Larry Page", 0, 0, 0 });
+        cursor.addRow(new Object[] { 2L, "Larry Ellison", 0, 0, 0 });
+        cursor.addRow(new Object[] { 3L, "Sergey Brin", 0, 0, 0 });
+        contentProvider.addQueryResult(Contacts.CONTENT_URI, cursor);
+        final MockContentResolver contentResolver = new MockContentResolver();
+        contentResolver.addProvider(ContactsContract.AUTHORITY, contentProvider);
+        final Context targetContext = InstrumentationRegistry.getTargetContext();
+        final ContextWithMockContentResolver context =
+                new ContextWithMockContentResolver(targetContext);
+        context.setContentResolver(contentResolver);
+
+        mDictFile = new File(targetContext.getCacheDir(),
+                TEST_DICT_NAME + "." + System.currentTimeMillis() + ".dict");
+        mDictionary = new ContactsBinaryDictionary(context, Locale.US, mDictFile,
+                TEST_DICT_NAME);
+        mDictionary.waitAllTasksForTests();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mDictionary.close();
+        mDictFile.delete();
+    }
+
+    private static NgramContext getNgramContext(final String prevWord) {
+        return new NgramContext(new NgramContext.WordInfo(prevWord));
+    }
+
+    private boolean isValidBigram(final String prevWord, final String word) {
+        return mDictionary.getBinaryDictionary().isValidNgram(getNgramContext(prevWord), word);
+    }
+
+    @Test
+    public void testInitialContents() {
+        assertTrue(mDictionary.isInDictionary("Larry"));
+        assertTrue(mDictionary.isInDictionary("Page"));
+        assertTrue(mDictionary.isInDictionary("Ellison"));
+        assertTrue(mDictionary.isInDictionary("Sergey"));
+        assertTrue(mDictionary.isInDictionary("Brin"));
+        assertTrue(isValidBigram("Larry", "Page"));
+        assertTrue(isValidBigram("Sergey", "Brin"));
+    }
+
+    @Test
+    public void testRenameAndDeleteContactsSharingWords() {
+        final ArrayList<String> previousNames =
+                new ArrayList<>(Arrays.asList("Larry Page", "Larry Ellison", "Sergey Brin"));
+        // "Larry Page" is renamed to "Lawrence Page" and "Sergey Brin" is deleted. "Larry" is
+        // still in "Larry Ellison" and "Page" is still in "Lawrence Page".
+        final ArrayList<String> currentNames =
+                new ArrayList<>(Arrays.asList("Lawrence Page", "Larry Ellison"));
+        mDictionary.onContactNamesChange(NameDelta.compute(previousNames, currentNames),
+                currentNames);
+        mDictionary.waitAllTasksForTests();
+
+        assertTrue(mDictionary.isInDictionary("Larry"));
+        assertTrue(mDictionary.isInDictionary("Page"));
+        assertTrue(mDictionary.isInDictionary("Ellison"));
+        assertTrue(mDictionary.isInDictionary("Lawrence"));
+        assertFalse(mDictionary.isInDictionary("Sergey"));
+        assertFalse(mDictionary.isInDictionary("Brin"));
+
+        assertTrue(isValidBigram("Larry", "Ellison"));
+        assertTrue(isValidBigram("Lawrence", "Page"));
+        assertFalse(isValidBigram("Larry", "Page"));
+        assertFalse(isValidBigram("Sergey", "Brin"));
+    }
+
+    @Test
+    public void testDeleteOneOfContactsWithSameName() {
+        final ArrayList<String> previousNames =
+                new ArrayList<>(Arrays.asList("Larry Page", "Larry Ellison", "Sergey Brin"));
+        // Deleting "Larry Ellison" removes "Ellison" but none of the words of the other names.
+        final ArrayList<String> currentNames =
+                new ArrayList<>(Arrays.asList("Larry Page", "Sergey Brin"));
+        mDictionary.onContactNamesChange(NameDelta.compute(previousNames, currentNames),
+                currentNames);
+        mDictionary.waitAllTasksForTests();
+
+        assertTrue(mDictionary.isInDictionary("Larry"));
+        assertTrue(mDictionary.isInDictionary("Page"));
+        assertTrue(mDictionary.isInDictionary("Sergey"));
+        assertTrue(mDictionary.isInDictionary("Brin"));
+        assertFalse(mDictionary.isInDictionary("Ellison"));
+        assertTrue(isValidBigram("Larry", "Page"));
+        assertFalse(isValidBigram("Larry", "Ellison"));
+    }
+}
@@ -26,6 +26,7 @@ import androidx.test.runner.AndroidJUnit4;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -53,6 +54,17 @@ public class ContactsDictionaryUtilsTest {
                 testString3, testString1.length(), 0 /* startIndex */));
     }
 
+    @Test
+    public void testGetNameWords() {
+        assertEquals(Arrays.asList("Larry", "Page"),
+                ContactsDictionaryUtils.getNameWords("Larry Page", 48 /* maxWordLength */));
+        assertEquals(Arrays.asList("Larry-Page"),
+                ContactsDictionaryUtils.getNameWords("Larry-Page", 48 /* maxWordLength */));
+        // Single letters and words that are too long are skipped.
+        assertEquals(Arrays.asList("Larry"),
+                ContactsDictionaryUtils.getNameWords("Larry E. Pagination", 5 /* maxWordLength */));
+    }
+
     @Test
     public void testUseFirstLastBigramsForLocale() {
         assertTrue(ContactsDictionaryUtils.useFirstLastBigramsForLocale(Locale.ENGLISH));
@@ -43,7 +43,12 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -111,6 +116,60 @@ public class ContactsManagerTest {
         }
     }
 
+    @Test
+    public void testGetValidNamesRanksNameByItsHighestAffinity() {
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < ContactsManager.MAX_CONTACT_NAMES + 10; ++i) {
+            mMatrixCursor.addRow(new Object[] { i, "name" + i, i, now, 1 });
+        }
+        // Another contact with the name of the lowest affinity contact.
+        mMatrixCursor.addRow(new Object[] { ContactsManager.MAX_CONTACT_NAMES + 10, "name0",
+                1000, now, 1 });
+        mFakeContactsContentProvider.addQueryResult(Contacts.CONTENT_URI, mMatrixCursor);
+
+        final ArrayList<String> validNames = mManager.getValidNames(Contacts.CONTENT_URI);
+        assertEquals(ContactsManager.MAX_CONTACT_NAMES, validNames.size());
+        assertTrue(validNames.contains("name0"));
+        for (int i = 1; i < 11; ++i) {
+            assertFalse(validNames.contains("name" + i));
+        }
+        for (int i = 11; i < ContactsManager.MAX_CONTACT_NAMES + 10; ++i) {
+            assertTrue(validNames.contains("name" + i));
+        }
+    }
+
+    @Test
+    public void testGetValidNamesReadsEveryContactOnceAcrossPages() {
+        final int pageSize = ContactsDictionaryConstants.CONTACTS_QUERY_PAGE_SIZE;
+        final int contactCount = pageSize * 2 + 37;
+        final long now = System.currentTimeMillis();
+        final HashSet<String> expectedNames = new HashSet<>();
+        // Add the contacts out of id order, with gaps between the ids. Only some of the names are
+        // valid, including those of the contacts at the edges of the pages, so that they all fit
+        // in the returned names.
+        for (int i = 0; i < contactCount; ++i) {
+            final int index = (i % 2 == 0) ? i / 2 : contactCount - 1 - i / 2;
+            final boolean isValid = index % 7 == 0 || index % pageSize == 0
+                    || index % pageSize == pageSize - 1 || index == contactCount - 1;
+            final String name = isValid ? "name" + index : "name" + index + "@example.com";
+            if (isValid) {
+                expectedNames.add(name);
+            }
+            mMatrixCursor.addRow(new Object[] { 10 + index * 3, name, index, now, 1 });
+        }
+        mFakeContactsContentProvider.addQueryResult(Contacts.CONTENT_URI, mMatrixCursor);
+
+        final ArrayList<String> validNames = mManager.getValidNames(Contacts.CONTENT_URI);
+        assertTrue(expectedNames.size() < ContactsManager.MAX_CONTACT_NAMES);
+        assertEquals(expectedNames.size(), validNames.size());
+        assertEquals(expectedNames, new HashSet<>(validNames));
+        // Each page starts after the last contact of the previous one.
+        final ArrayList<Long> idsReturnedByPages =
+                mFakeContactsContentProvider.getIdsReturnedByPages();
+        assertEquals(contactCount, idsReturnedByPages.size());
+        assertEquals(contactCount, new HashSet<>(idsReturnedByPages).size());
+    }
+
     @Test
     public void testComputeAffinity() {
         final long now = System.currentTimeMillis();
@@ -139,6 +198,19 @@ public class ContactsManagerTest {
         assertEquals(4, mManager.getContactCount());
     }
 
+    @Test
+    public void testNameDelta() {
+        final ContactsManager.NameDelta delta = ContactsManager.NameDelta.compute(
+                Arrays.asList("Larry Page", "Sergey Brin", "Eric Schmidt"),
+                Arrays.asList("Eric Schmidt", "Sundar Pichai", "Larry Page"));
+        assertFalse(delta.isEmpty());
+        assertEquals(Arrays.asList("Sundar Pichai"), delta.mAddedNames);
+        assertEquals(Arrays.asList("Sergey Brin"), delta.mRemovedNames);
+
+        assertTrue(ContactsManager.NameDelta.compute(Arrays.asList("Larry Page"),
+                Arrays.asList("Larry Page")).isEmpty());
+    }
+
 
     static class ContextWithMockContentResolver extends RenamingDelegatingContext {
         private ContentResolver contentResolver;
@@ -157,22 +229,119 @@ public class ContactsManagerTest {
         }
     }
 
+    /**
+     * A fake of the contacts provider that applies the id lower bound selection, the sort order
+     * and the limit of the queries to the rows of the expected cursor.
+     */
     static class FakeContactsContentProvider extends MockContentProvider {
+        private static final String ID_LOWER_BOUND_SELECTION = Contacts._ID + " > ?";
+
         private final HashMap<String, MatrixCursor> mQueryCursorMapForTestExpectations =
                 new HashMap<>();
+        // The ids of the rows returned by the queries for a page of contacts.
+        private final ArrayList<Long> mIdsReturnedByPages = new ArrayList<>();
 
         @Override
         public Cursor query(final Uri uri, final String[] projection, final String selection,
                 final String[] selectionArgs, final String sortOrder) {
-            return mQueryCursorMapForTestExpectations.get(uri.toString());
+            // The projection is ignored, all the columns of the expected cursor are returned.
+            final MatrixCursor expectedCursor = mQueryCursorMapForTestExpectations.get(
+                    uri.buildUpon().clearQuery().build().toString());
+            if (expectedCursor == null) {
+                return null;
+            }
+            final ArrayList<Object[]> rows = getRows(expectedCursor);
+            if (selection != null) {
+                if (!ID_LOWER_BOUND_SELECTION.equals(selection)) {
+                    throw new UnsupportedOperationException("Unsupported selection: " + selection);
+                }
+                final long lowerBoundId = Long.parseLong(selectionArgs[0]);
+                final Iterator<Object[]> iterator = rows.iterator();
+                while (iterator.hasNext()) {
+                    if ((Long)iterator.next()[ContactsDictionaryConstants.ID_INDEX]
+                            <= lowerBoundId) {
+                        iterator.remove();
+                    }
+                }
+            }
+            if (sortOrder != null) {
+                sortRows(rows, expectedCursor, sortOrder);
+            }
+            final String limit = uri.getQueryParameter(ContactsContract.LIMIT_PARAM_KEY);
+            final int rowCount = limit == null
+                    ? rows.size() : Math.min(rows.size(), Integer.parseInt(limit));
+            final MatrixCursor cursor = new MatrixCursor(expectedCursor.getColumnNames());
+            final boolean isPage = Integer.toString(
+                    ContactsDictionaryConstants.CONTACTS_QUERY_PAGE_SIZE).equals(limit);
+            for (int i = 0; i < rowCount; ++i) {
+                final Object[] row = rows.get(i);
+                cursor.addRow(row);
+                if (isPage) {
+                    mIdsReturnedByPages.add((Long)row[ContactsDictionaryConstants.ID_INDEX]);
+                }
+            }
+            return cursor;
+        }
+
+        private static ArrayList<Object[]> getRows(final Cursor cursor) {
+            final ArrayList<Object[]> rows = new ArrayList<>();
+            for (int position = 0; cursor.moveToPosition(position); ++position) {
+                final Object[] row = new Object[cursor.getColumnCount()];
+                for (int column = 0; column < row.length; ++column) {
+                    switch (cursor.getType(column)) {
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[column] = cursor.getLong(column);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[column] = cursor.getDouble(column);
+                        break;
+                    case Cursor.FIELD_TYPE_STRING:
+                        row[column] = cursor.getString(column);
+                        break;
+                    default:
+                        row[column] = null;
+                        break;
+                    }
+                }
+                rows.add(row);
+            }
+            return rows;
+        }
+
+        // Sorts the rows by a single column, as in "column ASC" or "column DESC".
+        private static void sortRows(final ArrayList<Object[]> rows, final Cursor cursor,
+                final String sortOrder) {
+            final String[] terms = sortOrder.split(" ");
+            final int column = cursor.getColumnIndexOrThrow(terms[0]);
+            final boolean isDescending = terms.length > 1 && "DESC".equals(terms[1]);
+            Collections.sort(rows, new Comparator<Object[]>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public int compare(final Object[] row1, final Object[] row2) {
+                    final Comparable<Object> value1 = (Comparable<Object>)row1[column];
+                    final Comparable<Object> value2 = (Comparable<Object>)row2[column];
+                    final int order;
+                    if (value1 == null || value2 == null) {
+                        order = (value1 == null ? 0 : 1) - (value2 == null ? 0 : 1);
+                    } else {
+                        order = value1.compareTo(value2);
+                    }
+                    return isDescending ? -order : order;
+                }
+            });
         }
 
         public void reset() {
             mQueryCursorMapForTestExpectations.clear();
+            mIdsReturnedByPages.clear();
         }
 
         public void addQueryResult(final Uri uri, final MatrixCursor cursor) {
             mQueryCursorMapForTestExpectations.put(uri.toString(), cursor);
         }
+
+        public ArrayList<Long> getIdsReturnedByPages() {
+            return mIdsReturnedByPages;
+        }
     }
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.DicTraverseSessionPool.PooledSession;
+import com.android.inputmethod.latin.makedict.FormatSpec;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DicTraverseSessionPoolTests {
+    private static final long WAIT_MILLIS = 200;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    private BinaryDictionary mDictionary;
+    private long mNativeDict;
+    private DicTraverseSessionPool mPool;
+
+    @Before
+    public void setUp() {
+        mDictionary = new BinaryDictionary("" /* filename */, true /* useFullEditDistance */,
+                Locale.ENGLISH, Dictionary.TYPE_USER_HISTORY, FormatSpec.VERSION403,
+                new HashMap<String, String>());
+        mNativeDict = mDictionary.getNativeDictForTesting();
+        mPool = new DicTraverseSessionPool(Locale.ENGLISH, 0 /* dictSize */);
+    }
+
+    @After
+    public void tearDown() {
+        mPool.close();
+        mDictionary.close();
+    }
+
+    private static boolean isClosed(final PooledSession pooledSession) {
+        return pooledSession.mSession.getSession() == 0;
+    }
+
+    private PooledSession[] borrowAllSessions() {
+        final PooledSession[] pooledSessions =
+                new PooledSession[DicTraverseSessionPool.MAX_SESSION_COUNT];
+        for (int i = 0; i < pooledSessions.length; ++i) {
+            pooledSessions[i] = mPool.borrowSession(i /* sessionId */, mNativeDict);
+        }
+        return pooledSessions;
+    }
+
+    @Test
+    public void testSameSessionIdGetsSameSession() {
+        final PooledSession pooledSession = mPool.borrowSession(0 /* sessionId */, mNativeDict);
+        mPool.returnSession(0 /* sessionId */, pooledSession);
+        assertSame(pooledSession, mPool.borrowSession(0 /* sessionId */, mNativeDict));
+        assertFalse(isClosed(pooledSession));
+        assertEquals(1, mPool.getSessionCountForTesting());
+        mPool.returnSession(0 /* sessionId */, pooledSession);
+    }
+
+    @Test
+    public void testBorrowWaitsAtMaxSessionCount() throws InterruptedException {
+        final PooledSession[] pooledSessions = borrowAllSessions();
+        assertEquals(DicTraverseSessionPool.MAX_SESSION_COUNT,
+                mPool.getSessionCountForTesting());
+
+        final int sessionId = DicTraverseSessionPool.MAX_SESSION_COUNT;
+        final AtomicReference<PooledSession> borrowedSession = new AtomicReference<>();
+        final CountDownLatch borrowedLatch = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                borrowedSession.set(mPool.borrowSession(sessionId, mNativeDict));
+                borrowedLatch.countDown();
+            }
+        }).start();
+        assertFalse(borrowedLatch.await(WAIT_MILLIS, TimeUnit.MILLISECONDS));
+
+        mPool.returnSession(0 /* sessionId */, pooledSessions[0]);
+        assertTrue(borrowedLatch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        // No session was allocated beyond the cap.
+        assertSame(pooledSessions[0], borrowedSession.get());
+        assertEquals(DicTraverseSessionPool.MAX_SESSION_COUNT,
+                mPool.getSessionCountForTesting());
+
+        mPool.returnSession(sessionId, borrowedSession.get());
+        for (int i = 1; i < pooledSessions.length; ++i) {
+            mPool.returnSession(i /* sessionId */, pooledSessions[i]);
+        }
+    }
+
+    @Test
+    public void testReusesIdleSessionOfAnotherSessionIdAtMaxSessionCount() {
+        final PooledSession[] pooledSessions = borrowAllSessions();
+        final HashSet<PooledSession> idleSessions = new HashSet<>();
+        for (int i = 0; i < pooledSessions.length; ++i) {
+            mPool.returnSession(i /* sessionId */, pooledSessions[i]);
+            idleSessions.add(pooledSessions[i]);
+        }
+        assertEquals(DicTraverseSessionPool.MAX_SESSION_COUNT,
+                mPool.getIdleSessionCountForTesting());
+
+        final int sessionId = DicTraverseSessionPool.MAX_SESSION_COUNT;
+        final PooledSession pooledSession = mPool.borrowSession(sessionId, mNativeDict);
+        assertTrue(idleSessions.contains(pooledSession));
+        assertFalse(isClosed(pooledSession));
+        assertEquals(DicTraverseSessionPool.MAX_SESSION_COUNT,
+                mPool.getSessionCountForTesting());
+        assertEquals(DicTraverseSessionPool.MAX_SESSION_COUNT - 1,
+                mPool.getIdleSessionCountForTesting());
+        mPool.returnSession(sessionId, pooledSession);
+    }
+
+    @Test
+    public void testCloseInvalidatesIdleSessions() {
+        final PooledSession pooledSession = mPool.borrowSession(0 /* sessionId */, mNativeDict);
+        mPool.returnSession(0 /* sessionId */, pooledSession);
+
+        mPool.close();
+        assertTrue(isClosed(pooledSession));
+        assertEquals(0, mPool.getSessionCountForTesting());
+        final PooledSession newPooledSession =
+                mPool.borrowSession(0 /* sessionId */, mNativeDict);
+        assertNotSame(pooledSession, newPooledSession);
+        assertFalse(isClosed(newPooledSession));
+        mPool.returnSession(0 /* sessionId */, newPooledSession);
+    }
+
+    @Test
+    public void testCloseInvalidatesSessionsInUse() {
+        final PooledSession pooledSession = mPool.borrowSession(0 /* sessionId */, mNativeDict);
+
+        mPool.close();
+        assertFalse(isClosed(pooledSession));
+        // A session of an older generation is closed when it is returned, not kept idle.
+        mPool.returnSession(0 /* sessionId */, pooledSession);
+        assertTrue(isClosed(pooledSession));
+        assertEquals(0, mPool.getSessionCountForTesting());
+        assertEquals(0, mPool.getIdleSessionCountForTesting());
+    }
+
+    @Test
+    public void testIdleSweepReleasesTimedOutSessions() {
+        final PooledSession pooledSession = mPool.borrowSession(0 /* sessionId */, mNativeDict);
+        mPool.returnSession(0 /* sessionId */, pooledSession);
+        final PooledSession otherPooledSession =
+                mPool.borrowSession(1 /* sessionId */, mNativeDict);
+        mPool.returnSession(1 /* sessionId */, otherPooledSession);
+        final long idleSinceMillis = pooledSession.mIdleSinceMillis;
+        otherPooledSession.mIdleSinceMillis =
+                idleSinceMillis + DicTraverseSessionPool.IDLE_TIMEOUT_MILLIS;
+
+        assertTrue(mPool.sweepIdleSessions(
+                idleSinceMillis + DicTraverseSessionPool.IDLE_TIMEOUT_MILLIS - 1));
+        assertFalse(isClosed(pooledSession));
+        assertEquals(2, mPool.getIdleSessionCountForTesting());
+
+        assertTrue(mPool.sweepIdleSessions(
+                idleSinceMillis + DicTraverseSessionPool.IDLE_TIMEOUT_MILLIS));
+        assertTrue(isClosed(pooledSession));
+        assertFalse(isClosed(otherPooledSession));
+        assertEquals(1, mPool.getSessionCountForTesting());
+
+        assertFalse(mPool.sweepIdleSessions(
+                idleSinceMillis + 2 * DicTraverseSessionPool.IDLE_TIMEOUT_MILLIS));
+        assertTrue(isClosed(otherPooledSession));
+        assertEquals(0, mPool.getSessionCountForTesting());
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.keyboard.Key;
+import com.android.inputmethod.keyboard.Keyboard;
+import com.android.inputmethod.keyboard.internal.KeyboardIconsSet;
+import com.android.inputmethod.keyboard.internal.KeyboardParams;
+import com.android.inputmethod.latin.DictionaryFacilitatorImpl.DictionaryGroup;
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.common.InputPointers;
+import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+import com.android.inputmethod.latin.utils.SuggestionResults;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Locale;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DictionaryFacilitatorImplTests {
+    private static final int SESSION_ID = 0;
+    private static final long DEADLINE_MILLIS = 10000;
+
+    /**
+     * A main dictionary that scores its words with the weight of the language model vs the
+     * spatial model, and computes its own weight when it is not given one.
+     */
+    private static final class TestDictionary extends Dictionary {
+        private final float mWeightOfLangModelVsSpatialModel;
+        private final String[] mWords;
+
+        public TestDictionary(final Locale locale, final float weightOfLangModelVsSpatialModel,
+                final String... words) {
+            super(Dictionary.TYPE_MAIN, locale);
+            mWeightOfLangModelVsSpatialModel = weightOfLangModelVsSpatialModel;
+            mWords = words;
+        }
+
+        @Override
+        public ArrayList<SuggestedWordInfo> getSuggestions(final ComposedData composedData,
+                final NgramContext ngramContext, final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId, final float weightForLocale,
+                final float[] inOutWeightOfLangModelVsSpatialModel) {
+            if (inOutWeightOfLangModelVsSpatialModel[0]
+                    == Dictionary.NOT_A_WEIGHT_OF_LANG_MODEL_VS_SPATIAL_MODEL) {
+                inOutWeightOfLangModelVsSpatialModel[0] = mWeightOfLangModelVsSpatialModel;
+            }
+            final ArrayList<SuggestedWordInfo> suggestions = new ArrayList<>();
+            for (int i = 0; i < mWords.length; ++i) {
+                final int score = (int) ((1000 - i * 100) * weightForLocale
+                        * inOutWeightOfLangModelVsSpatialModel[0]);
+                suggestions.add(new SuggestedWordInfo(mWords[i], "" /* prevWordsContext */,
+                        score, SuggestedWordInfo.KIND_CORRECTION, this,
+                        SuggestedWordInfo.NOT_AN_INDEX, SuggestedWordInfo.NOT_A_CONFIDENCE));
+            }
+            return suggestions;
+        }
+
+        @Override
+        public boolean isInDictionary(final String word) {
+            return false;
+        }
+    }
+
+    private static Keyboard newKeyboard() {
+        final KeyboardParams params = new KeyboardParams();
+        params.mOccupiedWidth = 100;
+        params.mOccupiedHeight = 100;
+        params.GRID_WIDTH = 4;
+        params.GRID_HEIGHT = 4;
+        params.onAddKey(new Key("a", KeyboardIconsSet.ICON_UNDEFINED, 'a',
+                null /* outputText */, null /* hintLabel */, 0 /* labelFlags */,
+                Key.BACKGROUND_TYPE_NORMAL, 0 /* x */, 0 /* y */, 100 /* width */,
+                100 /* height */, 0 /* horizontalGap */, 0 /* verticalGap */));
+        return new Keyboard(params);
+    }
+
+    private static DictionaryGroup newDictionaryGroup(final Dictionary mainDict) {
+        return new DictionaryGroup(mainDict.mLocale, mainDict, null /* account */,
+                Collections.<String, ExpandableBinaryDictionary>emptyMap());
+    }
+
+    private static SuggestionResults getSuggestionResults(
+            final DictionaryFacilitatorImpl dictionaryFacilitator, final Keyboard keyboard) {
+        return dictionaryFacilitator.getSuggestionResults(
+                new ComposedData(new InputPointers(1), false /* isBatchMode */, "hel"),
+                NgramContext.BEGINNING_OF_SENTENCE, keyboard,
+                new SettingsValuesForSuggestion(false /* blockPotentiallyOffensive */),
+                SESSION_ID, SuggestedWords.INPUT_STYLE_TYPING);
+    }
+
+    @Test
+    public void testParallelLookupReturnsSerialResults() {
+        // The second main dictionary would compute another weight of the language model vs the
+        // spatial model than the one the first one passes on to it.
+        final DictionaryGroup mostProbableGroup = newDictionaryGroup(
+                new TestDictionary(Locale.US, 1.0f, "hello", "help", "held"));
+        final DictionaryGroup otherGroup = newDictionaryGroup(
+                new TestDictionary(Locale.FRANCE, 0.5f, "hello", "hier", "hélas"));
+        otherGroup.setIsMostProbableLanguage(false);
+        final DictionaryFacilitatorImpl dictionaryFacilitator = new DictionaryFacilitatorImpl();
+        dictionaryFacilitator.resetDictionaryGroupsForTesting(
+                new DictionaryGroup[] { mostProbableGroup, otherGroup });
+        final Keyboard keyboard = newKeyboard();
+
+        dictionaryFacilitator.setParallelSuggestionLookup(false, DEADLINE_MILLIS);
+        final SuggestionResults serialResults =
+                getSuggestionResults(dictionaryFacilitator, keyboard);
+        dictionaryFacilitator.setParallelSuggestionLookup(true, DEADLINE_MILLIS);
+        final SuggestionResults parallelResults =
+                getSuggestionResults(dictionaryFacilitator, keyboard);
+        dictionaryFacilitator.closeDictionaries();
+
+        assertTrue(serialResults.size() > 0);
+        assertEquals(serialResults.size(), parallelResults.size());
+        final Iterator<SuggestedWordInfo> parallelIterator = parallelResults.iterator();
+        for (final SuggestedWordInfo serialInfo : serialResults) {
+            final SuggestedWordInfo parallelInfo = parallelIterator.next();
+            assertEquals(serialInfo.mWord, parallelInfo.mWord);
+            assertEquals(serialInfo.mWord, serialInfo.mScore, parallelInfo.mScore);
+            assertEquals(serialInfo.mWord, serialInfo.mSourceDict, parallelInfo.mSourceDict);
+        }
+    }
+}
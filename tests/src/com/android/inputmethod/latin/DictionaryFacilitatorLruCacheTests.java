@@ -16,13 +16,19 @@
 
 package com.android.inputmethod.latin;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import androidx.test.InstrumentationRegistry;
 import androidx.test.filters.LargeTest;
 import androidx.test.runner.AndroidJUnit4;
 
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -37,16 +43,88 @@ public class DictionaryFacilitatorLruCacheTests {
         final DictionaryFacilitatorLruCache cache =
                 new DictionaryFacilitatorLruCache(InstrumentationRegistry.getTargetContext(), "");
 
-        final DictionaryFacilitator dictionaryFacilitatorEnUs = cache.get(Locale.US);
+        final DictionaryFacilitator dictionaryFacilitatorEnUs = cache.acquire(Locale.US);
         assertNotNull(dictionaryFacilitatorEnUs);
         assertTrue(dictionaryFacilitatorEnUs.isForLocale(Locale.US));
 
-        final DictionaryFacilitator dictionaryFacilitatorFr = cache.get(Locale.FRENCH);
+        final DictionaryFacilitator dictionaryFacilitatorFr = cache.acquire(Locale.FRENCH);
         assertNotNull(dictionaryFacilitatorEnUs);
         assertTrue(dictionaryFacilitatorFr.isForLocale(Locale.FRENCH));
 
-        final DictionaryFacilitator dictionaryFacilitatorDe = cache.get(Locale.GERMANY);
+        final DictionaryFacilitator dictionaryFacilitatorDe = cache.acquire(Locale.GERMANY);
         assertNotNull(dictionaryFacilitatorDe);
         assertTrue(dictionaryFacilitatorDe.isForLocale(Locale.GERMANY));
+
+        cache.release(dictionaryFacilitatorEnUs);
+        cache.release(dictionaryFacilitatorFr);
+        cache.release(dictionaryFacilitatorDe);
+    }
+
+    @Test
+    public void testGetFacilitatorKeepsLocalesWithinBudget() {
+        final DictionaryFacilitatorLruCache cache =
+                new DictionaryFacilitatorLruCache(InstrumentationRegistry.getTargetContext(), "");
+
+        final DictionaryFacilitator dictionaryFacilitatorEnUs = cache.acquire(Locale.US);
+        cache.release(dictionaryFacilitatorEnUs);
+        final DictionaryFacilitator dictionaryFacilitatorFr = cache.acquire(Locale.FRENCH);
+        cache.release(dictionaryFacilitatorFr);
+        assertNotSame(dictionaryFacilitatorEnUs, dictionaryFacilitatorFr);
+        assertEquals(2, cache.getCachedLocaleCountForTesting());
+
+        // Switching back to a cached locale must not reload its dictionaries.
+        assertSame(dictionaryFacilitatorEnUs, cache.acquire(Locale.US));
+        assertTrue(dictionaryFacilitatorEnUs.isForLocale(Locale.US));
+        cache.release(dictionaryFacilitatorEnUs);
+        assertSame(dictionaryFacilitatorFr, cache.acquire(Locale.FRENCH));
+        assertTrue(dictionaryFacilitatorFr.isForLocale(Locale.FRENCH));
+        cache.release(dictionaryFacilitatorFr);
+    }
+
+    @Test
+    public void testGetFacilitatorEvictsLeastRecentlyUsed() {
+        // A budget this small only ever fits the most recently used facilitator.
+        final DictionaryFacilitatorLruCache cache = new DictionaryFacilitatorLruCache(
+                InstrumentationRegistry.getTargetContext(), "", 1 /* memoryBudgetInBytes */);
+
+        final DictionaryFacilitator dictionaryFacilitatorEnUs = cache.acquire(Locale.US);
+        cache.release(dictionaryFacilitatorEnUs);
+        assertEquals(1, cache.getCachedLocaleCountForTesting());
+        final DictionaryFacilitator dictionaryFacilitatorFr = cache.acquire(Locale.FRENCH);
+        assertTrue(dictionaryFacilitatorFr.isForLocale(Locale.FRENCH));
+        cache.release(dictionaryFacilitatorFr);
+        assertEquals(1, cache.getCachedLocaleCountForTesting());
+
+        final DictionaryFacilitator reloadedDictionaryFacilitatorEnUs = cache.acquire(Locale.US);
+        assertNotSame(dictionaryFacilitatorEnUs, reloadedDictionaryFacilitatorEnUs);
+        assertTrue(reloadedDictionaryFacilitatorEnUs.isForLocale(Locale.US));
+        cache.release(reloadedDictionaryFacilitatorEnUs);
+    }
+
+    private static void waitForClosingFacilitators() throws Exception {
+        // The evicted facilitators are closed on the spelling executor.
+        ExecutorUtils.getBackgroundExecutor(ExecutorUtils.SPELLING).submit(new Runnable() {
+            @Override
+            public void run() {}
+        }).get();
+    }
+
+    @Test
+    public void testFacilitatorEvictedInUseIsClosedOnRelease() throws Exception {
+        final DictionaryFacilitatorLruCache cache = new DictionaryFacilitatorLruCache(
+                InstrumentationRegistry.getTargetContext(), "", 1 /* memoryBudgetInBytes */);
+
+        final DictionaryFacilitator dictionaryFacilitatorEnUs = cache.acquire(Locale.US);
+        // The facilitator for en_US is evicted while still in use.
+        final DictionaryFacilitator dictionaryFacilitatorFr = cache.acquire(Locale.FRENCH);
+        assertEquals(1, cache.getCachedLocaleCountForTesting());
+        waitForClosingFacilitators();
+        assertTrue(dictionaryFacilitatorEnUs.isForLocale(Locale.US));
+
+        cache.release(dictionaryFacilitatorEnUs);
+        waitForClosingFacilitators();
+        assertFalse(dictionaryFacilitatorEnUs.isForLocale(Locale.US));
+        assertTrue(dictionaryFacilitatorFr.isForLocale(Locale.FRENCH));
+        cache.release(dictionaryFacilitatorFr);
     }
 }
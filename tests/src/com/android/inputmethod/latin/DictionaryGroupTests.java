@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.DictionaryFacilitatorImpl.DictionaryGroup;
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Locale;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DictionaryGroupTests {
+    private static final class TestDictionary extends Dictionary {
+        public int mCloseCount;
+
+        public TestDictionary() {
+            super(Dictionary.TYPE_MAIN, Locale.US);
+        }
+
+        @Override
+        public ArrayList<SuggestedWordInfo> getSuggestions(final ComposedData composedData,
+                final NgramContext ngramContext, final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId, final float weightForLocale,
+                final float[] inOutWeightOfLangModelVsSpatialModel) {
+            return null;
+        }
+
+        @Override
+        public boolean isInDictionary(final String word) {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            ++mCloseCount;
+        }
+    }
+
+    private static DictionaryGroup newDictionaryGroup(final Dictionary mainDict) {
+        return new DictionaryGroup(Locale.US, mainDict, null /* account */,
+                Collections.<String, ExpandableBinaryDictionary>emptyMap());
+    }
+
+    @Test
+    public void testReplacedDictionaryIsClosedAfterLastRelease() {
+        final TestDictionary oldMainDict = new TestDictionary();
+        final TestDictionary newMainDict = new TestDictionary();
+        final DictionaryGroup oldGroup = newDictionaryGroup(oldMainDict);
+        assertTrue(oldGroup.tryRetain());
+
+        // The main dictionary is replaced while a query is using the group.
+        final DictionaryGroup newGroup = oldGroup.withMainDict(newMainDict);
+        oldGroup.retire(newGroup);
+        assertEquals(0, oldMainDict.mCloseCount);
+
+        oldGroup.release();
+        assertEquals(1, oldMainDict.mCloseCount);
+        assertEquals(0, newMainDict.mCloseCount);
+        assertFalse(oldGroup.tryRetain());
+        assertTrue(newGroup.tryRetain());
+    }
+
+    @Test
+    public void testSharedDictionaryStaysOpenForReadersOfOlderGroups() {
+        final TestDictionary mainDict = new TestDictionary();
+        final DictionaryGroup firstGroup = newDictionaryGroup(mainDict);
+        final DictionaryGroup secondGroup = firstGroup.withMainDict(mainDict);
+        assertTrue(firstGroup.tryRetain());
+
+        firstGroup.retire(secondGroup);
+        // The second group is replaced by a group without the dictionary while the first one is
+        // still in use.
+        secondGroup.retire(new DictionaryGroup());
+        assertEquals(0, mainDict.mCloseCount);
+
+        firstGroup.release();
+        assertEquals(1, mainDict.mCloseCount);
+    }
+
+    @Test
+    public void testParallelLookupLocksAreSharedWithReplacingGroups() {
+        final TestDictionary mainDict = new TestDictionary();
+        final DictionaryGroup firstGroup = newDictionaryGroup(mainDict);
+        final Object[] locks = firstGroup.getParallelLookupLocks(0 /* sessionId */);
+        assertSame(locks, firstGroup.getParallelLookupLocks(0 /* sessionId */));
+        assertNotSame(locks, firstGroup.getParallelLookupLocks(1 /* sessionId */));
+
+        // The groups sharing the dictionaries of the first group share its locks.
+        final DictionaryGroup secondGroup = firstGroup.withMainDict(mainDict);
+        assertSame(locks, secondGroup.getParallelLookupLocks(0 /* sessionId */));
+        // Unrelated groups have their own locks, which go away with them.
+        assertNotSame(locks, newDictionaryGroup(mainDict).getParallelLookupLocks(
+                0 /* sessionId */));
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DictionaryReadSnapshotTests {
+    private static final class TestDictionary extends Dictionary {
+        public int mCloseCount;
+
+        public TestDictionary() {
+            super(Dictionary.TYPE_USER_HISTORY, Locale.US);
+        }
+
+        @Override
+        public ArrayList<SuggestedWordInfo> getSuggestions(final ComposedData composedData,
+                final NgramContext ngramContext, final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId, final float weightForLocale,
+                final float[] inOutWeightOfLangModelVsSpatialModel) {
+            return null;
+        }
+
+        @Override
+        public boolean isInDictionary(final String word) {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            ++mCloseCount;
+        }
+    }
+
+    @Test
+    public void testAcquireWithoutSnapshot() {
+        final DictionaryReadSnapshot.Holder holder = new DictionaryReadSnapshot.Holder();
+        assertFalse(holder.hasSnapshot());
+        assertNull(holder.acquire());
+    }
+
+    @Test
+    public void testReplacedSnapshotIsClosedAfterLastRelease() {
+        final DictionaryReadSnapshot.Holder holder = new DictionaryReadSnapshot.Holder();
+        final TestDictionary oldDictionary = new TestDictionary();
+        final TestDictionary newDictionary = new TestDictionary();
+        holder.publish(oldDictionary);
+        final DictionaryReadSnapshot snapshot = holder.acquire();
+        assertSame(oldDictionary, snapshot.getDictionary());
+
+        // A writer publishes a new snapshot while the old one is being read.
+        holder.publish(newDictionary);
+        assertEquals(0, oldDictionary.mCloseCount);
+        final DictionaryReadSnapshot newSnapshot = holder.acquire();
+        assertSame(newDictionary, newSnapshot.getDictionary());
+        newSnapshot.release();
+
+        snapshot.release();
+        assertEquals(1, oldDictionary.mCloseCount);
+        assertEquals(0, newDictionary.mCloseCount);
+    }
+
+    @Test
+    public void testPublishNullClosesUnreadSnapshot() {
+        final DictionaryReadSnapshot.Holder holder = new DictionaryReadSnapshot.Holder();
+        final TestDictionary dictionary = new TestDictionary();
+        holder.publish(dictionary);
+        assertTrue(holder.hasSnapshot());
+        holder.publish(null);
+        assertFalse(holder.hasSnapshot());
+        assertEquals(1, dictionary.mCloseCount);
+        assertNull(holder.acquire());
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.utils.ExecutorUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class DictionaryWriteJournalTests {
+    private ScheduledExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        ExecutorUtils.setExecutorServiceForTests(mExecutor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ExecutorUtils.setExecutorServiceForTests(null);
+        mExecutor.shutdownNow();
+    }
+
+    private void waitForExecutor() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        latch.await(10, TimeUnit.SECONDS);
+    }
+
+    private static Runnable newRecordingTask(final ArrayList<Integer> record, final int value) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                record.add(value);
+            }
+        };
+    }
+
+    @Test
+    public void testPendingTasksAreAppliedInOneBatch() throws InterruptedException {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final AtomicInteger prepareCount = new AtomicInteger(0);
+        final DictionaryWriteJournal journal = new DictionaryWriteJournal(ExecutorUtils.KEYBOARD,
+                lock.writeLock(), new Runnable() {
+                    @Override
+                    public void run() {
+                        prepareCount.incrementAndGet();
+                    }
+                });
+        final ArrayList<Integer> record = new ArrayList<>();
+        // Hold the executor so that the tasks are queued in the journal.
+        final CountDownLatch blocker = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        journal.addUpdate(newRecordingTask(record, 0));
+        journal.addTask(newRecordingTask(record, 1));
+        journal.addUpdate(newRecordingTask(record, 2));
+        assertEquals(3, journal.getQueueDepth());
+        blocker.countDown();
+        waitForExecutor();
+
+        assertEquals(3, record.size());
+        for (int i = 0; i < record.size(); ++i) {
+            assertEquals(i, (int)record.get(i));
+        }
+        assertEquals(0, journal.getQueueDepth());
+        assertEquals(1, journal.getBatchCount());
+        assertEquals(3, journal.getLastBatchSize());
+        assertEquals(1, prepareCount.get());
+    }
+
+    @Test
+    public void testBatchSizeIsBounded() throws InterruptedException {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final DictionaryWriteJournal journal = new DictionaryWriteJournal(ExecutorUtils.KEYBOARD,
+                lock.writeLock(), new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                });
+        final ArrayList<Integer> record = new ArrayList<>();
+        final CountDownLatch blocker = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final int taskCount = DictionaryWriteJournal.MAX_BATCH_SIZE * 2 + 1;
+        for (int i = 0; i < taskCount; ++i) {
+            journal.addUpdate(newRecordingTask(record, i));
+        }
+        blocker.countDown();
+        // The journal schedules the remaining tasks again after each batch.
+        for (int i = 0; i < 3; ++i) {
+            waitForExecutor();
+        }
+
+        assertEquals(taskCount, record.size());
+        assertEquals(3, journal.getBatchCount());
+        assertEquals(DictionaryWriteJournal.MAX_BATCH_SIZE, journal.getMaxBatchSize());
+        assertEquals(taskCount, journal.getAppliedTaskCount());
+    }
+
+    @Test
+    public void testFailingTaskEndsBatchAndIsThrownAfterUnlocking()
+            throws InterruptedException {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final DictionaryWriteJournal journal = new DictionaryWriteJournal(ExecutorUtils.KEYBOARD,
+                lock.writeLock(), new Runnable() {
+                    @Override
+                    public void run() {
+                    }
+                });
+        final ArrayList<Integer> record = new ArrayList<>();
+        final CountDownLatch blocker = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        final IllegalStateException exception = new IllegalStateException();
+        journal.addUpdate(newRecordingTask(record, 0));
+        journal.addUpdate(new Runnable() {
+            @Override
+            public void run() {
+                throw exception;
+            }
+        });
+        journal.addUpdate(newRecordingTask(record, 2));
+        try {
+            journal.applyPendingTasks();
+            fail("The exception of the failing task should be thrown.");
+        } catch (final IllegalStateException e) {
+            assertSame(exception, e);
+        }
+
+        assertFalse(lock.isWriteLocked());
+        assertEquals(1, record.size());
+        assertEquals(1, journal.getQueueDepth());
+        assertEquals(2, journal.getAppliedTaskCount());
+        // The task after the failing one is applied by the next batch.
+        blocker.countDown();
+        waitForExecutor();
+        assertEquals(2, record.size());
+        assertEquals(2, (int)record.get(1));
+        assertEquals(0, journal.getQueueDepth());
+    }
+}
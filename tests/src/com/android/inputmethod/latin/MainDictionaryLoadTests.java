@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class MainDictionaryLoadTests {
+    private static final String INVALID_WORD_LIST = "invalid";
+
+    private ExecutorService mExecutor;
+
+    private static final class TestDictionary extends Dictionary {
+        public final String mWord;
+        public boolean mIsClosed;
+
+        public TestDictionary(final String word) {
+            super(Dictionary.TYPE_MAIN, Locale.US);
+            mWord = word;
+        }
+
+        @Override
+        public ArrayList<SuggestedWordInfo> getSuggestions(final ComposedData composedData,
+                final NgramContext ngramContext, final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId, final float weightForLocale,
+                final float[] inOutWeightOfLangModelVsSpatialModel) {
+            return null;
+        }
+
+        @Override
+        public boolean isInDictionary(final String word) {
+            return mWord.equals(word);
+        }
+
+        @Override
+        public void close() {
+            mIsClosed = true;
+        }
+    }
+
+    // Opens a word list as a dictionary that contains its file name as the only word.
+    private static class TestOpener implements MainDictionaryLoad.WordListOpener {
+        @Override
+        public Dictionary open(final AssetFileAddress wordList) {
+            if (INVALID_WORD_LIST.equals(wordList.mFilename)) {
+                return null;
+            }
+            return new TestDictionary(wordList.mFilename);
+        }
+    }
+
+    private static List<AssetFileAddress> newWordLists(final String... names) {
+        final ArrayList<AssetFileAddress> wordLists = new ArrayList<>();
+        for (final String name : names) {
+            wordLists.add(new AssetFileAddress(name, 0L /* offset */, 0L /* length */));
+        }
+        return wordLists;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mExecutor = Executors.newFixedThreadPool(3);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testWordListsAreAddedToCollection() throws Exception {
+        final MainDictionaryLoad load = new MainDictionaryLoad(Locale.US,
+                newWordLists("main", INVALID_WORD_LIST, "extra"), new TestOpener(), mExecutor);
+        load.awaitAllWordLists();
+
+        final DictionaryCollection collection = load.getDictionaryCollection();
+        assertTrue(collection.isInitialized());
+        assertTrue(collection.isInDictionary("main"));
+        assertTrue(collection.isInDictionary("extra"));
+        assertEquals(3, load.getWordListFutures().size());
+        assertEquals("main",
+                ((TestDictionary) load.getWordListFutures().get(0).get()).mWord);
+        assertNull(load.getWordListFutures().get(1).get());
+    }
+
+    @Test
+    public void testCollectionIsUsableBeforeAllWordListsAreOpened() throws Exception {
+        final CountDownLatch slowWordListLatch = new CountDownLatch(1);
+        final MainDictionaryLoad load = new MainDictionaryLoad(Locale.US,
+                newWordLists("fast", "slow"), new TestOpener() {
+                    @Override
+                    public Dictionary open(final AssetFileAddress wordList) {
+                        if ("slow".equals(wordList.mFilename)) {
+                            try {
+                                slowWordListLatch.await(10, TimeUnit.SECONDS);
+                            } catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return super.open(wordList);
+                    }
+                }, mExecutor);
+        load.awaitFirstWordList();
+
+        final DictionaryCollection collection = load.getDictionaryCollection();
+        assertTrue(collection.isInDictionary("fast"));
+        assertFalse(collection.isInDictionary("slow"));
+        slowWordListLatch.countDown();
+        load.awaitAllWordLists();
+        assertTrue(collection.isInDictionary("slow"));
+    }
+
+    @Test
+    public void testWordListOpenedAfterCancelIsClosed() throws Exception {
+        final CountDownLatch openingLatch = new CountDownLatch(1);
+        final CountDownLatch slowWordListLatch = new CountDownLatch(1);
+        final TestDictionary slowDictionary = new TestDictionary("slow");
+        final MainDictionaryLoad load = new MainDictionaryLoad(Locale.US,
+                newWordLists("slow"), new MainDictionaryLoad.WordListOpener() {
+                    @Override
+                    public Dictionary open(final AssetFileAddress wordList) {
+                        openingLatch.countDown();
+                        try {
+                            slowWordListLatch.await(10, TimeUnit.SECONDS);
+                        } catch (final InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        return slowDictionary;
+                    }
+                }, mExecutor);
+        // Cancel while the word list is being opened.
+        openingLatch.await(10, TimeUnit.SECONDS);
+        load.cancel();
+        slowWordListLatch.countDown();
+        load.awaitAllWordLists();
+
+        assertTrue(slowDictionary.mIsClosed);
+        assertFalse(load.getDictionaryCollection().isInitialized());
+        assertSame(slowDictionary, load.getWordListFutures().get(0).get());
+    }
+
+    @Test
+    public void testNoWordList() throws Exception {
+        final MainDictionaryLoad load = new MainDictionaryLoad(Locale.US,
+                Arrays.<AssetFileAddress>asList(), new TestOpener(), mExecutor);
+        load.awaitFirstWordList();
+        load.awaitAllWordLists();
+        assertFalse(load.getDictionaryCollection().isInitialized());
+    }
+}
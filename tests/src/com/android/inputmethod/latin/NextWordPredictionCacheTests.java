@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.NgramContext.WordInfo;
+import com.android.inputmethod.latin.utils.SuggestionResults;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class NextWordPredictionCacheTests {
+    private static SuggestionResults newSuggestionResults() {
+        return new SuggestionResults(SuggestedWords.MAX_SUGGESTIONS,
+                false /* isBeginningOfSentence */,
+                false /* firstSuggestionExceedsConfidenceThreshold */);
+    }
+
+    private static NgramContext getNgramContextAfter(final String word) {
+        return NgramContext.BEGINNING_OF_SENTENCE.getNextNgramContext(new WordInfo(word));
+    }
+
+    @Test
+    public void testGetByContext() {
+        final NextWordPredictionCache cache = new NextWordPredictionCache();
+        final SuggestionResults results = newSuggestionResults();
+        cache.put(cache.getGeneration(), getNgramContextAfter("hello"),
+                false /* blockPotentiallyOffensive */, results);
+
+        assertSame(results, cache.get(getNgramContextAfter("hello"),
+                false /* blockPotentiallyOffensive */));
+        assertNull(cache.get(getNgramContextAfter("hello"), true /* blockPotentiallyOffensive */));
+        assertNull(cache.get(getNgramContextAfter("help"), false /* blockPotentiallyOffensive */));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        final NextWordPredictionCache cache = new NextWordPredictionCache();
+        final String[] words = { "a", "b", "c", "d" };
+        for (final String word : words) {
+            cache.put(cache.getGeneration(), getNgramContextAfter(word),
+                    false /* blockPotentiallyOffensive */, newSuggestionResults());
+        }
+        // Use "a" so that "b" is the least recently used.
+        cache.get(getNgramContextAfter("a"), false /* blockPotentiallyOffensive */);
+        cache.put(cache.getGeneration(), getNgramContextAfter("e"),
+                false /* blockPotentiallyOffensive */, newSuggestionResults());
+
+        assertEquals(words.length, cache.getEntryCountForTesting());
+        assertNull(cache.get(getNgramContextAfter("b"), false /* blockPotentiallyOffensive */));
+        assertTrue(cache.contains(getNgramContextAfter("a"),
+                false /* blockPotentiallyOffensive */));
+    }
+
+    @Test
+    public void testPredictionsFromBeforeClearAreDropped() {
+        final NextWordPredictionCache cache = new NextWordPredictionCache();
+        final int generation = cache.getGeneration();
+        cache.clear();
+        cache.put(generation, getNgramContextAfter("hello"),
+                false /* blockPotentiallyOffensive */, newSuggestionResults());
+        assertEquals(0, cache.getEntryCountForTesting());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.NgramContext.WordInfo;
+import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.common.InputPointers;
+import com.android.inputmethod.latin.utils.SuggestionResults;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class PrefixSuggestionCacheTests {
+    private static ComposedData getComposedData(final String typedWord) {
+        final InputPointers inputPointers = new InputPointers(typedWord.length());
+        for (int i = 0; i < typedWord.length(); ++i) {
+            inputPointers.addPointer(typedWord.charAt(i) * 10, 100 /* y */, 0 /* pointerId */,
+                    i * 100 /* time */);
+        }
+        return new ComposedData(inputPointers, false /* isBatchMode */, typedWord);
+    }
+
+    private static SuggestionResults newSuggestionResults() {
+        return new SuggestionResults(SuggestedWords.MAX_SUGGESTIONS,
+                false /* isBeginningOfSentence */,
+                false /* firstSuggestionExceedsConfidenceThreshold */);
+    }
+
+    private static SuggestionResults type(final PrefixSuggestionCache cache,
+            final String typedWord, final NgramContext ngramContext) {
+        final ComposedData composedData = getComposedData(typedWord);
+        final SuggestionResults cachedResults = cache.getSuggestionResults(composedData,
+                ngramContext, null /* keyboard */, false /* blockPotentiallyOffensive */);
+        if (cachedResults != null) {
+            return cachedResults;
+        }
+        final SuggestionResults results = newSuggestionResults();
+        cache.onSuggestionResults(composedData, results);
+        return results;
+    }
+
+    @Test
+    public void testDeleteReturnsResultsOfPrefix() {
+        final PrefixSuggestionCache cache = new PrefixSuggestionCache();
+        final NgramContext ngramContext = NgramContext.BEGINNING_OF_SENTENCE;
+        final SuggestionResults resultsForH = type(cache, "h", ngramContext);
+        assertEquals(PrefixSuggestionCache.QUERY_TYPE_RESTART, cache.getLastQueryType());
+        final SuggestionResults resultsForHe = type(cache, "he", ngramContext);
+        assertEquals(PrefixSuggestionCache.QUERY_TYPE_APPEND, cache.getLastQueryType());
+        type(cache, "hel", ngramContext);
+        assertEquals(3, cache.getPrefixCountForTesting());
+
+        assertSame(resultsForHe, type(cache, "he", ngramContext));
+        assertEquals(PrefixSuggestionCache.QUERY_TYPE_DELETE, cache.getLastQueryType());
+        assertSame(resultsForH, type(cache, "h", ngramContext));
+        assertEquals(1, cache.getPrefixCountForTesting());
+        assertEquals(2, cache.getDeleteCount());
+        assertEquals(2, cache.getAppendCount());
+        assertEquals(1, cache.getRestartCount());
+    }
+
+    @Test
+    public void testReplacedCodePointIsSearchedAgain() {
+        final PrefixSuggestionCache cache = new PrefixSuggestionCache();
+        final NgramContext ngramContext = NgramContext.BEGINNING_OF_SENTENCE;
+        type(cache, "h", ngramContext);
+        type(cache, "he", ngramContext);
+        type(cache, "hex", ngramContext);
+        // Deleting then typing another code point forgets the prefix that was deleted.
+        type(cache, "hey", ngramContext);
+        assertEquals(PrefixSuggestionCache.QUERY_TYPE_APPEND, cache.getLastQueryType());
+        assertEquals(3, cache.getPrefixCountForTesting());
+    }
+
+    @Test
+    public void testNewContextRestarts() {
+        final PrefixSuggestionCache cache = new PrefixSuggestionCache();
+        type(cache, "h", NgramContext.BEGINNING_OF_SENTENCE);
+        type(cache, "he", NgramContext.BEGINNING_OF_SENTENCE);
+        assertNull(cache.getSuggestionResults(getComposedData("h"),
+                new NgramContext(new WordInfo("say")), null /* keyboard */,
+                false /* blockPotentiallyOffensive */));
+        assertEquals(PrefixSuggestionCache.QUERY_TYPE_RESTART, cache.getLastQueryType());
+        assertEquals(0, cache.getPrefixCountForTesting());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+import com.android.inputmethod.latin.common.ComposedData;
+import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SharedMainDictionariesTests {
+    private static final class TestDictionary extends Dictionary {
+        public final boolean mIsInitialized;
+        public int mCloseCount;
+
+        public TestDictionary(final Locale locale, final boolean isInitialized) {
+            super(Dictionary.TYPE_MAIN, locale);
+            mIsInitialized = isInitialized;
+        }
+
+        @Override
+        public ArrayList<SuggestedWordInfo> getSuggestions(final ComposedData composedData,
+                final NgramContext ngramContext, final long proximityInfoHandle,
+                final SettingsValuesForSuggestion settingsValuesForSuggestion,
+                final int sessionId, final float weightForLocale,
+                final float[] inOutWeightOfLangModelVsSpatialModel) {
+            return null;
+        }
+
+        @Override
+        public boolean isInDictionary(final String word) {
+            return "shared".equals(word);
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return mIsInitialized && mCloseCount == 0;
+        }
+
+        @Override
+        public void close() {
+            ++mCloseCount;
+        }
+    }
+
+    @Test
+    public void testDictionaryIsClosedWithLastHandle() {
+        final Locale locale = new Locale("xx", "SH");
+        final TestDictionary dictionary = new TestDictionary(locale, true /* isInitialized */);
+        final Dictionary firstHandle = SharedMainDictionaries.share(locale, dictionary);
+        final Dictionary secondHandle = SharedMainDictionaries.acquire(locale);
+        assertNotNull(secondHandle);
+        assertTrue(secondHandle.isInDictionary("shared"));
+
+        firstHandle.close();
+        // Closing a handle again doesn't release the dictionary twice.
+        firstHandle.close();
+        assertFalse(firstHandle.isInitialized());
+        assertTrue(secondHandle.isInitialized());
+        assertEquals(0, dictionary.mCloseCount);
+
+        secondHandle.close();
+        assertEquals(1, dictionary.mCloseCount);
+        assertFalse(SharedMainDictionaries.isShared(locale));
+        assertNull(SharedMainDictionaries.acquire(locale));
+    }
+
+    @Test
+    public void testReplacedDictionaryStaysOpenForItsHandles() {
+        final Locale locale = new Locale("xx", "RE");
+        final TestDictionary oldDictionary = new TestDictionary(locale, true /* isInitialized */);
+        final TestDictionary newDictionary = new TestDictionary(locale, true /* isInitialized */);
+        final Dictionary oldHandle = SharedMainDictionaries.share(locale, oldDictionary);
+        final Dictionary newHandle = SharedMainDictionaries.share(locale, newDictionary);
+
+        oldHandle.close();
+        assertEquals(1, oldDictionary.mCloseCount);
+        // The replaced dictionary doesn't remove the dictionary that replaced it.
+        assertTrue(SharedMainDictionaries.isShared(locale));
+        newHandle.close();
+        assertEquals(1, newDictionary.mCloseCount);
+    }
+
+    @Test
+    public void testUninitializedDictionaryIsNotHandedOut() {
+        final Locale locale = new Locale("xx", "UN");
+        final TestDictionary dictionary = new TestDictionary(locale, false /* isInitialized */);
+        final Dictionary handle = SharedMainDictionaries.share(locale, dictionary);
+        assertNull(SharedMainDictionaries.acquire(locale));
+        handle.close();
+        assertEquals(1, dictionary.mCloseCount);
+    }
+}
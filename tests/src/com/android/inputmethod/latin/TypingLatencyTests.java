@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import android.graphics.Point;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.android.inputmethod.latin.NgramContext.WordInfo;
+import com.android.inputmethod.latin.common.CoordinateUtils;
+import com.android.inputmethod.latin.common.StringUtils;
+import com.android.inputmethod.latin.settings.SettingsValuesForSuggestion;
+
+import java.util.Arrays;
+
+/**
+ * Measures the latency of the suggestions for each keystroke while typing and deleting long
+ * words, and checks that deleting returns the suggestions computed while typing.
+ */
+@LargeTest
+public class TypingLatencyTests extends InputTestsBase {
+    private static final String TAG = TypingLatencyTests.class.getSimpleName();
+
+    private static final String[] LONG_WORDS = {
+            "internationalization", "characteristically", "incomprehensibilities",
+            "telecommunications", "counterrevolutionaries", "electroencephalograph" };
+    private static final int REPEAT_COUNT = 5;
+
+    private final SettingsValuesForSuggestion mSettingsValuesForSuggestion =
+            new SettingsValuesForSuggestion(false /* blockPotentiallyOffensive */);
+    private final Suggest.OnGetSuggestedWordsCallback mCallback =
+            new Suggest.OnGetSuggestedWordsCallback() {
+                @Override
+                public void onGetSuggestedWords(final SuggestedWords suggestedWords) {
+                    assertNotNull(suggestedWords);
+                }
+            };
+
+    private int[] getCoordinates(final int[] codePoints) {
+        final int[] coordinates = CoordinateUtils.newCoordinateArray(codePoints.length);
+        for (int i = 0; i < codePoints.length; ++i) {
+            final Point point = getXY(codePoints[i]);
+            CoordinateUtils.setXYInArray(coordinates, i, point.x, point.y);
+        }
+        return coordinates;
+    }
+
+    private long getSuggestionsAndReturnNanos(final Suggest suggest,
+            final WordComposer wordComposer, final NgramContext ngramContext,
+            final int[] codePoints, final int[] coordinates, final int codePointCount) {
+        wordComposer.setComposingWord(Arrays.copyOf(codePoints, codePointCount),
+                Arrays.copyOf(coordinates, codePointCount * 2));
+        final long startTime = System.nanoTime();
+        suggest.getSuggestedWords(wordComposer, ngramContext, mKeyboard,
+                mSettingsValuesForSuggestion, true /* isCorrectionEnabled */,
+                SuggestedWords.INPUT_STYLE_TYPING, SuggestedWords.NOT_A_SEQUENCE_NUMBER,
+                mCallback);
+        return System.nanoTime() - startTime;
+    }
+
+    /**
+     * Types and deletes the long words one code point at a time and returns the total latency in
+     * nanoseconds for each word length, typing in [0] and deleting in [1].
+     *
+     * @param restartEachKeystroke whether to query another word between keystrokes, so that every
+     * keystroke searches from scratch.
+     */
+    private long[][] measureLatencies(final boolean restartEachKeystroke) {
+        final Suggest suggest = mLatinIME.mInputLogic.mSuggest;
+        final WordComposer wordComposer = new WordComposer();
+        final NgramContext ngramContext = NgramContext.BEGINNING_OF_SENTENCE;
+        final NgramContext otherNgramContext = new NgramContext(new WordInfo("other"));
+        final int[] otherCodePoints = StringUtils.toCodePointArray("x");
+        final int[] otherCoordinates = getCoordinates(otherCodePoints);
+        int maxLength = 0;
+        for (final String word : LONG_WORDS) {
+            maxLength = Math.max(maxLength, StringUtils.codePointCount(word));
+        }
+        final long[][] latencies = new long[2][maxLength + 1];
+        for (int repeat = 0; repeat < REPEAT_COUNT; ++repeat) {
+            for (final String word : LONG_WORDS) {
+                final int[] codePoints = StringUtils.toCodePointArray(word);
+                final int[] coordinates = getCoordinates(codePoints);
+                suggest.resetCachedSuggestions();
+                for (int length = 1; length <= codePoints.length; ++length) {
+                    if (restartEachKeystroke) {
+                        getSuggestionsAndReturnNanos(suggest, wordComposer, otherNgramContext,
+                                otherCodePoints, otherCoordinates, otherCodePoints.length);
+                    }
+                    latencies[0][length] += getSuggestionsAndReturnNanos(suggest, wordComposer,
+                            ngramContext, codePoints, coordinates, length);
+                }
+                for (int length = codePoints.length - 1; length >= 1; --length) {
+                    if (restartEachKeystroke) {
+                        getSuggestionsAndReturnNanos(suggest, wordComposer, otherNgramContext,
+                                otherCodePoints, otherCoordinates, otherCodePoints.length);
+                    }
+                    latencies[1][length] += getSuggestionsAndReturnNanos(suggest, wordComposer,
+                            ngramContext, codePoints, coordinates, length);
+                }
+            }
+        }
+        return latencies;
+    }
+
+    private static void logLatencies(final String name, final long[] latencies) {
+        final StringBuilder sb = new StringBuilder(name).append(" (us per keystroke by length):");
+        for (int length = 1; length < latencies.length; ++length) {
+            sb.append(' ').append(length).append('=')
+                    .append(latencies[length] / 1000 / (REPEAT_COUNT * LONG_WORDS.length));
+        }
+        Log.i(TAG, sb.toString());
+    }
+
+    private static int getExpectedDeleteCount() {
+        int deleteCount = 0;
+        for (final String word : LONG_WORDS) {
+            deleteCount += StringUtils.codePointCount(word) - 1;
+        }
+        return deleteCount * REPEAT_COUNT;
+    }
+
+    public void testLatencyOfLongWords() {
+        final PrefixSuggestionCache cache =
+                mLatinIME.mInputLogic.mSuggest.getPrefixSuggestionCacheForTesting();
+        // Warm up the dictionaries and the sessions.
+        measureLatencies(false /* restartEachKeystroke */);
+
+        final int deleteCountBeforeCached = cache.getDeleteCount();
+        final long[][] cachedLatencies = measureLatencies(false /* restartEachKeystroke */);
+        final int cachedDeleteCount = cache.getDeleteCount() - deleteCountBeforeCached;
+        final int deleteCountBeforeRestart = cache.getDeleteCount();
+        final long[][] restartLatencies = measureLatencies(true /* restartEachKeystroke */);
+        final int restartDeleteCount = cache.getDeleteCount() - deleteCountBeforeRestart;
+        logLatencies("Typing, with prefix cache", cachedLatencies[0]);
+        logLatencies("Typing, from scratch", restartLatencies[0]);
+        logLatencies("Deleting, with prefix cache", cachedLatencies[1]);
+        logLatencies("Deleting, from scratch", restartLatencies[1]);
+
+        // Every deletion returned the suggestions computed while typing, without a search.
+        assertEquals(getExpectedDeleteCount(), cachedDeleteCount);
+        assertEquals(0, restartDeleteCount);
+    }
+}
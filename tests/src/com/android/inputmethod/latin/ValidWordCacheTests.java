@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class ValidWordCacheTests {
+    private static final String SCOPE = "en_US:main";
+    private static final String OTHER_SCOPE = "fr:main:user";
+
+    @Test
+    public void testScopesAreSeparate() {
+        final ValidWordCache cache = new ValidWordCache(10);
+        cache.put(SCOPE, "hello", true, cache.getGeneration());
+        assertEquals(Boolean.TRUE, cache.get(SCOPE, "hello"));
+        assertNull(cache.get(OTHER_SCOPE, "hello"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5f, cache.getHitRate(), 0.0f);
+    }
+
+    @Test
+    public void testInvalidateWordsInAllScopes() {
+        final ValidWordCache cache = new ValidWordCache(10);
+        cache.put(SCOPE, "hello", false, cache.getGeneration());
+        cache.put(OTHER_SCOPE, "hello", false, cache.getGeneration());
+        cache.put(SCOPE, "world", true, cache.getGeneration());
+        cache.invalidateWords(Arrays.asList("hello"));
+        assertNull(cache.get(SCOPE, "hello"));
+        assertNull(cache.get(OTHER_SCOPE, "hello"));
+        assertEquals(Boolean.TRUE, cache.get(SCOPE, "world"));
+
+        cache.invalidateAll();
+        assertNull(cache.get(SCOPE, "world"));
+        assertEquals(2, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testWordLookedUpBeforeInvalidationIsNotCached() {
+        final ValidWordCache cache = new ValidWordCache(10);
+        final long generation = cache.getGeneration();
+        // The word changes while its former validity is being looked up.
+        cache.invalidateWords(Arrays.asList("hello"));
+        cache.put(SCOPE, "hello", false, generation);
+        assertNull(cache.get(SCOPE, "hello"));
+    }
+
+    @Test
+    public void testCapacity() {
+        final ValidWordCache cache = new ValidWordCache(10);
+        for (int i = 0; i < 10; ++i) {
+            cache.put(SCOPE, "word" + i, true, cache.getGeneration());
+        }
+        cache.setCapacity(5);
+        assertEquals(5, cache.getCapacity());
+        assertEquals(5, cache.size());
+        // The least recently used words are evicted first.
+        assertNull(cache.get(SCOPE, "word0"));
+        assertTrue(cache.get(SCOPE, "word9"));
+    }
+}
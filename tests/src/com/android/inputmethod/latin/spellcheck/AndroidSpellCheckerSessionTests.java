@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.spellcheck;
+
+import static org.junit.Assert.assertEquals;
+
+import android.text.TextUtils;
+import android.view.textservice.SuggestionsInfo;
+import android.view.textservice.TextInfo;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.NgramContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+/**
+ * Checks that the batched spell checking of the words of a sentence gets the same results as
+ * checking them one at a time.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class AndroidSpellCheckerSessionTests {
+    private static final int SUGGESTIONS_LIMIT = 5;
+
+    // The per-word and batched checks run on separate services, so that neither of them gets
+    // its suggestions from the cache the other one has filled.
+    private AndroidSpellCheckerService mPerWordService;
+    private AndroidSpellCheckerService mBatchedService;
+
+    @Before
+    public void setUp() {
+        mPerWordService = AndroidSpellCheckerService.newInstanceForTesting(
+                InstrumentationRegistry.getTargetContext());
+        mPerWordService.onCreate();
+        mBatchedService = AndroidSpellCheckerService.newInstanceForTesting(
+                InstrumentationRegistry.getTargetContext());
+        mBatchedService.onCreate();
+    }
+
+    @After
+    public void tearDown() {
+        mPerWordService.onUnbind(null /* intent */);
+        mPerWordService.onDestroy();
+        mBatchedService.onUnbind(null /* intent */);
+        mBatchedService.onDestroy();
+    }
+
+    private static AndroidSpellCheckerSession newSession(
+            final AndroidSpellCheckerService service) {
+        final AndroidSpellCheckerSession session =
+                (AndroidSpellCheckerSession) service.createSession();
+        session.onCreateForTesting(Locale.US);
+        return session;
+    }
+
+    private static String toString(final SuggestionsInfo suggestionsInfo) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(suggestionsInfo.getSuggestionsAttributes());
+        for (int i = 0; i < suggestionsInfo.getSuggestionsCount(); ++i) {
+            sb.append(' ').append(suggestionsInfo.getSuggestionAt(i));
+        }
+        return sb.toString();
+    }
+
+    private void checkSentence(final String... words) {
+        final TextInfo[] textInfos = new TextInfo[words.length];
+        for (int i = 0; i < words.length; ++i) {
+            textInfos[i] = new TextInfo(words[i], 0 /* cookie */, i /* sequence */);
+        }
+        final SuggestionsInfo[] batchedSuggestionsInfos = newSession(mBatchedService)
+                .onGetSuggestionsForWordsInternal(textInfos, SUGGESTIONS_LIMIT);
+
+        // The n-gram contexts the batched check carries forward from word to word.
+        final AndroidSpellCheckerSession perWordSession = newSession(mPerWordService);
+        NgramContext ngramContext = NgramContext.EMPTY_PREV_WORDS_INFO;
+        assertEquals(words.length, batchedSuggestionsInfos.length);
+        for (int i = 0; i < words.length; ++i) {
+            if (i > 0) {
+                ngramContext = ngramContext.getNextNgramContext(new NgramContext.WordInfo(
+                        TextUtils.isEmpty(words[i - 1]) ? null : words[i - 1]));
+            }
+            final SuggestionsInfo perWordSuggestionsInfo = perWordSession
+                    .onGetSuggestionsInternal(textInfos[i], ngramContext, SUGGESTIONS_LIMIT);
+            assertEquals(words[i], toString(perWordSuggestionsInfo),
+                    toString(batchedSuggestionsInfos[i]));
+        }
+    }
+
+    @Test
+    public void testValidWords() {
+        checkSentence("the", "quick", "brown", "fox", "jumps", "over", "the", "lazy", "dog");
+    }
+
+    @Test
+    public void testInvalidWords() {
+        checkSentence("tgis", "sentance", "recieve", "chekc");
+    }
+
+    @Test
+    public void testMixedValidAndInvalidWords() {
+        checkSentence("I", "recieve", "the", "documnet", "tomorow", "morning");
+    }
+
+    @Test
+    public void testCapitalizedWords() {
+        checkSentence("Tgis", "Is", "THE", "DOCUMNET", "Paris", "paris");
+    }
+
+    @Test
+    public void testUncheckableWords() {
+        checkSentence("mail", "me@example.com", "or", "visit", "example.com/recieve", "tgis");
+    }
+}
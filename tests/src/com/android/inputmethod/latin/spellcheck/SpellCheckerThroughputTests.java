@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.spellcheck;
+
+import static org.junit.Assert.assertEquals;
+
+import android.util.Log;
+import android.view.textservice.SuggestionsInfo;
+import android.view.textservice.TextInfo;
+
+import androidx.test.InstrumentationRegistry;
+import androidx.test.filters.LargeTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures the throughput of concurrent sessions of {@link AndroidSpellCheckerService}, whose
+ * dictionary reads share a read lock, and checks that they get the same results as a single
+ * session.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4.class)
+public class SpellCheckerThroughputTests {
+    private static final String TAG = SpellCheckerThroughputTests.class.getSimpleName();
+
+    private static final int SUGGESTIONS_LIMIT = 5;
+    private static final int CHECKS_PER_SESSION = 200;
+    private static final String[] WORDS = {
+            "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "tgis", "receive",
+            "recieve", "sentence", "paragraph", "document", "editor", "spelling", "chekc" };
+
+    private AndroidSpellCheckerService mService;
+
+    @Before
+    public void setUp() {
+        mService = AndroidSpellCheckerService.newInstanceForTesting(
+                InstrumentationRegistry.getTargetContext());
+        mService.onCreate();
+    }
+
+    @After
+    public void tearDown() {
+        mService.onUnbind(null /* intent */);
+        mService.onDestroy();
+    }
+
+    private AndroidSpellCheckerSession newSession() {
+        final AndroidSpellCheckerSession session =
+                (AndroidSpellCheckerSession) mService.createSession();
+        session.onCreateForTesting(Locale.US);
+        return session;
+    }
+
+    private static TextInfo[] newTextInfos() {
+        final TextInfo[] textInfos = new TextInfo[WORDS.length];
+        for (int i = 0; i < WORDS.length; ++i) {
+            textInfos[i] = new TextInfo(WORDS[i], 0 /* cookie */, i /* sequence */);
+        }
+        return textInfos;
+    }
+
+    private static String toString(final SuggestionsInfo[] suggestionsInfos) {
+        final StringBuilder sb = new StringBuilder();
+        for (final SuggestionsInfo suggestionsInfo : suggestionsInfos) {
+            sb.append(suggestionsInfo.getSuggestionsAttributes());
+            for (int i = 0; i < suggestionsInfo.getSuggestionsCount(); ++i) {
+                sb.append(' ').append(suggestionsInfo.getSuggestionAt(i));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks the words in concurrent sessions, one thread per session.
+     *
+     * @return the elapsed time in nanoseconds.
+     */
+    private long runSessions(final int sessionCount, final String expectedResults,
+            final AtomicInteger checkCount, final AtomicInteger mismatchCount)
+            throws InterruptedException {
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(sessionCount);
+        for (int i = 0; i < sessionCount; ++i) {
+            final AndroidSpellCheckerSession session = newSession();
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                        final TextInfo[] textInfos = newTextInfos();
+                        for (int j = 0; j < CHECKS_PER_SESSION; ++j) {
+                            final String results = SpellCheckerThroughputTests.toString(
+                                    session.onGetSuggestionsMultiple(textInfos,
+                                            SUGGESTIONS_LIMIT, true /* sequentialWords */));
+                            if (!expectedResults.equals(results)) {
+                                mismatchCount.incrementAndGet();
+                            }
+                            checkCount.addAndGet(textInfos.length);
+                        }
+                    } catch (final InterruptedException e) {
+                        Log.e(TAG, "Interrupted while waiting to start.", e);
+                    } finally {
+                        doneLatch.countDown();
+                    }
+                }
+            }).start();
+        }
+        final long startTime = System.nanoTime();
+        startLatch.countDown();
+        doneLatch.await();
+        return System.nanoTime() - startTime;
+    }
+
+    @Test
+    public void testConcurrentSessionsThroughput() throws InterruptedException {
+        // Load the dictionaries and fill the suggestions cache before measuring.
+        final String expectedResults = toString(newSession().onGetSuggestionsMultiple(
+                newTextInfos(), SUGGESTIONS_LIMIT, true /* sequentialWords */));
+        final int sessionCount = Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+        final AtomicInteger singleSessionCheckCount = new AtomicInteger(0);
+        final AtomicInteger singleSessionMismatchCount = new AtomicInteger(0);
+        final long singleSessionNanos = runSessions(1, expectedResults,
+                singleSessionCheckCount, singleSessionMismatchCount);
+        final AtomicInteger concurrentCheckCount = new AtomicInteger(0);
+        final AtomicInteger concurrentMismatchCount = new AtomicInteger(0);
+        final long concurrentNanos = runSessions(sessionCount, expectedResults,
+                concurrentCheckCount, concurrentMismatchCount);
+
+        assertEquals(0, singleSessionMismatchCount.get());
+        assertEquals(0, concurrentMismatchCount.get());
+        assertEquals(sessionCount * CHECKS_PER_SESSION * WORDS.length,
+                concurrentCheckCount.get());
+        Log.d(TAG, "sessions = " + sessionCount + ", checks per session = "
+                + CHECKS_PER_SESSION * WORDS.length);
+        Log.d(TAG, "1 session: " + singleSessionNanos / 1000000 + " ms, "
+                + singleSessionCheckCount.get() * 1000000000L / singleSessionNanos
+                + " checks/s");
+        Log.d(TAG, sessionCount + " sessions: " + concurrentNanos / 1000000 + " ms, "
+                + concurrentCheckCount.get() * 1000000000L / concurrentNanos + " checks/s");
+    }
+}
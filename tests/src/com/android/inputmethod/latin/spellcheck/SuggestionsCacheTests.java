@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.spellcheck;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.NgramContext;
+import com.android.inputmethod.latin.NgramContext.WordInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SuggestionsCacheTests {
+    private static final int CACHE_SIZE_IN_BYTES = 64 * 1024;
+    private static final int FLAGS = 0;
+
+    @Test
+    public void testGetSuggestionsKeyedByLocaleAndContext() {
+        final SuggestionsCache cache = new SuggestionsCache(CACHE_SIZE_IN_BYTES);
+        final NgramContext context = new NgramContext(new WordInfo("the"));
+        cache.putSuggestionsToCache(Locale.US, "hte", context, new String[] { "the" }, FLAGS, 5);
+
+        final SuggestionsCache.SuggestionsParams params =
+                cache.getSuggestionsFromCache(Locale.US, "hte", context, 5);
+        assertNotNull(params);
+        assertArrayEquals(new String[] { "the" }, params.mSuggestions);
+        assertNull(cache.getSuggestionsFromCache(Locale.FRANCE, "hte", context, 5));
+        assertNull(cache.getSuggestionsFromCache(Locale.US, "hte",
+                NgramContext.EMPTY_PREV_WORDS_INFO, 5));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertTrue(cache.hasSuggestionsForWord(Locale.US, "hte"));
+    }
+
+    @Test
+    public void testGetSuggestionsRespectsLimit() {
+        final SuggestionsCache cache = new SuggestionsCache(CACHE_SIZE_IN_BYTES);
+        final NgramContext context = NgramContext.EMPTY_PREV_WORDS_INFO;
+        cache.putSuggestionsToCache(Locale.US, "wrod", context,
+                new String[] { "word", "wood" }, FLAGS, 2);
+        cache.putSuggestionsToCache(Locale.US, "qzx", context, new String[] { "qua" }, FLAGS, 2);
+
+        // The suggestions reached their limit, so a larger limit cannot be served.
+        assertNull(cache.getSuggestionsFromCache(Locale.US, "wrod", context, 3));
+        assertArrayEquals(new String[] { "word" },
+                cache.getSuggestionsFromCache(Locale.US, "wrod", context, 1).getSuggestions(1));
+        // All the suggestions are known, so any limit can be served.
+        assertNotNull(cache.getSuggestionsFromCache(Locale.US, "qzx", context, 5));
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        final int sizeInBytes = 4 * 1024;
+        final SuggestionsCache cache = new SuggestionsCache(sizeInBytes);
+        for (int i = 0; i < 1000; ++i) {
+            cache.putSuggestionsToCache(Locale.US, "word" + i, NgramContext.EMPTY_PREV_WORDS_INFO,
+                    new String[] { "suggestion" + i }, FLAGS, 5);
+        }
+        assertTrue(cache.getSizeInBytes() <= sizeInBytes);
+        assertTrue(cache.getEntryCountForTesting() > 0);
+        assertTrue(cache.getEntryCountForTesting() < 1000);
+        // Evicted words are not reported as cached anymore.
+        assertFalse(cache.hasSuggestionsForWord(Locale.US, "word0"));
+        assertTrue(cache.hasSuggestionsForWord(Locale.US, "word999"));
+    }
+
+    @Test
+    public void testHasSuggestionsForWordInAnyContext() {
+        final SuggestionsCache cache = new SuggestionsCache(CACHE_SIZE_IN_BYTES);
+        final NgramContext context = new NgramContext(new WordInfo("the"));
+        final NgramContext emptyContext = NgramContext.EMPTY_PREV_WORDS_INFO;
+        cache.putSuggestionsToCache(Locale.US, "wrod", context, new String[] { "word" },
+                FLAGS, 5);
+        cache.putSuggestionsToCache(Locale.US, "wrod", emptyContext, new String[] { "word" },
+                FLAGS, 5);
+        // Replacing an entry does not count it twice.
+        cache.putSuggestionsToCache(Locale.US, "wrod", emptyContext,
+                new String[] { "word", "wood" }, FLAGS, 5);
+        assertTrue(cache.hasSuggestionsForWord(Locale.US, "wrod"));
+        assertFalse(cache.hasSuggestionsForWord(Locale.FRANCE, "wrod"));
+        assertFalse(cache.hasSuggestionsForWord(Locale.US, "Wrod"));
+
+        cache.clearCache();
+        assertFalse(cache.hasSuggestionsForWord(Locale.US, "wrod"));
+    }
+
+    @Test
+    public void testInvalidateWordDropsOnlyAffectedEntries() {
+        final SuggestionsCache cache = new SuggestionsCache(CACHE_SIZE_IN_BYTES);
+        final NgramContext context = NgramContext.EMPTY_PREV_WORDS_INFO;
+        cache.putSuggestionsToCache(Locale.US, "Gogle", context, new String[] { "Google" },
+                FLAGS, 5);
+        cache.putSuggestionsToCache(Locale.US, "kitchn", context, new String[] { "kitchen" },
+                FLAGS, 5);
+        cache.putSuggestionsToCache(Locale.US, "teh", context, new String[] { "the" }, FLAGS, 5);
+        cache.putSuggestionsToCache(Locale.FRANCE, "googl", context, new String[] { "google" },
+                FLAGS, 5);
+
+        cache.invalidateWord(Locale.US, "googl");
+        // Close to the new word.
+        assertFalse(cache.hasSuggestionsForWord(Locale.US, "Gogle"));
+        // Unrelated to the new word, or in another language.
+        assertTrue(cache.hasSuggestionsForWord(Locale.US, "kitchn"));
+        assertTrue(cache.hasSuggestionsForWord(Locale.US, "teh"));
+        assertTrue(cache.hasSuggestionsForWord(Locale.FRANCE, "googl"));
+
+        // A word for all locales affects the entries suggesting it in any language.
+        cache.invalidateWord(null /* locale */, "the");
+        assertFalse(cache.hasSuggestionsForWord(Locale.US, "teh"));
+        assertTrue(cache.hasSuggestionsForWord(Locale.US, "kitchn"));
+    }
+}
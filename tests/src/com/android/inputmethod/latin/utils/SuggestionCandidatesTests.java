@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.Dictionary;
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+import com.android.inputmethod.latin.common.StringUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SuggestionCandidatesTests {
+    private static final int MAX_WORD_LENGTH = 48;
+
+    private static boolean add(final SuggestionCandidates candidates, final String word,
+            final int score) {
+        final int[] codePoints = StringUtils.toCodePointArray(word);
+        return candidates.add(codePoints, 0, codePoints.length, score,
+                SuggestedWordInfo.KIND_CORRECTION, Dictionary.DICTIONARY_USER_TYPED,
+                SuggestedWordInfo.NOT_AN_INDEX, SuggestedWordInfo.NOT_A_CONFIDENCE);
+    }
+
+    private static ArrayList<String> getWords(final SuggestionCandidates candidates) {
+        final SuggestionResults results = new SuggestionResults(candidates.size(),
+                false /* isBeginningOfSentence */,
+                false /* firstSuggestionExceedsConfidenceThreshold */);
+        candidates.addTo(results);
+        final ArrayList<String> words = new ArrayList<>();
+        for (final SuggestedWordInfo info : results) {
+            words.add(info.mWord);
+        }
+        return words;
+    }
+
+    @Test
+    public void testKeepsBestCandidates() {
+        final SuggestionCandidates candidates = new SuggestionCandidates(3, MAX_WORD_LENGTH);
+        assertTrue(add(candidates, "a", 10));
+        assertTrue(add(candidates, "b", 30));
+        assertTrue(add(candidates, "c", 20));
+        assertFalse(add(candidates, "d", 5));
+        assertTrue(add(candidates, "e", 40));
+        assertEquals(3, candidates.size());
+        assertEquals(20, candidates.getWorstScoreForTesting());
+
+        final ArrayList<String> words = getWords(candidates);
+        assertEquals(3, words.size());
+        assertEquals("e", words.get(0));
+        assertEquals("b", words.get(1));
+        assertEquals("c", words.get(2));
+    }
+
+    @Test
+    public void testKeepsBestCandidateForWord() {
+        final SuggestionCandidates candidates = new SuggestionCandidates(3, MAX_WORD_LENGTH);
+        assertTrue(add(candidates, "word", 10));
+        assertFalse(add(candidates, "word", 10));
+        assertFalse(add(candidates, "word", 5));
+        assertTrue(add(candidates, "word", 20));
+        assertEquals(1, candidates.size());
+        assertEquals(20, candidates.getWorstScoreForTesting());
+    }
+
+    @Test
+    public void testTiesAreBrokenByLengthThenCodePoints() {
+        final SuggestionCandidates candidates = new SuggestionCandidates(2, MAX_WORD_LENGTH);
+        add(candidates, "abc", 10);
+        add(candidates, "ab", 10);
+        add(candidates, "aa", 10);
+        final ArrayList<String> words = getWords(candidates);
+        assertEquals("aa", words.get(0));
+        assertEquals("ab", words.get(1));
+    }
+
+    @Test
+    public void testClear() {
+        final SuggestionCandidates candidates = new SuggestionCandidates(2, MAX_WORD_LENGTH);
+        add(candidates, "a", 10);
+        candidates.clear();
+        assertTrue(candidates.isEmpty());
+        add(candidates, "b", 5);
+        assertEquals(1, getWords(candidates).size());
+    }
+
+    @Test
+    public void testMatchesSuggestionResults() {
+        final int capacity = 18;
+        final Random random = new Random(1234);
+        final SuggestionCandidates candidates =
+                new SuggestionCandidates(capacity, MAX_WORD_LENGTH);
+        final SuggestionResults expectedResults = new SuggestionResults(capacity,
+                false /* isBeginningOfSentence */,
+                false /* firstSuggestionExceedsConfidenceThreshold */);
+        for (int i = 0; i < 500; ++i) {
+            final String word = "w" + random.nextInt(100);
+            final int score = random.nextInt(50);
+            add(candidates, word, score);
+            expectedResults.add(new SuggestedWordInfo(word, "" /* prevWordsContext */, score,
+                    SuggestedWordInfo.KIND_CORRECTION, Dictionary.DICTIONARY_USER_TYPED,
+                    SuggestedWordInfo.NOT_AN_INDEX, SuggestedWordInfo.NOT_A_CONFIDENCE));
+        }
+        final ArrayList<String> expectedWords = new ArrayList<>();
+        for (final SuggestedWordInfo info : expectedResults) {
+            expectedWords.add(info.mWord + ":" + info.mScore);
+        }
+        final SuggestionResults results = new SuggestionResults(capacity,
+                false /* isBeginningOfSentence */,
+                false /* firstSuggestionExceedsConfidenceThreshold */);
+        candidates.addTo(results);
+        final ArrayList<String> words = new ArrayList<>();
+        for (final SuggestedWordInfo info : results) {
+            words.add(info.mWord + ":" + info.mScore);
+        }
+        assertEquals(expectedWords, words);
+    }
+
+    @Test
+    public void testEvictedWordCanBeAddedAgain() {
+        final SuggestionCandidates candidates = new SuggestionCandidates(2, MAX_WORD_LENGTH);
+        add(candidates, "a", 10);
+        add(candidates, "b", 20);
+        // Evicts "a".
+        assertTrue(add(candidates, "c", 30));
+        assertTrue(add(candidates, "a", 40));
+        // "b" was evicted, "a" and "c" are found and kept with their best scores.
+        assertFalse(add(candidates, "a", 35));
+        assertTrue(add(candidates, "c", 50));
+        final ArrayList<String> words = getWords(candidates);
+        assertEquals(2, words.size());
+        assertEquals("c", words.get(0));
+        assertEquals("a", words.get(1));
+    }
+}
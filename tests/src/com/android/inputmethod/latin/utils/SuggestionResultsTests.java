@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import com.android.inputmethod.latin.Dictionary;
+import com.android.inputmethod.latin.SuggestedWords.SuggestedWordInfo;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class SuggestionResultsTests {
+    private static SuggestedWordInfo createInfo(final String word, final int score) {
+        return new SuggestedWordInfo(word, "" /* prevWordsContext */, score,
+                SuggestedWordInfo.KIND_CORRECTION, Dictionary.DICTIONARY_USER_TYPED,
+                SuggestedWordInfo.NOT_AN_INDEX, SuggestedWordInfo.NOT_A_CONFIDENCE);
+    }
+
+    private static SuggestionResults createResults(final int capacity) {
+        return new SuggestionResults(capacity, false /* isBeginningOfSentence */,
+                false /* firstSuggestionExceedsConfidenceThreshold */);
+    }
+
+    private static ArrayList<String> getWords(final SuggestionResults results) {
+        final ArrayList<String> words = new ArrayList<>();
+        for (final SuggestedWordInfo info : results) {
+            words.add(info.mWord + ":" + info.mScore);
+        }
+        return words;
+    }
+
+    @Test
+    public void testKeepsBestSuggestionsInOrder() {
+        final SuggestionResults results = createResults(3);
+        assertTrue(results.add(createInfo("a", 10)));
+        assertTrue(results.add(createInfo("b", 30)));
+        assertTrue(results.add(createInfo("c", 20)));
+        assertFalse(results.add(createInfo("d", 5)));
+        assertTrue(results.add(createInfo("e", 40)));
+        assertEquals(3, results.size());
+        assertEquals("e", results.first().mWord);
+        final ArrayList<String> expected = new ArrayList<>();
+        expected.add("e:40");
+        expected.add("b:30");
+        expected.add("c:20");
+        assertEquals(expected, getWords(results));
+    }
+
+    @Test
+    public void testKeepsBestSuggestionForWord() {
+        final SuggestionResults results = createResults(3);
+        assertTrue(results.add(createInfo("word", 10)));
+        assertFalse(results.add(createInfo("word", 5)));
+        assertTrue(results.add(createInfo("word", 20)));
+        assertTrue(results.add(createInfo("other", 15)));
+        final ArrayList<String> expected = new ArrayList<>();
+        expected.add("word:20");
+        expected.add("other:15");
+        assertEquals(expected, getWords(results));
+    }
+
+    @Test
+    public void testMatchesSortedBestPerWord() {
+        final int capacity = 18;
+        final Random random = new Random(4321);
+        final SuggestionResults results = createResults(capacity);
+        final HashMap<String, Integer> bestScores = new HashMap<>();
+        for (int i = 0; i < 1000; ++i) {
+            final String word = "w" + random.nextInt(200);
+            final int score = random.nextInt(100);
+            results.add(createInfo(word, score));
+            final Integer bestScore = bestScores.get(word);
+            if (bestScore == null || bestScore < score) {
+                bestScores.put(word, score);
+            }
+        }
+        final ArrayList<SuggestedWordInfo> all = new ArrayList<>();
+        for (final String word : bestScores.keySet()) {
+            all.add(createInfo(word, bestScores.get(word)));
+        }
+        final SuggestionResults.SuggestedWordInfoComparator comparator =
+                new SuggestionResults.SuggestedWordInfoComparator();
+        Collections.sort(all, comparator);
+        final ArrayList<String> expected = new ArrayList<>();
+        for (int i = 0; i < capacity; ++i) {
+            expected.add(all.get(i).mWord + ":" + all.get(i).mScore);
+        }
+        assertEquals(expected, getWords(results));
+    }
+
+    @Test
+    public void testIteratorIsNotAffectedByLaterChanges() {
+        final SuggestionResults results = createResults(3);
+        results.add(createInfo("b", 20));
+        results.add(createInfo("a", 30));
+        final Iterator<SuggestedWordInfo> iterator = results.iterator();
+        results.add(createInfo("c", 40));
+        assertEquals("a", iterator.next().mWord);
+        assertEquals("b", iterator.next().mWord);
+        assertFalse(iterator.hasNext());
+        assertEquals("c", results.first().mWord);
+    }
+
+    @Test
+    public void testConcurrentReadersSeeSortedSuggestions() throws InterruptedException {
+        final int capacity = 18;
+        final Random random = new Random(1234);
+        final SuggestionResults results = createResults(capacity);
+        for (int i = 0; i < 100; ++i) {
+            results.add(createInfo("w" + i, random.nextInt(1000)));
+        }
+        final ArrayList<String> expected = getWords(results);
+        // Invalidate the sorted suggestions so that the readers race to sort them.
+        results.add(createInfo("best", 1000));
+        expected.add(0, "best:1000");
+        expected.remove(expected.size() - 1);
+
+        final AtomicReference<ArrayList<String>> mismatch = new AtomicReference<>();
+        final Thread[] readers = new Thread[4];
+        for (int i = 0; i < readers.length; ++i) {
+            readers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100; ++j) {
+                        final ArrayList<String> words = getWords(results);
+                        if (!expected.equals(words)) {
+                            mismatch.set(words);
+                        }
+                    }
+                }
+            });
+            readers[i].start();
+        }
+        for (final Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(mismatch.get());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class TaskLaneTests {
+    private ScheduledExecutorService mExecutor;
+    private CountDownLatch mBlocker;
+
+    @Before
+    public void setUp() throws Exception {
+        mExecutor = Executors.newSingleThreadScheduledExecutor();
+        ExecutorUtils.setExecutorServiceForTests(mExecutor);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        ExecutorUtils.setExecutorServiceForTests(null);
+        mExecutor.shutdownNow();
+    }
+
+    // Holds the executor so that the tasks submitted afterwards are queued in the lane.
+    private void blockExecutor() {
+        mBlocker = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mBlocker.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    private void unblockAndWaitForExecutor() throws InterruptedException {
+        mBlocker.countDown();
+        final CountDownLatch latch = new CountDownLatch(1);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        latch.await(10, TimeUnit.SECONDS);
+    }
+
+    private static Runnable newRecordingTask(final ArrayList<String> record, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                record.add(name);
+            }
+        };
+    }
+
+    @Test
+    public void testTasksRunByPriority() throws InterruptedException {
+        final TaskLane lane = new TaskLane(ExecutorUtils.BULK);
+        final ArrayList<String> record = new ArrayList<>();
+        blockExecutor();
+        lane.execute(null, TaskLane.PRIORITY_LOW, newRecordingTask(record, "low"));
+        lane.execute(null, TaskLane.PRIORITY_NORMAL, newRecordingTask(record, "normal1"));
+        lane.execute(null, TaskLane.PRIORITY_HIGH, newRecordingTask(record, "high"));
+        lane.execute(null, TaskLane.PRIORITY_NORMAL, newRecordingTask(record, "normal2"));
+        assertEquals(4, lane.getPendingTaskCount());
+        unblockAndWaitForExecutor();
+
+        assertEquals("[high, normal1, normal2, low]", record.toString());
+        assertEquals(0, lane.getPendingTaskCount());
+        assertEquals(4, lane.getCompletedTaskCount());
+    }
+
+    @Test
+    public void testCancelTasksOfOwner() throws InterruptedException {
+        final TaskLane lane = new TaskLane(ExecutorUtils.BULK);
+        final ArrayList<String> record = new ArrayList<>();
+        final Object owner = new Object();
+        final Object otherOwner = new Object();
+        blockExecutor();
+        lane.execute(owner, TaskLane.PRIORITY_NORMAL, newRecordingTask(record, "a"));
+        lane.execute(otherOwner, TaskLane.PRIORITY_NORMAL, newRecordingTask(record, "b"));
+        lane.execute(owner, TaskLane.PRIORITY_HIGH, newRecordingTask(record, "c"));
+        assertEquals(2, lane.cancelTasks(owner));
+        unblockAndWaitForExecutor();
+
+        assertEquals("[b]", record.toString());
+        assertEquals(2, lane.getCancelledTaskCount());
+        assertEquals(1, lane.getCompletedTaskCount());
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.inputmethod.latin.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@SmallTest
+@RunWith(AndroidJUnit4.class)
+public class WordMembershipFilterTests {
+    private static final int WORD_COUNT = 10000;
+
+    @Test
+    public void testAddedWordsAreAlwaysFound() {
+        final WordMembershipFilter filter = new WordMembershipFilter(WORD_COUNT);
+        for (int i = 0; i < WORD_COUNT; ++i) {
+            filter.add("word" + i);
+        }
+        for (int i = 0; i < WORD_COUNT; ++i) {
+            assertTrue(filter.mightContain("word" + i));
+        }
+        // A word whose bits were all set by other words is not counted.
+        assertTrue(filter.getWordCount() <= WORD_COUNT);
+        assertTrue(filter.getWordCount() > WORD_COUNT * 97 / 100);
+    }
+
+    @Test
+    public void testAddingWordAgainIsNotCounted() {
+        final WordMembershipFilter filter = new WordMembershipFilter(WORD_COUNT);
+        filter.add("hello");
+        filter.add("hello");
+        filter.addHashCode("hello".hashCode());
+        assertEquals(1, filter.getWordCount());
+    }
+
+    @Test
+    public void testFewFalsePositives() {
+        final WordMembershipFilter filter = new WordMembershipFilter(WORD_COUNT);
+        for (int i = 0; i < WORD_COUNT; ++i) {
+            filter.add("word" + i);
+        }
+        int falsePositiveCount = 0;
+        for (int i = 0; i < WORD_COUNT; ++i) {
+            if (filter.mightContain("other" + i)) {
+                ++falsePositiveCount;
+            }
+        }
+        // About 1% is expected.
+        assertTrue(falsePositiveCount < WORD_COUNT * 3 / 100);
+    }
+
+    @Test
+    public void testAddHashCode() {
+        final WordMembershipFilter filter = new WordMembershipFilter(WORD_COUNT);
+        filter.addHashCode("hello".hashCode());
+        assertTrue(filter.mightContain("hello"));
+    }
+
+    @Test
+    public void testOverCapacity() {
+        final WordMembershipFilter filter = new WordMembershipFilter(100);
+        int i = 0;
+        while (filter.getWordCount() < 100) {
+            filter.add("word" + i++);
+        }
+        assertFalse(filter.isOverCapacity());
+        for (int j = 0; j < 100; ++j) {
+            filter.add("word" + j);
+        }
+        assertFalse(filter.isOverCapacity());
+        while (filter.getWordCount() == 100) {
+            filter.add("word" + i++);
+        }
+        assertTrue(filter.isOverCapacity());
+    }
+}